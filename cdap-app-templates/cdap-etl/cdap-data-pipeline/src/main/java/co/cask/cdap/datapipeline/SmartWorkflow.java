@@ -21,6 +21,7 @@ import co.cask.cdap.api.app.ApplicationConfigurer;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.dataset.lib.FileSet;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.api.lineage.field.Operation;
 import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.metrics.Metrics;
@@ -48,12 +49,14 @@ import co.cask.cdap.etl.api.batch.PostAction;
 import co.cask.cdap.etl.api.batch.SparkCompute;
 import co.cask.cdap.etl.api.batch.SparkSink;
 import co.cask.cdap.etl.api.condition.Condition;
+import co.cask.cdap.etl.api.condition.StageStatistics;
 import co.cask.cdap.etl.api.lineage.field.FieldOperation;
 import co.cask.cdap.etl.batch.ActionSpec;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.BatchPipelineSpec;
 import co.cask.cdap.etl.batch.BatchPipelineSpecGenerator;
 import co.cask.cdap.etl.batch.WorkflowBackedActionContext;
+import co.cask.cdap.etl.batch.condition.BasicStageStatistics;
 import co.cask.cdap.etl.batch.condition.PipelineCondition;
 import co.cask.cdap.etl.batch.connector.AlertPublisherSink;
 import co.cask.cdap.etl.batch.connector.AlertReader;
@@ -68,8 +71,10 @@ import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.DefaultStageMetrics;
 import co.cask.cdap.etl.common.FieldOperationTypeAdapter;
 import co.cask.cdap.etl.common.LocationAwareMDCWrapperLogger;
+import co.cask.cdap.etl.common.PartitionEstimator;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.PipelineRuntime;
+import co.cask.cdap.etl.common.StageStatisticsStore;
 import co.cask.cdap.etl.common.TrackedIterator;
 import co.cask.cdap.etl.common.plugin.PipelinePluginContext;
 import co.cask.cdap.etl.planner.ConditionBranches;
@@ -127,6 +132,7 @@ public class SmartWorkflow extends AbstractWorkflow {
   private static final Type STAGE_DATASET_MAP = new TypeToken<Map<String, String>>() { }.getType();
   private static final Type STAGE_PROPERTIES_MAP = new TypeToken<Map<String, Map<String, String>>>() { }.getType();
   private static final Type STAGE_OPERATIONS_MAP = new TypeToken<Map<String, List<FieldOperation>>>() { }.getType();
+  private static final Type INPUT_KEY_COUNTS_MAP = new TypeToken<Map<String, Map<Integer, Long>>>() { }.getType();
 
   private final ApplicationConfigurer applicationConfigurer;
   private final Set<String> supportedPluginTypes;
@@ -564,6 +570,10 @@ public class SmartWorkflow extends AbstractWorkflow {
       return;
     }
 
+    if (PartitionEstimator.isEnabled(pipelineRuntime.getArguments().asMap())) {
+      recordStageStatistics(workflowContext);
+    }
+
     // Collect field operations from each phase
     WorkflowToken token = workflowContext.getToken();
     List<NodeValue> allNodeValues = token.getAll(Constants.FIELD_OPERATION_KEY_IN_WORKFLOW_TOKEN);
@@ -663,6 +673,36 @@ public class SmartWorkflow extends AbstractWorkflow {
     }
   }
 
+  /**
+   * Stores the statistics of each stage from this run, and the counts of the most frequent keys of each joiner input,
+   * so that the next run can choose its partitions and hot keys from them.
+   */
+  private void recordStageStatistics(WorkflowContext workflowContext) {
+    String pipelineName = workflowContext.getApplicationSpecification().getName();
+    try {
+      StageStatisticsStore.createIfNotExists(workflowContext.getAdmin());
+      KeyValueTable table = workflowContext.getDataset(StageStatisticsStore.DATASET);
+      StageStatisticsStore store = new StageStatisticsStore(table);
+      for (Map.Entry<String, StageStatistics> entry
+        : BasicStageStatistics.fromWorkflowToken(workflowContext.getToken()).entrySet()) {
+        store.write(pipelineName, entry.getKey(), entry.getValue());
+      }
+      String keyCountsPrefix = Constants.StageStatistics.KEY_COUNTS_PREFIX + ".";
+      for (Map.Entry<String, List<NodeValue>> entry
+        : workflowContext.getToken().getAll(WorkflowToken.Scope.USER).entrySet()) {
+        if (entry.getKey().startsWith(keyCountsPrefix) && !entry.getValue().isEmpty()) {
+          String stageName = entry.getKey().substring(keyCountsPrefix.length());
+          Map<String, Map<Integer, Long>> keyCounts =
+            GSON.fromJson(entry.getValue().get(0).getValue().toString(), INPUT_KEY_COUNTS_MAP);
+          store.writeKeyCounts(pipelineName, stageName, keyCounts);
+        }
+      }
+    } catch (Exception e) {
+      LOG.warn("Unable to record stage statistics for pipeline '{}'. The next run will not be able to use them.",
+               pipelineName, e);
+    }
+  }
+
   private void addPrograms(String node, WorkflowProgramAdder programAdder) {
     programAdder = addProgram(node, programAdder);
     Iterator<String> outputIter = dag.getNodeOutputs(node).iterator();
@@ -733,7 +773,8 @@ public class SmartWorkflow extends AbstractWorkflow {
         connectorDatasets.put(connectorName, datasetName);
         phaseConnectorDatasets.put(connectorName, datasetName);
         // add the local dataset
-        ConnectorSource connectorSource = new MultiConnectorSource(datasetName, null);
+        ConnectorSource connectorSource = new MultiConnectorSource(datasetName,
+                                                                   connectorInfo.getInputSchemas().values());
         connectorSource.configure(getConfigurer());
       } else {
         phaseConnectorDatasets.put(connectorName, connectorDatasets.get(connectorName));
@@ -64,11 +64,13 @@ import co.cask.cdap.etl.mock.batch.MockSink;
 import co.cask.cdap.etl.mock.batch.MockSource;
 import co.cask.cdap.etl.mock.batch.NodeStatesAction;
 import co.cask.cdap.etl.mock.batch.aggregator.FieldCountAggregator;
+import co.cask.cdap.etl.mock.batch.aggregator.FieldSumAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.GroupFilterAggregator;
 import co.cask.cdap.etl.mock.batch.aggregator.IdentityAggregator;
 import co.cask.cdap.etl.mock.batch.joiner.MockJoiner;
 import co.cask.cdap.etl.mock.condition.MockCondition;
 import co.cask.cdap.etl.mock.test.HydratorTestBase;
+import co.cask.cdap.etl.mock.transform.BulkStringValueFilterTransform;
 import co.cask.cdap.etl.mock.transform.DropNullTransform;
 import co.cask.cdap.etl.mock.transform.FilterErrorTransform;
 import co.cask.cdap.etl.mock.transform.FlattenErrorTransform;
@@ -134,6 +136,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.Nullable;
 
 /**
  *
@@ -1957,6 +1960,221 @@ public class DataPipelineTest extends HydratorTestBase {
     validateMetric(5, appId, "sink2.records.in");
   }
 
+  @Test
+  public void testMapRedCombinableAggregator() throws Exception {
+    testCombinableAggregator(Engine.MAPREDUCE);
+  }
+
+  @Test
+  public void testSparkCombinableAggregator() throws Exception {
+    testCombinableAggregator(Engine.SPARK);
+  }
+
+  private void testCombinableAggregator(Engine engine) throws Exception {
+    String sourceName = "combineAggInput-" + engine.name();
+    String sinkName = "combineAggOutput-" + engine.name();
+    Schema inputSchema = Schema.recordOf(
+      "purchase",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("price", Schema.of(Schema.Type.LONG))
+    );
+    /*
+       source --> agg --> sink
+     */
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .setEngine(engine)
+      .addStage(new ETLStage("source", MockSource.getPlugin(sourceName, inputSchema)))
+      .addStage(new ETLStage("agg", FieldSumAggregator.getPlugin("user", "price")))
+      .addStage(new ETLStage("sink", MockSink.getPlugin(sinkName)))
+      .addConnection("source", "agg")
+      .addConnection("agg", "sink")
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("CombinableAggApp-" + engine);
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset(sourceName));
+    MockSource.writeInput(inputManager, ImmutableList.of(
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "donut").set("price", 2L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "coffee").set("price", 3L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "john").set("item", "bagel").set("price", 4L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "donut").set("price", 2L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "john").set("item", "coffee").set("price", 3L).build()));
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    Schema outputSchema = Schema.recordOf(
+      "user.price.sum",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("price", Schema.of(Schema.Type.LONG))
+    );
+    DataSetManager<Table> sinkManager = getDataset(sinkName);
+    Set<StructuredRecord> expected = ImmutableSet.of(
+      StructuredRecord.builder(outputSchema).set("user", "samuel").set("price", 7L).build(),
+      StructuredRecord.builder(outputSchema).set("user", "john").set("price", 7L).build());
+    Set<StructuredRecord> actual = Sets.newHashSet(MockSink.readOutput(sinkManager));
+    Assert.assertEquals(expected, actual);
+
+    validateMetric(5, appId, "agg.records.in");
+    validateMetric(2, appId, "agg.records.out");
+    validateMetric(2, appId, "sink.records.in");
+  }
+
+  @Test
+  public void testSparkFusedTransforms() throws Exception {
+    String sourceName = "fusedTransformInput";
+    String sinkName = "fusedTransformOutput";
+    String errorSinkName = "fusedTransformErrors";
+    Schema inputSchema = Schema.recordOf("user",
+                                         Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                                         Schema.Field.of("id", Schema.of(Schema.Type.INT)));
+    /*
+       source --> filter1 --> filter2 --> filter3 --> sink
+                                             |
+                                             |--> errorflatten --> errorsink
+
+       filter1, filter2, and filter3 are run in a single function. Only filter3 is connected to an error transform,
+       so the errors of the other filters are dropped.
+     */
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .setEngine(Engine.SPARK)
+      .addStage(new ETLStage("source", MockSource.getPlugin(sourceName, inputSchema)))
+      .addStage(new ETLStage("filter1", StringValueFilterTransform.getPlugin("name", "Leo")))
+      .addStage(new ETLStage("filter2", StringValueFilterTransform.getPlugin("name", "Ralph")))
+      .addStage(new ETLStage("filter3", StringValueFilterTransform.getPlugin("name", "Don")))
+      .addStage(new ETLStage("errorflatten", FlattenErrorTransform.getPlugin()))
+      .addStage(new ETLStage("sink", MockSink.getPlugin(sinkName)))
+      .addStage(new ETLStage("errorsink", MockSink.getPlugin(errorSinkName)))
+      .addConnection("source", "filter1")
+      .addConnection("filter1", "filter2")
+      .addConnection("filter2", "filter3")
+      .addConnection("filter3", "sink")
+      .addConnection("filter3", "errorflatten")
+      .addConnection("errorflatten", "errorsink")
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("FusedTransformApp");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset(sourceName));
+    MockSource.writeInput(inputManager, ImmutableList.of(
+      StructuredRecord.builder(inputSchema).set("name", "Leo").set("id", 1).build(),
+      StructuredRecord.builder(inputSchema).set("name", "Ralph").set("id", 2).build(),
+      StructuredRecord.builder(inputSchema).set("name", "Don").set("id", 3).build(),
+      StructuredRecord.builder(inputSchema).set("name", "Mike").set("id", 4).build()));
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    DataSetManager<Table> sinkManager = getDataset(sinkName);
+    Set<StructuredRecord> expected = ImmutableSet.of(
+      StructuredRecord.builder(inputSchema).set("name", "Mike").set("id", 4).build());
+    Assert.assertEquals(expected, Sets.newHashSet(MockSink.readOutput(sinkManager)));
+
+    Schema flattenSchema =
+      Schema.recordOf("erroruser",
+                      Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+                      Schema.Field.of("id", Schema.of(Schema.Type.INT)),
+                      Schema.Field.of("errMsg", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+                      Schema.Field.of("errCode", Schema.nullableOf(Schema.of(Schema.Type.INT))),
+                      Schema.Field.of("errStage", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    DataSetManager<Table> errorSinkManager = getDataset(errorSinkName);
+    expected = ImmutableSet.of(
+      StructuredRecord.builder(flattenSchema).set("name", "Don").set("id", 3)
+        .set("errMsg", "bad string value").set("errCode", 1).set("errStage", "filter3").build());
+    Assert.assertEquals(expected, Sets.newHashSet(MockSink.readOutput(errorSinkManager)));
+
+    // metrics are still emitted separately for each stage in the chain
+    validateMetric(4, appId, "filter1.records.in");
+    validateMetric(3, appId, "filter1.records.out");
+    validateMetric(3, appId, "filter2.records.in");
+    validateMetric(2, appId, "filter2.records.out");
+    validateMetric(2, appId, "filter3.records.in");
+    validateMetric(1, appId, "filter3.records.out");
+    validateMetric(1, appId, "sink.records.in");
+    validateMetric(1, appId, "errorsink.records.in");
+  }
+
+  @Test
+  public void testMapRedBulkTransform() throws Exception {
+    testBulkTransform(Engine.MAPREDUCE);
+  }
+
+  @Test
+  public void testSparkBulkTransform() throws Exception {
+    testBulkTransform(Engine.SPARK);
+  }
+
+  private void testBulkTransform(Engine engine) throws Exception {
+    String sourceName = "bulkTransformInput-" + engine.name();
+    String sinkName = "bulkTransformOutput-" + engine.name();
+    Schema inputSchema = Schema.recordOf(
+      "purchase",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("price", Schema.of(Schema.Type.LONG))
+    );
+    /*
+       source --> filter1 --> agg --> filter2 --> sink
+
+       there are fewer records than the size of a chunk, so records only reach the aggregator and the sink
+       if the filters are flushed at the end of each task
+     */
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .setEngine(engine)
+      .addStage(new ETLStage("source", MockSource.getPlugin(sourceName, inputSchema)))
+      .addStage(new ETLStage("filter1", BulkStringValueFilterTransform.getPlugin("item", "coffee")))
+      .addStage(new ETLStage("agg", FieldSumAggregator.getPlugin("user", "price")))
+      .addStage(new ETLStage("filter2", BulkStringValueFilterTransform.getPlugin("user", "john")))
+      .addStage(new ETLStage("sink", MockSink.getPlugin(sinkName)))
+      .addConnection("source", "filter1")
+      .addConnection("filter1", "agg")
+      .addConnection("agg", "filter2")
+      .addConnection("filter2", "sink")
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("BulkTransformApp-" + engine);
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset(sourceName));
+    MockSource.writeInput(inputManager, ImmutableList.of(
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "donut").set("price", 2L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "coffee").set("price", 3L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "john").set("item", "bagel").set("price", 4L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "samuel").set("item", "donut").set("price", 2L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "mary").set("item", "coffee").set("price", 3L).build(),
+      StructuredRecord.builder(inputSchema).set("user", "mary").set("item", "bagel").set("price", 4L).build()));
+
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start();
+    workflowManager.waitForRun(ProgramRunStatus.COMPLETED, 5, TimeUnit.MINUTES);
+
+    Schema outputSchema = Schema.recordOf(
+      "user.price.sum",
+      Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("price", Schema.of(Schema.Type.LONG))
+    );
+    DataSetManager<Table> sinkManager = getDataset(sinkName);
+    Set<StructuredRecord> expected = ImmutableSet.of(
+      StructuredRecord.builder(outputSchema).set("user", "samuel").set("price", 4L).build(),
+      StructuredRecord.builder(outputSchema).set("user", "mary").set("price", 4L).build());
+    Set<StructuredRecord> actual = Sets.newHashSet(MockSink.readOutput(sinkManager));
+    Assert.assertEquals(expected, actual);
+
+    validateMetric(6, appId, "filter1.records.in");
+    validateMetric(4, appId, "filter1.records.out");
+    validateMetric(3, appId, "filter2.records.in");
+    validateMetric(2, appId, "filter2.records.out");
+    validateMetric(2, appId, "sink.records.in");
+  }
+
   @Test
   public void testSparkSinkAndCompute() throws Exception {
     // use the SparkSink to train a model
@@ -2147,7 +2365,24 @@ public class DataPipelineTest extends HydratorTestBase {
     testInnerJoinWithMultiOutput(Engine.SPARK);
   }
 
+  @Test
+  public void testInnerJoinWithInMemoryInputsMR() throws Exception {
+    testInnerJoinWithMultiOutput(Engine.MAPREDUCE, "t2,t3");
+  }
+
+  @Test
+  public void testInnerJoinWithInMemoryInputsSpark() throws Exception {
+    testInnerJoinWithMultiOutput(Engine.SPARK, "t2,t3");
+  }
+
   private void testInnerJoinWithMultiOutput(Engine engine) throws Exception {
+    testInnerJoinWithMultiOutput(engine, null);
+  }
+
+  private void testInnerJoinWithMultiOutput(Engine engine, @Nullable String inMemoryInputs) throws Exception {
+    // all inputs are shuffled unless some of them are in memory and the engine is spark
+    String id = inMemoryInputs == null ? engine.toString() : engine + "-InMemory";
+
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -2169,14 +2404,14 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1InnerJoinInput-" + engine;
-    String input2Name = "source2InnerJoinInput-" + engine;
-    String input3Name = "source3InnerJoinInput-" + engine;
-    String outputName = "innerJoinOutput-" + engine;
-    String outputName2 = "innerJoinOutput2-" + engine;
-    String joinerName = "innerJoiner-" + engine;
-    String sinkName = "innerJoinSink-" + engine;
-    String sinkName2 = "innerJoinSink-2" + engine;
+    String input1Name = "source1InnerJoinInput-" + id;
+    String input2Name = "source2InnerJoinInput-" + id;
+    String input3Name = "source3InnerJoinInput-" + id;
+    String outputName = "innerJoinOutput-" + id;
+    String outputName2 = "innerJoinOutput2-" + id;
+    String joinerName = "innerJoiner-" + id;
+    String sinkName = "innerJoinSink-" + id;
+    String sinkName2 = "innerJoinSink-2" + id;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder()
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name, inputSchema1)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name, inputSchema2)))
@@ -2186,7 +2421,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t3", IdentityTransform.getPlugin()))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
                                                                   "t1.customer_name=t2.cust_name=t3.c_name",
-                                                                "t1,t2,t3", "")))
+                                                                "t1,t2,t3", "", inMemoryInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addStage(new ETLStage(sinkName2, MockSink.getPlugin(outputName2)))
       .addConnection("source1", "t1")
@@ -2201,7 +2436,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("InnerJoinApp-" + id);
     ApplicationManager appManager = deployApplication(appId, appRequest);
 
     Schema outSchema = Schema.recordOf(
@@ -2268,6 +2503,10 @@ public class DataPipelineTest extends HydratorTestBase {
     validateMetric(2, appId, joinerName + ".records.out");
     validateMetric(2, appId, sinkName + ".records.in");
     validateMetric(2, appId, sinkName2 + ".records.in");
+    // t2 and t3 are required and can be broadcast by spark, while t1 is always shuffled
+    int broadcastInputs = inMemoryInputs != null && engine == Engine.SPARK ? 2 : 0;
+    validateMetric(broadcastInputs, appId, joinerName + ".joiner.inputs.broadcast");
+    validateMetric(3 - broadcastInputs, appId, joinerName + ".joiner.inputs.shuffled");
   }
 
   @Test
@@ -2280,7 +2519,24 @@ public class DataPipelineTest extends HydratorTestBase {
     testOuterJoin(Engine.SPARK);
   }
 
+  @Test
+  public void testOuterJoinWithInMemoryInputsMR() throws Exception {
+    testOuterJoin(Engine.MAPREDUCE, "t1,t3");
+  }
+
+  @Test
+  public void testOuterJoinWithInMemoryInputsSpark() throws Exception {
+    testOuterJoin(Engine.SPARK, "t1,t3");
+  }
+
   private void testOuterJoin(Engine engine) throws Exception {
+    testOuterJoin(engine, null);
+  }
+
+  private void testOuterJoin(Engine engine, @Nullable String inMemoryInputs) throws Exception {
+    // all inputs are shuffled unless some of them are in memory and the engine is spark
+    String id = inMemoryInputs == null ? engine.toString() : engine + "-InMemory";
+
     Schema inputSchema1 = Schema.recordOf(
       "customerRecord",
       Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
@@ -2302,12 +2558,12 @@ public class DataPipelineTest extends HydratorTestBase {
       Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
     );
 
-    String input1Name = "source1OuterJoinInput-" + engine;
-    String input2Name = "source2OuterJoinInput-" + engine;
-    String input3Name = "source3OuterJoinInput-" + engine;
-    String outputName = "outerJoinOutput-" + engine;
-    String joinerName = "outerJoiner-" + engine;
-    String sinkName = "outerJoinSink-" + engine;
+    String input1Name = "source1OuterJoinInput-" + id;
+    String input2Name = "source2OuterJoinInput-" + id;
+    String input3Name = "source3OuterJoinInput-" + id;
+    String outputName = "outerJoinOutput-" + id;
+    String joinerName = "outerJoiner-" + id;
+    String sinkName = "outerJoinSink-" + id;
     ETLBatchConfig etlConfig = ETLBatchConfig.builder()
       .addStage(new ETLStage("source1", MockSource.getPlugin(input1Name, inputSchema1)))
       .addStage(new ETLStage("source2", MockSource.getPlugin(input2Name, inputSchema2)))
@@ -2316,7 +2572,8 @@ public class DataPipelineTest extends HydratorTestBase {
       .addStage(new ETLStage("t2", IdentityTransform.getPlugin()))
       .addStage(new ETLStage("t3", IdentityTransform.getPlugin()))
       .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.customer_id=t2.cust_id=t3.c_id&" +
-                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "")))
+                                                                  "t1.customer_name=t2.cust_name=t3.c_name", "t1", "",
+                                                              inMemoryInputs)))
       .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
       .addConnection("source1", "t1")
       .addConnection("source2", "t2")
@@ -2329,7 +2586,7 @@ public class DataPipelineTest extends HydratorTestBase {
       .build();
 
     AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
-    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + engine);
+    ApplicationId appId = NamespaceId.DEFAULT.app("OuterJoinApp-" + id);
     ApplicationManager appManager = deployApplication(appId, appRequest);
 
     Schema outSchema = Schema.recordOf(
@@ -2401,6 +2658,111 @@ public class DataPipelineTest extends HydratorTestBase {
 
     validateMetric(4, appId, joinerName + ".records.out");
     validateMetric(4, appId, sinkName + ".records.in");
+    // t1 is the only required input so it is always shuffled, while t3 can be broadcast by spark
+    int broadcastInputs = inMemoryInputs != null && engine == Engine.SPARK ? 1 : 0;
+    validateMetric(broadcastInputs, appId, joinerName + ".joiner.inputs.broadcast");
+    validateMetric(3 - broadcastInputs, appId, joinerName + ".joiner.inputs.shuffled");
+  }
+
+  @Test
+  public void testSaltedJoinSpark() throws Exception {
+    Schema transactionSchema = Schema.recordOf(
+      "transactionRecord",
+      Schema.Field.of("t_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c_name", Schema.of(Schema.Type.STRING))
+    );
+
+    Schema customerSchema = Schema.recordOf(
+      "customerRecord",
+      Schema.Field.of("customer_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("customer_name", Schema.of(Schema.Type.STRING))
+    );
+
+    String transactionsName = "saltedJoinTransactions";
+    String customersName = "saltedJoinCustomers";
+    String outputName = "saltedJoinOutput";
+    String joinerName = "saltedJoiner";
+    String sinkName = "saltedJoinSink";
+    ETLBatchConfig etlConfig = ETLBatchConfig.builder()
+      .addStage(new ETLStage("source1", MockSource.getPlugin(transactionsName, transactionSchema)))
+      .addStage(new ETLStage("source2", MockSource.getPlugin(customersName, customerSchema)))
+      .addStage(new ETLStage("t1", IdentityTransform.getPlugin()))
+      .addStage(new ETLStage("t2", IdentityTransform.getPlugin()))
+      .addStage(new ETLStage(joinerName, MockJoiner.getPlugin("t1.c_id=t2.customer_id&t1.c_name=t2.customer_name",
+                                                              "t1", "")))
+      .addStage(new ETLStage(sinkName, MockSink.getPlugin(outputName)))
+      .addConnection("source1", "t1")
+      .addConnection("source2", "t2")
+      .addConnection("t1", joinerName)
+      .addConnection("t2", joinerName)
+      .addConnection(joinerName, sinkName)
+      .setEngine(Engine.SPARK)
+      .build();
+
+    AppRequest<ETLBatchConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("SaltedJoinApp");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    Schema outSchema = Schema.recordOf(
+      "join.output",
+      Schema.Field.of("t_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c_id", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("c_name", Schema.of(Schema.Type.STRING)),
+      Schema.Field.of("customer_id", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("customer_name", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+
+    // samuel has six transactions, which is more than fit in a partition of two records
+    List<StructuredRecord> transactions = new ArrayList<>();
+    Set<StructuredRecord> expected = new HashSet<>();
+    for (int i = 0; i < 6; i++) {
+      transactions.add(StructuredRecord.builder(transactionSchema).set("t_id", String.valueOf(i))
+                         .set("c_id", "1").set("c_name", "samuel").build());
+      expected.add(StructuredRecord.builder(outSchema).set("t_id", String.valueOf(i))
+                     .set("c_id", "1").set("c_name", "samuel")
+                     .set("customer_id", "1").set("customer_name", "samuel").build());
+    }
+    transactions.add(StructuredRecord.builder(transactionSchema).set("t_id", "6")
+                       .set("c_id", "3").set("c_name", "jane").build());
+    expected.add(StructuredRecord.builder(outSchema).set("t_id", "6").set("c_id", "3").set("c_name", "jane")
+                   .set("customer_id", "3").set("customer_name", "jane").build());
+    transactions.add(StructuredRecord.builder(transactionSchema).set("t_id", "7")
+                       .set("c_id", "4").set("c_name", "martha").build());
+    expected.add(StructuredRecord.builder(outSchema).set("t_id", "7").set("c_id", "4").set("c_name", "martha")
+                   .build());
+
+    List<StructuredRecord> customers = ImmutableList.of(
+      StructuredRecord.builder(customerSchema).set("customer_id", "1").set("customer_name", "samuel").build(),
+      StructuredRecord.builder(customerSchema).set("customer_id", "2").set("customer_name", "bob").build(),
+      StructuredRecord.builder(customerSchema).set("customer_id", "3").set("customer_name", "jane").build());
+
+    DataSetManager<Table> inputManager = getDataset(NamespaceId.DEFAULT.dataset(transactionsName));
+    MockSource.writeInput(inputManager, transactions);
+    inputManager = getDataset(NamespaceId.DEFAULT.dataset(customersName));
+    MockSource.writeInput(inputManager, customers);
+
+    Map<String, String> arguments = ImmutableMap.of(
+      co.cask.cdap.etl.common.Constants.AUTO_PARTITIONS_ENABLED, "true",
+      co.cask.cdap.etl.common.Constants.AUTO_PARTITIONS_RECORDS, "2");
+
+    // the first run counts the join keys, and the second run spreads the records of samuel over three partitions
+    WorkflowManager workflowManager = appManager.getWorkflowManager(SmartWorkflow.NAME);
+    workflowManager.start(arguments);
+    workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, 1, 5, TimeUnit.MINUTES);
+
+    DataSetManager<Table> sinkManager = getDataset(outputName);
+    Assert.assertEquals(expected, Sets.newHashSet(MockSink.readOutput(sinkManager)));
+    validateMetric(8, appId, joinerName + ".records.out");
+    validateMetric(0, appId, joinerName + ".joiner.keys.salted");
+
+    MockSink.clear(sinkManager);
+    workflowManager.start(arguments);
+    workflowManager.waitForRuns(ProgramRunStatus.COMPLETED, 2, 5, TimeUnit.MINUTES);
+
+    sinkManager = getDataset(outputName);
+    Assert.assertEquals(expected, Sets.newHashSet(MockSink.readOutput(sinkManager)));
+    validateMetric(16, appId, joinerName + ".records.out");
+    validateMetric(1, appId, joinerName + ".joiner.keys.salted");
   }
 
   @Test
@@ -16,9 +16,13 @@
 
 package co.cask.cdap.datapipeline;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -29,6 +33,7 @@ import java.io.DataInputStream;
 import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.util.Collections;
 
 /**
  */
@@ -39,17 +44,131 @@ public class StructuredRecordWritableTest {
     Schema schema = Schema.recordOf("rec", Schema.Field.of("x", Schema.of(Schema.Type.STRING)));
     StructuredRecord record = StructuredRecord.builder(schema).set("x", "идыло").build();
 
-    StructuredRecordWritable writableOut = new StructuredRecordWritable(record);
+    Assert.assertEquals(record, roundTrip(record));
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Schema innerSchema = Schema.recordOf("inner", Schema.Field.of("d", Schema.of(Schema.Type.DOUBLE)));
+    Schema schema = Schema.recordOf(
+      "complex",
+      Schema.Field.of("i", Schema.of(Schema.Type.INT)),
+      Schema.Field.of("l", Schema.of(Schema.Type.LONG)),
+      Schema.Field.of("f", Schema.of(Schema.Type.FLOAT)),
+      Schema.Field.of("b", Schema.of(Schema.Type.BOOLEAN)),
+      Schema.Field.of("s", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("n", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+      Schema.Field.of("a", Schema.arrayOf(Schema.of(Schema.Type.LONG))),
+      Schema.Field.of("m", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.INT))),
+      Schema.Field.of("r", innerSchema));
+    StructuredRecord record = StructuredRecord.builder(schema)
+      .set("i", Integer.MIN_VALUE)
+      .set("l", Long.MAX_VALUE)
+      .set("f", -1.5f)
+      .set("b", true)
+      .set("s", "str")
+      .set("a", ImmutableList.of(1L, -2L, 3L))
+      .set("m", ImmutableMap.of("k1", 1, "k2", -2))
+      .set("r", StructuredRecord.builder(innerSchema).set("d", Math.PI).build())
+      .build();
+
+    Assert.assertEquals(record, roundTrip(record));
+
+    // Records of registered schemas are serialized without the schema
+    int inlineSize = serialize(record).length;
+    StructuredRecordWritable.registerSchemas(Collections.singleton(schema));
+    try {
+      Assert.assertTrue(serialize(record).length <= inlineSize - schema.toString().length());
+      Assert.assertEquals(record, roundTrip(record));
+    } finally {
+      StructuredRecordWritable.unregisterSchemas();
+    }
+    Assert.assertEquals(inlineSize, serialize(record).length);
+  }
+
+  @Test
+  public void testKeyProjection() throws IOException {
+    Schema schema = Schema.recordOf("purchase",
+                                    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+    Schema keySchema = Schema.recordOf("group.key",
+                                       Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+                                       Schema.Field.of("user", Schema.of(Schema.Type.STRING)));
+    Schema otherKeySchema = Schema.recordOf("group.key",
+                                            Schema.Field.of("item", Schema.nullableOf(Schema.of(Schema.Type.STRING))));
+    StructuredRecord key = StructuredRecord.builder(keySchema).set("item", "apple").set("user", "alice").build();
+    StructuredRecord otherKey = StructuredRecord.builder(otherKeySchema).set("item", "apple").build();
+
+    int inlineSize = serialize(key).length;
+    int otherInlineSize = serialize(otherKey).length;
+    StructuredRecordWritable.registerSchemas(Collections.singleton(schema));
+    try {
+      // Keys made of fields of a registered schema only refer to it
+      Assert.assertTrue(serialize(key).length <= inlineSize - keySchema.toString().length() + 32);
+      Assert.assertEquals(key, roundTrip(key));
+      Assert.assertEquals(keySchema, roundTrip(key).getSchema());
+
+      // Keys with fields of different types are written inline
+      Assert.assertEquals(otherInlineSize, serialize(otherKey).length);
+      Assert.assertEquals(otherKey, roundTrip(otherKey));
+
+      // Projected keys are compared by the field values
+      WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+      StructuredRecord sameKey = StructuredRecord.builder(keySchema).set("item", "apple").set("user", "alice").build();
+      StructuredRecord nextKey = StructuredRecord.builder(keySchema).set("item", "apple").set("user", "bob").build();
+      Assert.assertEquals(0, rawCompare(comparator, key, sameKey));
+      Assert.assertNotEquals(0, rawCompare(comparator, key, nextKey));
+    } finally {
+      StructuredRecordWritable.unregisterSchemas();
+    }
+  }
+
+  @Test
+  public void testRawCompare() throws IOException {
+    Schema schema = Schema.recordOf("key", Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                    Schema.Field.of("y", Schema.of(Schema.Type.INT)));
+    Schema otherSchema = Schema.recordOf("key", Schema.Field.of("x", Schema.of(Schema.Type.STRING)),
+                                         Schema.Field.of("z", Schema.of(Schema.Type.INT)));
+    StructuredRecord record1 = StructuredRecord.builder(schema).set("x", "abc").set("y", 1).build();
+    StructuredRecord record2 = StructuredRecord.builder(schema).set("x", "abc").set("y", 1).build();
+    StructuredRecord record3 = StructuredRecord.builder(schema).set("x", "abc").set("y", 2).build();
+    StructuredRecord record4 = StructuredRecord.builder(otherSchema).set("x", "abc").set("z", 1).build();
+
+    WritableComparator comparator = WritableComparator.get(StructuredRecordWritable.class);
+    Assert.assertTrue(comparator instanceof StructuredRecordWritable.Comparator);
+
+    Assert.assertEquals(0, rawCompare(comparator, record1, record2));
+    Assert.assertNotEquals(0, rawCompare(comparator, record1, record3));
+    Assert.assertEquals(-rawCompare(comparator, record1, record3), rawCompare(comparator, record3, record1));
+    Assert.assertNotEquals(0, rawCompare(comparator, record1, record4));
+
+    // Comparing objects must be consistent with comparing bytes
+    Assert.assertEquals(0, new StructuredRecordWritable(record1).compareTo(new StructuredRecordWritable(record2)));
+    Assert.assertEquals(Integer.signum(rawCompare(comparator, record1, record3)),
+                        Integer.signum(new StructuredRecordWritable(record1)
+                                         .compareTo(new StructuredRecordWritable(record3))));
+  }
+
+  private int rawCompare(WritableComparator comparator,
+                         StructuredRecord record1, StructuredRecord record2) throws IOException {
+    // Prefix with some bytes to make sure the offset is respected
+    byte[] bytes1 = Bytes.add(new byte[] { 1, 2, 3 }, serialize(record1));
+    byte[] bytes2 = serialize(record2);
+    return comparator.compare(bytes1, 3, bytes1.length - 3, bytes2, 0, bytes2.length);
+  }
+
+  private byte[] serialize(StructuredRecord record) throws IOException {
     ByteArrayOutputStream os = new ByteArrayOutputStream();
     DataOutput output = new DataOutputStream(os);
-    writableOut.write(output);
-    os.flush();
+    new StructuredRecordWritable(record).write(output);
+    return os.toByteArray();
+  }
 
+  private StructuredRecord roundTrip(StructuredRecord record) throws IOException {
     StructuredRecordWritable writableIn = new StructuredRecordWritable();
-    ByteArrayInputStream is = new ByteArrayInputStream(os.toByteArray());
-    DataInput input = new DataInputStream(is);
+    DataInput input = new DataInputStream(new ByteArrayInputStream(serialize(record)));
     writableIn.readFields(input);
-
-    Assert.assertEquals(writableIn.get(), record);
+    return writableIn.get();
   }
 }
@@ -0,0 +1,252 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.datastreams;
+
+import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.api.streaming.ContinuousReader;
+import co.cask.cdap.etl.api.streaming.ContinuousSink;
+import co.cask.cdap.etl.api.streaming.ContinuousSource;
+import co.cask.cdap.etl.api.streaming.ContinuousWriter;
+import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.DefaultStageMetrics;
+import co.cask.cdap.etl.common.Destroyables;
+import co.cask.cdap.etl.common.NoopStageStatisticsCollector;
+import co.cask.cdap.etl.common.PipelinePhase;
+import co.cask.cdap.etl.common.PipelineRuntime;
+import co.cask.cdap.etl.common.TrackedEmitter;
+import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.etl.common.plugin.PipelinePluginContext;
+import co.cask.cdap.etl.spec.StageSpec;
+import com.google.common.base.Throwables;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs the stages of a pipeline one record at a time. Each record emitted by a source is passed through the
+ * transforms and written to the sinks before the next record is read. Since errors and alerts can only be sent to
+ * stages that don't support continuous mode, they are counted in the stage metrics and then dropped.
+ */
+public class ContinuousPipeline implements Closeable {
+  private static final Logger LOG = LoggerFactory.getLogger(ContinuousPipeline.class);
+  private final JavaSparkExecutionContext sec;
+  private final PipelineRuntime pipelineRuntime;
+  private final PipelinePhase phase;
+  private final PipelinePluginContext pluginContext;
+  // source stage name -> reader
+  private final Map<String, ContinuousReader<Object>> readers;
+  // source stage name -> emitter that passes records on to the outputs of the source
+  private final Map<String, Emitter<Object>> sourceEmitters;
+  // stage name -> consumer that processes a record for the stage
+  private final Map<String, RecordConsumer> consumers;
+  // sink stage name -> writer
+  private final Map<String, ContinuousWriter<Object>> writers;
+  private final List<TrackedTransform<Object, Object>> transforms;
+
+  public ContinuousPipeline(JavaSparkExecutionContext sec, PipelineRuntime pipelineRuntime, PipelinePhase phase,
+                            PipelinePluginContext pluginContext) {
+    this.sec = sec;
+    this.pipelineRuntime = pipelineRuntime;
+    this.phase = phase;
+    this.pluginContext = pluginContext;
+    this.readers = new LinkedHashMap<>();
+    this.sourceEmitters = new HashMap<>();
+    this.consumers = new HashMap<>();
+    this.writers = new LinkedHashMap<>();
+    this.transforms = new ArrayList<>();
+  }
+
+  /**
+   * Instantiate and initialize all the stages in the pipeline.
+   *
+   * @param checkpoints source stage name -> checkpoint to start reading from
+   * @throws Exception if there was an error initializing a stage
+   */
+  public void initialize(Map<String, String> checkpoints) throws Exception {
+    for (String sourceName : phase.getSources()) {
+      StageSpec stageSpec = phase.getStage(sourceName);
+      ContinuousSource<Object> source = pluginContext.newPluginInstance(sourceName);
+      ContinuousReader<Object> reader =
+        source.createReader(new ContinuousStageContext(sec, pipelineRuntime, stageSpec),
+                            checkpoints.get(sourceName));
+      readers.put(sourceName, reader);
+      StageMetrics stageMetrics = new DefaultStageMetrics(pipelineRuntime.getMetrics(), sourceName);
+      sourceEmitters.put(sourceName, new TrackedEmitter<>(getOutputEmitter(sourceName), stageMetrics,
+                                                          Constants.Metrics.RECORDS_OUT,
+                                                          sec.getDataTracer(sourceName),
+                                                          new NoopStageStatisticsCollector()));
+    }
+  }
+
+  /**
+   * Read and process the records available from each source.
+   *
+   * @param timeoutMillis maximum time to wait for records to become available
+   * @throws Exception if there was an error processing a record
+   */
+  public void poll(long timeoutMillis) throws Exception {
+    // split the wait between the sources so that a quiet source doesn't hold up the others for too long
+    long sourceTimeoutMillis = Math.max(1L, timeoutMillis / readers.size());
+    for (Map.Entry<String, ContinuousReader<Object>> entry : readers.entrySet()) {
+      entry.getValue().read(sourceEmitters.get(entry.getKey()), sourceTimeoutMillis);
+    }
+  }
+
+  /**
+   * Flush all sinks, so that all records processed so far are durable.
+   *
+   * @throws Exception if there was an error flushing a sink
+   */
+  public void flush() throws Exception {
+    for (ContinuousWriter<Object> writer : writers.values()) {
+      writer.flush();
+    }
+  }
+
+  /**
+   * @return source stage name -> checkpoint after the last record read by the source
+   */
+  public Map<String, String> getCheckpoints() {
+    Map<String, String> checkpoints = new HashMap<>();
+    for (Map.Entry<String, ContinuousReader<Object>> entry : readers.entrySet()) {
+      String checkpoint = entry.getValue().getCheckpoint();
+      if (checkpoint != null) {
+        checkpoints.put(entry.getKey(), checkpoint);
+      }
+    }
+    return checkpoints;
+  }
+
+  @Override
+  public void close() {
+    for (Map.Entry<String, ContinuousReader<Object>> entry : readers.entrySet()) {
+      closeQuietly(entry.getKey(), entry.getValue());
+    }
+    for (TrackedTransform<Object, Object> transform : transforms) {
+      Destroyables.destroyQuietly(transform);
+    }
+    for (Map.Entry<String, ContinuousWriter<Object>> entry : writers.entrySet()) {
+      closeQuietly(entry.getKey(), entry.getValue());
+    }
+  }
+
+  private Emitter<Object> getOutputEmitter(String stageName) throws Exception {
+    List<RecordConsumer> outputs = new ArrayList<>();
+    for (String outputName : phase.getStageOutputs(stageName)) {
+      outputs.add(getConsumer(outputName));
+    }
+    return new ForwardingEmitter(outputs);
+  }
+
+  private RecordConsumer getConsumer(String stageName) throws Exception {
+    RecordConsumer consumer = consumers.get(stageName);
+    if (consumer != null) {
+      return consumer;
+    }
+
+    StageSpec stageSpec = phase.getStage(stageName);
+    ContinuousStageContext stageContext = new ContinuousStageContext(sec, pipelineRuntime, stageSpec);
+    final StageMetrics stageMetrics = new DefaultStageMetrics(pipelineRuntime.getMetrics(), stageName);
+    if (Transform.PLUGIN_TYPE.equals(stageSpec.getPlugin().getType())) {
+      Transform<Object, Object> transform = pluginContext.newPluginInstance(stageName);
+      transform.initialize(stageContext);
+      final TrackedTransform<Object, Object> trackedTransform =
+        new TrackedTransform<>(transform, stageMetrics, sec.getDataTracer(stageName));
+      transforms.add(trackedTransform);
+      final Emitter<Object> emitter = getOutputEmitter(stageName);
+      consumer = new RecordConsumer() {
+        @Override
+        public void consume(Object record) throws Exception {
+          trackedTransform.transform(record, emitter);
+        }
+      };
+    } else {
+      // the spec generator only allows continuous mode if all other stages are continuous sinks
+      ContinuousSink<Object> sink = pluginContext.newPluginInstance(stageName);
+      final ContinuousWriter<Object> writer = sink.createWriter(stageContext);
+      writers.put(stageName, writer);
+      consumer = new RecordConsumer() {
+        @Override
+        public void consume(Object record) throws Exception {
+          stageMetrics.count(Constants.Metrics.RECORDS_IN, 1);
+          writer.write(record);
+        }
+      };
+    }
+    consumers.put(stageName, consumer);
+    return consumer;
+  }
+
+  private void closeQuietly(String name, Closeable closeable) {
+    try {
+      closeable.close();
+    } catch (IOException e) {
+      LOG.warn("Error closing stage {}.", name, e);
+    }
+  }
+
+  /**
+   * Processes a single record for a stage.
+   */
+  private interface RecordConsumer {
+    void consume(Object record) throws Exception;
+  }
+
+  /**
+   * Passes each record on to all the outputs of a stage.
+   */
+  private static class ForwardingEmitter implements Emitter<Object> {
+    private final List<RecordConsumer> outputs;
+
+    private ForwardingEmitter(List<RecordConsumer> outputs) {
+      this.outputs = outputs;
+    }
+
+    @Override
+    public void emit(Object value) {
+      try {
+        for (RecordConsumer output : outputs) {
+          output.consume(value);
+        }
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    @Override
+    public void emitError(InvalidEntry<Object> invalidEntry) {
+      // already counted by the tracked emitter of the stage
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      // already counted by the tracked emitter of the stage
+    }
+  }
+}
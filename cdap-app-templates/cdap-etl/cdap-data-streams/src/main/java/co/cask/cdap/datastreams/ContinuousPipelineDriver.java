@@ -0,0 +1,149 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.datastreams;
+
+import co.cask.cdap.api.Transactionals;
+import co.cask.cdap.api.TxRunnable;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.DatasetContext;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.PipelinePhase;
+import co.cask.cdap.etl.common.plugin.PipelinePluginContext;
+import co.cask.cdap.etl.spark.SparkPipelineRuntime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Runs a data streams pipeline in continuous mode in the Spark driver. Records are read and processed one at a time
+ * by a {@link ContinuousPipeline}. Once every batch interval, the sinks are flushed and the position of each source is
+ * saved, so that a restarted pipeline continues from where it left off. Records processed after the last checkpoint
+ * may be processed again after a failure.
+ */
+class ContinuousPipelineDriver {
+  // maximum time to wait for records in each poll, so that stop requests and checkpoints are not delayed
+  private static final long POLL_TIMEOUT_MILLIS = 100L;
+  private final JavaSparkExecutionContext sec;
+  private final DataStreamsPipelineSpec spec;
+  private final PipelinePhase phase;
+  private final String pipelineName;
+  private final String checkpointPrefix;
+
+  ContinuousPipelineDriver(JavaSparkExecutionContext sec, DataStreamsPipelineSpec spec, PipelinePhase phase) {
+    this.sec = sec;
+    this.spec = spec;
+    this.phase = phase;
+    this.pipelineName = sec.getApplicationSpecification().getName();
+    // checkpoints of all pipelines in the namespace are in the same table, so they are prefixed by the pipeline name
+    // and by the checkpoint directory, which is unique for each deployment of the pipeline
+    this.checkpointPrefix = pipelineName + Constants.ID_SEPARATOR + spec.getCheckpointDirectory() +
+      Constants.ID_SEPARATOR;
+  }
+
+  /**
+   * Process records until the program is stopped, then save the position of each source.
+   */
+  void run() throws Exception {
+    PipelinePluginContext pluginContext = new PipelinePluginContext(sec.getPluginContext(), sec.getMetrics(),
+                                                                    spec.isStageLoggingEnabled(),
+                                                                    spec.isProcessTimingEnabled());
+    try (ContinuousPipeline pipeline = new ContinuousPipeline(sec, new SparkPipelineRuntime(sec), phase,
+                                                              pluginContext)) {
+      pipeline.initialize(readCheckpoints());
+      // CDAP interrupts the driver thread when the program is stopped
+      boolean interrupted = false;
+      try {
+        long nextCheckpoint = System.currentTimeMillis() + spec.getBatchIntervalMillis();
+        while (!Thread.currentThread().isInterrupted()) {
+          pipeline.poll(POLL_TIMEOUT_MILLIS);
+          if (System.currentTimeMillis() >= nextCheckpoint) {
+            checkpoint(pipeline);
+            nextCheckpoint = System.currentTimeMillis() + spec.getBatchIntervalMillis();
+          }
+        }
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+      // clear the interrupt so that it doesn't fail the transaction of the final checkpoint
+      interrupted = Thread.interrupted() || interrupted;
+      // every record that was read has been fully processed, so progress since the last checkpoint can be saved
+      checkpoint(pipeline);
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Flush all sinks and then save the position of each source.
+   */
+  private void checkpoint(ContinuousPipeline pipeline) throws Exception {
+    pipeline.flush();
+    if (spec.isCheckpointsDisabled()) {
+      return;
+    }
+    final Map<String, String> checkpoints = pipeline.getCheckpoints();
+    if (checkpoints.isEmpty()) {
+      return;
+    }
+    Transactionals.execute(sec, new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        KeyValueTable table = context.getDataset(DataStreamsApp.CONTINUOUS_CHECKPOINT_TABLE);
+        for (Map.Entry<String, String> checkpoint : checkpoints.entrySet()) {
+          table.write(checkpointPrefix + checkpoint.getKey(), checkpoint.getValue());
+        }
+      }
+    }, Exception.class);
+  }
+
+  /**
+   * Read the saved position of each source, deleting the checkpoints of older deployments of the pipeline.
+   *
+   * @return source stage name -> checkpoint
+   */
+  private Map<String, String> readCheckpoints() throws Exception {
+    final Map<String, String> checkpoints = new HashMap<>();
+    if (spec.isCheckpointsDisabled()) {
+      return checkpoints;
+    }
+    Transactionals.execute(sec, new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        KeyValueTable table = context.getDataset(DataStreamsApp.CONTINUOUS_CHECKPOINT_TABLE);
+        byte[] pipelinePrefix = Bytes.toBytes(pipelineName + Constants.ID_SEPARATOR);
+        try (CloseableIterator<KeyValue<byte[], byte[]>> iter =
+               table.scan(pipelinePrefix, Bytes.stopKeyForPrefix(pipelinePrefix))) {
+          while (iter.hasNext()) {
+            KeyValue<byte[], byte[]> entry = iter.next();
+            String key = Bytes.toString(entry.getKey());
+            if (key.startsWith(checkpointPrefix)) {
+              checkpoints.put(key.substring(checkpointPrefix.length()), Bytes.toString(entry.getValue()));
+            } else {
+              table.delete(entry.getKey());
+            }
+          }
+        }
+      }
+    }, Exception.class);
+    return checkpoints;
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.datastreams;
+
+import co.cask.cdap.api.TxRunnable;
+import co.cask.cdap.api.messaging.MessageFetcher;
+import co.cask.cdap.api.messaging.MessagePublisher;
+import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.api.streaming.ContinuousContext;
+import co.cask.cdap.etl.common.AbstractTransformContext;
+import co.cask.cdap.etl.common.PipelineRuntime;
+import co.cask.cdap.etl.common.TxLookupProvider;
+import co.cask.cdap.etl.spec.StageSpec;
+import org.apache.tephra.TransactionFailureException;
+
+/**
+ * Context for the stages of a pipeline that runs in continuous mode. Transactions and messaging are delegated to the
+ * {@link JavaSparkExecutionContext} of the Spark driver running the pipeline. Lookups are done in their own
+ * transactions, since records are not processed inside a transaction.
+ */
+public class ContinuousStageContext extends AbstractTransformContext implements ContinuousContext {
+  private final JavaSparkExecutionContext sec;
+
+  public ContinuousStageContext(JavaSparkExecutionContext sec, PipelineRuntime pipelineRuntime, StageSpec stageSpec) {
+    super(pipelineRuntime, stageSpec, new TxLookupProvider(sec));
+    this.sec = sec;
+  }
+
+  @Override
+  public void execute(TxRunnable runnable) throws TransactionFailureException {
+    sec.execute(runnable);
+  }
+
+  @Override
+  public void execute(int timeoutInSeconds, TxRunnable runnable) throws TransactionFailureException {
+    sec.execute(timeoutInSeconds, runnable);
+  }
+
+  @Override
+  public MessagePublisher getMessagePublisher() {
+    return sec.getMessagingContext().getMessagePublisher();
+  }
+
+  @Override
+  public MessagePublisher getDirectMessagePublisher() {
+    return sec.getMessagingContext().getDirectMessagePublisher();
+  }
+
+  @Override
+  public MessageFetcher getMessageFetcher() {
+    return sec.getMessagingContext().getMessageFetcher();
+  }
+}
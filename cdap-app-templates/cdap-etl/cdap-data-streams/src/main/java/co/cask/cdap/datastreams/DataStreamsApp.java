@@ -18,6 +18,7 @@ package co.cask.cdap.datastreams;
 
 import co.cask.cdap.api.app.AbstractApplication;
 import co.cask.cdap.api.dataset.lib.FileSet;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
 import co.cask.cdap.etl.api.AlertPublisher;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.SparkSink;
@@ -31,6 +32,7 @@ import com.google.common.collect.ImmutableSet;
  */
 public class DataStreamsApp extends AbstractApplication<DataStreamsConfig> {
   public static final String CHECKPOINT_FILESET = "dataStreamsCheckpoints";
+  public static final String CONTINUOUS_CHECKPOINT_TABLE = "dataStreamsContinuousCheckpoints";
 
   @Override
   public void configure() {
@@ -43,10 +45,16 @@ public class DataStreamsApp extends AbstractApplication<DataStreamsConfig> {
                                                                                           SparkSink.PLUGIN_TYPE,
                                                                                           AlertPublisher.PLUGIN_TYPE))
       .generateSpec(config);
+
     addSpark(new DataStreamsSparkLauncher(spec));
 
     if (!config.checkpointsDisabled()) {
-      createDataset(CHECKPOINT_FILESET, FileSet.class);
+      if (spec.isContinuous()) {
+        // source positions are saved in a table instead of Spark Streaming checkpoints
+        createDataset(CONTINUOUS_CHECKPOINT_TABLE, KeyValueTable.class);
+      } else {
+        createDataset(CHECKPOINT_FILESET, FileSet.class);
+      }
     }
   }
 }
@@ -36,13 +36,15 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
   private final boolean checkpointsDisabled;
   private final boolean isUnitTest;
   private final String checkpointDirectory;
+  private final boolean continuous;
 
   private DataStreamsPipelineSpec(Set<StageSpec> stages, Set<Connection> connections,
                                   Resources resources, Resources driverResources, Resources clientResources,
                                   boolean stageLoggingEnabled, boolean processTimingEnabled, long batchIntervalMillis,
                                   String extraJavaOpts, int numOfRecordsPreview,
                                   boolean stopGracefully, Map<String, String> properties,
-                                  boolean checkpointsDisabled, boolean isUnitTest, String checkpointDirectory) {
+                                  boolean checkpointsDisabled, boolean isUnitTest, String checkpointDirectory,
+                                  boolean continuous) {
     super(stages, connections, resources, driverResources, clientResources, stageLoggingEnabled, processTimingEnabled,
           numOfRecordsPreview, properties);
     this.batchIntervalMillis = batchIntervalMillis;
@@ -51,6 +53,7 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
     this.checkpointsDisabled = checkpointsDisabled;
     this.isUnitTest = isUnitTest;
     this.checkpointDirectory = checkpointDirectory;
+    this.continuous = continuous;
   }
 
   public long getBatchIntervalMillis() {
@@ -77,6 +80,13 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
     return checkpointDirectory;
   }
 
+  /**
+   * @return whether the pipeline processes records one at a time instead of using Spark Streaming micro batches
+   */
+  public boolean isContinuous() {
+    return continuous;
+  }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) {
@@ -96,13 +106,14 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
       stopGracefully == that.stopGracefully &&
       checkpointsDisabled == that.checkpointsDisabled &&
       isUnitTest == that.isUnitTest &&
-      Objects.equals(checkpointDirectory, that.checkpointDirectory);
+      Objects.equals(checkpointDirectory, that.checkpointDirectory) &&
+      continuous == that.continuous;
   }
 
   @Override
   public int hashCode() {
     return Objects.hash(super.hashCode(), batchIntervalMillis, extraJavaOpts,
-                        stopGracefully, checkpointsDisabled, isUnitTest, checkpointDirectory);
+                        stopGracefully, checkpointsDisabled, isUnitTest, checkpointDirectory, continuous);
   }
 
   @Override
@@ -114,6 +125,7 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
       ", checkpointsDisabled=" + checkpointsDisabled +
       ", isUnitTest=" + isUnitTest +
       ", checkpointDirectory='" + checkpointDirectory + '\'' +
+      ", continuous=" + continuous +
       "} " + super.toString();
   }
 
@@ -131,6 +143,7 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
     private boolean checkpointsDisabled;
     private boolean isUnitTest;
     private String checkpointDirectory;
+    private boolean continuous;
 
     public Builder(long batchIntervalMillis) {
       this.batchIntervalMillis = batchIntervalMillis;
@@ -138,6 +151,7 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
       this.checkpointsDisabled = false;
       this.isUnitTest = false;
       this.checkpointDirectory = UUID.randomUUID().toString();
+      this.continuous = false;
     }
 
     public Builder setExtraJavaOpts(String extraJavaOpts) {
@@ -165,12 +179,17 @@ public class DataStreamsPipelineSpec extends PipelineSpec {
       return this;
     }
 
+    public Builder setContinuous(boolean continuous) {
+      this.continuous = continuous;
+      return this;
+    }
+
     @Override
     public DataStreamsPipelineSpec build() {
       return new DataStreamsPipelineSpec(stages, connections, resources, driverResources, clientResources,
                                          stageLoggingEnabled, processTimingEnabled, batchIntervalMillis, extraJavaOpts,
                                          numOfRecordsPreview, stopGracefully, properties,
-                                         checkpointsDisabled, isUnitTest, checkpointDirectory);
+                                         checkpointsDisabled, isUnitTest, checkpointDirectory, continuous);
     }
   }
 }
@@ -19,10 +19,18 @@ package co.cask.cdap.datastreams;
 import co.cask.cdap.api.DatasetConfigurer;
 import co.cask.cdap.api.plugin.PluginConfigurer;
 import co.cask.cdap.etl.api.Engine;
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.api.batch.BatchSink;
+import co.cask.cdap.etl.api.batch.SparkSink;
+import co.cask.cdap.etl.api.streaming.ContinuousSink;
+import co.cask.cdap.etl.api.streaming.ContinuousSource;
+import co.cask.cdap.etl.api.streaming.StreamingSource;
 import co.cask.cdap.etl.common.macro.TimeParser;
 import co.cask.cdap.etl.proto.v2.DataStreamsConfig;
 import co.cask.cdap.etl.spec.PipelineSpecGenerator;
+import com.google.common.base.Joiner;
 
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 /**
@@ -32,6 +40,8 @@ import java.util.Set;
  */
 public class DataStreamsPipelineSpecGenerator<T extends PluginConfigurer & DatasetConfigurer>
   extends PipelineSpecGenerator<DataStreamsConfig, DataStreamsPipelineSpec, T> {
+  // stages that cannot run in continuous mode
+  private final Set<String> nonContinuousStages = new LinkedHashSet<>();
 
   public DataStreamsPipelineSpecGenerator(T configurer, Set<String> sourcePluginTypes,
                                           Set<String> sinkPluginTypes) {
@@ -56,6 +66,33 @@ public class DataStreamsPipelineSpecGenerator<T extends PluginConfigurer & Datas
       specBuilder.setCheckpointDirectory(config.getCheckpointDir());
     }
     configureStages(config, specBuilder);
+    if (config.isContinuous() && !nonContinuousStages.isEmpty()) {
+      throw new IllegalArgumentException(
+        String.format("The pipeline is configured to run in continuous mode, but stages '%s' do not support it.",
+                      Joiner.on("', '").join(nonContinuousStages)));
+    }
+    specBuilder.setContinuous(config.isContinuous());
     return specBuilder.build();
   }
+
+  @Override
+  protected void pluginConfigured(String pluginId, String pluginType, Object plugin) {
+    if (!supportsContinuous(pluginType, plugin)) {
+      nonContinuousStages.add(pluginId);
+    }
+  }
+
+  private boolean supportsContinuous(String pluginType, Object plugin) {
+    switch (pluginType) {
+      case StreamingSource.PLUGIN_TYPE:
+        return plugin instanceof ContinuousSource;
+      case BatchSink.PLUGIN_TYPE:
+      case SparkSink.PLUGIN_TYPE:
+        return plugin instanceof ContinuousSink;
+      case Transform.PLUGIN_TYPE:
+        return true;
+      default:
+        return false;
+    }
+  }
 }
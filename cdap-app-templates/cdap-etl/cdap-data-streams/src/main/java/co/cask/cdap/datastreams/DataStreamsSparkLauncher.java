@@ -116,7 +116,8 @@ public class DataStreamsSparkLauncher extends AbstractSpark {
     // without this, stopping will hang on machines with few cores.
     sparkConf.set("spark.rpc.netty.dispatcher.numThreads", String.valueOf(numSources + 2));
 
-    sparkConf.set("spark.executor.instances", String.valueOf(numSources + 2));
+    // in continuous mode, records are processed in the driver and executors are not used
+    sparkConf.set("spark.executor.instances", String.valueOf(spec.isContinuous() ? 1 : numSources + 2));
     sparkConf.setMaster(String.format("local[%d]", numSources + 2));
 
     if (spec.isUnitTest()) {
@@ -124,7 +125,8 @@ public class DataStreamsSparkLauncher extends AbstractSpark {
     }
     context.setSparkConf(sparkConf);
 
-    if (!spec.isCheckpointsDisabled()) {
+    // continuous pipelines save the position of each source in a table instead of in the checkpoint fileset
+    if (!spec.isCheckpointsDisabled() && !spec.isContinuous()) {
       // Each pipeline has its own checkpoint directory within the checkpoint fileset.
       // Ideally, when a pipeline is deleted, we would be able to delete that checkpoint directory.
       // This is because we don't want another pipeline created with the same name to pick up the old checkpoint.
@@ -77,6 +77,11 @@ public class SparkStreamingPipelineDriver implements JavaSparkMain {
       .addStages(pipelineSpec.getStages())
       .build();
 
+    if (pipelineSpec.isContinuous()) {
+      runContinuous(pipelineSpec, pipelinePhase, sec);
+      return;
+    }
+
     boolean checkpointsDisabled = pipelineSpec.isCheckpointsDisabled();
 
     String checkpointDir = null;
@@ -116,6 +121,17 @@ public class SparkStreamingPipelineDriver implements JavaSparkMain {
 
   }
 
+  private void runContinuous(DataStreamsPipelineSpec pipelineSpec, PipelinePhase pipelinePhase,
+                             JavaSparkExecutionContext sec) throws Exception {
+    // records are processed in the driver, but Spark still expects the program to create a SparkContext
+    JavaSparkContext jsc = new JavaSparkContext();
+    try {
+      new ContinuousPipelineDriver(sec, pipelineSpec, pipelinePhase).run();
+    } finally {
+      jsc.stop();
+    }
+  }
+
   private JavaStreamingContext run(final DataStreamsPipelineSpec pipelineSpec,
                                    final PipelinePhase pipelinePhase,
                                    final JavaSparkExecutionContext sec,
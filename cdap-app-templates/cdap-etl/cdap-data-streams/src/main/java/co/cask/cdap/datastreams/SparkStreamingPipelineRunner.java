@@ -123,4 +123,10 @@ public class SparkStreamingPipelineRunner extends SparkPipelineRunner {
     JavaDStream<Object> result = pairDStream.transform(new DynamicJoinMerge<>(dynamicDriverContext));
     return new DStreamCollection<>(sec, result);
   }
+
+  @Override
+  protected boolean isBroadcastJoinSupported() {
+    // Broadcasting in every micro batch creates a new broadcast that is never unpersisted
+    return false;
+  }
 }
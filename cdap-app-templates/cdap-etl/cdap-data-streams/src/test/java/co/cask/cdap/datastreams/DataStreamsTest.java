@@ -36,6 +36,7 @@ import co.cask.cdap.etl.mock.batch.joiner.DupeFlagger;
 import co.cask.cdap.etl.mock.batch.joiner.MockJoiner;
 import co.cask.cdap.etl.mock.spark.Window;
 import co.cask.cdap.etl.mock.spark.compute.StringValueFilterCompute;
+import co.cask.cdap.etl.mock.spark.streaming.MockContinuousSource;
 import co.cask.cdap.etl.mock.spark.streaming.MockSource;
 import co.cask.cdap.etl.mock.test.HydratorTestBase;
 import co.cask.cdap.etl.mock.transform.FilterErrorTransform;
@@ -953,6 +954,78 @@ public class DataStreamsTest extends HydratorTestBase {
     validateMetric(appId, "tms.records.in", 1);
   }
 
+  @Test
+  public void testContinuousMode() throws Exception {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    StructuredRecord samuelRecord = StructuredRecord.builder(schema).set("name", "samuel").build();
+    StructuredRecord jacksonRecord = StructuredRecord.builder(schema).set("name", "jackson").build();
+    StructuredRecord dwayneRecord = StructuredRecord.builder(schema).set("name", "dwayne").build();
+    List<StructuredRecord> input = ImmutableList.of(samuelRecord, jacksonRecord, dwayneRecord);
+
+    // every stage supports continuous mode, so the pipeline can process records one at a time
+    DataStreamsConfig etlConfig = DataStreamsConfig.builder()
+      .addStage(new ETLStage("source", MockContinuousSource.getPlugin(schema, input)))
+      .addStage(new ETLStage("filter", StringValueFilterTransform.getPlugin("name", "dwayne")))
+      .addStage(new ETLStage("sink", MockSink.getPlugin("continuousOutput")))
+      .addConnection("source", "filter")
+      .addConnection("filter", "sink")
+      .setBatchInterval("1s")
+      .setContinuous(true)
+      .build();
+
+    AppRequest<DataStreamsConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    ApplicationId appId = NamespaceId.DEFAULT.app("ContinuousApp");
+    ApplicationManager appManager = deployApplication(appId, appRequest);
+
+    SparkManager sparkManager = appManager.getSparkManager(DataStreamsSparkLauncher.NAME);
+    sparkManager.start();
+    sparkManager.waitForRun(ProgramRunStatus.RUNNING, 10, TimeUnit.SECONDS);
+
+    final DataSetManager<Table> outputManager = getDataset("continuousOutput");
+    final Set<StructuredRecord> expected = ImmutableSet.of(samuelRecord, jacksonRecord);
+    Tasks.waitFor(
+      true,
+      new Callable<Boolean>() {
+        @Override
+        public Boolean call() throws Exception {
+          outputManager.flush();
+          return expected.equals(new HashSet<>(MockSink.readOutput(outputManager)));
+        }
+      },
+      1,
+      TimeUnit.MINUTES);
+
+    sparkManager.stop();
+    sparkManager.waitForStopped(10, TimeUnit.SECONDS);
+
+    // the source position was checkpointed when the program stopped, so records should not be read again
+    sparkManager.start();
+    sparkManager.waitForRuns(ProgramRunStatus.RUNNING, 1, 10, TimeUnit.SECONDS);
+    TimeUnit.SECONDS.sleep(3);
+    sparkManager.stop();
+    sparkManager.waitForStopped(10, TimeUnit.SECONDS);
+    Assert.assertEquals(2, MockSink.readOutput(outputManager).size());
+  }
+
+  @Test
+  public void testContinuousModeRequiresContinuousStages() throws Exception {
+    Schema schema = Schema.recordOf("test", Schema.Field.of("name", Schema.of(Schema.Type.STRING)));
+    DataStreamsConfig etlConfig = DataStreamsConfig.builder()
+      .addStage(new ETLStage("source", MockSource.getPlugin(schema, ImmutableList.<StructuredRecord>of())))
+      .addStage(new ETLStage("sink", MockSink.getPlugin("continuousUnsupportedOutput")))
+      .addConnection("source", "sink")
+      .setContinuous(true)
+      .build();
+
+    AppRequest<DataStreamsConfig> appRequest = new AppRequest<>(APP_ARTIFACT, etlConfig);
+    try {
+      deployApplication(NamespaceId.DEFAULT.app("ContinuousUnsupportedApp"), appRequest);
+      Assert.fail("Deploying a continuous pipeline with a source that doesn't support continuous mode should fail.");
+    } catch (Exception e) {
+      // expected
+    }
+  }
+
   private void validateMetric(ApplicationId appId, String metric,
                               long expected) throws TimeoutException, InterruptedException {
     MetricsManager metricsManager = getMetricsManager();
@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api.streaming;
+
+import co.cask.cdap.api.Transactional;
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.api.messaging.MessagingContext;
+import co.cask.cdap.etl.api.StageContext;
+
+/**
+ * Context for the readers and writers of streaming pipelines that run in continuous mode. Datasets are accessed
+ * through transactions, and messaging topics through the {@link MessagingContext}.
+ */
+@Beta
+public interface ContinuousContext extends StageContext, Transactional, MessagingContext {
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api.streaming;
+
+import co.cask.cdap.api.annotation.Beta;
+import co.cask.cdap.etl.api.Emitter;
+
+import java.io.Closeable;
+import javax.annotation.Nullable;
+
+/**
+ * Reads records for a {@link ContinuousSource}. A reader is used by a single thread.
+ *
+ * @param <T> type of record read
+ */
+@Beta
+public interface ContinuousReader<T> extends Closeable {
+
+  /**
+   * Emit the records that are available. If no records are available, wait up to the given timeout for some to
+   * arrive. Each record is processed by the rest of the pipeline when it is emitted.
+   *
+   * @param emitter the emitter to emit records to
+   * @param timeoutMillis maximum time in milliseconds to wait for records to become available
+   * @throws Exception if there was an error reading records
+   */
+  void read(Emitter<T> emitter, long timeoutMillis) throws Exception;
+
+  /**
+   * Return the position after the last record that was emitted. This is saved once every batch interval after all
+   * sinks have been flushed, and is given to {@link ContinuousSource#createReader(ContinuousContext, String)} when
+   * the pipeline is restarted.
+   *
+   * @return the checkpoint, or null if no record has been read yet
+   */
+  @Nullable
+  String getCheckpoint();
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api.streaming;
+
+import co.cask.cdap.api.annotation.Beta;
+
+/**
+ * A sink that can also write records one at a time, allowing a streaming pipeline to run in continuous mode.
+ * It is implemented by sink plugins in addition to their usual sink type. See {@link ContinuousSource} for when
+ * a pipeline runs in continuous mode.
+ *
+ * @param <IN> type of record written by the sink
+ */
+@Beta
+public interface ContinuousSink<IN> {
+
+  /**
+   * Create a writer for the sink.
+   *
+   * @param context the context for the sink stage
+   * @return a writer for the sink
+   * @throws Exception if there was an error creating the writer
+   */
+  ContinuousWriter<IN> createWriter(ContinuousContext context) throws Exception;
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api.streaming;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import javax.annotation.Nullable;
+
+/**
+ * A {@link StreamingSource} that can also read records one at a time, without Spark Streaming. A streaming pipeline
+ * can be configured to run in continuous mode if every source is a ContinuousSource, every sink is a
+ * {@link ContinuousSink}, and every other stage is a transform. In continuous mode, each record is processed as soon
+ * as it is read instead of waiting for the next batch, and checkpoints are saved once every batch interval.
+ *
+ * @param <T> type of record read by the source
+ */
+@Beta
+public interface ContinuousSource<T> {
+
+  /**
+   * Create a reader that starts reading from the given checkpoint.
+   *
+   * @param context the context for the source stage
+   * @param checkpoint a checkpoint previously returned by {@link ContinuousReader#getCheckpoint()}, or null if the
+   *                   pipeline is starting for the first time
+   * @return a reader for the source
+   * @throws Exception if there was an error creating the reader
+   */
+  ContinuousReader<T> createReader(ContinuousContext context, @Nullable String checkpoint) throws Exception;
+}
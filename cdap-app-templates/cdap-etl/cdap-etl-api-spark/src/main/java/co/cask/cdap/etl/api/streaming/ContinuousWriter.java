@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.api.streaming;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.io.Closeable;
+
+/**
+ * Writes records for a {@link ContinuousSink}. A writer is used by a single thread.
+ *
+ * @param <IN> type of record written
+ */
+@Beta
+public interface ContinuousWriter<IN> extends Closeable {
+
+  /**
+   * Write a record. The writer may buffer records until {@link #flush()} is called.
+   *
+   * @param input the record to write
+   * @throws Exception if there was an error writing the record
+   */
+  void write(IN input) throws Exception;
+
+  /**
+   * Make all records written so far durable. This is called before source checkpoints are saved, so records
+   * written before a checkpoint are not lost if the pipeline fails.
+   *
+   * @throws Exception if there was an error flushing the records
+   */
+  void flush() throws Exception;
+}
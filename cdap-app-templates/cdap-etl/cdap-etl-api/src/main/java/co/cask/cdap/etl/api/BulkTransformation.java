@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.api;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.List;
+
+/**
+ * A {@link Transformation} that can also transform many input objects in a single call. Pipelines collect the inputs
+ * of a bulk transformation into chunks and pass each chunk to {@link #transform(List, Emitter)}, so that the cost of
+ * calling the transformation and of tracking its metrics is paid once per chunk instead of once per input.
+ * This is mostly useful for simple transformations, such as projections and filters, where that cost is large
+ * compared to the work done for each input.
+ *
+ * Transforming a list of inputs must emit the same output as transforming each input of the list in order.
+ * Inputs are held until a chunk is full, so objects passed to a bulk transformation must not be reused by
+ * the stage that emitted them.
+ *
+ * @param <IN> Type of input object
+ * @param <OUT> Type of output object
+ */
+@Beta
+public interface BulkTransformation<IN, OUT> extends Transformation<IN, OUT> {
+
+  /**
+   * Transform the inputs and emit output using {@link Emitter}.
+   *
+   * @param inputs input data to be transformed, in the order it was received
+   * @param emitter {@link Emitter} to emit data to the next stage
+   * @throws Exception if there's an error during this method invocation
+   */
+  void transform(List<IN> inputs, Emitter<OUT> emitter) throws Exception;
+}
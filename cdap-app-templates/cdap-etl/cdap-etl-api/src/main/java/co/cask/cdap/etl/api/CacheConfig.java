@@ -22,10 +22,22 @@ package co.cask.cdap.etl.api;
 public final class CacheConfig {
   private final long expirySeconds;
   private final int maxSize;
+  private final boolean preload;
 
-  public CacheConfig(long expirySeconds, int maxSize) {
+  /**
+   * @param expirySeconds expiry after write in seconds. Entries never expire if this is not positive
+   * @param maxSize maximum number of elements in the cache. The cache is unbounded if this is not positive
+   * @param preload whether to load the table into the cache when the lookup is created. Only up to maxSize
+   *                entries are loaded, so this is meant for small tables
+   */
+  public CacheConfig(long expirySeconds, int maxSize, boolean preload) {
     this.expirySeconds = expirySeconds;
     this.maxSize = maxSize;
+    this.preload = preload;
+  }
+
+  public CacheConfig(long expirySeconds, int maxSize) {
+    this(expirySeconds, maxSize, false);
   }
 
   public CacheConfig() {
@@ -45,4 +57,11 @@ public final class CacheConfig {
   public int getMaxSize() {
     return maxSize;
   }
+
+  /**
+   * @return whether the table should be loaded into the cache when the lookup is created
+   */
+  public boolean isPreload() {
+    return preload;
+  }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.api;
+
+import co.cask.cdap.api.annotation.Beta;
+
+import java.util.Iterator;
+
+/**
+ * An {@link Aggregator} whose aggregation can be computed in parts. Values in the same group are first turned into
+ * partial aggregates, which are merged together before they are sent across the network. This can greatly reduce
+ * the amount of data shuffled when there are many values in each group.
+ *
+ * Partial aggregates have the same type as group values. When an aggregator is combinable, every group value
+ * goes through {@link #initializeAggregate(Object)}, and {@link #aggregate(Object, Iterator, Emitter)} is called
+ * with partial aggregates instead of the original group values. It is called with one or more partial aggregates
+ * for a group, so it must merge them into the final result the same way {@link #mergeAggregates(Object, Object)}
+ * does.
+ *
+ * @param <GROUP_KEY> Type of group key
+ * @param <GROUP_VALUE> Type of values to group, and of partial aggregates
+ * @param <OUT> Type of output object
+ */
+@Beta
+public interface CombinableAggregator<GROUP_KEY, GROUP_VALUE, OUT> extends Aggregator<GROUP_KEY, GROUP_VALUE, OUT> {
+
+  /**
+   * Create a partial aggregate from a single group value. For example, an aggregator that counts values would
+   * return a value with a count of one.
+   *
+   * @param groupValue the group value
+   * @return a partial aggregate containing only the given value
+   * @throws Exception if there is some error creating the partial aggregate
+   */
+  GROUP_VALUE initializeAggregate(GROUP_VALUE groupValue) throws Exception;
+
+  /**
+   * Merge two partial aggregates of the same group. The merge must be associative and commutative, since partial
+   * aggregates may be merged in any order and any number of times.
+   *
+   * @param aggregate1 the first partial aggregate
+   * @param aggregate2 the second partial aggregate
+   * @return a partial aggregate that contains the values of both partial aggregates
+   * @throws Exception if there is some error merging the partial aggregates
+   */
+  GROUP_VALUE mergeAggregates(GROUP_VALUE aggregate1, GROUP_VALUE aggregate2) throws Exception;
+}
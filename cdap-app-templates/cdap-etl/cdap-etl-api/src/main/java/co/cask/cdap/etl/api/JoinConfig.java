@@ -16,11 +16,14 @@
 
 package co.cask.cdap.etl.api;
 
+import java.util.Collections;
+
 /**
  * Join configuration to hold information about join to be performed
  */
 public class JoinConfig {
   private Iterable<String> requiredInputs;
+  private Iterable<String> inMemoryInputs;
 
   /**
    * Creates new instance of {@link JoinConfig}
@@ -30,7 +33,20 @@ public class JoinConfig {
    * meet join criteria.
    */
   public JoinConfig(Iterable<String> requiredInputs) {
+    this(requiredInputs, Collections.<String>emptyList());
+  }
+
+  /**
+   * Creates new instance of {@link JoinConfig}
+   * @param requiredInputs iterable of input stage names. This will be used to find out type of the join.
+   * @param inMemoryInputs iterable of input stage names that are small enough to be loaded into memory.
+   * Engines may join these inputs by sending a copy of them to every task that reads the other inputs, instead of
+   * shuffling all of the inputs. This is only a hint. It is ignored if the join is a full outer join or is in a
+   * streaming pipeline, and at least one input will always be shuffled.
+   */
+  public JoinConfig(Iterable<String> requiredInputs, Iterable<String> inMemoryInputs) {
     this.requiredInputs = requiredInputs;
+    this.inMemoryInputs = inMemoryInputs;
   }
 
   /**
@@ -40,4 +56,12 @@ public class JoinConfig {
   public Iterable<String> getRequiredInputs() {
     return requiredInputs;
   }
+
+  /**
+   * Returns inputs that are small enough to be loaded into memory.
+   * @return iterable of inputs that can be loaded into memory
+   */
+  public Iterable<String> getInMemoryInputs() {
+    return inMemoryInputs == null ? Collections.<String>emptyList() : inMemoryInputs;
+  }
 }
@@ -29,4 +29,19 @@ public interface LookupProvider {
    * @return a {@link Lookup} instance
    */
   <T> Lookup<T> provide(String table, Map<String, String> arguments);
+
+  /**
+   * Provides a {@link Lookup} configured by the given {@link LookupTableConfig}. If caching is enabled in the config,
+   * implementations may serve lookups from a cache configured by its {@link CacheConfig}.
+   * By default, the config is ignored.
+   *
+   * @param table the name of the {@link Lookup} table
+   * @param arguments arguments for initializing the {@link Lookup} table
+   * @param config configuration for the {@link Lookup} table
+   * @param <T> the type of value returned by the {@link Lookup}
+   * @return a {@link Lookup} instance
+   */
+  default <T> Lookup<T> provide(String table, Map<String, String> arguments, LookupTableConfig config) {
+    return provide(table, arguments);
+  }
 }
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.batch;
+
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.common.Destroyables;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.TrackedTransform;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Processes stages that are a {@link BulkTransformation}. Gets the value from each RecordInfo and holds it until
+ * a chunk of values has been collected, then passes the whole chunk to the underlying transformation.
+ *
+ * @param <T> type of input object
+ */
+public class BulkPipeStage<T> extends PipeStage<RecordInfo<T>> {
+  private final TrackedTransform<T, Object> transform;
+  private final Emitter<Object> emitter;
+  private final int chunkSize;
+  private final List<T> chunk;
+
+  public BulkPipeStage(String stageName, TrackedTransform<T, Object> transform, Emitter<Object> emitter,
+                       int chunkSize) {
+    super(stageName);
+    this.transform = transform;
+    this.emitter = emitter;
+    this.chunkSize = chunkSize;
+    this.chunk = new ArrayList<>(chunkSize);
+  }
+
+  @Override
+  public void consumeInput(RecordInfo<T> input) throws Exception {
+    chunk.add(input.getValue());
+    if (chunk.size() >= chunkSize) {
+      flushInputs();
+    }
+  }
+
+  @Override
+  protected void flushInputs() throws Exception {
+    try {
+      transform.transform(chunk, emitter);
+    } finally {
+      chunk.clear();
+    }
+  }
+
+  @Override
+  public void destroy() {
+    Destroyables.destroyQuietly(transform);
+  }
+}
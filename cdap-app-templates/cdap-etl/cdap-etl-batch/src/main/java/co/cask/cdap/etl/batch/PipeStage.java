@@ -22,7 +22,8 @@ import com.google.common.base.Throwables;
 
 /**
  * A stage in the PipeTransformExecutor. Pipe transforms should send each output record immediately to all output stages
- * without buffering anything in memory.
+ * without buffering anything in memory. The exceptions are stages that process their inputs in chunks, which hold
+ * inputs until a chunk is full or until they are flushed.
  *
  * @param <T> type of input record
  */
@@ -42,16 +43,21 @@ public abstract class PipeStage<T> implements Destroyable {
   public void consume(T input) {
     try {
       consumeInput(input);
-    } catch (StageFailureException e) {
-      // Another stage has already failed, just throw the exception as-is
-      throw e;
     } catch (Exception e) {
-      Throwable rootCause = Throwables.getRootCause(e);
-      // Create StageFailureException to save the Stage information
-      throw new StageFailureException(
-        String.format("Failed to execute pipeline stage '%s' with the error: %s. Please review your pipeline " +
-                        "configuration and check the system logs for more details.", stageName, rootCause.getMessage()),
-        rootCause);
+      throw getFailure(e);
+    }
+  }
+
+  /**
+   * Send any records that the stage is still holding on to the relevant output transforms.
+   *
+   * @throws StageFailureException if there was an exception processing the held records
+   */
+  public void flush() {
+    try {
+      flushInputs();
+    } catch (Exception e) {
+      throw getFailure(e);
     }
   }
 
@@ -62,4 +68,27 @@ public abstract class PipeStage<T> implements Destroyable {
    * @throws Exception if there was a failure processing the input
    */
   protected abstract void consumeInput(T input) throws Exception;
+
+  /**
+   * Process any input records that were held instead of being processed when they were consumed. Stages that
+   * process each record as soon as it is consumed don't need to do anything.
+   *
+   * @throws Exception if there was a failure processing the inputs
+   */
+  protected void flushInputs() throws Exception {
+    // no-op
+  }
+
+  private StageFailureException getFailure(Exception e) {
+    if (e instanceof StageFailureException) {
+      // Another stage has already failed, just throw the exception as-is
+      return (StageFailureException) e;
+    }
+    Throwable rootCause = Throwables.getRootCause(e);
+    // Create StageFailureException to save the Stage information
+    return new StageFailureException(
+      String.format("Failed to execute pipeline stage '%s' with the error: %s. Please review your pipeline " +
+                      "configuration and check the system logs for more details.", stageName, rootCause.getMessage()),
+      rootCause);
+  }
 }
@@ -44,6 +44,16 @@ public class PipeTransformExecutor<IN> implements Destroyable {
     }
   }
 
+  /**
+   * Sends records that stages are still holding to the rest of the pipeline. Stages are flushed in the order
+   * they were given, which must be a topological order of the pipeline.
+   */
+  public void flush() {
+    for (PipeStage stage : pipeStages.values()) {
+      stage.flush();
+    }
+  }
+
   @Override
   public void destroy() {
     for (PipeStage stage : pipeStages.values()) {
@@ -16,27 +16,73 @@
 
 package co.cask.cdap.etl.batch;
 
-import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.format.StructuredRecordStringConverter;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.etl.common.StructuredRecordCodec;
+import com.google.common.cache.CacheBuilder;
 import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.Map;
+import java.util.Collections;
 import java.util.Objects;
-import java.util.TreeMap;
 
 /**
  * Wrapper around a {@link StructuredRecord} so that it can be used as the output key and/or value of a mapper.
- * This is not very performant and must be improved soon (CDAP-5347).
+ *
+ * The record is serialized by {@link StructuredRecordCodec}. Schemas registered through
+ * {@link #registerSchemas(Iterable)} are known by all tasks of the job, hence only their hash is written, and keys
+ * made of their fields only refer to them. Other schemas are written inline, but they are only parsed once.
+ * Tasks serialize and deserialize records in the task thread, hence the registered schemas are kept per thread,
+ * until the task calls {@link #unregisterSchemas()}.
+ *
+ * Records are compared with the serialized bytes through the {@link Comparator}, which is registered as the
+ * default {@link WritableComparator} of this class, so that sorting doesn't need to deserialize records.
  */
 public class StructuredRecordWritable implements WritableComparable<StructuredRecordWritable> {
-  // schema cache so that we do not parse schema string for each incoming record
-  private static final Map<byte[], Schema> schemaCache = new TreeMap<>(Bytes.BYTES_COMPARATOR);
+
+  // maximum number of schemas decoded from records that are cached for threads without registered schemas
+  private static final int MAX_CACHED_SCHEMAS = 1000;
+  // codec with the schemas registered by the task running in the current thread
+  private static final ThreadLocal<StructuredRecordCodec> TASK_CODEC = new ThreadLocal<>();
+  // codec for threads without registered schemas, which writes all schemas inline
+  private static final StructuredRecordCodec DEFAULT_CODEC = new StructuredRecordCodec(
+    Collections.<Schema>emptyList(),
+    CacheBuilder.newBuilder().maximumSize(MAX_CACHED_SCHEMAS).<SchemaHash, Schema>build().asMap());
+
+  static {
+    WritableComparator.define(StructuredRecordWritable.class, new Comparator());
+  }
+
   private StructuredRecord record;
+  // serialized record, cached for compareTo and write
+  private byte[] bytes;
+
+  /**
+   * Registers the given schemas for the task running in the current thread, so that records of those schemas are
+   * serialized with the schema hash only. The same schemas must be registered by every task that reads or writes
+   * the records, hence it should only be called with schemas known from the pipeline specification.
+   * It replaces the schemas registered before in the current thread.
+   */
+  public static void registerSchemas(Iterable<Schema> schemas) {
+    TASK_CODEC.set(new StructuredRecordCodec(schemas));
+  }
+
+  /**
+   * Removes the schemas registered for the current thread. It should be called when the task finishes.
+   */
+  public static void unregisterSchemas() {
+    TASK_CODEC.remove();
+  }
+
+  private static StructuredRecordCodec getCodec() {
+    StructuredRecordCodec codec = TASK_CODEC.get();
+    return codec == null ? DEFAULT_CODEC : codec;
+  }
 
   // required by Hadoop
   @SuppressWarnings("unused")
@@ -49,49 +95,43 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
 
   public void set(StructuredRecord record) {
     this.record = record;
+    this.bytes = null;
   }
 
   public StructuredRecord get() {
     return record;
   }
 
-  @SuppressWarnings("ConstantConditions")
   @Override
   public void write(DataOutput out) throws IOException {
-    byte[] schemaBytes = Bytes.toBytes(record.getSchema().toString());
-    out.writeInt(schemaBytes.length);
-    out.write(schemaBytes);
-
-    byte[] recordBytes = Bytes.toBytes(StructuredRecordStringConverter.toJsonString(record));
-    out.writeInt(recordBytes.length);
-    out.write(recordBytes);
+    if (bytes != null) {
+      out.write(bytes);
+    } else {
+      getCodec().write(record, out);
+    }
   }
 
   @Override
   public void readFields(DataInput in) throws IOException {
-    int schemaLen = in.readInt();
-    byte[] schemaBytes = new byte[schemaLen];
-    in.readFully(schemaBytes, 0, schemaLen);
-
-    Schema schema;
-    if (schemaCache.containsKey(schemaBytes)) {
-      schema = schemaCache.get(schemaBytes);
-    } else {
-      String schemaStr = Bytes.toString(schemaBytes);
-      schema = Schema.parseJson(schemaStr);
-      schemaCache.put(schemaBytes, schema);
-    }
-
-    int recordLen = in.readInt();
-    byte[] recordBytes = new byte[recordLen];
-    in.readFully(recordBytes, 0, recordLen);
-    String recordStr = Bytes.toString(recordBytes);
-    this.record = StructuredRecordStringConverter.fromJsonString(recordStr, schema);
+    this.record = getCodec().read(in);
+    this.bytes = null;
   }
 
   @Override
   public int compareTo(StructuredRecordWritable o) {
-    return Integer.compare(hashCode(), o.hashCode());
+    byte[] bytes1 = getBytes();
+    byte[] bytes2 = o.getBytes();
+    return StructuredRecordCodec.compare(bytes1, 0, bytes1.length, bytes2, 0, bytes2.length);
+  }
+
+  /**
+   * Returns the serialized record, which is only computed once until the record is changed.
+   */
+  private byte[] getBytes() {
+    if (bytes == null) {
+      bytes = WritableUtils.toByteArray(this);
+    }
+    return bytes;
   }
 
   @Override
@@ -112,4 +152,20 @@ public class StructuredRecordWritable implements WritableComparable<StructuredRe
   public int hashCode() {
     return record != null ? record.hashCode() : 0;
   }
+
+  /**
+   * A {@link WritableComparator} that compares serialized {@link StructuredRecordWritable} without deserializing
+   * them, as defined by {@link StructuredRecordCodec#compare(byte[], int, int, byte[], int, int)}.
+   */
+  public static final class Comparator extends WritableComparator {
+
+    public Comparator() {
+      super(StructuredRecordWritable.class);
+    }
+
+    @Override
+    public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+      return StructuredRecordCodec.compare(b1, s1, l1, b2, s2, l2);
+    }
+  }
 }
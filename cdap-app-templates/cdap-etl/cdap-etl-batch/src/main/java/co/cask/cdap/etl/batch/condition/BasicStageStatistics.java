@@ -16,12 +16,23 @@
 
 package co.cask.cdap.etl.batch.condition;
 
+import co.cask.cdap.api.workflow.NodeValue;
+import co.cask.cdap.api.workflow.WorkflowToken;
 import co.cask.cdap.etl.api.condition.StageStatistics;
+import co.cask.cdap.etl.common.Constants;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Default implementation of the {@link StageStatistics}.
  */
 public class BasicStageStatistics implements StageStatistics {
+  private static final Logger LOG = LoggerFactory.getLogger(BasicStageStatistics.class);
   private final long numOfInputRecords;
   private final long numOfOutputRecords;
   private final long numOfErrorRecords;
@@ -46,4 +57,65 @@ public class BasicStageStatistics implements StageStatistics {
   public long getErrorRecordsCount() {
     return numOfErrorRecords;
   }
+
+  /**
+   * Reads the statistics of each stage from a workflow token. Statistics are added to the token by each phase of the
+   * pipeline, with keys of the form 'stage.statistics.<stage_name>.<input|output|error>.records'.
+   *
+   * @param token the workflow token
+   * @return statistics of each stage that are in the token
+   */
+  public static Map<String, StageStatistics> fromWorkflowToken(WorkflowToken token) {
+    Map<String, StageStatistics> stageStatistics = new HashMap<>();
+    for (WorkflowToken.Scope scope : Arrays.asList(WorkflowToken.Scope.SYSTEM, WorkflowToken.Scope.USER)) {
+      Map<String, List<NodeValue>> all = token.getAll(scope);
+      for (Map.Entry<String, List<NodeValue>> entry : all.entrySet()) {
+        if (!entry.getKey().startsWith(Constants.StageStatistics.PREFIX + ".")) {
+          continue;
+        }
+        String stageKey = entry.getKey().substring(Constants.StageStatistics.PREFIX.length() + 1);
+
+        String stageName;
+        if (stageKey.endsWith(Constants.StageStatistics.INPUT_RECORDS)) {
+          stageName = stageKey.substring(0, stageKey.length() - Constants.StageStatistics.INPUT_RECORDS.length() - 1);
+        } else if (stageKey.endsWith(Constants.StageStatistics.OUTPUT_RECORDS)) {
+          stageName = stageKey.substring(0, stageKey.length() - Constants.StageStatistics.OUTPUT_RECORDS.length() - 1);
+        } else if (stageKey.endsWith(Constants.StageStatistics.ERROR_RECORDS)) {
+          stageName = stageKey.substring(0, stageKey.length() - Constants.StageStatistics.ERROR_RECORDS.length() - 1);
+        } else {
+          // should not happen
+          LOG.warn(String.format("Ignoring key '%s' in the Workflow token while generating stage statistics " +
+                                   "because it is not in the form " +
+                                   "'stage.statistics.<stage_name>.<input|output|error>.records'.",
+                                 stageKey));
+          continue;
+        }
+
+        // Since stage names are unique and properties for each stage tracked are unique(input, output, and error)
+        // there should only be single node who added this particular key in the Workflow
+        long value = entry.getValue().get(0).getValue().getAsLong();
+
+        StageStatistics statistics = stageStatistics.get(stageName);
+        if (statistics == null) {
+          statistics = new BasicStageStatistics(0, 0, 0);
+          stageStatistics.put(stageName, statistics);
+        }
+
+        long numOfInputRecords = statistics.getInputRecordsCount();
+        long numOfOutputRecords = statistics.getOutputRecordsCount();
+        long numOfErrorRecords = statistics.getErrorRecordsCount();
+
+        if (stageKey.endsWith(Constants.StageStatistics.INPUT_RECORDS)) {
+          numOfInputRecords = value;
+        } else if (stageKey.endsWith(Constants.StageStatistics.OUTPUT_RECORDS)) {
+          numOfOutputRecords = value;
+        } else {
+          numOfErrorRecords = value;
+        }
+        stageStatistics.put(stageName, new BasicStageStatistics(numOfInputRecords, numOfOutputRecords,
+                                                                numOfErrorRecords));
+      }
+    }
+    return stageStatistics;
+  }
 }
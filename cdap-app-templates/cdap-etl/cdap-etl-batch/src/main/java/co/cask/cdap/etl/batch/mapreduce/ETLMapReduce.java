@@ -50,6 +50,7 @@ import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.FieldOperationTypeAdapter;
 import co.cask.cdap.etl.common.LocationAwareMDCWrapperLogger;
+import co.cask.cdap.etl.common.PartitionEstimator;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.PipelineRuntime;
 import co.cask.cdap.etl.common.SetMultimapCodec;
@@ -95,6 +96,8 @@ public class ETLMapReduce extends AbstractMapReduce {
   public static final String NAME = ETLMapReduce.class.getSimpleName();
   public static final String MAP_KEY_CLASS = "cdap.etl.map.key.class";
   public static final String MAP_VAL_CLASS = "cdap.etl.map.val.class";
+  // max number of groups a mapper keeps partial aggregates for before writing them out, for combinable aggregators
+  public static final String COMBINE_MAX_GROUPS = "cdap.etl.aggregator.combine.max.groups";
   static final String RUNTIME_ARGS_KEY = "cdap.etl.runtime.args";
   static final String INPUT_ALIAS_KEY = "cdap.etl.source.alias.key";
   static final String SINK_OUTPUTS_KEY = "cdap.etl.sink.outputs";
@@ -217,6 +220,18 @@ public class ETLMapReduce extends AbstractMapReduce {
                                         "This means there was a bug in planning the pipeline when it was deployed. ");
     }
 
+    // reducers that don't set the number of reduce tasks themselves get a number based on the previous run
+    final Map<String, Integer> estimatedPartitions = new HashMap<>();
+    Map<String, String> arguments = pipelineRuntime.getArguments().asMap();
+    if (PartitionEstimator.isEnabled(arguments)) {
+      Set<String> reducerNames = new HashSet<>();
+      for (StageSpec reducer : reducers) {
+        reducerNames.add(reducer.getName());
+      }
+      estimatedPartitions.putAll(PartitionEstimator.fromArguments(arguments).estimate(
+        context, context.getAdmin(), context.getApplicationSpecification().getName(), reducerNames));
+    }
+
     job.setMapperClass(ETLMapper.class);
     if (reducers.isEmpty()) {
       job.setNumReduceTasks(0);
@@ -297,6 +312,8 @@ public class ETLMapReduce extends AbstractMapReduce {
             public void act(DefaultAggregatorContext aggregatorContext) {
               if (aggregatorContext.getNumPartitions() != null) {
                 job.setNumReduceTasks(aggregatorContext.getNumPartitions());
+              } else if (estimatedPartitions.containsKey(stageName)) {
+                job.setNumReduceTasks(estimatedPartitions.get(stageName));
               }
               Class<?> outputKeyClass = aggregatorContext.getGroupKeyClass();
               Class<?> outputValClass = aggregatorContext.getGroupValueClass();
@@ -327,6 +344,8 @@ public class ETLMapReduce extends AbstractMapReduce {
             public void act(DefaultJoinerContext joinerContext) {
               if (joinerContext.getNumPartitions() != null) {
                 job.setNumReduceTasks(joinerContext.getNumPartitions());
+              } else if (estimatedPartitions.containsKey(stageName)) {
+                job.setNumReduceTasks(estimatedPartitions.get(stageName));
               }
               Class<?> outputKeyClass = joinerContext.getJoinKeyClass();
               Class<?> inputRecordClass = joinerContext.getJoinInputRecordClass();
@@ -471,6 +490,18 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Mapper.Context context) throws IOException, InterruptedException {
+      try {
+        transformRunner.finish();
+      } catch (StageFailureException e) {
+        PIPELINE_LOG.error("{}", e.getMessage(), e.getCause());
+        Throwables.propagate(e.getCause());
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
@@ -509,6 +540,18 @@ public class ETLMapReduce extends AbstractMapReduce {
       }
     }
 
+    @Override
+    protected void cleanup(Context context) throws IOException, InterruptedException {
+      try {
+        transformRunner.finish();
+      } catch (StageFailureException e) {
+        PIPELINE_LOG.error("{}", e.getMessage(), e.getCause());
+        Throwables.propagate(e.getCause());
+      } catch (Exception e) {
+        Throwables.propagate(e);
+      }
+    }
+
     @Override
     public void destroy() {
       transformRunner.destroy();
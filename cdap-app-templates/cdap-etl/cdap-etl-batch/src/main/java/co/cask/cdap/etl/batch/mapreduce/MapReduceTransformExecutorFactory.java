@@ -23,6 +23,7 @@ import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.api.preview.DataTracer;
 import co.cask.cdap.etl.api.Aggregator;
 import co.cask.cdap.etl.api.AlertPublisher;
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.ErrorTransform;
 import co.cask.cdap.etl.api.JoinElement;
@@ -30,6 +31,7 @@ import co.cask.cdap.etl.api.Joiner;
 import co.cask.cdap.etl.api.SplitterTransform;
 import co.cask.cdap.etl.api.StageLifecycle;
 import co.cask.cdap.etl.api.StageMetrics;
+import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.TransformContext;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
@@ -37,6 +39,7 @@ import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.api.batch.BatchJoinerRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSource;
+import co.cask.cdap.etl.batch.BulkPipeStage;
 import co.cask.cdap.etl.batch.ConnectorSourceEmitter;
 import co.cask.cdap.etl.batch.DirectOutputPipeStage;
 import co.cask.cdap.etl.batch.MultiOutputTransformPipeStage;
@@ -73,9 +76,11 @@ import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -96,7 +101,10 @@ public class MapReduceTransformExecutorFactory<T> {
   private final String mapOutputValClassName;
   private final int numberOfRecordsPreview;
   private final BasicArguments arguments;
-  private final boolean isPipelineContainsCondition;
+  private final boolean collectStageStatistics;
+  private final int combineMaxGroups;
+  private final int bulkTransformSize;
+  private final List<MapperAggregatorTransformation<?, ?, ?, ?>> mapperAggregators;
   private boolean isMapPhase;
 
   public MapReduceTransformExecutorFactory(MapReduceTaskContext taskContext,
@@ -105,7 +113,7 @@ public class MapReduceTransformExecutorFactory<T> {
                                            BasicArguments arguments,
                                            String sourceStageName,
                                            int numberOfRecordsPreview,
-                                           boolean isPipelineContainsCondition) {
+                                           boolean collectStageStatistics) {
     this.taskContext = taskContext;
     this.numberOfRecordsPreview = numberOfRecordsPreview;
     this.pluginInstantiator = pluginInstantiator;
@@ -119,7 +127,10 @@ public class MapReduceTransformExecutorFactory<T> {
     this.mapOutputValClassName = hConf.get(ETLMapReduce.MAP_VAL_CLASS);
     this.isMapPhase = hadoopContext instanceof Mapper.Context;
     this.arguments = arguments;
-    this.isPipelineContainsCondition = isPipelineContainsCondition;
+    this.collectStageStatistics = collectStageStatistics;
+    this.combineMaxGroups = hConf.getInt(ETLMapReduce.COMBINE_MAX_GROUPS, 10000);
+    this.bulkTransformSize = hConf.getInt(Constants.BULK_TRANSFORM_SIZE, Constants.DEFAULT_BULK_TRANSFORM_SIZE);
+    this.mapperAggregators = new ArrayList<>();
   }
 
   private MapReduceRuntimeContext createRuntimeContext(StageSpec stageInfo) {
@@ -139,7 +150,7 @@ public class MapReduceTransformExecutorFactory<T> {
 
     StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
     TaskAttemptContext taskAttemptContext = (TaskAttemptContext) taskContext.getHadoopContext();
-    StageStatisticsCollector collector = isPipelineContainsCondition
+    StageStatisticsCollector collector = collectStageStatistics
       ? new MapReduceStageStatisticsCollector(stageName, taskAttemptContext) : new NoopStageStatisticsCollector();
     return new TrackedMultiOutputTransform<>(splitterTransform, stageMetrics, taskContext.getDataTracer(stageName),
                                              collector);
@@ -154,16 +165,18 @@ public class MapReduceTransformExecutorFactory<T> {
     String pluginType = stageSpec.getPluginType();
     StageMetrics stageMetrics = new DefaultStageMetrics(metrics, stageName);
     TaskAttemptContext taskAttemptContext = (TaskAttemptContext) taskContext.getHadoopContext();
-    StageStatisticsCollector collector = isPipelineContainsCondition ?
+    StageStatisticsCollector collector = collectStageStatistics ?
       new MapReduceStageStatisticsCollector(stageName, taskAttemptContext) : new NoopStageStatisticsCollector();
     if (BatchAggregator.PLUGIN_TYPE.equals(pluginType)) {
       BatchAggregator<?, ?, ?> batchAggregator = pluginInstantiator.newPluginInstance(stageName, macroEvaluator);
       BatchRuntimeContext runtimeContext = createRuntimeContext(stageSpec);
       batchAggregator.initialize(runtimeContext);
       if (isMapPhase) {
-        return getTrackedEmitKeyStep(new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName,
-                                                                        mapOutputValClassName),
-                                     stageMetrics, taskContext.getDataTracer(stageName), collector);
+        MapperAggregatorTransformation mapperAggregator =
+          new MapperAggregatorTransformation(batchAggregator, mapOutputKeyClassName, mapOutputValClassName,
+                                             combineMaxGroups);
+        mapperAggregators.add(mapperAggregator);
+        return getTrackedEmitKeyStep(mapperAggregator, stageMetrics, taskContext.getDataTracer(stageName), collector);
       } else {
         return getTrackedAggregateStep(new ReducerAggregatorTransformation(batchAggregator,
                                                                            mapOutputKeyClassName,
@@ -179,6 +192,9 @@ public class MapReduceTransformExecutorFactory<T> {
           new MapperJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName), stageMetrics,
           taskContext.getDataTracer(stageName), collector);
       } else {
+        // MapReduce always joins on the reduce side, since inputs in the same phase are read by the same mappers
+        stageMetrics.gauge(Constants.Metrics.JOIN_INPUTS_SHUFFLED, stageSpec.getInputs().size());
+        stageMetrics.gauge(Constants.Metrics.JOIN_INPUTS_BROADCAST, 0);
         return getTrackedMergeStep(
           new ReducerJoinerTransformation(batchJoiner, mapOutputKeyClassName, mapOutputValClassName,
                                           runtimeContext.getInputSchemas().size()), stageMetrics,
@@ -215,9 +231,16 @@ public class MapReduceTransformExecutorFactory<T> {
     List<String> traversalOrder = pipeline.getDag().getTopologicalOrder();
     Collections.reverse(traversalOrder);
 
-    Map<String, PipeStage> pipeStages = new HashMap<>();
+    Map<String, PipeStage> createdStages = new HashMap<>();
     for (String stageName : traversalOrder) {
-      pipeStages.put(stageName, getPipeStage(pipeline, stageName, pipeStages, outputWriter));
+      createdStages.put(stageName, getPipeStage(pipeline, stageName, createdStages, outputWriter));
+    }
+    // the executor flushes stages in the order of this map, which must be topological so that records flushed by
+    // one stage are flushed by the stages after it as well
+    Collections.reverse(traversalOrder);
+    Map<String, PipeStage> pipeStages = new LinkedHashMap<>();
+    for (String stageName : traversalOrder) {
+      pipeStages.put(stageName, createdStages.get(stageName));
     }
 
     // sourceStageName will be null in reducers, so need to handle that case
@@ -225,6 +248,18 @@ public class MapReduceTransformExecutorFactory<T> {
     return new PipeTransformExecutor<>(pipeStages, startingPoints);
   }
 
+  /**
+   * Writes out the partial aggregates that map side combining of aggregators still holds. Must be called
+   * once after the last input of a map task has gone through the executor created by this factory.
+   *
+   * @throws Exception if there was an error writing the partial aggregates
+   */
+  public void finish() throws Exception {
+    for (MapperAggregatorTransformation<?, ?, ?, ?> mapperAggregator : mapperAggregators) {
+      mapperAggregator.flush();
+    }
+  }
+
   private PipeStage getPipeStage(PipelinePhase pipeline, String stageName, Map<String, PipeStage> pipeStages,
                                  OutputWriter<?, ?> outputWriter) throws Exception {
     StageSpec stageSpec = pipeline.getStage(stageName);
@@ -299,9 +334,13 @@ public class MapReduceTransformExecutorFactory<T> {
     if (SplitterTransform.PLUGIN_TYPE.equals(pluginType)) {
       // this is a SplitterTransform, needs to emit records to the right outputs based on port
       return new MultiOutputTransformPipeStage<>(stageName, getMultiOutputTransform(stageSpec), pipeEmitter);
-    } else {
-      return new UnwrapPipeStage<>(stageName, getTransformation(stageSpec), pipeEmitter);
     }
+
+    TrackedTransform<Object, Object> transform = getTransformation(stageSpec);
+    if (Transform.PLUGIN_TYPE.equals(pluginType) && transform.isBulk() && bulkTransformSize > 1) {
+      return new BulkPipeStage<>(stageName, transform, pipeEmitter, bulkTransformSize);
+    }
+    return new UnwrapPipeStage<>(stageName, transform, pipeEmitter);
   }
 
   /**
@@ -435,6 +474,10 @@ public class MapReduceTransformExecutorFactory<T> {
    * will need some function to change a StructuredRecord to a StructuredRecordWritable so that we can use this
    * in mapreduce.
    *
+   * If the aggregator is a {@link CombinableAggregator}, values are combined in the mapper. Partial aggregates are
+   * kept in memory for up to maxGroups groups, and are written out when that limit is reached or at the end of
+   * the task. Since Writable conversions happen only when writing, this is cheaper than a Hadoop combiner.
+   *
    * @param <GROUP_KEY> type of group key output by the aggregator
    * @param <GROUP_VAL> type of group value used by the aggregator
    * @param <OUT_KEY>   type of output key for mapreduce. Must implement WritableComparable
@@ -446,11 +489,22 @@ public class MapReduceTransformExecutorFactory<T> {
     private final NoErrorEmitter<GROUP_KEY> groupKeyEmitter;
     private final WritableConversion<GROUP_KEY, OUT_KEY> keyConversion;
     private final WritableConversion<GROUP_VAL, OUT_VAL> valConversion;
+    // null if the aggregator is not combinable
+    private final CombinableAggregator<GROUP_KEY, GROUP_VAL, ?> combiner;
+    private final Map<GROUP_KEY, GROUP_VAL> partialAggregates;
+    private final int maxGroups;
+    private Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter;
 
+    @SuppressWarnings("unchecked")
     MapperAggregatorTransformation(Aggregator<GROUP_KEY, GROUP_VAL, ?> aggregator,
                                    String groupKeyClassName,
-                                   String groupValClassName) {
+                                   String groupValClassName,
+                                   int maxGroups) {
       this.aggregator = aggregator;
+      this.combiner = aggregator instanceof CombinableAggregator ?
+        (CombinableAggregator<GROUP_KEY, GROUP_VAL, ?>) aggregator : null;
+      this.partialAggregates = new LinkedHashMap<>();
+      this.maxGroups = maxGroups;
       this.groupKeyEmitter =
         new NoErrorEmitter<>("Errors and Alerts cannot be emitted from the groupBy method of an aggregator");
       WritableConversion<GROUP_KEY, OUT_KEY> keyConversion = WritableConversions.getConversion(groupKeyClassName);
@@ -464,9 +518,36 @@ public class MapReduceTransformExecutorFactory<T> {
     public void transform(GROUP_VAL input, Emitter<KeyValue<OUT_KEY, OUT_VAL>> emitter) throws Exception {
       groupKeyEmitter.reset();
       aggregator.groupBy(input, groupKeyEmitter);
+      if (combiner == null) {
+        for (GROUP_KEY groupKey : groupKeyEmitter.getEntries()) {
+          emitter.emit(new KeyValue<>(keyConversion.toWritable(groupKey), valConversion.toWritable(input)));
+        }
+        return;
+      }
+
+      this.emitter = emitter;
       for (GROUP_KEY groupKey : groupKeyEmitter.getEntries()) {
-        emitter.emit(new KeyValue<>(keyConversion.toWritable(groupKey), valConversion.toWritable(input)));
+        GROUP_VAL aggregate = combiner.initializeAggregate(input);
+        GROUP_VAL existing = partialAggregates.get(groupKey);
+        partialAggregates.put(groupKey, existing == null ? aggregate : combiner.mergeAggregates(existing, aggregate));
+      }
+      if (partialAggregates.size() >= maxGroups) {
+        flush();
+      }
+    }
+
+    /**
+     * Writes out all partial aggregates held in memory.
+     */
+    void flush() throws Exception {
+      if (partialAggregates.isEmpty()) {
+        return;
+      }
+      for (Map.Entry<GROUP_KEY, GROUP_VAL> entry : partialAggregates.entrySet()) {
+        emitter.emit(new KeyValue<>(keyConversion.toWritable(entry.getKey()),
+                                    valConversion.toWritable(entry.getValue())));
       }
+      partialAggregates.clear();
     }
   }
 
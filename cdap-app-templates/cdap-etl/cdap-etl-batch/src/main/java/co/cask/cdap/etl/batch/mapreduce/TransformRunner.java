@@ -26,10 +26,12 @@ import co.cask.cdap.etl.api.batch.BatchJoiner;
 import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipeTransformExecutor;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
 import co.cask.cdap.etl.batch.connector.MultiConnectorFactory;
 import co.cask.cdap.etl.common.BasicArguments;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.Destroyables;
+import co.cask.cdap.etl.common.PartitionEstimator;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.SetMultimapCodec;
 import co.cask.cdap.etl.spec.StageSpec;
@@ -60,6 +62,7 @@ public class TransformRunner<KEY, VALUE> {
     .registerTypeAdapter(Schema.class, new SchemaTypeAdapter())
     .registerTypeAdapter(SetMultimap.class, new SetMultimapCodec<>())
     .create();
+  private final MapReduceTransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory;
   private final PipeTransformExecutor<KeyValue<KEY, VALUE>> transformExecutor;
   private final OutputWriter<Object, Object> outputWriter;
 
@@ -90,7 +93,12 @@ public class TransformRunner<KEY, VALUE> {
     PipelinePhase phase = phaseSpec.getPhase();
     Set<StageSpec> reducers = phase.getStagesOfType(BatchAggregator.PLUGIN_TYPE, BatchJoiner.PLUGIN_TYPE);
     if (!reducers.isEmpty()) {
-      String reducerName = reducers.iterator().next().getName();
+      StageSpec reducer = reducers.iterator().next();
+      String reducerName = reducer.getName();
+      // Records shuffled to the reducer usually have the input schemas of the reducer, and keys are usually made of
+      // their fields. Since the mapper and the reducer both know them from the phase spec, they don't need to be
+      // serialized with each record.
+      StructuredRecordWritable.registerSchemas(reducer.getInputSchemas().values());
       // if we're in the mapper, get the part of the pipeline starting from sources and ending at aggregator
       if (jobContext instanceof Mapper.Context) {
         phase = phase.subsetTo(ImmutableSet.of(reducerName));
@@ -100,11 +108,12 @@ public class TransformRunner<KEY, VALUE> {
       }
     }
 
-    MapReduceTransformExecutorFactory<KeyValue<KEY, VALUE>> transformExecutorFactory =
+    this.transformExecutorFactory =
       new MapReduceTransformExecutorFactory<>(context, pluginInstantiator, metrics,
                                               new BasicArguments(context.getWorkflowToken(), runtimeArgs),
                                               sourceStage, phaseSpec.getNumOfRecordsPreview(),
-                                              phaseSpec.pipelineContainsCondition());
+                                              phaseSpec.pipelineContainsCondition() ||
+                                                PartitionEstimator.isEnabled(runtimeArgs));
     this.transformExecutor = transformExecutorFactory.create(phase, outputWriter);
   }
 
@@ -142,7 +151,16 @@ public class TransformRunner<KEY, VALUE> {
     transformExecutor.runOneIteration(input);
   }
 
+  /**
+   * Called after the last input of the task has been transformed, to write out anything buffered by the pipeline.
+   */
+  public void finish() throws Exception {
+    transformExecutor.flush();
+    transformExecutorFactory.finish();
+  }
+
   public void destroy() {
     Destroyables.destroyQuietly(transformExecutor);
+    StructuredRecordWritable.unregisterSchemas();
   }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.benchmark;
+
+import co.cask.cdap.api.macro.InvalidMacroException;
+import co.cask.cdap.api.macro.MacroEvaluator;
+import co.cask.cdap.api.plugin.PluginContext;
+import co.cask.cdap.api.plugin.PluginProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link PluginContext} that returns plugins that were created by the benchmark, in place of the plugin
+ * instantiation done by CDAP.
+ */
+public class BenchmarkPluginContext implements PluginContext {
+  private final Map<String, Object> plugins = new HashMap<>();
+  private final Map<String, PluginProperties> properties = new HashMap<>();
+
+  /**
+   * Add the plugin for a stage.
+   *
+   * @param stageName the name of the stage
+   * @param plugin the plugin instance to return for the stage
+   * @param pluginProperties the properties the plugin was configured with
+   */
+  public void addPlugin(String stageName, Object plugin, Map<String, String> pluginProperties) {
+    plugins.put(stageName, plugin);
+    properties.put(stageName, PluginProperties.builder().addAll(pluginProperties).build());
+  }
+
+  @Override
+  public PluginProperties getPluginProperties(String pluginId) {
+    return properties.get(pluginId);
+  }
+
+  @Override
+  public PluginProperties getPluginProperties(String pluginId, MacroEvaluator evaluator) throws InvalidMacroException {
+    return properties.get(pluginId);
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> Class<T> loadPluginClass(String pluginId) {
+    return (Class<T>) getPlugin(pluginId).getClass();
+  }
+
+  @Override
+  public <T> T newPluginInstance(String pluginId) throws InstantiationException {
+    return getPlugin(pluginId);
+  }
+
+  @Override
+  public <T> T newPluginInstance(String pluginId, MacroEvaluator evaluator) throws InstantiationException {
+    return getPlugin(pluginId);
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> T getPlugin(String pluginId) {
+    Object plugin = plugins.get(pluginId);
+    if (plugin == null) {
+      throw new IllegalArgumentException(String.format("No plugin was added for stage '%s'.", pluginId));
+    }
+    return (T) plugin;
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Record shapes used by the pipeline benchmarks. Every shape has a long 'id' field and a string 'key' field, so that
+ * the same filters, joins and aggregations can be run on all of them.
+ */
+public enum BenchmarkRecords {
+  /**
+   * A flat record with many fields of simple types.
+   */
+  WIDE {
+    @Override
+    Schema createSchema() {
+      List<Schema.Field> fields = new ArrayList<>();
+      fields.add(Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+      fields.add(Schema.Field.of("key", Schema.of(Schema.Type.STRING)));
+      for (int i = 0; i < 10; i++) {
+        fields.add(Schema.Field.of("str" + i, Schema.of(Schema.Type.STRING)));
+        fields.add(Schema.Field.of("int" + i, Schema.of(Schema.Type.INT)));
+        fields.add(Schema.Field.of("long" + i, Schema.of(Schema.Type.LONG)));
+        fields.add(Schema.Field.of("double" + i, Schema.of(Schema.Type.DOUBLE)));
+        fields.add(Schema.Field.of("bool" + i, Schema.of(Schema.Type.BOOLEAN)));
+      }
+      return Schema.recordOf("wide", fields);
+    }
+
+    @Override
+    StructuredRecord createRecord(Schema schema, int i) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+        .set("id", (long) i)
+        .set("key", "key" + (i % NUM_KEYS));
+      for (int j = 0; j < 10; j++) {
+        builder.set("str" + j, "value" + j + "-" + i)
+          .set("int" + j, i + j)
+          .set("long" + j, (long) i * j)
+          .set("double" + j, i / (j + 1d))
+          .set("bool" + j, (i + j) % 2 == 0);
+      }
+      return builder.build();
+    }
+  },
+  /**
+   * A record containing a nested record, an array of records and a map.
+   */
+  NESTED {
+    @Override
+    Schema createSchema() {
+      Schema address = Schema.recordOf(
+        "address",
+        Schema.Field.of("street", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("city", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("zip", Schema.of(Schema.Type.INT)));
+      Schema item = Schema.recordOf(
+        "item",
+        Schema.Field.of("name", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+        Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+      return Schema.recordOf(
+        "nested",
+        Schema.Field.of("id", Schema.of(Schema.Type.LONG)),
+        Schema.Field.of("key", Schema.of(Schema.Type.STRING)),
+        Schema.Field.of("address", address),
+        Schema.Field.of("items", Schema.arrayOf(item)),
+        Schema.Field.of("attributes", Schema.mapOf(Schema.of(Schema.Type.STRING), Schema.of(Schema.Type.LONG))));
+    }
+
+    @Override
+    StructuredRecord createRecord(Schema schema, int i) {
+      Schema addressSchema = schema.getField("address").getSchema();
+      Schema itemSchema = schema.getField("items").getSchema().getComponentSchema();
+      List<StructuredRecord> items = new ArrayList<>();
+      for (int j = 0; j < 5; j++) {
+        items.add(StructuredRecord.builder(itemSchema)
+                    .set("name", "item" + (i + j))
+                    .set("count", j)
+                    .set("price", j * 1.5d)
+                    .build());
+      }
+      Map<String, Long> attributes = new HashMap<>();
+      for (int j = 0; j < 5; j++) {
+        attributes.put("attr" + j, (long) i + j);
+      }
+      return StructuredRecord.builder(schema)
+        .set("id", (long) i)
+        .set("key", "key" + (i % NUM_KEYS))
+        .set("address", StructuredRecord.builder(addressSchema)
+          .set("street", i + " Main St")
+          .set("city", "city" + (i % 100))
+          .set("zip", 10000 + i % 90000)
+          .build())
+        .set("items", items)
+        .set("attributes", attributes)
+        .build();
+    }
+  },
+  /**
+   * A record where most fields are unions, with different branches set in different records.
+   */
+  UNION {
+    @Override
+    Schema createSchema() {
+      List<Schema.Field> fields = new ArrayList<>();
+      fields.add(Schema.Field.of("id", Schema.of(Schema.Type.LONG)));
+      fields.add(Schema.Field.of("key", Schema.of(Schema.Type.STRING)));
+      Schema union = Schema.unionOf(Schema.of(Schema.Type.NULL), Schema.of(Schema.Type.STRING),
+                                    Schema.of(Schema.Type.LONG), Schema.of(Schema.Type.DOUBLE));
+      for (int i = 0; i < 20; i++) {
+        fields.add(Schema.Field.of("field" + i, union));
+      }
+      return Schema.recordOf("union", fields);
+    }
+
+    @Override
+    StructuredRecord createRecord(Schema schema, int i) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(schema)
+        .set("id", (long) i)
+        .set("key", "key" + (i % NUM_KEYS));
+      for (int j = 0; j < 20; j++) {
+        switch ((i + j) % 4) {
+          case 0:
+            builder.set("field" + j, null);
+            break;
+          case 1:
+            builder.set("field" + j, "value" + i);
+            break;
+          case 2:
+            builder.set("field" + j, (long) i * j);
+            break;
+          default:
+            builder.set("field" + j, i / (j + 1d));
+        }
+      }
+      return builder.build();
+    }
+  };
+
+  // number of distinct values of the 'key' field
+  public static final int NUM_KEYS = 100;
+
+  abstract Schema createSchema();
+
+  abstract StructuredRecord createRecord(Schema schema, int i);
+
+  /**
+   * Create records of this shape.
+   *
+   * @param count the number of records to create
+   * @return records with ids from 0 to count - 1
+   */
+  public List<StructuredRecord> createRecords(int count) {
+    Schema schema = createSchema();
+    List<StructuredRecord> records = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      records.add(createRecord(schema, i));
+    }
+    return records;
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.etl.batch.StructuredRecordWritable;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for serializing records between stages, either as json with {@link StructuredRecordStringConverter}
+ * or in binary with {@link StructuredRecordWritable}. Each operation serializes a record and reads it back, so the
+ * score is in records per second.
+ *
+ * See {@link BenchmarkRunner} for how to run it.
+ */
+// Thread scope so that the schemas are registered in the thread running the benchmark
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class RecordSerializationBenchmark {
+
+  private static final int BATCH_SIZE = 1000;
+
+  @Param({"WIDE", "NESTED", "UNION"})
+  private BenchmarkRecords shape;
+
+  private List<StructuredRecord> records;
+  private Schema schema;
+  private DataOutputBuffer outputBuffer;
+  private DataInputBuffer inputBuffer;
+
+  @Setup
+  public void setup() {
+    records = shape.createRecords(BATCH_SIZE);
+    schema = records.get(0).getSchema();
+    StructuredRecordWritable.registerSchemas(Collections.singleton(schema));
+    outputBuffer = new DataOutputBuffer();
+    inputBuffer = new DataInputBuffer();
+  }
+
+  @TearDown
+  public void tearDown() {
+    StructuredRecordWritable.unregisterSchemas();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void json(Blackhole blackhole) throws IOException {
+    for (StructuredRecord record : records) {
+      String json = StructuredRecordStringConverter.toJsonString(record);
+      blackhole.consume(StructuredRecordStringConverter.fromJsonString(json, schema));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void writable(Blackhole blackhole) throws IOException {
+    StructuredRecordWritable writable = new StructuredRecordWritable();
+    for (StructuredRecord record : records) {
+      outputBuffer.reset();
+      writable.set(record);
+      writable.write(outputBuffer);
+      inputBuffer.reset(outputBuffer.getData(), outputBuffer.getLength());
+      writable.readFields(inputBuffer);
+      blackhole.consume(writable.get());
+    }
+  }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.benchmark;
+
+import co.cask.cdap.api.artifact.ArtifactId;
+import co.cask.cdap.api.artifact.ArtifactScope;
+import co.cask.cdap.api.artifact.ArtifactVersion;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.api.preview.DataTracer;
+import co.cask.cdap.etl.api.JoinElement;
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import co.cask.cdap.etl.api.batch.BatchJoiner;
+import co.cask.cdap.etl.common.BasicArguments;
+import co.cask.cdap.etl.common.NoopStageStatisticsCollector;
+import co.cask.cdap.etl.mock.batch.aggregator.FieldCountAggregator;
+import co.cask.cdap.etl.mock.batch.joiner.MockJoiner;
+import co.cask.cdap.etl.mock.common.MockMetrics;
+import co.cask.cdap.etl.mock.transform.StringValueFilterTransform;
+import co.cask.cdap.etl.spark.function.AggregatorAggregateFunction;
+import co.cask.cdap.etl.spark.function.AggregatorGroupByFunction;
+import co.cask.cdap.etl.spark.function.JoinMergeFunction;
+import co.cask.cdap.etl.spark.function.PluginFunctionContext;
+import co.cask.cdap.etl.spark.function.TransformFunction;
+import co.cask.cdap.etl.spec.PluginSpec;
+import co.cask.cdap.etl.spec.StageSpec;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the functions that Spark pipelines run for each record of a transform, joiner and aggregator
+ * stage. The functions are called directly instead of through an RDD, so that only the per record work is measured:
+ * creating the plugin context, wrapping the plugins for stage logging and process timing, counting metrics, and the
+ * plugin calls themselves. The plugins are the transform, joiner and aggregator used by the pipeline unit tests.
+ * Each operation processes one input record, so the score is in records per second.
+ *
+ * See {@link BenchmarkRunner} for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class SparkFunctionBenchmark {
+
+  private static final int BATCH_SIZE = 1000;
+  private static final Gson GSON = new Gson();
+  private static final ArtifactId ARTIFACT = new ArtifactId("hydrator-test", new ArtifactVersion("1.0.0"),
+                                                            ArtifactScope.USER);
+  private static final DataTracer NOOP_TRACER = new DataTracer() {
+    @Override
+    public void info(String propertyName, Object propertyValue) {
+      // no-op
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+  };
+
+  @Param({"WIDE", "NESTED", "UNION"})
+  private BenchmarkRecords shape;
+
+  private List<StructuredRecord> records;
+  private List<Tuple2<StructuredRecord, List<JoinElement<StructuredRecord>>>> joinRows;
+  private List<Tuple2<Object, Iterable<StructuredRecord>>> groups;
+  private TransformFunction<StructuredRecord> transformFunction;
+  private JoinMergeFunction<StructuredRecord, StructuredRecord, StructuredRecord> joinMergeFunction;
+  private AggregatorGroupByFunction<Object, StructuredRecord> groupByFunction;
+  private AggregatorAggregateFunction<Object, StructuredRecord, StructuredRecord> aggregateFunction;
+
+  @Setup
+  public void setup() throws Exception {
+    records = shape.createRecords(BATCH_SIZE);
+    Schema schema = records.get(0).getSchema();
+    BenchmarkPluginContext pluginContext = new BenchmarkPluginContext();
+
+    // drops the records of one key, emitting them as errors
+    Map<String, String> filterProperties = ImmutableMap.of("field", "key", "value", "key0");
+    pluginContext.addPlugin("filter", new StringValueFilterTransform(
+      createConfig(StringValueFilterTransform.Config.class, filterProperties)), filterProperties);
+    StageSpec filterSpec = StageSpec.builder("filter", new PluginSpec(Transform.PLUGIN_TYPE, "StringValueFilter",
+                                                                      filterProperties, ARTIFACT))
+      .addInputSchema("source", schema)
+      .addOutputSchema(schema, "sink")
+      .build();
+    transformFunction = new TransformFunction<>(createFunctionContext(filterSpec, pluginContext));
+
+    // joins each record with the next record on the 'key' field
+    Map<String, String> joinerProperties = ImmutableMap.of("joinKeys", "left.key=right.key",
+                                                           "requiredInputs", "left,right",
+                                                           "selectedFields", "");
+    MockJoiner.Config joinerConfig = createConfig(MockJoiner.Config.class, joinerProperties);
+    pluginContext.addPlugin("joiner", new MockJoiner(joinerConfig), joinerProperties);
+    StageSpec joinerSpec = StageSpec.builder("joiner", new PluginSpec(BatchJoiner.PLUGIN_TYPE, "MockJoiner",
+                                                                      joinerProperties, ARTIFACT))
+      .addInputSchema("left", schema)
+      .addInputSchema("right", schema)
+      .addOutputSchema(schema, "sink")
+      .build();
+    joinMergeFunction = new JoinMergeFunction<>(createFunctionContext(joinerSpec, pluginContext));
+    MockJoiner keyJoiner = new MockJoiner(joinerConfig);
+    joinRows = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      StructuredRecord left = records.get(i);
+      StructuredRecord right = records.get((i + 1) % BATCH_SIZE);
+      joinRows.add(new Tuple2<StructuredRecord, List<JoinElement<StructuredRecord>>>(
+        keyJoiner.joinOn("left", left),
+        ImmutableList.of(new JoinElement<>("left", left), new JoinElement<>("right", right))));
+    }
+
+    // counts the records of each key
+    Map<String, String> aggregatorProperties = ImmutableMap.of("fieldName", "key", "fieldType", "string");
+    pluginContext.addPlugin("aggregator", new FieldCountAggregator(
+      createConfig(FieldCountAggregator.Config.class, aggregatorProperties)), aggregatorProperties);
+    Schema countSchema = Schema.recordOf("key.count",
+                                         Schema.Field.of("key", Schema.of(Schema.Type.STRING)),
+                                         Schema.Field.of("ct", Schema.of(Schema.Type.LONG)));
+    StageSpec aggregatorSpec = StageSpec.builder("aggregator", new PluginSpec(BatchAggregator.PLUGIN_TYPE,
+                                                                              "FieldCount", aggregatorProperties,
+                                                                              ARTIFACT))
+      .addInputSchema("source", schema)
+      .addOutputSchema(countSchema, "sink")
+      .build();
+    groupByFunction = new AggregatorGroupByFunction<>(createFunctionContext(aggregatorSpec, pluginContext));
+    aggregateFunction = new AggregatorAggregateFunction<>(createFunctionContext(aggregatorSpec, pluginContext));
+    Map<Object, List<StructuredRecord>> groupValues = new LinkedHashMap<>();
+    for (StructuredRecord record : records) {
+      Object key = record.get("key");
+      List<StructuredRecord> values = groupValues.get(key);
+      if (values == null) {
+        values = new ArrayList<>();
+        groupValues.put(key, values);
+      }
+      values.add(record);
+    }
+    groups = new ArrayList<>(groupValues.size());
+    for (Map.Entry<Object, List<StructuredRecord>> entry : groupValues.entrySet()) {
+      groups.add(new Tuple2<Object, Iterable<StructuredRecord>>(entry.getKey(),
+                                                                Collections.unmodifiableList(entry.getValue())));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void transform(Blackhole blackhole) throws Exception {
+    for (StructuredRecord record : records) {
+      blackhole.consume(transformFunction.call(record));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void joinMerge(Blackhole blackhole) throws Exception {
+    for (Tuple2<StructuredRecord, List<JoinElement<StructuredRecord>>> joinRow : joinRows) {
+      blackhole.consume(joinMergeFunction.call(joinRow));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void groupBy(Blackhole blackhole) throws Exception {
+    for (StructuredRecord record : records) {
+      blackhole.consume(groupByFunction.call(record));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void aggregate(Blackhole blackhole) throws Exception {
+    // the groups contain all the records, so this is also one operation per record
+    for (Tuple2<Object, Iterable<StructuredRecord>> group : groups) {
+      blackhole.consume(aggregateFunction.call(group));
+    }
+  }
+
+  private static PluginFunctionContext createFunctionContext(StageSpec stageSpec,
+                                                             BenchmarkPluginContext pluginContext) {
+    return new PluginFunctionContext(stageSpec, "default", "benchmark", System.currentTimeMillis(),
+                                     new BasicArguments(Collections.<String, String>emptyMap()), pluginContext,
+                                     null, new MockMetrics(), null, NOOP_TRACER,
+                                     new NoopStageStatisticsCollector());
+  }
+
+  // plugin configs are set from their properties by CDAP. The properties are all strings, so json works the same way.
+  private static <T extends PluginConfig> T createConfig(Class<T> configClass, Map<String, String> properties) {
+    return GSON.fromJson(GSON.toJson(properties), configClass);
+  }
+}
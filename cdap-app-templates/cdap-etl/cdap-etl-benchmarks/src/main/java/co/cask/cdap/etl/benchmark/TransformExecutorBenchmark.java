@@ -0,0 +1,229 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.benchmark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.preview.DataTracer;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.JoinElement;
+import co.cask.cdap.etl.api.Transformation;
+import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.NoopMetrics;
+import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.etl.common.TransformDetail;
+import co.cask.cdap.etl.common.TransformExecutor;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the per record path of pipeline stages outside of the Spark functions: a {@link TransformExecutor}
+ * for a chain of filters, and a {@link TrackedTransform}, which wraps every stage in MapReduce and Spark, emitting to a
+ * {@link DefaultEmitter} for the merge of a join and the group by of an aggregation. The transformations do little
+ * work, so that the score mostly reflects the executor, emitter and tracking overhead, which
+ * {@link SparkFunctionBenchmark} doesn't cover. Metrics and data tracing are disabled. Each operation processes one
+ * input record, so the score is in records per second.
+ *
+ * See {@link BenchmarkRunner} for how to run it.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class TransformExecutorBenchmark {
+
+  private static final int BATCH_SIZE = 1000;
+  private static final DataTracer NOOP_TRACER = new DataTracer() {
+    @Override
+    public void info(String propertyName, Object propertyValue) {
+      // no-op
+    }
+
+    @Override
+    public boolean isEnabled() {
+      return false;
+    }
+  };
+
+  @Param({"WIDE", "NESTED", "UNION"})
+  private BenchmarkRecords shape;
+
+  private List<StructuredRecord> records;
+  private TransformExecutor<StructuredRecord> filterChain;
+  private List<List<JoinElement<StructuredRecord>>> joinInputs;
+  private TrackedTransform<List<JoinElement<StructuredRecord>>, StructuredRecord> joinMerge;
+  private TrackedTransform<StructuredRecord, String> groupBy;
+  private Schema groupSchema;
+
+  @Setup
+  public void setup() {
+    records = shape.createRecords(BATCH_SIZE);
+    Schema schema = records.get(0).getSchema();
+
+    // filter1 -> filter2 -> filter3, each dropping a tenth of the records
+    Map<String, TransformDetail> transforms = new HashMap<>();
+    transforms.put("filter1", new TransformDetail(track(new IdFilter(0)), ImmutableList.of("filter2")));
+    transforms.put("filter2", new TransformDetail(track(new IdFilter(1)), ImmutableList.of("filter3")));
+    transforms.put("filter3", new TransformDetail(track(new IdFilter(2)), Collections.<String>emptyList()));
+    filterChain = new TransformExecutor<>(transforms, ImmutableSet.of("filter1"));
+
+    // join each record with the next record, as a joiner would see a single combination of its inputs
+    joinInputs = new ArrayList<>(BATCH_SIZE);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      joinInputs.add(ImmutableList.of(new JoinElement<>("left", records.get(i)),
+                                       new JoinElement<>("right", records.get((i + 1) % BATCH_SIZE))));
+    }
+    Schema joinSchema = Schema.recordOf("joined",
+                                        Schema.Field.of("key", Schema.of(Schema.Type.STRING)),
+                                        Schema.Field.of("left", schema),
+                                        Schema.Field.of("right", schema));
+    joinMerge = new TrackedTransform<>(new JoinMerge(joinSchema), NoopMetrics.INSTANCE,
+                                       Constants.Metrics.JOIN_KEYS, Constants.Metrics.RECORDS_OUT, NOOP_TRACER);
+
+    groupBy = track(new GroupByKey());
+    groupSchema = Schema.recordOf("group",
+                                  Schema.Field.of("key", Schema.of(Schema.Type.STRING)),
+                                  Schema.Field.of("count", Schema.of(Schema.Type.LONG)));
+  }
+
+  @TearDown
+  public void teardown() {
+    filterChain.destroy();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void filterChain(Blackhole blackhole) throws Exception {
+    for (StructuredRecord record : records) {
+      blackhole.consume(filterChain.runOneIteration(record));
+      filterChain.resetEmitter();
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void join(Blackhole blackhole) throws Exception {
+    DefaultEmitter<StructuredRecord> emitter = new DefaultEmitter<>();
+    for (List<JoinElement<StructuredRecord>> joinInput : joinInputs) {
+      emitter.reset();
+      joinMerge.transform(joinInput, emitter);
+      blackhole.consume(emitter.getEntries());
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH_SIZE)
+  public void groupBy(Blackhole blackhole) throws Exception {
+    DefaultEmitter<String> emitter = new DefaultEmitter<>();
+    Map<String, Long> counts = new HashMap<>();
+    for (StructuredRecord record : records) {
+      emitter.reset();
+      groupBy.transform(record, emitter);
+      for (String key : emitter.getEntries()) {
+        Long count = counts.get(key);
+        counts.put(key, count == null ? 1L : count + 1);
+      }
+    }
+    for (Map.Entry<String, Long> entry : counts.entrySet()) {
+      blackhole.consume(StructuredRecord.builder(groupSchema)
+                          .set("key", entry.getKey())
+                          .set("count", entry.getValue())
+                          .build());
+    }
+  }
+
+  private static <IN, OUT> TrackedTransform<IN, OUT> track(Transformation<IN, OUT> transformation) {
+    return new TrackedTransform<>(transformation, NoopMetrics.INSTANCE, NOOP_TRACER);
+  }
+
+  /**
+   * Drops records whose id has the given remainder when divided by ten.
+   */
+  private static class IdFilter implements Transformation<StructuredRecord, StructuredRecord> {
+    private final long remainder;
+
+    IdFilter(long remainder) {
+      this.remainder = remainder;
+    }
+
+    @Override
+    public void transform(StructuredRecord input, Emitter<StructuredRecord> emitter) {
+      long id = input.get("id");
+      if (id % 10 != remainder) {
+        emitter.emit(input);
+      }
+    }
+  }
+
+  /**
+   * Merges a left and right record into a record that contains both.
+   */
+  private static class JoinMerge implements Transformation<List<JoinElement<StructuredRecord>>, StructuredRecord> {
+    private final Schema outputSchema;
+
+    JoinMerge(Schema outputSchema) {
+      this.outputSchema = outputSchema;
+    }
+
+    @Override
+    public void transform(List<JoinElement<StructuredRecord>> input, Emitter<StructuredRecord> emitter) {
+      StructuredRecord.Builder builder = StructuredRecord.builder(outputSchema);
+      for (JoinElement<StructuredRecord> joinElement : input) {
+        StructuredRecord record = joinElement.getInputRecord();
+        builder.set("key", record.get("key"));
+        builder.set(joinElement.getStageName(), record);
+      }
+      emitter.emit(builder.build());
+    }
+  }
+
+  /**
+   * Emits the key of each record as its group.
+   */
+  private static class GroupByKey implements Transformation<StructuredRecord, String> {
+
+    @Override
+    public void transform(StructuredRecord input, Emitter<String> emitter) {
+      emitter.emit((String) input.get("key"));
+    }
+  }
+}
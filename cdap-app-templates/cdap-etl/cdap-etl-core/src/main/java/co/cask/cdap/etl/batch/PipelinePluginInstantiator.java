@@ -103,14 +103,16 @@ public class PipelinePluginInstantiator implements PluginContext {
 
   @Nullable
   private <T> T getBuiltIn(String stageName) {
+    StageSpec stageSpec = phaseSpec.getPhase().getStage(stageName);
+    // the planner sets the schemas of the records going through a connector as its input schemas
     if (connectorSources.contains(stageName)) {
       String datasetName = phaseSpec.getConnectorDatasets().get(stageName);
-      return (T) connectorFactory.createSource(datasetName);
+      return (T) connectorFactory.createSource(datasetName, stageSpec.getInputSchemas().values());
     } else if (connectorSinks.contains(stageName)) {
       String datasetName = phaseSpec.getConnectorDatasets().get(stageName);
-      return (T) connectorFactory.createSink(datasetName, phaseSpec.getPhaseName());
+      return (T) connectorFactory.createSink(datasetName, phaseSpec.getPhaseName(),
+                                             stageSpec.getInputSchemas().values());
     }
-    StageSpec stageSpec = phaseSpec.getPhase().getStage(stageName);
     if (stageSpec.getPluginType().equals(AlertPublisher.PLUGIN_TYPE)) {
       String datasetName = phaseSpec.getConnectorDatasets().get(stageName);
       return (T) new AlertPublisherSink(datasetName, phaseSpec.getPhaseName());
@@ -18,8 +18,6 @@ package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.schema.Schema;
 
-import javax.annotation.Nullable;
-
 /**
  * Creates ConnectorSources and ConnectorSinks
  */
@@ -29,16 +27,18 @@ public interface ConnectorFactory {
    * Create a connector source
    *
    * @param datasetName the name of the connector dataset
+   * @param knownSchemas schemas of the records written to the connector, as known from the pipeline specification
    * @return a new connector source
    */
-  ConnectorSource createSource(String datasetName);
+  ConnectorSource createSource(String datasetName, Iterable<Schema> knownSchemas);
 
   /**
    * Create a connector sink
    *
    * @param datasetName the name of the connector dataset
    * @param phaseName the name of the phase that will be writing to the dataset
+   * @param knownSchemas schemas of the records written to the connector, as known from the pipeline specification
    * @return a new connector sink
    */
-  ConnectorSink createSink(String datasetName, String phaseName);
+  ConnectorSink createSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas);
 }
@@ -17,13 +17,22 @@
 package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.batch.Output;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.FileSetArguments;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
 import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.StructuredRecordCodec;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,17 +48,22 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
- * TODO: improve storage format. It is currently a json of the record but that is obviously not ideal
+ * Records are written in binary to block compressed sequence files. The schemas known from the pipeline
+ * specification are only written as a hash, see {@link StructuredRecordCodec}.
  *
  * @param <T> type of input object
  */
-public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Text> {
+public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, BytesWritable> {
   private final String datasetName;
   private final String phaseName;
+  private final StructuredRecordCodec codec;
+  private final DataOutputBuffer buffer;
 
-  protected ConnectorSink(String datasetName, String phaseName) {
+  protected ConnectorSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas) {
     this.datasetName = datasetName;
     this.phaseName = phaseName;
+    this.codec = new StructuredRecordCodec(knownSchemas);
+    this.buffer = new DataOutputBuffer();
   }
 
   @Override
@@ -58,4 +72,25 @@ public abstract class ConnectorSink<T> extends BatchSink<T, NullWritable, Text>
     FileSetArguments.setOutputPath(arguments, Constants.Connector.DATA_DIR + "/" + phaseName);
     context.addOutput(Output.ofDataset(datasetName, arguments));
   }
+
+  @Override
+  public final void transform(T input, Emitter<KeyValue<NullWritable, BytesWritable>> emitter) throws Exception {
+    buffer.reset();
+    write(input, buffer);
+    // copy the bytes since the emitted value may be held after this method returns
+    emitter.emit(new KeyValue<>(NullWritable.get(),
+                                new BytesWritable(Arrays.copyOf(buffer.getData(), buffer.getLength()))));
+  }
+
+  /**
+   * Writes the given input to the given {@link DataOutput}.
+   */
+  protected abstract void write(T input, DataOutput out) throws IOException;
+
+  /**
+   * Writes the given record in the connector binary format.
+   */
+  protected final void writeRecord(StructuredRecord record, DataOutput out) throws IOException {
+    codec.write(record, out);
+  }
 }
@@ -17,19 +17,29 @@
 package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.batch.Input;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.api.dataset.lib.FileSet;
 import co.cask.cdap.api.dataset.lib.FileSetArguments;
 import co.cask.cdap.api.dataset.lib.FileSetProperties;
+import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.workflow.WorkflowConfigurer;
+import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.batch.BatchSource;
 import co.cask.cdap.etl.api.batch.BatchSourceContext;
 import co.cask.cdap.etl.common.Constants;
-import org.apache.hadoop.io.LongWritable;
-import org.apache.hadoop.io.Text;
-import org.apache.hadoop.mapreduce.lib.input.CombineTextInputFormat;
+import co.cask.cdap.etl.common.StructuredRecordCodec;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.mapreduce.lib.input.CombineSequenceFileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
-import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
 
+import java.io.DataInput;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -45,15 +55,21 @@ import java.util.Map;
  * This is because we don't want this to show up as a plugin that users can select and use, and also because
  * it uses features not exposed in the etl api (local workflow datasets).
  *
+ * Data is stored as block compressed sequence files, which can be split and combined by the phase reading them.
+ *
  * @param <T> type of output object
  */
-public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
+public abstract class ConnectorSource<T> extends BatchSource<NullWritable, BytesWritable, T> {
   // you can't read from the basedir of a FileSet so adding an arbitrary directory where data will be stored/read.
   static final String DATA_DIR = "data";
   private final String datasetName;
+  private final StructuredRecordCodec codec;
+  private final DataInputBuffer buffer;
 
-  protected ConnectorSource(String datasetName) {
+  protected ConnectorSource(String datasetName, Iterable<Schema> knownSchemas) {
     this.datasetName = datasetName;
+    this.codec = new StructuredRecordCodec(knownSchemas);
+    this.buffer = new DataInputBuffer();
   }
 
   // not the standard configurePipeline method. Need a workflowConfigurer to create a local dataset
@@ -61,9 +77,12 @@ public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
   public void configure(WorkflowConfigurer workflowConfigurer) {
     workflowConfigurer.createLocalDataset(datasetName, FileSet.class,
                                           FileSetProperties.builder()
-                                            .setInputFormat(CombineTextInputFormat.class)
+                                            .setInputFormat(CombineSequenceFileInputFormat.class)
                                             .setInputProperty(FileInputFormat.INPUT_DIR_RECURSIVE, "true")
-                                            .setOutputFormat(TextOutputFormat.class)
+                                            .setOutputFormat(SequenceFileOutputFormat.class)
+                                            .setOutputProperty(FileOutputFormat.COMPRESS, "true")
+                                            .setOutputProperty(FileOutputFormat.COMPRESS_TYPE,
+                                                               SequenceFile.CompressionType.BLOCK.name())
                                             .build());
   }
 
@@ -74,4 +93,22 @@ public class ConnectorSource<T> extends BatchSource<LongWritable, Text, T> {
     context.setInput(Input.ofDataset(datasetName, arguments));
   }
 
+  @Override
+  public final void transform(KeyValue<NullWritable, BytesWritable> input, Emitter<T> emitter) throws Exception {
+    BytesWritable value = input.getValue();
+    buffer.reset(value.getBytes(), value.getLength());
+    emitter.emit(read(buffer));
+  }
+
+  /**
+   * Reads an output object written by the {@link ConnectorSink} from the given {@link DataInput}.
+   */
+  protected abstract T read(DataInput in) throws IOException;
+
+  /**
+   * Reads a record written in the connector binary format.
+   */
+  protected final StructuredRecord readRecord(DataInput in) throws IOException {
+    return codec.read(in);
+  }
 }
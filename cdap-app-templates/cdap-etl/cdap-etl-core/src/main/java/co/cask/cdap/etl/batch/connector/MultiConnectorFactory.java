@@ -16,18 +16,20 @@
 
 package co.cask.cdap.etl.batch.connector;
 
+import co.cask.cdap.api.data.schema.Schema;
+
 /**
  * Creates Multi connector sources and sinks.
  */
 public class MultiConnectorFactory implements ConnectorFactory {
 
   @Override
-  public ConnectorSource createSource(String datasetName) {
-    return new MultiConnectorSource(datasetName, null);
+  public ConnectorSource createSource(String datasetName, Iterable<Schema> knownSchemas) {
+    return new MultiConnectorSource(datasetName, knownSchemas);
   }
 
   @Override
-  public ConnectorSink createSink(String datasetName, String phaseName) {
-    return new MultiConnectorSink(datasetName, phaseName);
+  public ConnectorSink createSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas) {
+    return new MultiConnectorSink(datasetName, phaseName, knownSchemas);
   }
 }
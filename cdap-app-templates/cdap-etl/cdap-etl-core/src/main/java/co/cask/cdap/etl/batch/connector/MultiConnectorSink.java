@@ -18,13 +18,11 @@ package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.common.RecordInfo;
-import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
 
+import java.io.DataOutput;
 import java.io.IOException;
 
 /**
@@ -34,26 +32,14 @@ import java.io.IOException;
  */
 public class MultiConnectorSink extends ConnectorSink<RecordInfo<StructuredRecord>> {
 
-  public MultiConnectorSink(String datasetName, String phaseName) {
-    super(datasetName, phaseName);
+  public MultiConnectorSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas) {
+    super(datasetName, phaseName, knownSchemas);
   }
 
   @Override
-  public void transform(RecordInfo<StructuredRecord> input, Emitter<KeyValue<NullWritable, Text>> emitter)
-    throws Exception {
-    StructuredRecord modifiedRecord = modifyRecord(input);
-    emitter.emit(new KeyValue<>(NullWritable.get(),
-                                new Text(StructuredRecordStringConverter.toJsonString(modifiedRecord))));
-  }
-
-  private StructuredRecord modifyRecord(RecordInfo<StructuredRecord> input) throws IOException {
-    String stageName = input.getFromStage();
-    Schema inputSchema = input.getValue().getSchema();
-    return StructuredRecord.builder(MultiConnectorSource.RECORD_WITH_SCHEMA)
-      .set("stageName", stageName)
-      .set("type", input.getType().name())
-      .set("schema", inputSchema.toString())
-      .set("record", StructuredRecordStringConverter.toJsonString(input.getValue()))
-      .build();
+  protected void write(RecordInfo<StructuredRecord> input, DataOutput out) throws IOException {
+    Text.writeString(out, input.getFromStage());
+    WritableUtils.writeEnum(out, input.getType());
+    writeRecord(input.getValue(), out);
   }
 }
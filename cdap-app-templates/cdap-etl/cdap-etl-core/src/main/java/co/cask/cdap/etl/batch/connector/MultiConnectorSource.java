@@ -18,50 +18,27 @@ package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.RecordType;
-import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
 
-import javax.annotation.Nullable;
+import java.io.DataInput;
+import java.io.IOException;
 
 /**
  * Used to read data written by {@link MultiConnectorSink}.
  */
 public class MultiConnectorSource extends ConnectorSource<RecordInfo<StructuredRecord>> {
-  static final Schema RECORD_WITH_SCHEMA = Schema.recordOf(
-    "record",
-    Schema.Field.of("stageName", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("type", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("schema", Schema.of(Schema.Type.STRING)),
-    Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
-  @Nullable
-  private final Schema schema;
 
-  public MultiConnectorSource(String datasetName, @Nullable Schema schema) {
-    super(datasetName);
-    this.schema = schema;
+  public MultiConnectorSource(String datasetName, Iterable<Schema> knownSchemas) {
+    super(datasetName, knownSchemas);
   }
 
   @Override
-  public void transform(KeyValue<LongWritable, Text> input,
-                        Emitter<RecordInfo<StructuredRecord>> emitter) throws Exception {
-    StructuredRecord output;
-    String inputStr = input.getValue().toString();
-    StructuredRecord recordWithSchema =
-      StructuredRecordStringConverter.fromJsonString(inputStr, RECORD_WITH_SCHEMA);
-    String stageName = recordWithSchema.get("stageName");
-    if (schema == null) {
-      Schema outputSchema = Schema.parseJson((String) recordWithSchema.get("schema"));
-      output = StructuredRecordStringConverter.fromJsonString((String) recordWithSchema.get("record"), outputSchema);
-    } else {
-      output = StructuredRecordStringConverter.fromJsonString(inputStr, schema);
-    }
-    RecordType recordType = RecordType.valueOf((String) recordWithSchema.get("type"));
-    emitter.emit(RecordInfo.builder(output, stageName, recordType).build());
+  protected RecordInfo<StructuredRecord> read(DataInput in) throws IOException {
+    String stageName = Text.readString(in);
+    RecordType recordType = WritableUtils.readEnum(in, RecordType.class);
+    return RecordInfo.builder(readRecord(in), stageName, recordType).build();
   }
-
 }
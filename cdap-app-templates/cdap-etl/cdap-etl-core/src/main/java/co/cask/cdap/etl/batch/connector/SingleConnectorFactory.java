@@ -16,18 +16,20 @@
 
 package co.cask.cdap.etl.batch.connector;
 
+import co.cask.cdap.api.data.schema.Schema;
+
 /**
  * Creates single connector sources and sinks.
  */
 public class SingleConnectorFactory implements ConnectorFactory {
 
   @Override
-  public ConnectorSource createSource(String datasetName) {
-    return new SingleConnectorSource(datasetName, null);
+  public ConnectorSource createSource(String datasetName, Iterable<Schema> knownSchemas) {
+    return new SingleConnectorSource(datasetName, knownSchemas);
   }
 
   @Override
-  public ConnectorSink createSink(String datasetName, String phaseName) {
-    return new SingleConnectorSink(datasetName, phaseName);
+  public ConnectorSink createSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas) {
+    return new SingleConnectorSink(datasetName, phaseName, knownSchemas);
   }
 }
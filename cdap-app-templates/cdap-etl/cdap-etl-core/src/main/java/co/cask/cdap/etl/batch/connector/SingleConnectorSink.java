@@ -18,12 +18,8 @@ package co.cask.cdap.etl.batch.connector;
 
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
-import co.cask.cdap.api.dataset.lib.KeyValue;
-import co.cask.cdap.etl.api.Emitter;
-import co.cask.cdap.format.StructuredRecordStringConverter;
-import org.apache.hadoop.io.NullWritable;
-import org.apache.hadoop.io.Text;
 
+import java.io.DataOutput;
 import java.io.IOException;
 
 /**
@@ -32,23 +28,12 @@ import java.io.IOException;
  */
 public class SingleConnectorSink extends ConnectorSink<StructuredRecord> {
 
-  public SingleConnectorSink(String datasetName, String phaseName) {
-    super(datasetName, phaseName);
+  public SingleConnectorSink(String datasetName, String phaseName, Iterable<Schema> knownSchemas) {
+    super(datasetName, phaseName, knownSchemas);
   }
 
   @Override
-  public void transform(StructuredRecord input, Emitter<KeyValue<NullWritable, Text>> emitter)
-    throws Exception {
-    StructuredRecord modifiedRecord = modifyRecord(input);
-    emitter.emit(new KeyValue<>(NullWritable.get(),
-                                new Text(StructuredRecordStringConverter.toJsonString(modifiedRecord))));
-  }
-
-  private StructuredRecord modifyRecord(StructuredRecord input) throws IOException {
-    Schema inputSchema = input.getSchema();
-    return StructuredRecord.builder(SingleConnectorSource.RECORD_WITH_SCHEMA)
-      .set("schema", inputSchema.toString())
-      .set("record", StructuredRecordStringConverter.toJsonString(input))
-      .build();
+  protected void write(StructuredRecord input, DataOutput out) throws IOException {
+    writeRecord(input, out);
   }
 }
@@ -16,14 +16,21 @@
 
 package co.cask.cdap.etl.common;
 
+import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.Dataset;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.dataset.lib.KeyValue;
 import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import co.cask.cdap.api.dataset.table.Row;
+import co.cask.cdap.api.dataset.table.Scanner;
 import co.cask.cdap.api.dataset.table.Table;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
 import co.cask.cdap.etl.api.lookup.KeyValueTableLookup;
 import co.cask.cdap.etl.api.lookup.TableLookup;
 
+import java.util.HashMap;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -45,4 +52,43 @@ public abstract class AbstractLookupProvider implements LookupProvider {
       throw new RuntimeException(String.format("Dataset %s does not support lookup", table));
     }
   }
+
+  /**
+   * Reads up to the given number of entries from a lookup table, in the form they would be returned by the
+   * {@link Lookup} for the table. Used to preload lookup caches.
+   *
+   * @param table the name of the lookup table
+   * @param arguments arguments for initializing the lookup table
+   * @param limit maximum number of entries to read. All entries are read if this is not positive
+   * @param <T> the type of value returned by the {@link Lookup}
+   * @return entries of the table
+   */
+  public abstract <T> Map<String, T> loadAll(String table, Map<String, String> arguments, int limit);
+
+  @SuppressWarnings("unchecked")
+  protected <T> Map<String, T> loadAll(String table, @Nullable Dataset dataset, int limit) {
+    if (dataset == null) {
+      throw new RuntimeException(String.format("Dataset %s does not exist", table));
+    }
+
+    Map<String, Object> results = new HashMap<>();
+    if (dataset instanceof KeyValueTable) {
+      try (CloseableIterator<KeyValue<byte[], byte[]>> iter = ((KeyValueTable) dataset).scan(null, null)) {
+        while (iter.hasNext() && (limit <= 0 || results.size() < limit)) {
+          KeyValue<byte[], byte[]> entry = iter.next();
+          results.put(Bytes.toString(entry.getKey()), Bytes.toString(entry.getValue()));
+        }
+      }
+    } else if (dataset instanceof Table) {
+      try (Scanner scanner = ((Table) dataset).scan(null, null)) {
+        Row row;
+        while ((limit <= 0 || results.size() < limit) && (row = scanner.next()) != null) {
+          results.put(Bytes.toString(row.getRow()), row);
+        }
+      }
+    } else {
+      throw new RuntimeException(String.format("Dataset %s does not support lookup", table));
+    }
+    return (Map<String, T>) results;
+  }
 }
@@ -16,8 +16,10 @@
 
 package co.cask.cdap.etl.common;
 
+import co.cask.cdap.etl.api.CacheConfig;
 import co.cask.cdap.etl.api.Lookup;
 import co.cask.cdap.etl.api.LookupProvider;
+import co.cask.cdap.etl.api.LookupTableConfig;
 import co.cask.cdap.etl.api.TransformContext;
 import co.cask.cdap.etl.api.lineage.field.FieldOperation;
 import co.cask.cdap.etl.spec.StageSpec;
@@ -44,6 +46,21 @@ public abstract class AbstractTransformContext extends AbstractStageContext impl
     return lookup.provide(table, arguments);
   }
 
+  @Override
+  public <T> Lookup<T> provide(String table, Map<String, String> arguments, LookupTableConfig config) {
+    if (!config.isCacheEnabled()) {
+      return provide(table, arguments);
+    }
+
+    CacheConfig cacheConfig = config.getCacheConfig();
+    CachingLookup<T> cachingLookup = new CachingLookup<>(this.<T>provide(table, arguments), cacheConfig,
+                                                         getMetrics());
+    if (cacheConfig.isPreload() && lookup instanceof AbstractLookupProvider) {
+      cachingLookup.preload(((AbstractLookupProvider) lookup).<T>loadAll(table, arguments, cacheConfig.getMaxSize()));
+    }
+    return cachingLookup;
+  }
+
   @Override
   public void record(List<FieldOperation> fieldOperations) {
     throw new UnsupportedOperationException("Lineage recording is not supported.");
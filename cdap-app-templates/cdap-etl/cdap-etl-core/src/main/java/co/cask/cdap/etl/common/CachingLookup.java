@@ -0,0 +1,123 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import co.cask.cdap.etl.api.StageMetrics;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * {@link Lookup} that caches results of another {@link Lookup} in memory, based on a {@link CacheConfig}.
+ * Keys that do not exist in the table are cached as well, so repeated lookups of missing keys do not go to
+ * the table either. When looking up multiple keys, keys that are not in the cache are fetched with a single
+ * lookup. Cache hits and misses are emitted as stage metrics.
+ *
+ * @param <T> the type of value returned by the lookup
+ */
+public class CachingLookup<T> implements Lookup<T> {
+  private final Lookup<T> delegate;
+  private final Cache<String, Optional<T>> cache;
+  private final StageMetrics stageMetrics;
+
+  public CachingLookup(Lookup<T> delegate, CacheConfig cacheConfig, StageMetrics stageMetrics) {
+    this.delegate = delegate;
+    this.stageMetrics = stageMetrics;
+    CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+    if (cacheConfig.getExpirySeconds() > 0) {
+      builder.expireAfterWrite(cacheConfig.getExpirySeconds(), TimeUnit.SECONDS);
+    }
+    if (cacheConfig.getMaxSize() > 0) {
+      builder.maximumSize(cacheConfig.getMaxSize());
+    }
+    this.cache = builder.build();
+  }
+
+  /**
+   * Adds the given entries to the cache.
+   *
+   * @param entries entries to add
+   */
+  public void preload(Map<String, T> entries) {
+    for (Map.Entry<String, T> entry : entries.entrySet()) {
+      cache.put(entry.getKey(), Optional.fromNullable(entry.getValue()));
+    }
+  }
+
+  @Nullable
+  @Override
+  public T lookup(String key) {
+    Optional<T> cached = cache.getIfPresent(key);
+    if (cached != null) {
+      stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, 1);
+      return cached.orNull();
+    }
+    stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, 1);
+    T value = delegate.lookup(key);
+    cache.put(key, Optional.fromNullable(value));
+    return value;
+  }
+
+  @Override
+  public Map<String, T> lookup(String... keys) {
+    return lookup(ImmutableSet.copyOf(keys));
+  }
+
+  @Override
+  public Map<String, T> lookup(Set<String> keys) {
+    Map<String, T> results = new HashMap<>();
+    Set<String> missingKeys = new HashSet<>();
+    for (String key : keys) {
+      Optional<T> cached = cache.getIfPresent(key);
+      if (cached == null) {
+        missingKeys.add(key);
+      } else if (cached.isPresent()) {
+        results.put(key, cached.get());
+      }
+    }
+
+    int hits = keys.size() - missingKeys.size();
+    if (hits > 0) {
+      stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_HITS, hits);
+    }
+    if (missingKeys.isEmpty()) {
+      return results;
+    }
+
+    stageMetrics.count(Constants.Metrics.LOOKUP_CACHE_MISSES, missingKeys.size());
+    Map<String, T> fetched = delegate.lookup(missingKeys);
+    for (String key : missingKeys) {
+      T value = fetched.get(key);
+      cache.put(key, Optional.fromNullable(value));
+      if (value != null) {
+        results.put(key, value);
+      }
+    }
+    return results;
+  }
+}
@@ -40,6 +40,25 @@ public final class Constants {
   );
   public static final String MDC_STAGE_KEY = "pipeline.stage";
   public static final String FIELD_OPERATION_KEY_IN_WORKFLOW_TOKEN = "field.operations";
+  // number of records passed in each call to a bulk transform
+  public static final String BULK_TRANSFORM_SIZE = "cdap.etl.transform.bulk.size";
+  public static final int DEFAULT_BULK_TRANSFORM_SIZE = 1000;
+  // whether chains of transforms are run in a single Spark function
+  public static final String SPARK_FUSION_ENABLED = "cdap.etl.spark.fusion.enabled";
+  // storage level used when Spark collections are cached
+  public static final String SPARK_CACHE_STORAGE_LEVEL = "cdap.etl.spark.cache.storage.level";
+  public static final String DEFAULT_SPARK_CACHE_STORAGE_LEVEL = "MEMORY_AND_DISK";
+  // joiner inputs hinted as in-memory with more records than this are shuffled instead of broadcast
+  public static final String SPARK_BROADCAST_JOIN_MAX_RECORDS = "cdap.etl.spark.broadcast.join.max.records";
+  public static final int DEFAULT_SPARK_BROADCAST_JOIN_MAX_RECORDS = 1000000;
+  // whether aggregator and joiner partitions and hot join keys are chosen from the statistics of the previous run
+  public static final String AUTO_PARTITIONS_ENABLED = "cdap.etl.partitions.auto.enabled";
+  // number of input records per partition when partitions are chosen automatically
+  public static final String AUTO_PARTITIONS_RECORDS = "cdap.etl.partitions.auto.records";
+  public static final long DEFAULT_AUTO_PARTITIONS_RECORDS = 1000000L;
+  // maximum number of partitions when partitions are chosen automatically
+  public static final String AUTO_PARTITIONS_MAX = "cdap.etl.partitions.auto.max";
+  public static final int DEFAULT_AUTO_PARTITIONS_MAX = 1000;
 
   private Constants() {
     throw new AssertionError("Suppress default constructor for noninstantiability");
@@ -82,6 +101,11 @@ public final class Constants {
     public static final String RECORDS_ALERT = "records.alert";
     public static final String AGG_GROUPS = "aggregator.groups";
     public static final String JOIN_KEYS = "joiner.keys";
+    public static final String JOIN_INPUTS_BROADCAST = "joiner.inputs.broadcast";
+    public static final String JOIN_INPUTS_SHUFFLED = "joiner.inputs.shuffled";
+    public static final String JOIN_KEYS_SALTED = "joiner.keys.salted";
+    public static final String LOOKUP_CACHE_HITS = "lookup.cache.hits";
+    public static final String LOOKUP_CACHE_MISSES = "lookup.cache.misses";
   }
 
   /**
@@ -92,5 +116,7 @@ public final class Constants {
     public static final String INPUT_RECORDS = "input.records";
     public static final String OUTPUT_RECORDS = "output.records";
     public static final String ERROR_RECORDS = "error.records";
+    // prefix of the workflow token keys that hold the counts of the most frequent join keys of each joiner input
+    public static final String KEY_COUNTS_PREFIX = "stage.key.counts";
   }
 }
@@ -37,4 +37,9 @@ public class DatasetContextLookupProvider extends AbstractLookupProvider {
   public <T> Lookup<T> provide(String table, Map<String, String> arguments) {
     return getLookup(table, context.getDataset(table, arguments));
   }
+
+  @Override
+  public <T> Map<String, T> loadAll(String table, Map<String, String> arguments, int limit) {
+    return loadAll(table, context.getDataset(table, arguments), limit);
+  }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps approximate counts of the most frequent keys in a stream of keys, using the Misra-Gries algorithm. Keys are
+ * identified by their hash code. At most a fixed number of keys are counted, and the count of each key is a lower
+ * bound of its actual count, off by at most the total count divided by the number of keys counted. A key that makes
+ * up more than that fraction of all keys is always counted.
+ *
+ * Sketches can be merged, so that each partition of the data can count its own keys.
+ */
+public class KeyFrequencySketch implements Serializable {
+  private static final long serialVersionUID = -3425981379604581423L;
+  private final int capacity;
+  private final Map<Integer, Long> counts;
+
+  public KeyFrequencySketch(int capacity) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid capacity %d. It must be a positive integer.", capacity));
+    }
+    this.capacity = capacity;
+    this.counts = new HashMap<>();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public void add(int keyHash) {
+    add(keyHash, 1L);
+  }
+
+  /**
+   * Adds all the counts of another sketch to this sketch.
+   */
+  public void merge(KeyFrequencySketch other) {
+    for (Map.Entry<Integer, Long> entry : other.counts.entrySet()) {
+      add(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * @return the counts of the most frequent keys, keyed by key hash
+   */
+  public Map<Integer, Long> getCounts() {
+    if (counts.size() > capacity) {
+      compact();
+    }
+    return Collections.unmodifiableMap(new HashMap<>(counts));
+  }
+
+  private void add(int keyHash, long count) {
+    Long existing = counts.get(keyHash);
+    counts.put(keyHash, existing == null ? count : existing + count);
+    // let the counts grow to twice the capacity before compacting them, so that compaction only happens after
+    // at least as many new keys as the capacity have been added
+    if (counts.size() > 2 * capacity) {
+      compact();
+    }
+  }
+
+  /**
+   * Subtracts the count of the key just below the capacity from all counts, and removes the keys whose count
+   * drops to zero. This leaves at most as many keys as the capacity.
+   */
+  private void compact() {
+    List<Long> sortedCounts = new ArrayList<>(counts.values());
+    Collections.sort(sortedCounts, Collections.<Long>reverseOrder());
+    long decrement = sortedCounts.get(capacity);
+    Iterator<Map.Entry<Integer, Long>> iterator = counts.entrySet().iterator();
+    while (iterator.hasNext()) {
+      Map.Entry<Integer, Long> entry = iterator.next();
+      long count = entry.getValue() - decrement;
+      if (count > 0) {
+        entry.setValue(count);
+      } else {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -36,6 +36,16 @@ public class NoopStageStatisticsCollector implements StageStatisticsCollector, S
     // no-op
   }
 
+  @Override
+  public void incrementInputRecordCount(long count) {
+    // no-op
+  }
+
+  @Override
+  public void incrementOutputRecordCount(long count) {
+    // no-op
+  }
+
   @Override
   public void incrementErrorRecordCount() {
     // no-op
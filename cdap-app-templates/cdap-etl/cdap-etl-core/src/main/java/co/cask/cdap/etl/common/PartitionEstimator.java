@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.api.Admin;
+import co.cask.cdap.api.Transactional;
+import co.cask.cdap.api.Transactionals;
+import co.cask.cdap.api.TxRunnable;
+import co.cask.cdap.api.data.DatasetContext;
+import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import co.cask.cdap.etl.api.condition.StageStatistics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses the number of partitions used by aggregators and joiners from the number of records that went into them
+ * in the previous run of the pipeline, as stored in the {@link StageStatisticsStore}. This is only done when it is
+ * enabled through runtime arguments, and only for stages that do not set the number of partitions themselves.
+ *
+ * Join keys that had more records than fit in a partition in the previous run are hot keys. Each hot key gets a
+ * number of salts, which is the number of partitions its records are spread over.
+ */
+public class PartitionEstimator {
+  private final long recordsPerPartition;
+  private final int maxPartitions;
+
+  public PartitionEstimator(long recordsPerPartition, int maxPartitions) {
+    if (recordsPerPartition < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid value %d for %s. It must be a positive integer.", recordsPerPartition,
+        Constants.AUTO_PARTITIONS_RECORDS));
+    }
+    if (maxPartitions < 1) {
+      throw new IllegalArgumentException(String.format(
+        "Invalid value %d for %s. It must be a positive integer.", maxPartitions, Constants.AUTO_PARTITIONS_MAX));
+    }
+    this.recordsPerPartition = recordsPerPartition;
+    this.maxPartitions = maxPartitions;
+  }
+
+  /**
+   * @return whether partitions should be chosen automatically and stage statistics should be stored
+   */
+  public static boolean isEnabled(Map<String, String> arguments) {
+    return Boolean.parseBoolean(arguments.get(Constants.AUTO_PARTITIONS_ENABLED));
+  }
+
+  public static PartitionEstimator fromArguments(Map<String, String> arguments) {
+    String recordsPerPartition = arguments.get(Constants.AUTO_PARTITIONS_RECORDS);
+    String maxPartitions = arguments.get(Constants.AUTO_PARTITIONS_MAX);
+    return new PartitionEstimator(
+      recordsPerPartition == null ? Constants.DEFAULT_AUTO_PARTITIONS_RECORDS : Long.parseLong(recordsPerPartition),
+      maxPartitions == null ? Constants.DEFAULT_AUTO_PARTITIONS_MAX : Integer.parseInt(maxPartitions));
+  }
+
+  /**
+   * @return the number of partitions to use for a stage that gets the given number of input records
+   */
+  public int estimate(long inputRecords) {
+    long partitions = (inputRecords + recordsPerPartition - 1) / recordsPerPartition;
+    return (int) Math.max(1L, Math.min((long) maxPartitions, partitions));
+  }
+
+  /**
+   * Estimates the number of partitions for each of the given stages that has statistics from a previous run.
+   *
+   * @param transactional transactional used to read the statistics
+   * @param admin admin used to check whether any statistics have been stored
+   * @param pipeline name of the pipeline
+   * @param stages the stages to estimate partitions for
+   * @return the number of partitions for each stage that has statistics
+   * @throws DatasetManagementException if there was an error checking whether the statistics dataset exists
+   */
+  public Map<String, Integer> estimate(Transactional transactional, Admin admin, final String pipeline,
+                                       final Set<String> stages) throws DatasetManagementException {
+    final Map<String, Integer> partitions = new HashMap<>();
+    if (stages.isEmpty() || !admin.datasetExists(StageStatisticsStore.DATASET)) {
+      return partitions;
+    }
+
+    Transactionals.execute(transactional, new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        KeyValueTable table = context.getDataset(StageStatisticsStore.DATASET);
+        StageStatisticsStore store = new StageStatisticsStore(table);
+        for (String stage : stages) {
+          StageStatistics statistics = store.read(pipeline, stage);
+          if (statistics != null) {
+            partitions.put(stage, estimate(statistics.getInputRecordsCount()));
+          }
+        }
+      }
+    });
+    return partitions;
+  }
+
+  /**
+   * Returns the number of salts of each hot key, given the counts of the most frequent keys. A key is hot if it has
+   * more records than fit in a single partition. It is spread over as many partitions as are needed for its
+   * records, capped by the maximum number of partitions.
+   *
+   * @param keyCounts counts of the most frequent keys, keyed by key hash
+   * @return the number of salts of each hot key, keyed by key hash
+   */
+  public Map<Integer, Integer> getSalts(Map<Integer, Long> keyCounts) {
+    Map<Integer, Integer> salts = new HashMap<>();
+    for (Map.Entry<Integer, Long> entry : keyCounts.entrySet()) {
+      int keySalts = estimate(entry.getValue());
+      if (keySalts > 1) {
+        salts.put(entry.getKey(), keySalts);
+      }
+    }
+    return salts;
+  }
+
+  /**
+   * Finds the hot keys of each input of the given joiners that have key counts from a previous run.
+   *
+   * @param transactional transactional used to read the key counts
+   * @param admin admin used to check whether any statistics have been stored
+   * @param pipeline name of the pipeline
+   * @param joiners the joiner stages to find hot keys for
+   * @return for each joiner, the number of salts of each hot key of each of its inputs, keyed by input stage and
+   *   key hash. Joiners and inputs without hot keys are left out.
+   * @throws DatasetManagementException if there was an error checking whether the statistics dataset exists
+   */
+  public Map<String, Map<String, Map<Integer, Integer>>> estimateSalts(Transactional transactional, Admin admin,
+                                                                      final String pipeline,
+                                                                      final Set<String> joiners)
+    throws DatasetManagementException {
+    final Map<String, Map<String, Map<Integer, Integer>>> joinerSalts = new HashMap<>();
+    if (joiners.isEmpty() || !admin.datasetExists(StageStatisticsStore.DATASET)) {
+      return joinerSalts;
+    }
+
+    Transactionals.execute(transactional, new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        KeyValueTable table = context.getDataset(StageStatisticsStore.DATASET);
+        StageStatisticsStore store = new StageStatisticsStore(table);
+        for (String joiner : joiners) {
+          Map<String, Map<Integer, Long>> keyCounts = store.readKeyCounts(pipeline, joiner);
+          if (keyCounts == null) {
+            continue;
+          }
+          Map<String, Map<Integer, Integer>> inputSalts = new HashMap<>();
+          for (Map.Entry<String, Map<Integer, Long>> entry : keyCounts.entrySet()) {
+            Map<Integer, Integer> salts = getSalts(entry.getValue());
+            if (!salts.isEmpty()) {
+              inputSalts.put(entry.getKey(), salts);
+            }
+          }
+          if (!inputSalts.isEmpty()) {
+            joinerSalts.put(joiner, inputSalts);
+          }
+        }
+      }
+    });
+    return joinerSalts;
+  }
+}
@@ -30,6 +30,16 @@ public interface StageStatisticsCollector {
    */
   void incrementOutputRecordCount();
 
+  /**
+   * Increment the input record count by the given number of records.
+   */
+  void incrementInputRecordCount(long count);
+
+  /**
+   * Increment the output record count by the given number of records.
+   */
+  void incrementOutputRecordCount(long count);
+
   /**
    * Increment the error record count.
    */
@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.api.Admin;
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetManagementException;
+import co.cask.cdap.api.dataset.DatasetProperties;
+import co.cask.cdap.api.dataset.InstanceConflictException;
+import co.cask.cdap.api.dataset.lib.KeyValueTable;
+import co.cask.cdap.etl.api.condition.StageStatistics;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Stores the statistics of each stage from the latest run of each pipeline, so that later runs can be tuned
+ * based on them. Statistics are kept in a {@link KeyValueTable} in the namespace of the pipeline, keyed by
+ * pipeline and stage name. For joiners, the counts of the most frequent join keys of each input are kept as well.
+ */
+public class StageStatisticsStore {
+  public static final String DATASET = "pipelineStageStatistics";
+  private static final Gson GSON = new Gson();
+  private static final Type KEY_COUNTS_TYPE = new TypeToken<Map<String, Map<Integer, Long>>>() { }.getType();
+  private static final String KEY_COUNTS_SUFFIX = "keys";
+  private final KeyValueTable table;
+
+  public StageStatisticsStore(KeyValueTable table) {
+    this.table = table;
+  }
+
+  /**
+   * Creates the dataset used to store statistics if it does not already exist.
+   *
+   * @param admin admin used to create the dataset
+   * @throws DatasetManagementException if there was an error creating the dataset
+   */
+  public static void createIfNotExists(Admin admin) throws DatasetManagementException {
+    if (admin.datasetExists(DATASET)) {
+      return;
+    }
+    try {
+      admin.createDataset(DATASET, KeyValueTable.class.getName(), DatasetProperties.EMPTY);
+    } catch (InstanceConflictException e) {
+      // created by another pipeline run at the same time
+    }
+  }
+
+  /**
+   * Stores the statistics of a stage, replacing the statistics of any previous run.
+   */
+  public void write(String pipeline, String stage, StageStatistics statistics) {
+    Statistics value = new Statistics(statistics.getInputRecordsCount(), statistics.getOutputRecordsCount(),
+                                      statistics.getErrorRecordsCount());
+    table.write(getKey(pipeline, stage), GSON.toJson(value));
+  }
+
+  /**
+   * @return the statistics of a stage from the latest run, or null if there are none
+   */
+  @Nullable
+  public StageStatistics read(String pipeline, String stage) {
+    byte[] value = table.read(getKey(pipeline, stage));
+    return value == null ? null : GSON.fromJson(Bytes.toString(value), Statistics.class);
+  }
+
+  /**
+   * Stores the counts of the most frequent keys of each input of a stage, replacing the counts of any previous run.
+   *
+   * @param keyCounts the counts of the most frequent keys of each input, keyed by input stage and key hash
+   */
+  public void writeKeyCounts(String pipeline, String stage, Map<String, Map<Integer, Long>> keyCounts) {
+    table.write(getKey(pipeline, stage) + Constants.ID_SEPARATOR + KEY_COUNTS_SUFFIX,
+                GSON.toJson(keyCounts, KEY_COUNTS_TYPE));
+  }
+
+  /**
+   * @return the counts of the most frequent keys of each input of a stage from the latest run, keyed by input stage
+   *   and key hash, or null if there are none
+   */
+  @Nullable
+  public Map<String, Map<Integer, Long>> readKeyCounts(String pipeline, String stage) {
+    byte[] value = table.read(getKey(pipeline, stage) + Constants.ID_SEPARATOR + KEY_COUNTS_SUFFIX);
+    return value == null ? null : GSON.<Map<String, Map<Integer, Long>>>fromJson(Bytes.toString(value),
+                                                                                  KEY_COUNTS_TYPE);
+  }
+
+  private static String getKey(String pipeline, String stage) {
+    return pipeline + Constants.ID_SEPARATOR + stage;
+  }
+
+  /**
+   * Statistics of a single stage, in the form they are stored.
+   */
+  private static class Statistics implements StageStatistics {
+    private final long inputRecords;
+    private final long outputRecords;
+    private final long errorRecords;
+
+    private Statistics(long inputRecords, long outputRecords, long errorRecords) {
+      this.inputRecords = inputRecords;
+      this.outputRecords = outputRecords;
+      this.errorRecords = errorRecords;
+    }
+
+    @Override
+    public long getInputRecordsCount() {
+      return inputRecords;
+    }
+
+    @Override
+    public long getOutputRecordsCount() {
+      return outputRecords;
+    }
+
+    @Override
+    public long getErrorRecordsCount() {
+      return errorRecords;
+    }
+  }
+}
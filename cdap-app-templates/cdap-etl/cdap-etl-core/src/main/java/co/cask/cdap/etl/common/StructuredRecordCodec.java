@@ -0,0 +1,329 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.data.schema.SchemaHash;
+import co.cask.cdap.common.io.BinaryDecoder;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.format.io.StructuredRecordDatumReader;
+import co.cask.cdap.format.io.StructuredRecordDatumWriter;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+/**
+ * Encodes and decodes {@link StructuredRecord} in a compact binary format. Each record is written as:
+ *
+ * <pre>
+ * [schema type (1 byte)][schema hash (16 bytes)][schema of the given type][field values]
+ * </pre>
+ *
+ * Schemas known by both the writer and the reader, such as the ones from the pipeline specification, are only
+ * written as a hash. Record schemas that only have fields of a known schema, such as the keys grouped or joined on,
+ * are written as the hash of the known schema, the record name and the field positions in the known schema.
+ * Other schemas, such as the ones of error records, are written inline. Schemas not known are only parsed once
+ * per codec. Field values are written positionally in the binary format of {@link StructuredRecordDatumWriter}.
+ *
+ * The thread safety of this class is the same as the schema cache it is created with.
+ */
+public final class StructuredRecordCodec {
+
+  private static final byte SCHEMA_REFERENCE = 0;
+  private static final byte SCHEMA_INLINE = 1;
+  private static final byte SCHEMA_PROJECTION = 2;
+  // Size of the MD5 schema hash
+  private static final int SCHEMA_HASH_SIZE = 16;
+  // Marks that a schema is not a projection of any known schema
+  private static final Projection NO_PROJECTION = new Projection(null, new int[0]);
+
+  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+  private static final StructuredRecordDatumReader DATUM_READER = new StructuredRecordDatumReader();
+
+  private final Map<SchemaHash, Schema> knownSchemas;
+  private final Map<SchemaHash, Schema> schemaCache;
+  private final ConcurrentMap<SchemaHash, Projection> projections;
+
+  /**
+   * Creates a codec that is not thread safe with the given known schemas.
+   */
+  public StructuredRecordCodec(Iterable<Schema> knownSchemas) {
+    this(knownSchemas, new HashMap<>());
+  }
+
+  /**
+   * Creates a codec with the given known schemas.
+   *
+   * @param knownSchemas schemas that are written as a hash only
+   * @param schemaCache cache for the schemas that are decoded from the serialized records
+   */
+  public StructuredRecordCodec(Iterable<Schema> knownSchemas, Map<SchemaHash, Schema> schemaCache) {
+    this.knownSchemas = new HashMap<>();
+    for (Schema schema : knownSchemas) {
+      if (schema != null) {
+        this.knownSchemas.put(schema.getSchemaHash(), schema);
+      }
+    }
+    this.schemaCache = schemaCache;
+    this.projections = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Writes the given record to the given {@link DataOutput}.
+   */
+  public void write(StructuredRecord record, DataOutput out) throws IOException {
+    Schema schema = record.getSchema();
+    SchemaHash hash = schema.getSchemaHash();
+    Projection projection = null;
+
+    if (knownSchemas.containsKey(hash)) {
+      out.writeByte(SCHEMA_REFERENCE);
+      out.write(hash.toByteArray());
+    } else if ((projection = getProjection(schema, hash)) != null) {
+      out.writeByte(SCHEMA_PROJECTION);
+      out.write(hash.toByteArray());
+      out.write(projection.parent.getSchemaHash().toByteArray());
+      Text.writeString(out, schema.getRecordName());
+      WritableUtils.writeVInt(out, projection.indices.length);
+      for (int index : projection.indices) {
+        WritableUtils.writeVInt(out, index);
+      }
+    } else {
+      out.writeByte(SCHEMA_INLINE);
+      out.write(hash.toByteArray());
+      Text.writeString(out, schema.toString());
+    }
+    DATUM_WRITER.encode(record, new BinaryEncoder(asOutputStream(out)));
+  }
+
+  /**
+   * Reads a record written by {@link #write(StructuredRecord, DataOutput)} from the given {@link DataInput}.
+   */
+  public StructuredRecord read(DataInput in) throws IOException {
+    byte schemaType = in.readByte();
+    SchemaHash hash = readSchemaHash(in);
+
+    Schema schema = knownSchemas.get(hash);
+    if (schema == null) {
+      schema = schemaCache.get(hash);
+    }
+
+    if (schemaType == SCHEMA_INLINE) {
+      if (schema == null) {
+        schema = Schema.parseJson(Text.readString(in));
+        schemaCache.put(hash, schema);
+      } else {
+        WritableUtils.skipFully(in, WritableUtils.readVInt(in));
+      }
+    } else if (schemaType == SCHEMA_PROJECTION) {
+      SchemaHash parentHash = readSchemaHash(in);
+      if (schema == null) {
+        Schema parent = knownSchemas.get(parentHash);
+        if (parent == null) {
+          throw new IOException("Schema with hash " + parentHash + " is not known");
+        }
+        String recordName = Text.readString(in);
+        int[] indices = new int[WritableUtils.readVInt(in)];
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = WritableUtils.readVInt(in);
+        }
+        schema = project(recordName, parent, indices);
+        schemaCache.put(hash, schema);
+      } else {
+        WritableUtils.skipFully(in, WritableUtils.readVInt(in));
+        int fields = WritableUtils.readVInt(in);
+        for (int i = 0; i < fields; i++) {
+          WritableUtils.readVInt(in);
+        }
+      }
+    } else if (schema == null) {
+      throw new IOException("Schema with hash " + hash + " is not known");
+    }
+    return DATUM_READER.read(new BinaryDecoder(asInputStream(in)), schema);
+  }
+
+  /**
+   * Compares two serialized records by the schema hash, followed by the field values, without deserializing them.
+   * Records are equal if and only if they have the same schema and the same serialized field values.
+   */
+  public static int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+    int cmp = WritableComparator.compareBytes(b1, s1 + 1, SCHEMA_HASH_SIZE, b2, s2 + 1, SCHEMA_HASH_SIZE);
+    if (cmp != 0) {
+      return cmp;
+    }
+    int offset1 = getFieldsOffset(b1, s1);
+    int offset2 = getFieldsOffset(b2, s2);
+    return WritableComparator.compareBytes(b1, offset1, l1 - (offset1 - s1), b2, offset2, l2 - (offset2 - s2));
+  }
+
+  /**
+   * Returns the offset of the serialized field values, skipping the schema written after the schema hash.
+   */
+  private static int getFieldsOffset(byte[] bytes, int start) {
+    int offset = start + 1 + SCHEMA_HASH_SIZE;
+    try {
+      switch (bytes[start]) {
+        case SCHEMA_INLINE:
+          return skipVIntPrefixed(bytes, offset);
+        case SCHEMA_PROJECTION:
+          offset = skipVIntPrefixed(bytes, offset + SCHEMA_HASH_SIZE);
+          int fields = WritableComparator.readVInt(bytes, offset);
+          offset += WritableUtils.decodeVIntSize(bytes[offset]);
+          for (int i = 0; i < fields; i++) {
+            offset += WritableUtils.decodeVIntSize(bytes[offset]);
+          }
+          return offset;
+        default:
+          return offset;
+      }
+    } catch (IOException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /**
+   * Returns the offset after the vint length prefixed bytes starting at the given offset.
+   */
+  private static int skipVIntPrefixed(byte[] bytes, int offset) throws IOException {
+    return offset + WritableUtils.decodeVIntSize(bytes[offset]) + WritableComparator.readVInt(bytes, offset);
+  }
+
+  private static SchemaHash readSchemaHash(DataInput in) throws IOException {
+    byte[] hashBytes = new byte[SCHEMA_HASH_SIZE];
+    in.readFully(hashBytes);
+    return new SchemaHash(ByteBuffer.wrap(hashBytes));
+  }
+
+  /**
+   * Returns the {@link Projection} of the given schema from a known schema, or {@code null} if there is none.
+   */
+  @Nullable
+  private Projection getProjection(Schema schema, SchemaHash hash) {
+    if (knownSchemas.isEmpty() || schema.getType() != Schema.Type.RECORD) {
+      return null;
+    }
+    Projection projection = projections.get(hash);
+    if (projection == null) {
+      projection = createProjection(schema);
+      projections.put(hash, projection);
+    }
+    return projection == NO_PROJECTION ? null : projection;
+  }
+
+  private Projection createProjection(Schema schema) {
+    List<Schema.Field> fields = schema.getFields();
+    if (fields.isEmpty()) {
+      return NO_PROJECTION;
+    }
+    knownLoop:
+    for (Schema known : knownSchemas.values()) {
+      if (known.getType() != Schema.Type.RECORD) {
+        continue;
+      }
+      int[] indices = new int[fields.size()];
+      for (int i = 0; i < indices.length; i++) {
+        Schema.Field field = fields.get(i);
+        Schema.Field knownField = known.getField(field.getName());
+        if (knownField == null || !knownField.getSchema().equals(field.getSchema())) {
+          continue knownLoop;
+        }
+        indices[i] = known.getFields().indexOf(knownField);
+      }
+      // The reader must get back the same schema from the projection
+      if (project(schema.getRecordName(), known, indices).equals(schema)) {
+        return new Projection(known, indices);
+      }
+    }
+    return NO_PROJECTION;
+  }
+
+  private static Schema project(String recordName, Schema parent, int[] indices) {
+    List<Schema.Field> fields = new ArrayList<>(indices.length);
+    for (int index : indices) {
+      fields.add(parent.getFields().get(index));
+    }
+    return Schema.recordOf(recordName, fields);
+  }
+
+  private static OutputStream asOutputStream(final DataOutput out) {
+    if (out instanceof OutputStream) {
+      return (OutputStream) out;
+    }
+    return new OutputStream() {
+      @Override
+      public void write(int b) throws IOException {
+        out.write(b);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+      }
+    };
+  }
+
+  private static InputStream asInputStream(final DataInput in) {
+    if (in instanceof InputStream) {
+      return (InputStream) in;
+    }
+    return new InputStream() {
+      @Override
+      public int read() throws IOException {
+        return in.readUnsignedByte();
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        in.readFully(b, off, len);
+        return len;
+      }
+
+      @Override
+      public long skip(long n) throws IOException {
+        return in.skipBytes((int) Math.min(n, Integer.MAX_VALUE));
+      }
+    };
+  }
+
+  /**
+   * The fields of a known schema that a record schema consists of.
+   */
+  private static final class Projection {
+    private final Schema parent;
+    private final int[] indices;
+
+    private Projection(Schema parent, int[] indices) {
+      this.parent = parent;
+      this.indices = indices;
+    }
+  }
+}
@@ -17,11 +17,15 @@
 package co.cask.cdap.etl.common;
 
 import co.cask.cdap.api.preview.DataTracer;
+import co.cask.cdap.etl.api.BulkTransformation;
 import co.cask.cdap.etl.api.Destroyable;
 import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
 import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.Transformation;
 
+import java.util.List;
+import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
@@ -75,10 +79,96 @@ public class TrackedTransform<IN, OUT> implements Transformation<IN, OUT>, Destr
       new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector));
   }
 
+  /**
+   * Returns whether the delegate is a {@link BulkTransformation} that can transform many inputs in a single call.
+   */
+  public boolean isBulk() {
+    return transform instanceof BulkTransformation;
+  }
+
+  /**
+   * Transforms a chunk of inputs, counting input and output records once for the whole chunk instead of once per
+   * record. If the delegate is not a {@link BulkTransformation}, it is called once for each input.
+   */
+  public void transform(List<IN> inputs, Emitter<OUT> emitter) throws Exception {
+    if (inputs.isEmpty()) {
+      return;
+    }
+    if (metricInName != null) {
+      metrics.count(metricInName, inputs.size());
+      if (metricInName.equals(Constants.Metrics.RECORDS_IN)) {
+        collector.incrementInputRecordCount(inputs.size());
+      }
+    }
+    if (metricOutName == null) {
+      delegate(inputs, emitter);
+    } else if (dataTracer.isEnabled()) {
+      // every record is traced, so there is nothing to gain from counting outputs once per chunk
+      delegate(inputs, new TrackedEmitter<>(emitter, metrics, metricOutName, dataTracer, collector));
+    } else {
+      CountingEmitter<OUT> countingEmitter = new CountingEmitter<>(emitter, metrics, collector);
+      try {
+        delegate(inputs, countingEmitter);
+      } finally {
+        metrics.count(metricOutName, countingEmitter.count);
+        if (metricOutName.equals(Constants.Metrics.RECORDS_OUT)) {
+          collector.incrementOutputRecordCount(countingEmitter.count);
+        }
+      }
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void delegate(List<IN> inputs, Emitter<OUT> emitter) throws Exception {
+    if (transform instanceof BulkTransformation) {
+      ((BulkTransformation<IN, OUT>) transform).transform(inputs, emitter);
+      return;
+    }
+    for (IN input : inputs) {
+      transform.transform(input, emitter);
+    }
+  }
+
   @Override
   public void destroy() {
     if (transform instanceof Destroyable) {
       ((Destroyable) transform).destroy();
     }
   }
+
+  /**
+   * Emitter that counts the records it emits, so that they can be added to the metrics once per chunk.
+   * Errors and alerts are tracked as they are emitted.
+   */
+  private static class CountingEmitter<T> implements Emitter<T> {
+    private final Emitter<T> delegate;
+    private final StageMetrics stageMetrics;
+    private final StageStatisticsCollector collector;
+    private int count;
+
+    private CountingEmitter(Emitter<T> delegate, StageMetrics stageMetrics, StageStatisticsCollector collector) {
+      this.delegate = delegate;
+      this.stageMetrics = stageMetrics;
+      this.collector = collector;
+    }
+
+    @Override
+    public void emit(T value) {
+      count++;
+      delegate.emit(value);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<T> invalidEntry) {
+      stageMetrics.count(Constants.Metrics.RECORDS_ERROR, 1);
+      collector.incrementErrorRecordCount();
+      delegate.emitError(invalidEntry);
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      stageMetrics.count(Constants.Metrics.RECORDS_ALERT, 1);
+      delegate.emitAlert(payload);
+    }
+  }
 }
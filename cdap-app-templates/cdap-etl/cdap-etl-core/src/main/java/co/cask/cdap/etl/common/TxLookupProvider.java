@@ -80,6 +80,19 @@ public class TxLookupProvider extends AbstractLookupProvider {
     };
   }
 
+  @Override
+  public <T> Map<String, T> loadAll(final String table, final Map<String, String> arguments, final int limit) {
+    final AtomicReference<Map<String, T>> result = new AtomicReference<>();
+    Transactionals.execute(tx, new TxRunnable() {
+      @Override
+      public void run(DatasetContext context) throws Exception {
+        Map<String, T> entries = loadAll(table, context.getDataset(table, arguments), limit);
+        result.set(entries);
+      }
+    });
+    return result.get();
+  }
+
   @Nullable
   private <T, R> R executeLookup(final String table, final Map<String, String> arguments,
                                  final Function<Lookup<T>, R> func) {
@@ -21,6 +21,8 @@ import co.cask.cdap.api.macro.MacroEvaluator;
 import co.cask.cdap.api.metrics.Metrics;
 import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.api.plugin.PluginProperties;
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.ErrorTransform;
 import co.cask.cdap.etl.api.SplitterTransform;
 import co.cask.cdap.etl.api.StageMetrics;
@@ -92,8 +94,12 @@ public class PipelinePluginContext implements PluginContext {
       return new WrappedBatchSink<>((BatchSink) plugin, caller, operationTimer);
     } else if (plugin instanceof ErrorTransform) {
       return new WrappedErrorTransform<>((ErrorTransform) plugin, caller, operationTimer);
+    } else if (plugin instanceof Transform && plugin instanceof BulkTransformation) {
+      return new WrappedBulkTransform<>((Transform) plugin, caller, operationTimer);
     } else if (plugin instanceof Transform) {
       return new WrappedTransform<>((Transform) plugin, caller, operationTimer);
+    } else if (plugin instanceof BatchAggregator && plugin instanceof CombinableAggregator) {
+      return new WrappedCombinableBatchAggregator<>((BatchAggregator) plugin, caller, operationTimer);
     } else if (plugin instanceof BatchAggregator) {
       return new WrappedBatchAggregator<>((BatchAggregator) plugin, caller, operationTimer);
     } else if (plugin instanceof BatchJoiner) {
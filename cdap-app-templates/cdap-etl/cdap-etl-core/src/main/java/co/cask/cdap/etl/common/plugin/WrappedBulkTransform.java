@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common.plugin;
+
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.Transform;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Wrapper around a {@link Transform} that is also a {@link BulkTransformation}, so that the program
+ * can still tell that the transform can process many inputs at once after it has been wrapped.
+ *
+ * @param <IN> type of input
+ * @param <OUT> type of output
+ */
+public class WrappedBulkTransform<IN, OUT> extends WrappedTransform<IN, OUT> implements BulkTransformation<IN, OUT> {
+  private final BulkTransformation<IN, OUT> transform;
+  private final Caller caller;
+  private final OperationTimer operationTimer;
+
+  @SuppressWarnings("unchecked")
+  public WrappedBulkTransform(Transform<IN, OUT> transform, Caller caller, OperationTimer operationTimer) {
+    super(transform, caller, operationTimer);
+    this.transform = (BulkTransformation<IN, OUT>) transform;
+    this.caller = caller;
+    this.operationTimer = operationTimer;
+  }
+
+  @Override
+  public void transform(final List<IN> inputs, final Emitter<OUT> emitter) throws Exception {
+    operationTimer.start();
+    try {
+      caller.call(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          transform.transform(inputs, new UntimedEmitter<>(emitter, operationTimer));
+          return null;
+        }
+      });
+    } finally {
+      operationTimer.reset();
+    }
+  }
+}
@@ -16,6 +16,7 @@
 
 package co.cask.cdap.etl.planner;
 
+import co.cask.cdap.api.data.schema.Schema;
 import co.cask.cdap.etl.api.condition.Condition;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.PipelinePhase;
@@ -184,6 +185,8 @@ public class PipelinePlanner {
     for (Dag subdag : splittedDag) {
       subdags.put(getPhaseName(subdag), subdag);
     }
+    Map<String, Map<String, Schema>> connectorSchemas =
+      getConnectorSchemas(splittedDag, connectorNodes, controlConnectors, specs);
 
     // build connections between phases and convert dags to PipelinePhase.
     Set<Connection> phaseConnections = new HashSet<>();
@@ -210,7 +213,8 @@ public class PipelinePlanner {
           Set<String> nodes = Sets.difference(updatedDag.getNodes(), controlNodes);
           updatedDag = updatedDag.createSubDag(nodes);
         }
-        phases.put(dag1Name, dagToPipeline(updatedDag, connectorNodes, specs, controlConnectors));
+        phases.put(dag1Name, dagToPipeline(updatedDag, connectorNodes, specs, controlConnectors,
+                                           connectorSchemas));
       }
 
       for (String controlSource : Sets.intersection(controlNodes, dag1.getSources())) {
@@ -307,6 +311,45 @@ public class PipelinePlanner {
     return conditionConnectors;
   }
 
+  /**
+   * Returns the schemas of the records written to each connector, keyed by the name of the stage writing them.
+   * They are set as the input schemas of the connector stages, so that both the phase writing to a connector
+   * and the phases reading from it know the schemas without storing them with every record.
+   *
+   * @param dags the dags split at the connectors and the conditions
+   * @param connectors connector nodes across all dags
+   * @param conditionConnectors the connector of each condition
+   * @param specs specifications for every stage
+   * @return the schemas of each connector
+   */
+  private Map<String, Map<String, Schema>> getConnectorSchemas(Set<Dag> dags, Map<String, String> connectors,
+                                                               Map<String, String> conditionConnectors,
+                                                               Map<String, StageSpec> specs) {
+    Map<String, Map<String, Schema>> connectorSchemas = new HashMap<>();
+    for (Dag dag : dags) {
+      for (String sink : dag.getSinks()) {
+        // a condition is replaced by its connector after the split
+        String connectorName = connectors.containsKey(sink) ? sink : conditionConnectors.get(sink);
+        if (connectorName == null) {
+          continue;
+        }
+        String originalName = connectors.containsKey(sink) ? connectors.get(sink) : sink;
+        for (String input : dag.getNodeInputs(sink)) {
+          StageSpec inputSpec = specs.get(input);
+          if (inputSpec == null) {
+            continue;
+          }
+          StageSpec.Port port = inputSpec.getOutputPorts().get(originalName);
+          Schema schema = port == null ? inputSpec.getOutputSchema() : port.getSchema();
+          if (schema != null) {
+            connectorSchemas.computeIfAbsent(connectorName, k -> new HashMap<>()).put(input, schema);
+          }
+        }
+      }
+    }
+    return connectorSchemas;
+  }
+
   /**
    * Update the current dag by replacing conditions in the dag with the corresponding condition connectors
    */
@@ -342,10 +385,13 @@ public class PipelinePlanner {
    * @param dag the dag to convert
    * @param connectors connector nodes across all dags
    * @param specs specifications for every stage
+   * @param conditionConnectors the connector of each condition
+   * @param connectorSchemas the schemas of the records written to each connector
    * @return the converted dag
    */
   private PipelinePhase dagToPipeline(Dag dag, Map<String, String> connectors, Map<String, StageSpec> specs,
-                                      Map<String, String> conditionConnectors) {
+                                      Map<String, String> conditionConnectors,
+                                      Map<String, Map<String, Schema>> connectorSchemas) {
     PipelinePhase.Builder phaseBuilder = PipelinePhase.builder(supportedPluginTypes);
 
     for (String stageName : dag.getTopologicalOrder()) {
@@ -364,7 +410,10 @@ public class PipelinePlanner {
                          ImmutableMap.of(Constants.Connector.ORIGINAL_NAME, originalName != null
                                            ? originalName : stageName,
                                          Constants.Connector.TYPE, connectorType), null);
-        phaseBuilder.addStage(StageSpec.builder(stageName, connectorSpec).build());
+        phaseBuilder.addStage(StageSpec.builder(stageName, connectorSpec)
+                                .addInputSchemas(connectorSchemas.getOrDefault(stageName,
+                                                                               Collections.emptyMap()))
+                                .build());
         continue;
       }
 
@@ -336,12 +336,25 @@ public abstract class PipelineSpecGenerator<C extends ETLConfig,
     } catch (Exception e) {
       throw new RuntimeException(String.format("Error configuring stage '%s': %s", pluginId, e.getMessage()), e);
     }
+    pluginConfigured(pluginId, type, plugin);
     return new PluginSpec(etlPlugin.getType(),
                           etlPlugin.getName(),
                           etlPlugin.getProperties(),
                           pluginSelector.getSelectedArtifact());
   }
 
+  /**
+   * Called with each plugin after it has been configured, so that subclasses can inspect the plugins used by the
+   * pipeline. Does nothing by default.
+   *
+   * @param pluginId the unique plugin id
+   * @param pluginType the type of the plugin
+   * @param plugin the plugin instance
+   */
+  protected void pluginConfigured(String pluginId, String pluginType, Object plugin) {
+    // no-op
+  }
+
   /**
    * Validate that this is a valid pipeline. A valid pipeline has the following properties:
    *
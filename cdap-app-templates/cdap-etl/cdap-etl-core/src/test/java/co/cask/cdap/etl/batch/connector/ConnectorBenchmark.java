@@ -0,0 +1,227 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.RecordType;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import com.google.common.io.Files;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the throughput of passing records between pipeline phases through a connector. Each operation
+ * writes a batch of records to a local file and reads them back, either in the connector binary format in a block
+ * compressed sequence file, or in the json text format used by connectors before.
+ *
+ * To run it, build the test classes and execute
+ * {@code org.openjdk.jmh.Main ConnectorBenchmark} with the test classpath of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class ConnectorBenchmark {
+
+  private static final int BATCH_SIZE = 10000;
+  private static final Schema SCHEMA = Schema.recordOf(
+    "purchase",
+    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("item", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)),
+    Schema.Field.of("ts", Schema.of(Schema.Type.LONG)));
+  private static final Schema JSON_RECORD_WITH_SCHEMA = Schema.recordOf(
+    "record",
+    Schema.Field.of("stageName", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("type", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("schema", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("record", Schema.of(Schema.Type.STRING)));
+
+  private final Configuration hConf = new Configuration();
+  private List<RecordInfo<StructuredRecord>> records;
+  private File dir;
+  private FileSystem fs;
+
+  @Setup
+  public void setup() throws IOException {
+    records = new ArrayList<>();
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      StructuredRecord record = StructuredRecord.builder(SCHEMA)
+        .set("user", "user" + (i % 100))
+        .set("item", "item" + i)
+        .set("count", i % 10)
+        .set("price", i / 100d)
+        .set("ts", 1500000000000L + i)
+        .build();
+      records.add(RecordInfo.builder(record, "purchases", RecordType.OUTPUT).build());
+    }
+    dir = Files.createTempDir();
+    fs = FileSystem.getLocal(hConf);
+  }
+
+  @TearDown
+  public void teardown() throws IOException {
+    fs.delete(new Path(dir.getAbsolutePath()), true);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void binary(Blackhole blackhole) throws Exception {
+    List<Schema> knownSchemas = Collections.singletonList(SCHEMA);
+    MultiConnectorSink sink = new MultiConnectorSink(null, null, knownSchemas);
+    Path path = new Path(dir.getAbsolutePath(), "binary");
+
+    try (SequenceFile.Writer writer = SequenceFile.createWriter(
+      hConf, SequenceFile.Writer.file(path), SequenceFile.Writer.keyClass(NullWritable.class),
+      SequenceFile.Writer.valueClass(BytesWritable.class),
+      SequenceFile.Writer.compression(SequenceFile.CompressionType.BLOCK, new DefaultCodec()))) {
+      Emitter<KeyValue<NullWritable, BytesWritable>> emitter = new WriterEmitter(writer);
+      for (RecordInfo<StructuredRecord> record : records) {
+        sink.transform(record, emitter);
+      }
+    }
+
+    MultiConnectorSource source = new MultiConnectorSource(null, knownSchemas);
+    Emitter<RecordInfo<StructuredRecord>> emitter = new BenchmarkEmitter<>(blackhole);
+    try (SequenceFile.Reader reader = new SequenceFile.Reader(hConf, SequenceFile.Reader.file(path))) {
+      BytesWritable value = new BytesWritable();
+      while (reader.next(NullWritable.get(), value)) {
+        source.transform(new KeyValue<>(NullWritable.get(), value), emitter);
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void json(Blackhole blackhole) throws Exception {
+    File file = new File(dir, "json");
+
+    try (BufferedWriter writer = Files.newWriter(file, StandardCharsets.UTF_8)) {
+      for (RecordInfo<StructuredRecord> record : records) {
+        StructuredRecord recordWithSchema = StructuredRecord.builder(JSON_RECORD_WITH_SCHEMA)
+          .set("stageName", record.getFromStage())
+          .set("type", record.getType().name())
+          .set("schema", record.getValue().getSchema().toString())
+          .set("record", StructuredRecordStringConverter.toJsonString(record.getValue()))
+          .build();
+        writer.write(StructuredRecordStringConverter.toJsonString(recordWithSchema));
+        writer.newLine();
+      }
+    }
+
+    try (BufferedReader reader = Files.newReader(file, StandardCharsets.UTF_8)) {
+      String line = reader.readLine();
+      while (line != null) {
+        StructuredRecord recordWithSchema = StructuredRecordStringConverter.fromJsonString(line,
+                                                                                          JSON_RECORD_WITH_SCHEMA);
+        Schema schema = Schema.parseJson((String) recordWithSchema.get("schema"));
+        StructuredRecord record = StructuredRecordStringConverter.fromJsonString(recordWithSchema.get("record"),
+                                                                                 schema);
+        blackhole.consume(RecordInfo.builder(record, recordWithSchema.get("stageName"),
+                                             RecordType.valueOf(recordWithSchema.get("type"))).build());
+        line = reader.readLine();
+      }
+    }
+  }
+
+  /**
+   * An {@link Emitter} that sends emitted values to a {@link Blackhole}.
+   */
+  private static class BenchmarkEmitter<T> implements Emitter<T> {
+
+    private final Blackhole blackhole;
+
+    BenchmarkEmitter(Blackhole blackhole) {
+      this.blackhole = blackhole;
+    }
+
+    @Override
+    public void emit(T value) {
+      blackhole.consume(value);
+    }
+
+    @Override
+    public void emitError(InvalidEntry<T> invalidEntry) {
+      blackhole.consume(invalidEntry);
+    }
+
+    @Override
+    public void emitAlert(Map<String, String> payload) {
+      blackhole.consume(payload);
+    }
+  }
+
+  /**
+   * An {@link Emitter} that appends emitted values to a {@link SequenceFile.Writer}.
+   */
+  private static class WriterEmitter extends BenchmarkEmitter<KeyValue<NullWritable, BytesWritable>> {
+
+    private final SequenceFile.Writer writer;
+
+    WriterEmitter(SequenceFile.Writer writer) {
+      super(null);
+      this.writer = writer;
+    }
+
+    @Override
+    public void emit(KeyValue<NullWritable, BytesWritable> value) {
+      try {
+        writer.append(value.getKey(), value.getValue());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+  }
+}
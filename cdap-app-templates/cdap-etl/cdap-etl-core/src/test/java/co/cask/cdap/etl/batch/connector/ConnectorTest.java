@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.batch.connector;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.dataset.lib.KeyValue;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.RecordType;
+import com.google.common.collect.ImmutableList;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests for reading and writing records through connectors.
+ */
+public class ConnectorTest {
+
+  private static final Schema SCHEMA = Schema.recordOf(
+    "purchase",
+    Schema.Field.of("user", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("item", Schema.nullableOf(Schema.of(Schema.Type.STRING))),
+    Schema.Field.of("count", Schema.of(Schema.Type.INT)),
+    Schema.Field.of("price", Schema.of(Schema.Type.DOUBLE)));
+  private static final Schema ERROR_SCHEMA = Schema.recordOf(
+    "error",
+    Schema.Field.of("errMsg", Schema.of(Schema.Type.STRING)),
+    Schema.Field.of("errCode", Schema.of(Schema.Type.INT)));
+
+  @Test
+  public void testMultiConnector() throws Exception {
+    List<RecordInfo<StructuredRecord>> records = ImmutableList.of(
+      RecordInfo.builder(StructuredRecord.builder(SCHEMA)
+                           .set("user", "samuel").set("item", "éclair").set("count", 3).set("price", 1.5d)
+                           .build(), "purchases", RecordType.OUTPUT).build(),
+      RecordInfo.builder(StructuredRecord.builder(SCHEMA)
+                           .set("user", "bob").set("count", 1).set("price", 10d)
+                           .build(), "purchases", RecordType.OUTPUT).build(),
+      // error records have a schema that is not known from the pipeline specification
+      RecordInfo.builder(StructuredRecord.builder(ERROR_SCHEMA)
+                           .set("errMsg", "bad record").set("errCode", 5)
+                           .build(), "parser", RecordType.ERROR).build());
+
+    List<Schema> knownSchemas = Collections.singletonList(SCHEMA);
+    MultiConnectorSink sink = new MultiConnectorSink(null, null, knownSchemas);
+    DefaultEmitter<KeyValue<NullWritable, BytesWritable>> sinkEmitter = new DefaultEmitter<>();
+    for (RecordInfo<StructuredRecord> record : records) {
+      sink.transform(record, sinkEmitter);
+    }
+
+    MultiConnectorSource source = new MultiConnectorSource(null, knownSchemas);
+    DefaultEmitter<RecordInfo<StructuredRecord>> sourceEmitter = new DefaultEmitter<>();
+    for (KeyValue<NullWritable, BytesWritable> entry : sinkEmitter.getEntries()) {
+      source.transform(entry, sourceEmitter);
+    }
+
+    List<RecordInfo<StructuredRecord>> actual = new ArrayList<>(sourceEmitter.getEntries());
+    Assert.assertEquals(records.size(), actual.size());
+    for (int i = 0; i < records.size(); i++) {
+      Assert.assertEquals(records.get(i).getFromStage(), actual.get(i).getFromStage());
+      Assert.assertEquals(records.get(i).getType(), actual.get(i).getType());
+      Assert.assertEquals(records.get(i).getValue(), actual.get(i).getValue());
+    }
+  }
+
+  @Test
+  public void testSingleConnector() throws Exception {
+    StructuredRecord record = StructuredRecord.builder(SCHEMA)
+      .set("user", "samuel").set("item", "donut").set("count", 2).set("price", 0.75d)
+      .build();
+
+    // a record with a known schema only carries the schema hash
+    KeyValue<NullWritable, BytesWritable> known = writeSingle(record, Collections.singletonList(SCHEMA));
+    KeyValue<NullWritable, BytesWritable> inline = writeSingle(record, Collections.<Schema>emptyList());
+    Assert.assertTrue(known.getValue().getLength() + SCHEMA.toString().length() <= inline.getValue().getLength());
+
+    // a source that knows the schema can read records with the schema inline and vice versa
+    Assert.assertEquals(record, readSingle(inline, Collections.singletonList(SCHEMA)));
+    Assert.assertEquals(record, readSingle(inline, Collections.<Schema>emptyList()));
+    Assert.assertEquals(record, readSingle(known, Collections.singletonList(SCHEMA)));
+  }
+
+  private KeyValue<NullWritable, BytesWritable> writeSingle(StructuredRecord record,
+                                                             List<Schema> knownSchemas) throws Exception {
+    DefaultEmitter<KeyValue<NullWritable, BytesWritable>> emitter = new DefaultEmitter<>();
+    new SingleConnectorSink(null, null, knownSchemas).transform(record, emitter);
+    return emitter.getEntries().iterator().next();
+  }
+
+  private StructuredRecord readSingle(KeyValue<NullWritable, BytesWritable> entry,
+                                      List<Schema> knownSchemas) throws Exception {
+    DefaultEmitter<StructuredRecord> emitter = new DefaultEmitter<>();
+    new SingleConnectorSource(null, knownSchemas).transform(entry, emitter);
+    return emitter.getEntries().iterator().next();
+  }
+}
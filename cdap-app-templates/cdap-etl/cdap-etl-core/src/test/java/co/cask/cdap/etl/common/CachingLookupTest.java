@@ -0,0 +1,138 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.etl.api.CacheConfig;
+import co.cask.cdap.etl.api.Lookup;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests for {@link CachingLookup}.
+ */
+public class CachingLookupTest {
+
+  @Test
+  public void testSingleLookups() {
+    MockMetrics mockMetrics = new MockMetrics();
+    CountingLookup table = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    CachingLookup<String> lookup =
+      new CachingLookup<>(table, new CacheConfig(0, 100), new DefaultStageMetrics(mockMetrics, "enrich"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertNull(lookup.lookup("k3"));
+    // missing keys are cached too
+    Assert.assertNull(lookup.lookup("k3"));
+
+    Assert.assertEquals(2, table.singleLookups);
+    Assert.assertEquals(2, mockMetrics.getCount("enrich.lookup.cache.hits"));
+    Assert.assertEquals(2, mockMetrics.getCount("enrich.lookup.cache.misses"));
+  }
+
+  @Test
+  public void testMissesAreBatched() {
+    MockMetrics mockMetrics = new MockMetrics();
+    CountingLookup table = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"));
+    CachingLookup<String> lookup =
+      new CachingLookup<>(table, new CacheConfig(0, 100), new DefaultStageMetrics(mockMetrics, "enrich"));
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2", "k3", "v3"),
+                        lookup.lookup("k1", "k2", "k3", "k4"));
+    Assert.assertEquals(ImmutableMap.of("k2", "v2"), lookup.lookup("k2", "k4"));
+
+    // only the keys that were not cached should be fetched, in a single call
+    Assert.assertEquals(1, table.multiLookups.size());
+    Assert.assertEquals(ImmutableSet.of("k2", "k3", "k4"), table.multiLookups.get(0));
+    Assert.assertEquals(3, mockMetrics.getCount("enrich.lookup.cache.hits"));
+    Assert.assertEquals(4, mockMetrics.getCount("enrich.lookup.cache.misses"));
+  }
+
+  @Test
+  public void testPreload() {
+    MockMetrics mockMetrics = new MockMetrics();
+    CountingLookup table = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    CachingLookup<String> lookup =
+      new CachingLookup<>(table, new CacheConfig(0, 100, true), new DefaultStageMetrics(mockMetrics, "enrich"));
+    lookup.preload(table.values);
+
+    Assert.assertEquals("v1", lookup.lookup("k1"));
+    Assert.assertEquals(ImmutableMap.of("k1", "v1", "k2", "v2"), lookup.lookup("k1", "k2"));
+    Assert.assertEquals(0, table.singleLookups);
+    Assert.assertTrue(table.multiLookups.isEmpty());
+    Assert.assertEquals(3, mockMetrics.getCount("enrich.lookup.cache.hits"));
+    Assert.assertEquals(0, mockMetrics.getCount("enrich.lookup.cache.misses"));
+  }
+
+  @Test
+  public void testMaxSize() {
+    MockMetrics mockMetrics = new MockMetrics();
+    CountingLookup table = new CountingLookup(ImmutableMap.of("k1", "v1", "k2", "v2"));
+    CachingLookup<String> lookup =
+      new CachingLookup<>(table, new CacheConfig(0, 1), new DefaultStageMetrics(mockMetrics, "enrich"));
+
+    lookup.lookup("k1");
+    lookup.lookup("k2");
+    lookup.lookup("k1");
+    Assert.assertEquals(3, table.singleLookups);
+    Assert.assertEquals(3, mockMetrics.getCount("enrich.lookup.cache.misses"));
+  }
+
+  private static class CountingLookup implements Lookup<String> {
+    private final Map<String, String> values;
+    private final List<Set<String>> multiLookups;
+    private int singleLookups;
+
+    private CountingLookup(Map<String, String> values) {
+      this.values = values;
+      this.multiLookups = new ArrayList<>();
+    }
+
+    @Override
+    public String lookup(String key) {
+      singleLookups++;
+      return values.get(key);
+    }
+
+    @Override
+    public Map<String, String> lookup(String... keys) {
+      return lookup(ImmutableSet.copyOf(keys));
+    }
+
+    @Override
+    public Map<String, String> lookup(Set<String> keys) {
+      multiLookups.add(ImmutableSet.copyOf(keys));
+      Map<String, String> results = new HashMap<>();
+      for (String key : keys) {
+        if (values.containsKey(key)) {
+          results.put(key, values.get(key));
+        }
+      }
+      return results;
+    }
+  }
+}
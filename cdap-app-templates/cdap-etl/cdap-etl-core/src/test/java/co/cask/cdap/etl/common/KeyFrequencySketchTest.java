@@ -0,0 +1,81 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Map;
+
+/**
+ * Tests for {@link KeyFrequencySketch}.
+ */
+public class KeyFrequencySketchTest {
+
+  @Test
+  public void testExactCounts() {
+    KeyFrequencySketch sketch = new KeyFrequencySketch(4);
+    for (int i = 0; i < 10; i++) {
+      sketch.add(i % 3);
+    }
+    Map<Integer, Long> counts = sketch.getCounts();
+    Assert.assertEquals(3, counts.size());
+    Assert.assertEquals(4L, (long) counts.get(0));
+    Assert.assertEquals(3L, (long) counts.get(1));
+    Assert.assertEquals(3L, (long) counts.get(2));
+  }
+
+  @Test
+  public void testFrequentKeys() {
+    int capacity = 10;
+    KeyFrequencySketch sketch = new KeyFrequencySketch(capacity);
+    // one key makes up half of the keys, all others appear once
+    int total = 10000;
+    for (int i = 0; i < total; i++) {
+      sketch.add(i % 2 == 0 ? -1 : i);
+    }
+    Map<Integer, Long> counts = sketch.getCounts();
+    Assert.assertTrue(counts.size() <= capacity);
+    long count = counts.get(-1);
+    Assert.assertTrue(count <= total / 2);
+    Assert.assertTrue(count >= total / 2 - total / (capacity + 1));
+  }
+
+  @Test
+  public void testMerge() {
+    int capacity = 10;
+    KeyFrequencySketch sketch1 = new KeyFrequencySketch(capacity);
+    KeyFrequencySketch sketch2 = new KeyFrequencySketch(capacity);
+    int total = 10000;
+    for (int i = 0; i < total; i++) {
+      KeyFrequencySketch sketch = i < total / 2 ? sketch1 : sketch2;
+      sketch.add(i % 4 == 0 ? -1 : i);
+    }
+    sketch1.merge(sketch2);
+    Map<Integer, Long> counts = sketch1.getCounts();
+    Assert.assertTrue(counts.size() <= capacity);
+    long count = counts.get(-1);
+    Assert.assertTrue(count <= total / 4);
+    Assert.assertTrue(count >= total / 4 - total / (capacity + 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidCapacity() {
+    new KeyFrequencySketch(0);
+  }
+}
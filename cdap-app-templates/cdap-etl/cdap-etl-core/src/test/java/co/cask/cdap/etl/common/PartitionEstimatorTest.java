@@ -0,0 +1,78 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.common;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Tests for {@link PartitionEstimator}.
+ */
+public class PartitionEstimatorTest {
+
+  @Test
+  public void testEstimate() {
+    PartitionEstimator estimator = new PartitionEstimator(100L, 10);
+    Assert.assertEquals(1, estimator.estimate(0L));
+    Assert.assertEquals(1, estimator.estimate(1L));
+    Assert.assertEquals(1, estimator.estimate(100L));
+    Assert.assertEquals(2, estimator.estimate(101L));
+    Assert.assertEquals(5, estimator.estimate(450L));
+    Assert.assertEquals(10, estimator.estimate(1000L));
+    Assert.assertEquals(10, estimator.estimate(Long.MAX_VALUE));
+  }
+
+  @Test
+  public void testFromArguments() {
+    Map<String, String> arguments = Collections.emptyMap();
+    Assert.assertFalse(PartitionEstimator.isEnabled(arguments));
+    PartitionEstimator estimator = PartitionEstimator.fromArguments(arguments);
+    Assert.assertEquals(1, estimator.estimate(Constants.DEFAULT_AUTO_PARTITIONS_RECORDS));
+    Assert.assertEquals(2, estimator.estimate(Constants.DEFAULT_AUTO_PARTITIONS_RECORDS + 1));
+
+    arguments = ImmutableMap.of(Constants.AUTO_PARTITIONS_ENABLED, "true",
+                                Constants.AUTO_PARTITIONS_RECORDS, "10",
+                                Constants.AUTO_PARTITIONS_MAX, "3");
+    Assert.assertTrue(PartitionEstimator.isEnabled(arguments));
+    estimator = PartitionEstimator.fromArguments(arguments);
+    Assert.assertEquals(2, estimator.estimate(15L));
+    Assert.assertEquals(3, estimator.estimate(100L));
+  }
+
+  @Test
+  public void testGetSalts() {
+    PartitionEstimator estimator = new PartitionEstimator(100L, 10);
+    Map<Integer, Long> keyCounts = ImmutableMap.of(1, 50L, 2, 100L, 3, 101L, 4, 450L, 5, 5000L);
+    Assert.assertEquals(ImmutableMap.of(3, 2, 4, 5, 5, 10), estimator.getSalts(keyCounts));
+    Assert.assertTrue(estimator.getSalts(Collections.<Integer, Long>emptyMap()).isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidRecordsPerPartition() {
+    new PartitionEstimator(0L, 10);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidMaxPartitions() {
+    new PartitionEstimator(100L, 0);
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.common;
+
+import co.cask.cdap.app.preview.DataTracerFactory;
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.InvalidEntry;
+import co.cask.cdap.etl.api.Transformation;
+import co.cask.cdap.internal.app.preview.NoopDataTracerFactory;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for {@link TrackedTransform}.
+ */
+public class TrackedTransformTest {
+
+  private final DataTracerFactory dataTracerFactory = new NoopDataTracerFactory();
+
+  @Test
+  public void testBulkTransform() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    BulkEvenFilter filter = new BulkEvenFilter();
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(filter, new DefaultStageMetrics(mockMetrics, "filter"),
+                             dataTracerFactory.getDataTracer(null, "filter"));
+    Assert.assertTrue(transform.isBulk());
+
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    transform.transform(ImmutableList.of(1, 2, 3, 4, 5), emitter);
+    transform.transform(ImmutableList.<Integer>of(), emitter);
+    transform.transform(ImmutableList.of(6, 7), emitter);
+
+    Assert.assertEquals(ImmutableList.of(2, 4, 6), new ArrayList<>(emitter.getEntries()));
+    Assert.assertEquals(4, emitter.getErrors().size());
+    // the transform is called once for each non-empty chunk
+    Assert.assertEquals(2, filter.calls);
+    Assert.assertEquals(7, mockMetrics.getCount("filter.records.in"));
+    Assert.assertEquals(3, mockMetrics.getCount("filter.records.out"));
+    Assert.assertEquals(4, mockMetrics.getCount("filter.records.error"));
+  }
+
+  @Test
+  public void testChunkWithRecordTransform() throws Exception {
+    MockMetrics mockMetrics = new MockMetrics();
+    TrackedTransform<Integer, Integer> transform =
+      new TrackedTransform<>(new Doubler(), new DefaultStageMetrics(mockMetrics, "doubler"),
+                             dataTracerFactory.getDataTracer(null, "doubler"));
+    Assert.assertFalse(transform.isBulk());
+
+    DefaultEmitter<Integer> emitter = new DefaultEmitter<>();
+    transform.transform(ImmutableList.of(1, 2, 3), emitter);
+
+    Assert.assertEquals(ImmutableList.of(1, 1, 2, 2, 3, 3), new ArrayList<>(emitter.getEntries()));
+    Assert.assertEquals(3, mockMetrics.getCount("doubler.records.in"));
+    Assert.assertEquals(6, mockMetrics.getCount("doubler.records.out"));
+  }
+
+  private static class BulkEvenFilter implements BulkTransformation<Integer, Integer> {
+    private int calls;
+
+    @Override
+    public void transform(List<Integer> inputs, Emitter<Integer> emitter) throws Exception {
+      calls++;
+      for (Integer input : inputs) {
+        transform(input, emitter);
+      }
+    }
+
+    @Override
+    public void transform(Integer input, Emitter<Integer> emitter) throws Exception {
+      if (input % 2 == 0) {
+        emitter.emit(input);
+      } else {
+        emitter.emitError(new InvalidEntry<>(1, "odd", input));
+      }
+    }
+  }
+
+  private static class Doubler implements Transformation<Integer, Integer> {
+
+    @Override
+    public void transform(Integer input, Emitter<Integer> emitter) throws Exception {
+      emitter.emit(input);
+      emitter.emit(input);
+    }
+  }
+}
@@ -144,7 +144,9 @@ public class PipelinePlannerTest {
     PipelinePhase phase1 = PipelinePhase.builder(pluginTypes)
       .addStage(StageSpec.builder("n1", NODE).addOutputSchema(schema, "n2", "n3", "n4").build())
       .addStage(StageSpec.builder("n1.out.connector",
-                                  connectorSpec("n1.out.connector", Constants.Connector.SINK_TYPE)).build())
+                                  connectorSpec("n1.out.connector", Constants.Connector.SINK_TYPE))
+                  .addInputSchema("n1", schema)
+                  .build())
       .addConnections("n1", ImmutableSet.of("n1.out.connector"))
       .build();
     String phase1Name = PipelinePlanner.getPhaseName(phase1.getDag());
@@ -166,8 +168,12 @@ public class PipelinePlannerTest {
                   .addOutputSchema(schema, "n7")
                   .build())
       .addStage(StageSpec.builder("n1.out.connector",
-                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE)).build())
-      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE)).build())
+                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE))
+                  .addInputSchema("n1", schema)
+                  .build())
+      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE))
+                  .addInputSchema("n6", schema)
+                  .build())
       .addConnection("n1.out.connector", "n2")
       .addConnection("n2", "n6")
       .addConnection("n6", "n7.connector")
@@ -195,8 +201,12 @@ public class PipelinePlannerTest {
                   .addOutputSchema(schema, "n5")
                   .build())
       .addStage(StageSpec.builder("n1.out.connector",
-                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE)).build())
-      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE)).build())
+                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE))
+                  .addInputSchema("n1", schema)
+                  .build())
+      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE))
+                  .addInputSchema("n6", schema)
+                  .build())
       .addConnection("n1.out.connector", "n3")
       .addConnection("n3", "n5")
       .addConnection("n5", "n6")
@@ -221,8 +231,12 @@ public class PipelinePlannerTest {
                   .addOutputSchema(schema, "n7")
                   .build())
       .addStage(StageSpec.builder("n1.out.connector",
-                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE)).build())
-      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE)).build())
+                                  connectorSpec("n1.out.connector", Constants.Connector.SOURCE_TYPE))
+                  .addInputSchema("n1", schema)
+                  .build())
+      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SINK_TYPE))
+                  .addInputSchema("n6", schema)
+                  .build())
       .addConnection("n1.out.connector", "n4")
       .addConnection("n4", "n6")
       .addConnection("n6", "n7.connector")
@@ -243,8 +257,12 @@ public class PipelinePlannerTest {
                   .addInputSchema("n6", schema)
                   .addOutputSchema(schema, "n8")
                   .build())
-      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SOURCE_TYPE)).build())
-      .addStage(StageSpec.builder("n9.connector", connectorSpec("n9", Constants.Connector.SINK_TYPE)).build())
+      .addStage(StageSpec.builder("n7.connector", connectorSpec("n7", Constants.Connector.SOURCE_TYPE))
+                  .addInputSchema("n6", schema)
+                  .build())
+      .addStage(StageSpec.builder("n9.connector", connectorSpec("n9", Constants.Connector.SINK_TYPE))
+                  .addInputSchema("n8", schema)
+                  .build())
       .addConnection("n7.connector", "n7")
       .addConnection("n7", "n8")
       .addConnection("n8", "n9.connector")
@@ -265,7 +283,9 @@ public class PipelinePlannerTest {
                   .addInputSchema("n8", schema)
                   .addOutputSchema(schema, "n10", "n11")
                   .build())
-      .addStage(StageSpec.builder("n9.connector", connectorSpec("n9", Constants.Connector.SOURCE_TYPE)).build())
+      .addStage(StageSpec.builder("n9.connector", connectorSpec("n9", Constants.Connector.SOURCE_TYPE))
+                  .addInputSchema("n8", schema)
+                  .build())
       .addConnection("n9.connector", "n9")
       .addConnection("n9", "n10")
       .addConnection("n9", "n11")
@@ -33,6 +33,8 @@ public final class DataStreamsConfig extends ETLConfig {
   private final Boolean disableCheckpoints;
   private final String checkpointDir;
   private final Boolean stopGracefully;
+  // whether to process records one at a time instead of in micro batches. Requires every stage to support it.
+  private final Boolean continuous;
   // See comments in DataStreamsSparkLauncher for explanation on why we need this.
   private final boolean isUnitTest;
 
@@ -49,6 +51,7 @@ public final class DataStreamsConfig extends ETLConfig {
                             @Nullable String checkpointDir,
                             int numOfRecordsPreview,
                             boolean stopGracefully,
+                            boolean continuous,
                             Map<String, String> properties) {
     super(stages, connections, resources, driverResources, clientResources, stageLoggingEnabled, processTimingEnabled,
           numOfRecordsPreview, properties);
@@ -58,6 +61,7 @@ public final class DataStreamsConfig extends ETLConfig {
     this.disableCheckpoints = disableCheckpoints;
     this.checkpointDir = checkpointDir;
     this.stopGracefully = stopGracefully;
+    this.continuous = continuous;
   }
 
   public String getBatchInterval() {
@@ -80,6 +84,10 @@ public final class DataStreamsConfig extends ETLConfig {
     return stopGracefully == null ? true : stopGracefully;
   }
 
+  public boolean isContinuous() {
+    return continuous == null ? false : continuous;
+  }
+
   @Nullable
   public String getCheckpointDir() {
     return checkpointDir;
@@ -93,6 +101,7 @@ public final class DataStreamsConfig extends ETLConfig {
       ", disableCheckpoints=" + disableCheckpoints +
       ", checkpointDir='" + checkpointDir + '\'' +
       ", stopGracefully=" + stopGracefully +
+      ", continuous=" + continuous +
       ", isUnitTest=" + isUnitTest +
       "} " + super.toString();
   }
@@ -115,12 +124,14 @@ public final class DataStreamsConfig extends ETLConfig {
       Objects.equals(extraJavaOpts, that.extraJavaOpts) &&
       Objects.equals(disableCheckpoints, that.disableCheckpoints) &&
       Objects.equals(checkpointDir, that.checkpointDir) &&
-      Objects.equals(stopGracefully, that.stopGracefully);
+      Objects.equals(stopGracefully, that.stopGracefully) &&
+      Objects.equals(continuous, that.continuous);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hash(super.hashCode(), batchInterval, extraJavaOpts, disableCheckpoints, checkpointDir);
+    return Objects.hash(super.hashCode(), batchInterval, extraJavaOpts, disableCheckpoints, checkpointDir,
+                        continuous);
   }
 
   public static Builder builder() {
@@ -136,12 +147,14 @@ public final class DataStreamsConfig extends ETLConfig {
     private String checkpointDir;
     private boolean stopGraceFully;
     private boolean disableCheckpoints;
+    private boolean continuous;
 
     public Builder() {
       this.isUnitTest = true;
       this.batchInterval = "1m";
       this.stopGraceFully = true;
       this.disableCheckpoints = false;
+      this.continuous = false;
     }
 
     public Builder setBatchInterval(String batchInterval) {
@@ -164,11 +177,16 @@ public final class DataStreamsConfig extends ETLConfig {
       return this;
     }
 
+    public Builder setContinuous(boolean continuous) {
+      this.continuous = continuous;
+      return this;
+    }
+
     public DataStreamsConfig build() {
       return new DataStreamsConfig(stages, connections, resources, driverResources, clientResources,
                                    stageLoggingEnabled, processTimingEnabled, batchInterval, isUnitTest,
                                    disableCheckpoints, checkpointDir, numOfRecordsPreview, stopGraceFully,
-                                   properties);
+                                   continuous, properties);
     }
   }
 }
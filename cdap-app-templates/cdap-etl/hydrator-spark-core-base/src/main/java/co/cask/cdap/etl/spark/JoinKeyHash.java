@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark;
+
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.common.io.BinaryEncoder;
+import co.cask.cdap.format.io.StructuredRecordDatumWriter;
+import com.google.common.base.Throwables;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.annotation.Nullable;
+
+/**
+ * Computes hashes of join keys that are the same in every JVM, so that the hot keys counted in one run can be
+ * found by the next run. {@link Object#hashCode()} is not stable for all keys, for example records with byte array
+ * fields, hence records are hashed by their serialized field values.
+ */
+public final class JoinKeyHash {
+
+  private static final StructuredRecordDatumWriter DATUM_WRITER = new StructuredRecordDatumWriter();
+
+  private JoinKeyHash() {
+    // no-op
+  }
+
+  /**
+   * Returns the hash of the given join key.
+   */
+  public static int of(@Nullable Object key) {
+    if (key == null) {
+      return 0;
+    }
+    if (key instanceof StructuredRecord) {
+      ByteArrayOutputStream os = new ByteArrayOutputStream();
+      try {
+        DATUM_WRITER.encode((StructuredRecord) key, new BinaryEncoder(os));
+      } catch (IOException e) {
+        // Shouldn't happen, since writing to a byte array doesn't fail
+        throw Throwables.propagate(e);
+      }
+      return Hashing.murmur3_32().hashBytes(os.toByteArray()).asInt();
+    }
+    if (key instanceof byte[]) {
+      return Arrays.hashCode((byte[]) key);
+    }
+    if (key instanceof Enum) {
+      return ((Enum<?>) key).name().hashCode();
+    }
+    return key.hashCode();
+  }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark;
+
+import java.io.Serializable;
+import java.util.Objects;
+import javax.annotation.Nullable;
+
+/**
+ * A join key together with a salt. The records of a hot join key are spread over several partitions by giving them
+ * different salts.
+ */
+public class SaltedJoinKey implements Serializable {
+  private static final long serialVersionUID = 6416374586716424861L;
+  private final Object key;
+  private final int salt;
+
+  public SaltedJoinKey(@Nullable Object key, int salt) {
+    this.key = key;
+    this.salt = salt;
+  }
+
+  @Nullable
+  public Object getKey() {
+    return key;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    SaltedJoinKey that = (SaltedJoinKey) o;
+    return salt == that.salt && Objects.equals(key, that.key);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Objects.hashCode(key) + salt;
+  }
+}
@@ -25,6 +25,7 @@ import co.cask.cdap.etl.spec.StageSpec;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
 
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -47,6 +48,13 @@ public interface SparkCollection<T> {
 
   SparkCollection<RecordInfo<Object>> transform(StageSpec stageSpec, StageStatisticsCollector collector);
 
+  /**
+   * Runs a chain of Transforms in a single pass, where each transform consumes the output of the previous one.
+   * Only records emitted by the last transform are returned.
+   */
+  SparkCollection<RecordInfo<Object>> fusedTransform(List<StageSpec> stageSpecs,
+                                                     List<StageStatisticsCollector> collectors);
+
   SparkCollection<RecordInfo<Object>> multiOutputTransform(StageSpec stageSpec, StageStatisticsCollector collector);
 
   <U> SparkCollection<U> flatMap(StageSpec stageSpec, FlatMapFunction<T, U> function);
@@ -19,8 +19,11 @@ package co.cask.cdap.etl.spark;
 import com.google.common.base.Optional;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
 import scala.Tuple2;
 
+import java.util.List;
+
 /**
  * Abstraction over different types of spark pair collections with common shared operations on those collections.
  * For example, both JavaPairRDD and JavaPairDStream support the flatMap operation, but don't share a higher interface.
@@ -36,8 +39,12 @@ public interface SparkPairCollection<K, V> {
 
   <T> SparkCollection<T> flatMap(FlatMapFunction<Tuple2<K, V>, T> function);
 
+  <K2, V2> SparkPairCollection<K2, V2> flatMapToPair(PairFlatMapFunction<Tuple2<K, V>, K2, V2> function);
+
   <T> SparkPairCollection<K, T> mapValues(Function<V, T> function);
 
+  <T> SparkPairCollection<K, T> flatMapValues(Function<V, Iterable<T>> function);
+
   <T> SparkPairCollection<K, Tuple2<V, T>> join(SparkPairCollection<K, T> other);
 
   <T> SparkPairCollection<K, Tuple2<V, T>> join(SparkPairCollection<K, T> other, int numPartitions);
@@ -51,4 +58,12 @@ public interface SparkPairCollection<K, V> {
 
   <T> SparkPairCollection<K, Tuple2<Optional<V>, Optional<T>>> fullOuterJoin(SparkPairCollection<K, T> other,
                                                                              int numPartitions);
+
+  /**
+   * Joins with a collection that is small enough to fit in memory without shuffling this collection.
+   * The other collection is collected and a copy of it is sent to every partition of this collection.
+   * Each value is paired with all values in the other collection that have the same key, or with an empty list
+   * if there are no such values.
+   */
+  <T> SparkPairCollection<K, Tuple2<V, List<T>>> broadcastJoin(SparkPairCollection<K, T> other);
 }
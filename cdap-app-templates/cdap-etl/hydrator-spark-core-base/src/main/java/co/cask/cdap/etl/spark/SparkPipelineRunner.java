@@ -21,10 +21,13 @@ import co.cask.cdap.api.plugin.PluginContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.etl.api.Alert;
 import co.cask.cdap.etl.api.AlertPublisher;
+import co.cask.cdap.etl.api.BulkTransformation;
 import co.cask.cdap.etl.api.ErrorRecord;
 import co.cask.cdap.etl.api.ErrorTransform;
+import co.cask.cdap.etl.api.JoinConfig;
 import co.cask.cdap.etl.api.JoinElement;
 import co.cask.cdap.etl.api.SplitterTransform;
+import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.Transform;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
 import co.cask.cdap.etl.api.batch.BatchJoiner;
@@ -42,6 +45,7 @@ import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.StageStatisticsCollector;
 import co.cask.cdap.etl.spark.function.AlertPassFilter;
 import co.cask.cdap.etl.spark.function.BatchSinkFunction;
+import co.cask.cdap.etl.spark.function.BroadcastJoinFlattenFunction;
 import co.cask.cdap.etl.spark.function.ErrorPassFilter;
 import co.cask.cdap.etl.spark.function.ErrorTransformFunction;
 import co.cask.cdap.etl.spark.function.InitialJoinFunction;
@@ -50,14 +54,21 @@ import co.cask.cdap.etl.spark.function.LeftJoinFlattenFunction;
 import co.cask.cdap.etl.spark.function.OuterJoinFlattenFunction;
 import co.cask.cdap.etl.spark.function.OutputPassFilter;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
+import co.cask.cdap.etl.spark.function.SaltJoinKeyFunction;
+import co.cask.cdap.etl.spark.function.UnsaltJoinKeyFunction;
 import co.cask.cdap.etl.spec.StageSpec;
+import com.google.common.collect.Iterables;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 /**
  * Base Spark program to run a Hydrator pipeline.
@@ -76,6 +87,20 @@ public abstract class SparkPipelineRunner {
     SparkPairCollection<Object, List<JoinElement<Object>>> joinedInputs,
     StageStatisticsCollector collector) throws Exception;
 
+  /**
+   * Returns whether joiner inputs hinted as in-memory can be joined by broadcasting them.
+   */
+  protected boolean isBroadcastJoinSupported() {
+    return true;
+  }
+
+  /**
+   * Returns the number of salts of each hot key of each input of a joiner, keyed by input stage and key hash.
+   */
+  protected Map<String, Map<Integer, Integer>> getJoinKeySalts(String stageName) {
+    return Collections.emptyMap();
+  }
+
   public void runPipeline(PipelinePhase pipelinePhase, String sourcePluginType,
                           JavaSparkExecutionContext sec,
                           Map<String, Integer> stagePartitions,
@@ -93,7 +118,19 @@ public abstract class SparkPipelineRunner {
       throw new IllegalStateException("Pipeline phase has no connections.");
     }
 
+    String fusionEnabled = sec.getRuntimeArguments().get(Constants.SPARK_FUSION_ENABLED);
+    Map<String, List<String>> fusedChains = fusionEnabled == null || Boolean.parseBoolean(fusionEnabled) ?
+      getFusedChains(pipelinePhase, pluginContext) : Collections.<String, List<String>>emptyMap();
+    // stages that are run as part of a chain started by an earlier stage
+    Set<String> fusedStages = new HashSet<>();
+    for (List<String> chain : fusedChains.values()) {
+      fusedStages.addAll(chain.subList(1, chain.size()));
+    }
+
     for (String stageName : pipelinePhase.getDag().getTopologicalOrder()) {
+      if (fusedStages.contains(stageName)) {
+        continue;
+      }
       StageSpec stageSpec = pipelinePhase.getStage(stageName);
       //noinspection ConstantConditions
       String pluginType = stageSpec.getPluginType();
@@ -104,18 +141,8 @@ public abstract class SparkPipelineRunner {
       // but aren't connected to an ErrorTransform
       // similarly, don't want to do an additional filter for alerts when the stage isn't connected to
       // an AlertPublisher
-      boolean hasErrorOutput = false;
-      boolean hasAlertOutput = false;
-      Set<String> outputs = pipelinePhase.getStageOutputs(stageSpec.getName());
-      for (String output : outputs) {
-        String outputPluginType = pipelinePhase.getStage(output).getPluginType();
-        //noinspection ConstantConditions
-        if (ErrorTransform.PLUGIN_TYPE.equals(outputPluginType)) {
-          hasErrorOutput = true;
-        } else if (AlertPublisher.PLUGIN_TYPE.equals(outputPluginType)) {
-          hasAlertOutput = true;
-        }
-      }
+      boolean hasErrorOutput = hasOutputOfType(pipelinePhase, stageName, ErrorTransform.PLUGIN_TYPE);
+      boolean hasAlertOutput = hasOutputOfType(pipelinePhase, stageName, AlertPublisher.PLUGIN_TYPE);
 
       SparkCollection<Object> stageData = null;
 
@@ -180,6 +207,26 @@ public abstract class SparkPipelineRunner {
 
         stageData.store(stageSpec, Compat.convert(new BatchSinkFunction(pluginFunctionContext)));
 
+      } else if (Transform.PLUGIN_TYPE.equals(pluginType) && fusedChains.containsKey(stageName)) {
+
+        List<String> chain = fusedChains.get(stageName);
+        List<StageSpec> chainSpecs = new ArrayList<>(chain.size());
+        List<StageStatisticsCollector> chainCollectors = new ArrayList<>(chain.size());
+        for (String chainStage : chain) {
+          chainSpecs.add(pipelinePhase.getStage(chainStage));
+          chainCollectors.add(collectors.get(chainStage) == null ? new NoopStageStatisticsCollector()
+                                : collectors.get(chainStage));
+        }
+        SparkCollection<RecordInfo<Object>> combinedData = stageData.fusedTransform(chainSpecs, chainCollectors);
+
+        // the records of the chain are emitted by its last stage
+        String lastStage = chain.get(chain.size() - 1);
+        EmittedRecords.Builder lastStageBuilder =
+          addEmitted(EmittedRecords.builder(), pipelinePhase, pipelinePhase.getStage(lastStage), combinedData,
+                     hasOutputOfType(pipelinePhase, lastStage, ErrorTransform.PLUGIN_TYPE),
+                     hasOutputOfType(pipelinePhase, lastStage, AlertPublisher.PLUGIN_TYPE));
+        emittedRecords.put(lastStage, lastStageBuilder.build());
+
       } else if (Transform.PLUGIN_TYPE.equals(pluginType)) {
 
         SparkCollection<RecordInfo<Object>> combinedData = stageData.transform(stageSpec, collector);
@@ -245,18 +292,46 @@ public abstract class SparkPipelineRunner {
           preJoinStreams.put(inputStage, addJoinKey(stageSpec, inputStage, inputStream, collector));
         }
 
+        JoinConfig joinConfig = joiner.getJoinConfig();
+        Set<String> requiredInputs = new LinkedHashSet<>();
+        Iterables.addAll(requiredInputs, joinConfig.getRequiredInputs());
+        Set<String> broadcastInputs = getBroadcastInputs(joinConfig, requiredInputs, inputDataCollections.keySet());
+
         Set<String> remainingInputs = new HashSet<>();
         remainingInputs.addAll(inputDataCollections.keySet());
+        remainingInputs.removeAll(broadcastInputs);
+
+        // spread the records of hot keys over several partitions
+        Map<String, Map<Integer, Integer>> joinKeySalts = getJoinKeySalts(stageName);
+        String saltedInput = getSaltedInput(joinKeySalts, requiredInputs, broadcastInputs);
+        if (saltedInput != null) {
+          Map<Integer, Integer> salts = joinKeySalts.get(saltedInput);
+          for (Map.Entry<String, SparkPairCollection<Object, Object>> entry : preJoinStreams.entrySet()) {
+            boolean replicate = !saltedInput.equals(entry.getKey());
+            entry.setValue(entry.getValue().flatMapToPair(
+              Compat.convert(new SaltJoinKeyFunction<Object>(salts, replicate))));
+          }
+        }
 
         Integer numPartitions = stagePartitions.get(stageName);
 
         SparkPairCollection<Object, List<JoinElement<Object>>> joinedInputs = null;
         // inner join on required inputs
-        for (final String inputStageName : joiner.getJoinConfig().getRequiredInputs()) {
+        for (final String inputStageName : requiredInputs) {
+          if (broadcastInputs.contains(inputStageName)) {
+            continue;
+          }
           SparkPairCollection<Object, Object> preJoinCollection = preJoinStreams.get(inputStageName);
 
           if (joinedInputs == null) {
             joinedInputs = preJoinCollection.mapValues(new InitialJoinFunction<>(inputStageName));
+            // join with required in-memory inputs first, since that can only reduce the data that gets shuffled
+            for (String broadcastInput : broadcastInputs) {
+              if (requiredInputs.contains(broadcastInput)) {
+                joinedInputs = joinedInputs.broadcastJoin(preJoinStreams.get(broadcastInput))
+                  .flatMapValues(new BroadcastJoinFlattenFunction<>(broadcastInput, false));
+              }
+            }
           } else {
             JoinFlattenFunction<Object> joinFlattenFunction = new JoinFlattenFunction<>(inputStageName);
             joinedInputs = numPartitions == null ?
@@ -290,12 +365,36 @@ public abstract class SparkPipelineRunner {
           }
         }
 
+        // outer join on non-required in-memory inputs
+        for (String broadcastInput : broadcastInputs) {
+          if (joinedInputs != null && !requiredInputs.contains(broadcastInput)) {
+            joinedInputs = joinedInputs.broadcastJoin(preJoinStreams.get(broadcastInput))
+              .flatMapValues(new BroadcastJoinFlattenFunction<>(broadcastInput, true));
+          }
+        }
+
+        StageMetrics joinerMetrics = joinerRuntimeContext.getMetrics();
+        joinerMetrics.gauge(Constants.Metrics.JOIN_INPUTS_BROADCAST, broadcastInputs.size());
+        joinerMetrics.gauge(Constants.Metrics.JOIN_INPUTS_SHUFFLED,
+                            inputDataCollections.size() - broadcastInputs.size());
+        joinerMetrics.gauge(Constants.Metrics.JOIN_KEYS_SALTED,
+                            saltedInput == null ? 0 : joinKeySalts.get(saltedInput).size());
+
         // should never happen, but removes warnings
         if (joinedInputs == null) {
           throw new IllegalStateException("There are no inputs into join stage " + stageName);
         }
 
-        emittedBuilder = emittedBuilder.setOutput(mergeJoinResults(stageSpec, joinedInputs, collector).cache());
+        if (saltedInput != null) {
+          joinedInputs = joinedInputs.flatMapToPair(
+            Compat.convert(new UnsaltJoinKeyFunction<List<JoinElement<Object>>>()));
+        }
+
+        SparkCollection<Object> joined = mergeJoinResults(stageSpec, joinedInputs, collector);
+        if (shouldCache(pipelinePhase, stageSpec)) {
+          joined = joined.cache();
+        }
+        emittedBuilder = emittedBuilder.setOutput(joined);
 
       } else if (Windower.PLUGIN_TYPE.equals(pluginType)) {
 
@@ -354,49 +453,135 @@ public abstract class SparkPipelineRunner {
     return false;
   }
 
+  // return whether the stage is connected to a stage of the given plugin type
+  private boolean hasOutputOfType(PipelinePhase pipelinePhase, String stageName, String pluginType) {
+    for (String output : pipelinePhase.getStageOutputs(stageName)) {
+      //noinspection ConstantConditions
+      if (pluginType.equals(pipelinePhase.getStage(output).getPluginType())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns chains of transforms that can be run in a single function, keyed by the first stage of each chain.
+   * A transform is chained with the next stage if that stage is its only output, is a transform, and has no other
+   * inputs. Records then flow from one transform to the next without being written to a collection in between,
+   * and only the last stage of a chain needs its output filtered or cached.
+   * Bulk transforms are not chained, since they process records in chunks instead of one at a time.
+   */
+  private Map<String, List<String>> getFusedChains(PipelinePhase pipelinePhase, PluginContext pluginContext) {
+    Map<String, List<String>> chains = new HashMap<>();
+    Set<String> chainedStages = new HashSet<>();
+    for (String stageName : pipelinePhase.getDag().getTopologicalOrder()) {
+      if (chainedStages.contains(stageName) || !isFusible(pipelinePhase, pluginContext, stageName)) {
+        continue;
+      }
+
+      List<String> chain = new ArrayList<>();
+      chain.add(stageName);
+      Set<String> outputs = pipelinePhase.getStageOutputs(stageName);
+      while (outputs.size() == 1) {
+        String next = outputs.iterator().next();
+        if (pipelinePhase.getStageInputs(next).size() != 1 || !isFusible(pipelinePhase, pluginContext, next)) {
+          break;
+        }
+        chain.add(next);
+        outputs = pipelinePhase.getStageOutputs(next);
+      }
+
+      if (chain.size() > 1) {
+        chains.put(stageName, chain);
+        chainedStages.addAll(chain);
+      }
+    }
+    return chains;
+  }
+
+  private boolean isFusible(PipelinePhase pipelinePhase, PluginContext pluginContext, String stageName) {
+    StageSpec stageSpec = pipelinePhase.getStage(stageName);
+    //noinspection ConstantConditions
+    return Transform.PLUGIN_TYPE.equals(stageSpec.getPluginType()) &&
+      !BulkTransformation.class.isAssignableFrom(pluginContext.loadPluginClass(stageName));
+  }
+
+  /**
+   * Returns the inputs of a joiner that can be joined by broadcasting them instead of shuffling them.
+   * Only inputs that are hinted as in-memory are broadcast. Inputs are never broadcast for a full outer join,
+   * since every record of every input must then be emitted. At least one required input is always shuffled.
+   */
+  private Set<String> getBroadcastInputs(JoinConfig joinConfig, Set<String> requiredInputs, Set<String> inputs) {
+    Set<String> broadcastInputs = new LinkedHashSet<>();
+    if (requiredInputs.isEmpty() || !isBroadcastJoinSupported()) {
+      return broadcastInputs;
+    }
+    for (String inMemoryInput : joinConfig.getInMemoryInputs()) {
+      if (inputs.contains(inMemoryInput)) {
+        broadcastInputs.add(inMemoryInput);
+      }
+    }
+    if (broadcastInputs.containsAll(requiredInputs)) {
+      broadcastInputs.remove(requiredInputs.iterator().next());
+    }
+    return broadcastInputs;
+  }
+
+  /**
+   * Returns the joiner input whose hot keys are salted, or null if no input has hot keys. The records of each hot key
+   * of that input are spread over several partitions, and the records of that key in all other inputs are replicated
+   * to each of those partitions. Only a required input that is shuffled can be salted. If an input that is outer
+   * joined were salted, the replicated records of the required inputs would be emitted once for every salt that has
+   * no records of that input. If several inputs have hot keys, the input with the most salts is salted.
+   */
+  @Nullable
+  private String getSaltedInput(Map<String, Map<Integer, Integer>> joinKeySalts, Set<String> requiredInputs,
+                                Set<String> broadcastInputs) {
+    String saltedInput = null;
+    long maxSalts = 0L;
+    for (String requiredInput : requiredInputs) {
+      Map<Integer, Integer> salts = joinKeySalts.get(requiredInput);
+      if (salts == null || broadcastInputs.contains(requiredInput)) {
+        continue;
+      }
+      long totalSalts = 0L;
+      for (int keySalts : salts.values()) {
+        totalSalts += keySalts;
+      }
+      if (totalSalts > maxSalts) {
+        saltedInput = requiredInput;
+        maxSalts = totalSalts;
+      }
+    }
+    return saltedInput;
+  }
+
   private EmittedRecords.Builder addEmitted(EmittedRecords.Builder builder, PipelinePhase pipelinePhase,
                                             StageSpec stageSpec, SparkCollection<RecordInfo<Object>> stageData,
                                             boolean hasErrors, boolean hasAlerts) {
 
-    if (hasErrors || hasAlerts || stageSpec.getOutputPorts().size() > 1) {
-      // need to cache, otherwise the stage can be computed once per type of emitted record
+    // the stage data contains output, errors, and alerts, tagged with their type and port. It is cached once
+    // if it is read more than once, otherwise the stage can be computed once per type of emitted record and per
+    // output. The filtered collections are cheap to compute from it, so they are not cached themselves.
+    if (hasErrors || hasAlerts || stageSpec.getOutputPorts().size() > 1 || shouldCache(pipelinePhase, stageSpec)) {
       stageData = stageData.cache();
     }
 
-    boolean shouldCache = shouldCache(pipelinePhase, stageSpec);
-
     if (hasErrors) {
-      SparkCollection<ErrorRecord<Object>> errors =
-        stageData.flatMap(stageSpec, Compat.convert(new ErrorPassFilter<>()));
-      if (shouldCache) {
-        errors = errors.cache();
-      }
-      builder.setErrors(errors);
+      builder.setErrors(stageData.flatMap(stageSpec, Compat.convert(new ErrorPassFilter<>())));
     }
     if (hasAlerts) {
-      SparkCollection<Alert> alerts = stageData.flatMap(stageSpec, Compat.convert(new AlertPassFilter()));
-      if (shouldCache) {
-        alerts = alerts.cache();
-      }
-      builder.setAlerts(alerts);
+      builder.setAlerts(stageData.flatMap(stageSpec, Compat.convert(new AlertPassFilter())));
     }
 
     if (SplitterTransform.PLUGIN_TYPE.equals(stageSpec.getPluginType())) {
       // set collections for each port, implemented as a filter on the port.
       for (StageSpec.Port portSpec : stageSpec.getOutputPorts().values()) {
         String port = portSpec.getPort();
-        SparkCollection<Object> portData = stageData.flatMap(stageSpec, Compat.convert(new OutputPassFilter<>(port)));
-        if (shouldCache) {
-          portData = portData.cache();
-        }
-        builder.addPort(port, portData);
+        builder.addPort(port, stageData.flatMap(stageSpec, Compat.convert(new OutputPassFilter<>(port))));
       }
     } else {
-      SparkCollection<Object> outputs = stageData.flatMap(stageSpec, Compat.convert(new OutputPassFilter<>()));
-      if (shouldCache) {
-        outputs = outputs.cache();
-      }
-      builder.setOutput(outputs);
+      builder.setOutput(stageData.flatMap(stageSpec, Compat.convert(new OutputPassFilter<>())));
     }
 
     return builder;
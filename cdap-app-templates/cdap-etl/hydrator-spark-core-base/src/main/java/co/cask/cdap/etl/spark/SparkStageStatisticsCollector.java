@@ -47,6 +47,16 @@ public class SparkStageStatisticsCollector implements StageStatisticsCollector,
     outputRecordCounter.add(1.0);
   }
 
+  @Override
+  public void incrementInputRecordCount(long count) {
+    inputRecordCounter.add((double) count);
+  }
+
+  @Override
+  public void incrementOutputRecordCount(long count) {
+    outputRecordCounter.add((double) count);
+  }
+
   @Override
   public void incrementErrorRecordCount() {
     errorRecordCounter.add(1.0);
@@ -31,6 +31,8 @@ import co.cask.cdap.etl.batch.BatchPhaseSpec;
 import co.cask.cdap.etl.batch.PipelinePluginInstantiator;
 import co.cask.cdap.etl.batch.connector.SingleConnectorFactory;
 import co.cask.cdap.etl.common.Constants;
+import co.cask.cdap.etl.common.KeyFrequencySketch;
+import co.cask.cdap.etl.common.PartitionEstimator;
 import co.cask.cdap.etl.common.RecordInfo;
 import co.cask.cdap.etl.common.SetMultimapCodec;
 import co.cask.cdap.etl.common.StageStatisticsCollector;
@@ -42,19 +44,24 @@ import co.cask.cdap.etl.spark.SparkPipelineRunner;
 import co.cask.cdap.etl.spark.SparkStageStatisticsCollector;
 import co.cask.cdap.etl.spark.function.BatchSourceFunction;
 import co.cask.cdap.etl.spark.function.JoinMergeFunction;
+import co.cask.cdap.etl.spark.function.JoinKeySketchFunction;
 import co.cask.cdap.etl.spark.function.JoinOnFunction;
+import co.cask.cdap.etl.spark.function.MergeSketchFunction;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
 import co.cask.cdap.etl.spec.StageSpec;
 import co.cask.cdap.internal.io.SchemaTypeAdapter;
 import com.google.common.collect.SetMultimap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.storage.StorageLevel;
 
 import java.io.BufferedReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -71,6 +78,8 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
     .registerTypeAdapter(OutputFormatProvider.class, new OutputFormatProviderTypeAdapter())
     .registerTypeAdapter(InputFormatProvider.class, new InputFormatProviderTypeAdapter())
     .create();
+  // number of most frequent join keys that are counted for each joiner input
+  private static final int JOIN_KEY_SKETCH_CAPACITY = 256;
 
   private transient JavaSparkContext jsc;
   private transient JavaSparkExecutionContext sec;
@@ -78,6 +87,9 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
   private transient SparkBatchSinkFactory sinkFactory;
   private transient DatasetContext datasetContext;
   private transient Map<String, Integer> stagePartitions;
+  private transient Map<String, Map<String, Map<Integer, Integer>>> stageJoinKeySalts;
+  // keyed joiner inputs to count the keys of after the pipeline ran, by stage and input stage
+  private transient Map<String, Map<String, JavaPairRDD<Object, Object>>> joinKeyInputs;
   private transient int numOfRecordsPreview;
 
   @Override
@@ -94,8 +106,29 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
                                                            SparkCollection<Object> inputCollection,
                                                            StageStatisticsCollector collector) throws Exception {
     PluginFunctionContext pluginFunctionContext = new PluginFunctionContext(stageSpec, sec, collector);
-    return inputCollection.flatMapToPair(
+    SparkPairCollection<Object, Object> keyedCollection = inputCollection.flatMapToPair(
       Compat.convert(new JoinOnFunction<>(pluginFunctionContext, inputStageName)));
+    if (joinKeyInputs == null) {
+      return keyedCollection;
+    }
+
+    // Keep the keyed input so that its keys can be counted by an action after the pipeline ran, which counts
+    // each record exactly once even if tasks are retried, without computing the input again.
+    JavaPairRDD<Object, Object> keyedRDD = keyedCollection.<JavaPairRDD<Object, Object>>getUnderlying()
+      .persist(getCacheStorageLevel());
+    Map<String, JavaPairRDD<Object, Object>> stageInputs = joinKeyInputs.get(stageSpec.getName());
+    if (stageInputs == null) {
+      stageInputs = new HashMap<>();
+      joinKeyInputs.put(stageSpec.getName(), stageInputs);
+    }
+    stageInputs.put(inputStageName, keyedRDD);
+    return new PairRDDCollection<>(sec, jsc, datasetContext, sinkFactory, keyedRDD);
+  }
+
+  @Override
+  protected Map<String, Map<Integer, Integer>> getJoinKeySalts(String stageName) {
+    Map<String, Map<Integer, Integer>> joinKeySalts = stageJoinKeySalts.get(stageName);
+    return joinKeySalts == null ? Collections.<String, Map<Integer, Integer>>emptyMap() : joinKeySalts;
   }
 
   @Override
@@ -130,6 +163,7 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
       sourceFactory = sourceSinkInfo.getSparkBatchSourceFactory();
       sinkFactory = sourceSinkInfo.getSparkBatchSinkFactory();
       stagePartitions = sourceSinkInfo.getStagePartitions();
+      stageJoinKeySalts = sourceSinkInfo.getStageJoinKeySalts();
     }
     datasetContext = context;
     numOfRecordsPreview = phaseSpec.getNumOfRecordsPreview();
@@ -138,22 +172,52 @@ public class BatchSparkPipelineDriver extends SparkPipelineRunner implements Jav
                                                                     phaseSpec.isProcessTimingEnabled());
 
     Map<String, StageStatisticsCollector> collectors = new HashMap<>();
-    if (phaseSpec.pipelineContainsCondition()) {
+    if (phaseSpec.pipelineContainsCondition() || PartitionEstimator.isEnabled(sec.getRuntimeArguments())) {
       Iterator<StageSpec> iterator = phaseSpec.getPhase().iterator();
       while (iterator.hasNext()) {
         StageSpec spec = iterator.next();
         collectors.put(spec.getName(), new SparkStageStatisticsCollector(jsc));
       }
     }
+    if (PartitionEstimator.isEnabled(sec.getRuntimeArguments())) {
+      joinKeyInputs = new HashMap<>();
+    }
     try {
       PipelinePluginInstantiator pluginInstantiator =
         new PipelinePluginInstantiator(pluginContext, sec.getMetrics(), phaseSpec, new SingleConnectorFactory());
       runPipeline(phaseSpec.getPhase(), BatchSource.PLUGIN_TYPE, sec, stagePartitions, pluginInstantiator, collectors);
+      updateJoinKeyCounts(sec.getWorkflowToken());
     } finally {
       updateWorkflowToken(sec.getWorkflowToken(), collectors);
     }
   }
 
+  /**
+   * Counts the most frequent keys of each joiner input, so that the next run can find the hot keys.
+   */
+  private void updateJoinKeyCounts(WorkflowToken token) {
+    if (joinKeyInputs == null) {
+      return;
+    }
+    for (Map.Entry<String, Map<String, JavaPairRDD<Object, Object>>> stageEntry : joinKeyInputs.entrySet()) {
+      Map<String, Map<Integer, Long>> stageKeyCounts = new HashMap<>();
+      for (Map.Entry<String, JavaPairRDD<Object, Object>> inputEntry : stageEntry.getValue().entrySet()) {
+        JavaPairRDD<Object, Object> keyedRDD = inputEntry.getValue();
+        KeyFrequencySketch sketch = keyedRDD.keys().treeAggregate(new KeyFrequencySketch(JOIN_KEY_SKETCH_CAPACITY),
+                                                                  new JoinKeySketchFunction(),
+                                                                  new MergeSketchFunction());
+        keyedRDD.unpersist();
+        stageKeyCounts.put(inputEntry.getKey(), sketch.getCounts());
+      }
+      token.put(Constants.StageStatistics.KEY_COUNTS_PREFIX + "." + stageEntry.getKey(), GSON.toJson(stageKeyCounts));
+    }
+  }
+
+  private StorageLevel getCacheStorageLevel() {
+    String level = sec.getRuntimeArguments().get(Constants.SPARK_CACHE_STORAGE_LEVEL);
+    return StorageLevel.fromString(level == null ? Constants.DEFAULT_SPARK_CACHE_STORAGE_LEVEL : level);
+  }
+
   private void updateWorkflowToken(WorkflowToken token, Map<String, StageStatisticsCollector> collectors) {
     for (Map.Entry<String, StageStatisticsCollector> entry : collectors.entrySet()) {
       SparkStageStatisticsCollector collector = (SparkStageStatisticsCollector) entry.getValue();
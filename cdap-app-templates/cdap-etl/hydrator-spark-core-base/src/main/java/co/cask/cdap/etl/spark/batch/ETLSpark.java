@@ -50,6 +50,7 @@ import co.cask.cdap.etl.common.BasicArguments;
 import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.common.DefaultMacroEvaluator;
 import co.cask.cdap.etl.common.FieldOperationTypeAdapter;
+import co.cask.cdap.etl.common.PartitionEstimator;
 import co.cask.cdap.etl.common.PipelinePhase;
 import co.cask.cdap.etl.common.PipelineRuntime;
 import co.cask.cdap.etl.common.SetMultimapCodec;
@@ -75,8 +76,10 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * Configures and sets up runs of {@link BatchSparkPipelineDriver}.
@@ -154,6 +157,25 @@ public class ETLSpark extends AbstractSpark {
     final Admin admin = context.getAdmin();
 
     PipelinePhase phase = phaseSpec.getPhase();
+    // aggregators and joiners that don't set the number of partitions themselves get a number based on the
+    // previous run, and joiners spread the hot keys of the previous run over several partitions
+    final Map<String, Integer> estimatedPartitions = new HashMap<>();
+    Map<String, Map<String, Map<Integer, Integer>>> stageJoinKeySalts = new HashMap<>();
+    Map<String, String> arguments = pipelineRuntime.getArguments().asMap();
+    if (PartitionEstimator.isEnabled(arguments)) {
+      PartitionEstimator partitionEstimator = PartitionEstimator.fromArguments(arguments);
+      String pipelineName = context.getApplicationSpecification().getName();
+      Set<String> reducerNames = new HashSet<>();
+      for (StageSpec reducer : phase.getStagesOfType(BatchAggregator.PLUGIN_TYPE, BatchJoiner.PLUGIN_TYPE)) {
+        reducerNames.add(reducer.getName());
+      }
+      estimatedPartitions.putAll(partitionEstimator.estimate(context, admin, pipelineName, reducerNames));
+      Set<String> joinerNames = new HashSet<>();
+      for (StageSpec joiner : phase.getStagesOfType(BatchJoiner.PLUGIN_TYPE)) {
+        joinerNames.add(joiner.getName());
+      }
+      stageJoinKeySalts.putAll(partitionEstimator.estimateSalts(context, admin, pipelineName, joinerNames));
+    }
     // Collect field operations emitted by various stages in this MapReduce program
     final Map<String, List<FieldOperation>> stageOperations = new HashMap<>();
     // go through in topological order so that arguments set by one stage are seen by stages after it
@@ -240,6 +262,8 @@ public class ETLSpark extends AbstractSpark {
                 new SubmitterPlugin.PrepareAction<DefaultAggregatorContext>() {
           @Override
           public void act(DefaultAggregatorContext context) {
+            Integer numPartitions = context.getNumPartitions();
+            stagePartitions.put(stageName, numPartitions == null ? estimatedPartitions.get(stageName) : numPartitions);
             stageOperations.put(stageName, context.getFieldOperations());
           }
         });
@@ -254,7 +278,9 @@ public class ETLSpark extends AbstractSpark {
           new SubmitterPlugin.PrepareAction<DefaultJoinerContext>() {
             @Override
             public void act(DefaultJoinerContext sparkJoinerContext) {
-              stagePartitions.put(stageName, sparkJoinerContext.getNumPartitions());
+              Integer numPartitions = sparkJoinerContext.getNumPartitions();
+              stagePartitions.put(stageName,
+                                  numPartitions == null ? estimatedPartitions.get(stageName) : numPartitions);
               stageOperations.put(stageName, sparkJoinerContext.getFieldOperations());
             }
           });
@@ -271,7 +297,8 @@ public class ETLSpark extends AbstractSpark {
     try (Writer writer = Files.newBufferedWriter(configFile.toPath(), StandardCharsets.UTF_8)) {
       SparkBatchSourceSinkFactoryInfo sourceSinkInfo = new SparkBatchSourceSinkFactoryInfo(sourceFactory,
                                                                                            sinkFactory,
-                                                                                           stagePartitions);
+                                                                                           stagePartitions,
+                                                                                           stageJoinKeySalts);
       writer.write(GSON.toJson(sourceSinkInfo));
     }
 
@@ -18,16 +18,26 @@ package co.cask.cdap.etl.spark.batch;
 
 import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.spark.JavaSparkExecutionContext;
+import co.cask.cdap.etl.common.Constants;
 import co.cask.cdap.etl.spark.Compat;
 import co.cask.cdap.etl.spark.SparkCollection;
 import co.cask.cdap.etl.spark.SparkPairCollection;
+import co.cask.cdap.etl.spark.function.BroadcastJoinFunction;
+import co.cask.cdap.etl.spark.function.CoGroupJoinFunction;
 import com.google.common.base.Optional;
 import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.broadcast.Broadcast;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import scala.Tuple2;
 
+import java.util.List;
+import java.util.Map;
+
 /**
  * Implementation of {@link SparkCollection} that is backed by a JavaPairRDD.
  *
@@ -35,6 +45,7 @@ import scala.Tuple2;
  * @param <V> type of value in the collection
  */
 public class PairRDDCollection<K, V> implements SparkPairCollection<K, V> {
+  private static final Logger LOG = LoggerFactory.getLogger(PairRDDCollection.class);
   private final JavaSparkExecutionContext sec;
   private final JavaSparkContext jsc;
   private final DatasetContext datasetContext;
@@ -61,11 +72,21 @@ public class PairRDDCollection<K, V> implements SparkPairCollection<K, V> {
     return new RDDCollection<>(sec, jsc, datasetContext, sinkFactory, pairRDD.flatMap(function));
   }
 
+  @Override
+  public <K2, V2> SparkPairCollection<K2, V2> flatMapToPair(PairFlatMapFunction<Tuple2<K, V>, K2, V2> function) {
+    return wrap(pairRDD.flatMapToPair(function));
+  }
+
   @Override
   public <T> SparkPairCollection<K, T> mapValues(Function<V, T> function) {
     return wrap(pairRDD.mapValues(function));
   }
 
+  @Override
+  public <T> SparkPairCollection<K, T> flatMapValues(Function<V, Iterable<T>> function) {
+    return wrap(pairRDD.flatMapValues(function));
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> SparkPairCollection<K, Tuple2<V, T>> join(SparkPairCollection<K, T> other) {
@@ -104,6 +125,36 @@ public class PairRDDCollection<K, V> implements SparkPairCollection<K, V> {
     return wrap(Compat.fullOuterJoin(pairRDD, (JavaPairRDD<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  @SuppressWarnings("unchecked")
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, List<T>>> broadcastJoin(SparkPairCollection<K, T> other) {
+    JavaPairRDD<K, T> otherRDD = (JavaPairRDD<K, T>) other.getUnderlying();
+    // take one more record than allowed, so that an input that is too large is never fully collected to the driver
+    int maxRecords = getBroadcastJoinMaxRecords();
+    List<Tuple2<K, T>> pairs = otherRDD.take(maxRecords + 1);
+    if (pairs.size() > maxRecords) {
+      LOG.warn("Joiner input has more than {} records and is shuffled instead of broadcast. " +
+                 "The limit can be raised with the runtime argument '{}'.",
+               maxRecords, Constants.SPARK_BROADCAST_JOIN_MAX_RECORDS);
+      return wrap(pairRDD.cogroup(otherRDD).flatMapValues(new CoGroupJoinFunction<V, T>()));
+    }
+    Broadcast<Map<K, List<T>>> broadcast = BroadcastJoinFunction.broadcast(jsc, pairs);
+    return wrap(pairRDD.mapToPair(new BroadcastJoinFunction<K, V, T>(broadcast)));
+  }
+
+  private int getBroadcastJoinMaxRecords() {
+    String maxRecords = sec.getRuntimeArguments().get(Constants.SPARK_BROADCAST_JOIN_MAX_RECORDS);
+    if (maxRecords == null) {
+      return Constants.DEFAULT_SPARK_BROADCAST_JOIN_MAX_RECORDS;
+    }
+    try {
+      return Integer.parseInt(maxRecords);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException(String.format("Invalid value '%s' for runtime argument '%s'.",
+                                                       maxRecords, Constants.SPARK_BROADCAST_JOIN_MAX_RECORDS), e);
+    }
+  }
+
   private <X, Y> SparkPairCollection<X, Y> wrap(JavaPairRDD<X, Y> javaPairRDD) {
     return new PairRDDCollection<>(sec, jsc, datasetContext, sinkFactory, javaPairRDD);
   }
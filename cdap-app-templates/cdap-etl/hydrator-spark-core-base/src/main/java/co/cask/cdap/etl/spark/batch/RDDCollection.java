@@ -21,6 +21,8 @@ import co.cask.cdap.api.spark.JavaSparkExecutionContext;
 import co.cask.cdap.etl.api.Alert;
 import co.cask.cdap.etl.api.AlertPublisher;
 import co.cask.cdap.etl.api.AlertPublisherContext;
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.StageMetrics;
 import co.cask.cdap.etl.api.batch.SparkCompute;
 import co.cask.cdap.etl.api.batch.SparkExecutionPluginContext;
@@ -39,8 +41,11 @@ import co.cask.cdap.etl.spark.SparkPairCollection;
 import co.cask.cdap.etl.spark.SparkPipelineRuntime;
 import co.cask.cdap.etl.spark.function.AggregatorAggregateFunction;
 import co.cask.cdap.etl.spark.function.AggregatorGroupByFunction;
+import co.cask.cdap.etl.spark.function.AggregatorMergeFunction;
+import co.cask.cdap.etl.spark.function.BulkTransformFunction;
 import co.cask.cdap.etl.spark.function.CountingFunction;
 import co.cask.cdap.etl.spark.function.FlatMapFunc;
+import co.cask.cdap.etl.spark.function.FusedTransformFunction;
 import co.cask.cdap.etl.spark.function.MultiOutputTransformFunction;
 import co.cask.cdap.etl.spark.function.PairFlatMapFunc;
 import co.cask.cdap.etl.spark.function.PluginFunctionContext;
@@ -51,9 +56,13 @@ import org.apache.spark.api.java.JavaPairRDD;
 import org.apache.spark.api.java.JavaRDD;
 import org.apache.spark.api.java.JavaSparkContext;
 import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function2;
 import org.apache.spark.api.java.function.PairFlatMapFunction;
+import org.apache.spark.storage.StorageLevel;
 import scala.Tuple2;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 
 
@@ -87,7 +96,7 @@ public class RDDCollection<T> implements SparkCollection<T> {
 
   @Override
   public SparkCollection<T> cache() {
-    return wrap(rdd.cache());
+    return wrap(rdd.persist(getCacheStorageLevel()));
   }
 
   @SuppressWarnings("unchecked")
@@ -99,9 +108,24 @@ public class RDDCollection<T> implements SparkCollection<T> {
   @Override
   public SparkCollection<RecordInfo<Object>> transform(StageSpec stageSpec, StageStatisticsCollector collector) {
     PluginFunctionContext pluginFunctionContext = new PluginFunctionContext(stageSpec, sec, collector);
+    Class<?> transformClass = sec.getPluginContext().loadPluginClass(stageSpec.getName());
+    int chunkSize = getBulkTransformSize();
+    if (BulkTransformation.class.isAssignableFrom(transformClass) && chunkSize > 1) {
+      return wrap(rdd.mapPartitions(Compat.convert(new BulkTransformFunction<T>(pluginFunctionContext, chunkSize))));
+    }
     return wrap(rdd.flatMap(Compat.convert(new TransformFunction<T>(pluginFunctionContext))));
   }
 
+  @Override
+  public SparkCollection<RecordInfo<Object>> fusedTransform(List<StageSpec> stageSpecs,
+                                                            List<StageStatisticsCollector> collectors) {
+    List<PluginFunctionContext> pluginFunctionContexts = new ArrayList<>(stageSpecs.size());
+    for (int i = 0; i < stageSpecs.size(); i++) {
+      pluginFunctionContexts.add(new PluginFunctionContext(stageSpecs.get(i), sec, collectors.get(i)));
+    }
+    return wrap(rdd.flatMap(Compat.convert(new FusedTransformFunction<T>(pluginFunctionContexts))));
+  }
+
   @Override
   public SparkCollection<RecordInfo<Object>> multiOutputTransform(StageSpec stageSpec,
                                                                   StageStatisticsCollector collector) {
@@ -123,6 +147,15 @@ public class RDDCollection<T> implements SparkCollection<T> {
 
     JavaPairRDD<Object, T> keyedCollection = rdd.flatMapToPair(sparkGroupByFunction);
 
+    Class<?> aggregatorClass = sec.getPluginContext().loadPluginClass(stageSpec.getName());
+    if (CombinableAggregator.class.isAssignableFrom(aggregatorClass)) {
+      // values are partial aggregates, merge them on the map side so that only one value per group and partition
+      // is shuffled. The groupByKey below then uses the same partitioner, so it does not shuffle again.
+      Function2<T, T, T> mergeFunction = new AggregatorMergeFunction<>(pluginFunctionContext);
+      keyedCollection = partitions == null ?
+        keyedCollection.reduceByKey(mergeFunction) : keyedCollection.reduceByKey(mergeFunction, partitions);
+    }
+
     JavaPairRDD<Object, Iterable<T>> groupedCollection = partitions == null ?
       keyedCollection.groupByKey() : keyedCollection.groupByKey(partitions);
 
@@ -192,6 +225,16 @@ public class RDDCollection<T> implements SparkCollection<T> {
     throw new UnsupportedOperationException("Windowing is not supported on RDDs.");
   }
 
+  private int getBulkTransformSize() {
+    String size = sec.getRuntimeArguments().get(Constants.BULK_TRANSFORM_SIZE);
+    return size == null ? Constants.DEFAULT_BULK_TRANSFORM_SIZE : Integer.parseInt(size);
+  }
+
+  private StorageLevel getCacheStorageLevel() {
+    String level = sec.getRuntimeArguments().get(Constants.SPARK_CACHE_STORAGE_LEVEL);
+    return StorageLevel.fromString(level == null ? Constants.DEFAULT_SPARK_CACHE_STORAGE_LEVEL : level);
+  }
+
   private <U> RDDCollection<U> wrap(JavaRDD<U> rdd) {
     return new RDDCollection<>(sec, jsc, datasetContext, sinkFactory, rdd);
   }
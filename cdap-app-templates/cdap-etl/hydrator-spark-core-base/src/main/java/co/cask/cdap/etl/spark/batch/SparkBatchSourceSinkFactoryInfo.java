@@ -19,19 +19,22 @@ package co.cask.cdap.etl.spark.batch;
 import java.util.Map;
 
 /**
- * Stores all the information of {@link SparkBatchSinkFactory} and stagePartitions
+ * Stores all the information of {@link SparkBatchSinkFactory}, stagePartitions and the salts of hot join keys
  */
 public class SparkBatchSourceSinkFactoryInfo {
   private final SparkBatchSourceFactory sparkBatchSourceFactory;
   private final SparkBatchSinkFactory sparkBatchSinkFactory;
   private final Map<String, Integer> stagePartitions;
+  private final Map<String, Map<String, Map<Integer, Integer>>> stageJoinKeySalts;
 
   public SparkBatchSourceSinkFactoryInfo(SparkBatchSourceFactory sparkBatchSourceFactory,
                                          SparkBatchSinkFactory sparkBatchSinkFactory,
-                                         Map<String, Integer> stagePartitions) {
+                                         Map<String, Integer> stagePartitions,
+                                         Map<String, Map<String, Map<Integer, Integer>>> stageJoinKeySalts) {
     this.sparkBatchSourceFactory = sparkBatchSourceFactory;
     this.sparkBatchSinkFactory = sparkBatchSinkFactory;
     this.stagePartitions = stagePartitions;
+    this.stageJoinKeySalts = stageJoinKeySalts;
   }
 
   public SparkBatchSourceFactory getSparkBatchSourceFactory() {
@@ -45,4 +48,12 @@ public class SparkBatchSourceSinkFactoryInfo {
   public Map<String, Integer> getStagePartitions() {
     return stagePartitions;
   }
+
+  /**
+   * @return for each joiner, the number of salts of each hot key of each of its inputs, keyed by input stage and
+   *   key hash
+   */
+  public Map<String, Map<String, Map<Integer, Integer>>> getStageJoinKeySalts() {
+    return stageJoinKeySalts;
+  }
 }
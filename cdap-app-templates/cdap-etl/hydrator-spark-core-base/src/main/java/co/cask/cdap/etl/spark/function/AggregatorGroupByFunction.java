@@ -16,6 +16,7 @@
 
 package co.cask.cdap.etl.spark.function;
 
+import co.cask.cdap.etl.api.CombinableAggregator;
 import co.cask.cdap.etl.api.Emitter;
 import co.cask.cdap.etl.api.Transformation;
 import co.cask.cdap.etl.api.batch.BatchAggregator;
@@ -26,7 +27,8 @@ import co.cask.cdap.etl.common.TrackedTransform;
 import scala.Tuple2;
 
 /**
- * Function that uses a BatchAggregator to perform the groupBy part of the aggregator.
+ * Function that uses a BatchAggregator to perform the groupBy part of the aggregator. If the aggregator is a
+ * {@link CombinableAggregator}, values are emitted as partial aggregates.
  * Non-serializable fields are lazily created since this is used in a Spark closure.
  *
  * @param <GROUP_KEY> type of group key
@@ -62,10 +64,15 @@ public class AggregatorGroupByFunction<GROUP_KEY, GROUP_VAL>
   private static class GroupByTransform<GROUP_KEY, GROUP_VAL>
     implements Transformation<GROUP_VAL, Tuple2<GROUP_KEY, GROUP_VAL>> {
     private final BatchAggregator<GROUP_KEY, GROUP_VAL, ?> aggregator;
+    // null if the aggregator is not combinable
+    private final CombinableAggregator<GROUP_KEY, GROUP_VAL, ?> combiner;
     private final NoErrorEmitter<GROUP_KEY> keyEmitter;
 
+    @SuppressWarnings("unchecked")
     GroupByTransform(BatchAggregator<GROUP_KEY, GROUP_VAL, ?> aggregator) {
       this.aggregator = aggregator;
+      this.combiner = aggregator instanceof CombinableAggregator ?
+        (CombinableAggregator<GROUP_KEY, GROUP_VAL, ?>) aggregator : null;
       this.keyEmitter =
         new NoErrorEmitter<>("Errors and Alerts cannot be emitted from the groupBy method of an aggregator");
     }
@@ -75,7 +82,8 @@ public class AggregatorGroupByFunction<GROUP_KEY, GROUP_VAL>
       keyEmitter.reset();
       aggregator.groupBy(inputValue, keyEmitter);
       for (GROUP_KEY key : keyEmitter.getEntries()) {
-        emitter.emit(new Tuple2<>(key, inputValue));
+        GROUP_VAL value = combiner == null ? inputValue : combiner.initializeAggregate(inputValue);
+        emitter.emit(new Tuple2<>(key, value));
       }
     }
   }
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.CombinableAggregator;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import org.apache.spark.api.java.function.Function2;
+
+/**
+ * Function that uses a {@link CombinableAggregator} to merge two partial aggregates of the same group.
+ * Non-serializable fields are lazily created since this is used in a Spark closure.
+ *
+ * @param <GROUP_VAL> type of group value
+ */
+public class AggregatorMergeFunction<GROUP_VAL> implements Function2<GROUP_VAL, GROUP_VAL, GROUP_VAL> {
+  private final PluginFunctionContext pluginFunctionContext;
+  private transient CombinableAggregator<?, GROUP_VAL, ?> aggregator;
+
+  public AggregatorMergeFunction(PluginFunctionContext pluginFunctionContext) {
+    this.pluginFunctionContext = pluginFunctionContext;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public GROUP_VAL call(GROUP_VAL aggregate1, GROUP_VAL aggregate2) throws Exception {
+    if (aggregator == null) {
+      BatchAggregator<?, GROUP_VAL, ?> batchAggregator = pluginFunctionContext.createPlugin();
+      batchAggregator.initialize(pluginFunctionContext.createBatchRuntimeContext());
+      aggregator = (CombinableAggregator<?, GROUP_VAL, ?>) batchAggregator;
+    }
+    return aggregator.mergeAggregates(aggregate1, aggregate2);
+  }
+}
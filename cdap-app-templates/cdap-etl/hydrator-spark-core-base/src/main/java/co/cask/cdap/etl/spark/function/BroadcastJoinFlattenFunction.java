@@ -0,0 +1,64 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.JoinElement;
+import org.apache.spark.api.java.function.Function;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flattens the Tuple2 of list and matching broadcast values returned by a broadcast join into lists of join elements.
+ * A list is returned for every matching value. If there are no matching values, an inner join returns nothing while
+ * an outer join returns the original list.
+ *
+ * @param <T> type of object to flatten
+ */
+public class BroadcastJoinFlattenFunction<T> implements
+  Function<Tuple2<List<JoinElement<T>>, List<T>>, Iterable<List<JoinElement<T>>>> {
+  private final String inputStageName;
+  private final boolean outer;
+
+  public BroadcastJoinFlattenFunction(String inputStageName, boolean outer) {
+    this.inputStageName = inputStageName;
+    this.outer = outer;
+  }
+
+  @Override
+  public Iterable<List<JoinElement<T>>> call(Tuple2<List<JoinElement<T>>, List<T>> in) throws Exception {
+    List<JoinElement<T>> joined = in._1();
+    List<T> matches = in._2();
+    if (matches.isEmpty()) {
+      return outer ? Collections.singletonList(joined) : Collections.<List<JoinElement<T>>>emptyList();
+    }
+    if (matches.size() == 1) {
+      joined.add(new JoinElement<>(inputStageName, matches.get(0)));
+      return Collections.singletonList(joined);
+    }
+    List<List<JoinElement<T>>> output = new ArrayList<>(matches.size());
+    for (T match : matches) {
+      List<JoinElement<T>> copy = new ArrayList<>(joined.size() + 1);
+      copy.addAll(joined);
+      copy.add(new JoinElement<>(inputStageName, match));
+      output.add(copy);
+    }
+    return output;
+  }
+}
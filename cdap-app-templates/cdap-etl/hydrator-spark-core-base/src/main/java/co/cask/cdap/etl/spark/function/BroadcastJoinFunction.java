@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import org.apache.spark.api.java.JavaSparkContext;
+import org.apache.spark.api.java.function.PairFunction;
+import org.apache.spark.broadcast.Broadcast;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pairs each value with the values of a broadcast collection that have the same key.
+ * The value is paired with an empty list if the broadcast collection does not contain the key.
+ *
+ * @param <K> type of key
+ * @param <V> type of value
+ * @param <T> type of value in the broadcast collection
+ */
+public class BroadcastJoinFunction<K, V, T> implements PairFunction<Tuple2<K, V>, K, Tuple2<V, List<T>>> {
+  private final Broadcast<Map<K, List<T>>> broadcast;
+
+  public BroadcastJoinFunction(Broadcast<Map<K, List<T>>> broadcast) {
+    this.broadcast = broadcast;
+  }
+
+  @Override
+  public Tuple2<K, Tuple2<V, List<T>>> call(Tuple2<K, V> input) throws Exception {
+    List<T> matches = broadcast.value().get(input._1());
+    return new Tuple2<>(input._1(), new Tuple2<>(input._2(), matches == null ? Collections.<T>emptyList() : matches));
+  }
+
+  /**
+   * Broadcasts the given pairs, which were collected to the driver, as a map from key to all values with that key.
+   */
+  public static <K, T> Broadcast<Map<K, List<T>>> broadcast(JavaSparkContext jsc, List<Tuple2<K, T>> pairs) {
+    Map<K, List<T>> values = new HashMap<>();
+    for (Tuple2<K, T> entry : pairs) {
+      List<T> keyValues = values.get(entry._1());
+      if (keyValues == null) {
+        keyValues = new ArrayList<>();
+        values.put(entry._1(), keyValues);
+      }
+      keyValues.add(entry._2());
+    }
+    return jsc.broadcast(values);
+  }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.BulkTransformation;
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.etl.spark.CombinedEmitter;
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Function that uses a Transform that is a {@link BulkTransformation} to transform a partition.
+ * Inputs are read from the partition and transformed in chunks, and output is produced lazily one chunk at a time.
+ * Non-serializable fields are lazily created since this is used in a Spark closure.
+ *
+ * @param <T> type of input object
+ */
+public class BulkTransformFunction<T> implements FlatMapFunc<Iterator<T>, RecordInfo<Object>> {
+  private final PluginFunctionContext pluginFunctionContext;
+  private final int chunkSize;
+  private transient TrackedTransform<T, Object> transform;
+
+  public BulkTransformFunction(PluginFunctionContext pluginFunctionContext, int chunkSize) {
+    this.pluginFunctionContext = pluginFunctionContext;
+    this.chunkSize = chunkSize;
+  }
+
+  @Override
+  public Iterable<RecordInfo<Object>> call(final Iterator<T> inputs) throws Exception {
+    if (transform == null) {
+      Transform<T, Object> plugin = pluginFunctionContext.createPlugin();
+      plugin.initialize(pluginFunctionContext.createBatchRuntimeContext());
+      transform = new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
+                                         pluginFunctionContext.getDataTracer(),
+                                         pluginFunctionContext.getStageStatisticsCollector());
+    }
+    return new Iterable<RecordInfo<Object>>() {
+      @Override
+      public Iterator<RecordInfo<Object>> iterator() {
+        return Iterators.concat(new ChunkIterator(inputs));
+      }
+    };
+  }
+
+  /**
+   * Transforms the next chunk of inputs each time the output of the previous chunk has been consumed.
+   */
+  private class ChunkIterator extends AbstractIterator<Iterator<RecordInfo<Object>>> {
+    private final Iterator<T> inputs;
+    private final List<T> chunk;
+
+    private ChunkIterator(Iterator<T> inputs) {
+      this.inputs = inputs;
+      this.chunk = new ArrayList<>(chunkSize);
+    }
+
+    @Override
+    protected Iterator<RecordInfo<Object>> computeNext() {
+      if (!inputs.hasNext()) {
+        return endOfData();
+      }
+      chunk.clear();
+      while (chunk.size() < chunkSize && inputs.hasNext()) {
+        chunk.add(inputs.next());
+      }
+      CombinedEmitter<Object> emitter = new CombinedEmitter<>(pluginFunctionContext.getStageName());
+      try {
+        transform.transform(chunk, emitter);
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+      return emitter.getEmitted().iterator();
+    }
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.function;
+
+import com.google.common.collect.Lists;
+import org.apache.spark.api.java.function.Function;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pairs each value of a cogrouped key with all values of the other collection that have the same key. This returns
+ * the same output as {@link BroadcastJoinFunction}, and is used when the other collection is too large to broadcast.
+ *
+ * @param <V> type of value
+ * @param <T> type of value in the other collection
+ */
+public class CoGroupJoinFunction<V, T> implements
+  Function<Tuple2<Iterable<V>, Iterable<T>>, Iterable<Tuple2<V, List<T>>>> {
+
+  @Override
+  public Iterable<Tuple2<V, List<T>>> call(Tuple2<Iterable<V>, Iterable<T>> groups) throws Exception {
+    List<T> matches = Lists.newArrayList(groups._2());
+    List<Tuple2<V, List<T>>> output = new ArrayList<>();
+    for (V value : groups._1()) {
+      output.add(new Tuple2<>(value, matches));
+    }
+    return output;
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.api.Transform;
+import co.cask.cdap.etl.common.DefaultEmitter;
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.common.TrackedTransform;
+import co.cask.cdap.etl.spark.CombinedEmitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Function that runs a chain of Transforms in a single flatmap. Output of each transform is passed directly to the
+ * next transform in the chain, so intermediate records are never wrapped in a {@link RecordInfo} or stored in
+ * a collection of their own. Only records emitted by the last transform are returned. Errors and alerts emitted by
+ * the other transforms are dropped, which is fine since a transform is only fused with the next one when that is
+ * its only output.
+ * Non-serializable fields are lazily created since this is used in a Spark closure.
+ *
+ * @param <T> type of input object
+ */
+public class FusedTransformFunction<T> implements FlatMapFunc<T, RecordInfo<Object>> {
+  private final List<PluginFunctionContext> pluginFunctionContexts;
+  private transient List<TrackedTransform<Object, Object>> transforms;
+  private transient List<DefaultEmitter<Object>> intermediateEmitters;
+  private transient CombinedEmitter<Object> emitter;
+
+  public FusedTransformFunction(List<PluginFunctionContext> pluginFunctionContexts) {
+    this.pluginFunctionContexts = pluginFunctionContexts;
+  }
+
+  @Override
+  public Iterable<RecordInfo<Object>> call(T input) throws Exception {
+    if (transforms == null) {
+      int numTransforms = pluginFunctionContexts.size();
+      transforms = new ArrayList<>(numTransforms);
+      intermediateEmitters = new ArrayList<>(numTransforms - 1);
+      for (PluginFunctionContext pluginFunctionContext : pluginFunctionContexts) {
+        Transform<Object, Object> plugin = pluginFunctionContext.createPlugin();
+        plugin.initialize(pluginFunctionContext.createBatchRuntimeContext());
+        transforms.add(new TrackedTransform<>(plugin, pluginFunctionContext.createStageMetrics(),
+                                              pluginFunctionContext.getDataTracer(),
+                                              pluginFunctionContext.getStageStatisticsCollector()));
+        if (transforms.size() < numTransforms) {
+          intermediateEmitters.add(new DefaultEmitter<>());
+        }
+      }
+      emitter = new CombinedEmitter<>(pluginFunctionContexts.get(numTransforms - 1).getStageName());
+    }
+
+    Collection<Object> values = Collections.<Object>singletonList(input);
+    for (int i = 0; i < intermediateEmitters.size(); i++) {
+      DefaultEmitter<Object> intermediateEmitter = intermediateEmitters.get(i);
+      intermediateEmitter.reset();
+      TrackedTransform<Object, Object> transform = transforms.get(i);
+      for (Object value : values) {
+        transform.transform(value, intermediateEmitter);
+      }
+      values = intermediateEmitter.getEntries();
+    }
+
+    emitter.reset();
+    TrackedTransform<Object, Object> lastTransform = transforms.get(transforms.size() - 1);
+    for (Object value : values) {
+      lastTransform.transform(value, emitter);
+    }
+    return emitter.getEmitted();
+  }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.common.KeyFrequencySketch;
+import co.cask.cdap.etl.spark.JoinKeyHash;
+import org.apache.spark.api.java.function.Function2;
+
+/**
+ * Adds a join key to a {@link KeyFrequencySketch}, by its {@link JoinKeyHash}.
+ */
+public class JoinKeySketchFunction implements Function2<KeyFrequencySketch, Object, KeyFrequencySketch> {
+
+  @Override
+  public KeyFrequencySketch call(KeyFrequencySketch sketch, Object key) throws Exception {
+    sketch.add(JoinKeyHash.of(key));
+    return sketch;
+  }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.common.KeyFrequencySketch;
+import org.apache.spark.api.java.function.Function2;
+
+/**
+ * Merges two {@link KeyFrequencySketch} that count the keys of different partitions.
+ */
+public class MergeSketchFunction implements Function2<KeyFrequencySketch, KeyFrequencySketch, KeyFrequencySketch> {
+
+  @Override
+  public KeyFrequencySketch call(KeyFrequencySketch sketch1, KeyFrequencySketch sketch2) throws Exception {
+    sketch1.merge(sketch2);
+    return sketch1;
+  }
+}
@@ -39,6 +39,7 @@ import co.cask.cdap.etl.spec.StageSpec;
 
 import java.io.Serializable;
 import java.util.Map;
+import javax.annotation.Nullable;
 
 /**
  * Serializable collection of objects that can be used in Spark closures to instantiate plugins.
@@ -66,16 +67,27 @@ public class PluginFunctionContext implements Serializable {
   // used in spark streaming, where each batch has a different batch time, and prepareRun is run per batch
   public PluginFunctionContext(StageSpec stageSpec, JavaSparkExecutionContext sec, Map<String, String> arguments,
                                long logicalStartTime, StageStatisticsCollector collector) {
-    this.namespace = sec.getNamespace();
-    this.pipelineName = sec.getApplicationSpecification().getName();
+    this(stageSpec, sec.getNamespace(), sec.getApplicationSpecification().getName(), logicalStartTime,
+         new BasicArguments(sec), sec.getPluginContext(), sec.getServiceDiscoverer(), sec.getMetrics(),
+         sec.getSecureStore(), sec.getDataTracer(stageSpec.getName()), collector);
+  }
+
+  // used to call the functions directly, without a Spark execution context
+  public PluginFunctionContext(StageSpec stageSpec, String namespace, String pipelineName, long logicalStartTime,
+                               BasicArguments arguments, PluginContext pluginContext,
+                               @Nullable ServiceDiscoverer serviceDiscoverer, Metrics metrics,
+                               @Nullable SecureStore secureStore, DataTracer dataTracer,
+                               StageStatisticsCollector collector) {
+    this.namespace = namespace;
+    this.pipelineName = pipelineName;
     this.stageSpec = stageSpec;
     this.logicalStartTime = logicalStartTime;
-    this.arguments = new BasicArguments(sec);
-    this.pluginContext = sec.getPluginContext();
-    this.serviceDiscoverer = sec.getServiceDiscoverer();
-    this.metrics = sec.getMetrics();
-    this.secureStore = sec.getSecureStore();
-    this.dataTracer = sec.getDataTracer(stageSpec.getName());
+    this.arguments = arguments;
+    this.pluginContext = pluginContext;
+    this.serviceDiscoverer = serviceDiscoverer;
+    this.metrics = metrics;
+    this.secureStore = secureStore;
+    this.dataTracer = dataTracer;
     this.pipelinePluginContext = getPluginContext();
     this.collector = collector;
   }
@@ -85,9 +97,9 @@ public class PluginFunctionContext implements Serializable {
       String connectorType = stageSpec.getPlugin().getProperties().get(Constants.Connector.TYPE);
       // ok to pass in null to constructors here since we are only going to use the transform method
       if (connectorType.equals(Constants.Connector.SOURCE_TYPE)) {
-        return (T) new SingleConnectorSource(null, null);
+        return (T) new SingleConnectorSource(null, stageSpec.getInputSchemas().values());
       } else {
-        return (T) new SingleConnectorSink(null, null);
+        return (T) new SingleConnectorSink(null, null, stageSpec.getInputSchemas().values());
       }
     }
     MacroEvaluator macroEvaluator = new DefaultMacroEvaluator(arguments, logicalStartTime, secureStore, namespace);
@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.spark.JoinKeyHash;
+import co.cask.cdap.etl.spark.SaltedJoinKey;
+import scala.Tuple2;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces the join key of each record with a {@link SaltedJoinKey}, so that the records of hot keys can be spread
+ * over several partitions. Keys that are not hot always get salt 0.
+ *
+ * One input of the join is salted: each record of a hot key gets one of the salts of the key, in turn. All other
+ * inputs are replicated: each record of a hot key is emitted once for every salt of the key, so that it is joined
+ * with the records of the salted input in every partition.
+ *
+ * @param <V> type of record
+ */
+public class SaltJoinKeyFunction<V> implements PairFlatMapFunc<Tuple2<Object, V>, Object, V> {
+  private final Map<Integer, Integer> salts;
+  private final boolean replicate;
+  private transient long count;
+
+  /**
+   * @param salts the number of salts of each hot key, keyed by {@link JoinKeyHash}
+   * @param replicate whether to emit records of hot keys once for each salt instead of once with one of the salts
+   */
+  public SaltJoinKeyFunction(Map<Integer, Integer> salts, boolean replicate) {
+    this.salts = salts;
+    this.replicate = replicate;
+  }
+
+  @Override
+  public Iterable<Tuple2<Object, V>> call(Tuple2<Object, V> record) throws Exception {
+    Object key = record._1();
+    Integer keySalts = key == null ? null : salts.get(JoinKeyHash.of(key));
+    if (keySalts == null) {
+      return Collections.singletonList(new Tuple2<Object, V>(new SaltedJoinKey(key, 0), record._2()));
+    }
+    if (!replicate) {
+      int salt = (int) (count++ % keySalts);
+      return Collections.singletonList(new Tuple2<Object, V>(new SaltedJoinKey(key, salt), record._2()));
+    }
+    List<Tuple2<Object, V>> replicas = new ArrayList<>(keySalts);
+    for (int salt = 0; salt < keySalts; salt++) {
+      replicas.add(new Tuple2<Object, V>(new SaltedJoinKey(key, salt), record._2()));
+    }
+    return replicas;
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.function;
+
+import co.cask.cdap.etl.spark.SaltedJoinKey;
+import scala.Tuple2;
+
+import java.util.Collections;
+
+/**
+ * Replaces each {@link SaltedJoinKey} with the original join key, after the join is done.
+ *
+ * @param <V> type of value
+ */
+public class UnsaltJoinKeyFunction<V> implements PairFlatMapFunc<Tuple2<Object, V>, Object, V> {
+
+  @Override
+  public Iterable<Tuple2<Object, V>> call(Tuple2<Object, V> record) throws Exception {
+    SaltedJoinKey saltedKey = (SaltedJoinKey) record._1();
+    return Collections.singletonList(new Tuple2<>(saltedKey.getKey(), record._2()));
+  }
+}
@@ -38,6 +38,7 @@ import co.cask.cdap.etl.spark.streaming.function.ComputeTransformFunction;
 import co.cask.cdap.etl.spark.streaming.function.CountingTransformFunction;
 import co.cask.cdap.etl.spark.streaming.function.DynamicAggregatorAggregate;
 import co.cask.cdap.etl.spark.streaming.function.DynamicAggregatorGroupBy;
+import co.cask.cdap.etl.spark.streaming.function.DynamicFusedTransform;
 import co.cask.cdap.etl.spark.streaming.function.DynamicSparkCompute;
 import co.cask.cdap.etl.spark.streaming.function.DynamicTransform;
 import co.cask.cdap.etl.spark.streaming.function.StreamingAlertPublishFunction;
@@ -51,6 +52,8 @@ import org.apache.spark.streaming.Durations;
 import org.apache.spark.streaming.api.java.JavaDStream;
 import org.apache.spark.streaming.api.java.JavaPairDStream;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.Nullable;
 
 /**
@@ -90,6 +93,16 @@ public class DStreamCollection<T> implements SparkCollection<T> {
     return wrap(stream.transform(new DynamicTransform<T>(new DynamicDriverContext(stageSpec, sec, collector), false)));
   }
 
+  @Override
+  public SparkCollection<RecordInfo<Object>> fusedTransform(List<StageSpec> stageSpecs,
+                                                            List<StageStatisticsCollector> collectors) {
+    List<DynamicDriverContext> dynamicDriverContexts = new ArrayList<>(stageSpecs.size());
+    for (int i = 0; i < stageSpecs.size(); i++) {
+      dynamicDriverContexts.add(new DynamicDriverContext(stageSpecs.get(i), sec, collectors.get(i)));
+    }
+    return wrap(stream.transform(new DynamicFusedTransform<T>(dynamicDriverContexts)));
+  }
+
   @Override
   public SparkCollection<RecordInfo<Object>> multiOutputTransform(StageSpec stageSpec,
                                                                   StageStatisticsCollector collector) {
@@ -23,9 +23,12 @@ import co.cask.cdap.etl.spark.StreamingCompat;
 import com.google.common.base.Optional;
 import org.apache.spark.api.java.function.FlatMapFunction;
 import org.apache.spark.api.java.function.Function;
+import org.apache.spark.api.java.function.PairFlatMapFunction;
 import org.apache.spark.streaming.api.java.JavaPairDStream;
 import scala.Tuple2;
 
+import java.util.List;
+
 /**
  * JavaPairDStream backed {@link SparkPairCollection}
  *
@@ -52,11 +55,21 @@ public class PairDStreamCollection<K, V> implements SparkPairCollection<K, V> {
     return new DStreamCollection<>(sec, pairStream.flatMap(function));
   }
 
+  @Override
+  public <K2, V2> SparkPairCollection<K2, V2> flatMapToPair(PairFlatMapFunction<Tuple2<K, V>, K2, V2> function) {
+    return wrap(pairStream.flatMapToPair(function));
+  }
+
   @Override
   public <T> SparkPairCollection<K, T> mapValues(Function<V, T> function) {
     return wrap(pairStream.mapValues(function));
   }
 
+  @Override
+  public <T> SparkPairCollection<K, T> flatMapValues(Function<V, Iterable<T>> function) {
+    return wrap(pairStream.flatMapValues(function));
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> SparkPairCollection<K, Tuple2<V, T>> join(SparkPairCollection<K, T> other) {
@@ -97,6 +110,13 @@ public class PairDStreamCollection<K, V> implements SparkPairCollection<K, V> {
       StreamingCompat.fullOuterJoin(pairStream, (JavaPairDStream<K, T>) other.getUnderlying(), numPartitions));
   }
 
+  @Override
+  public <T> SparkPairCollection<K, Tuple2<V, List<T>>> broadcastJoin(SparkPairCollection<K, T> other) {
+    // unreachable: SparkStreamingPipelineRunner disables broadcast joins, so joiner inputs are always shuffled
+    throw new IllegalStateException("Broadcast join is not used in Spark Streaming pipelines, since the streaming " +
+                                      "pipeline runner shuffles all joiner inputs.");
+  }
+
   private <T, U> PairDStreamCollection<T, U> wrap(JavaPairDStream<T, U> pairStream) {
     return new PairDStreamCollection<>(sec, pairStream);
   }
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.spark.streaming.function;
+
+import co.cask.cdap.etl.common.RecordInfo;
+import co.cask.cdap.etl.spark.Compat;
+import co.cask.cdap.etl.spark.function.FusedTransformFunction;
+import co.cask.cdap.etl.spark.function.PluginFunctionContext;
+import co.cask.cdap.etl.spark.streaming.DynamicDriverContext;
+import org.apache.spark.api.java.JavaRDD;
+import org.apache.spark.api.java.function.FlatMapFunction;
+import org.apache.spark.api.java.function.Function2;
+import org.apache.spark.streaming.Time;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Serializable function that can be used to run a chain of Transforms in a single flat map on a DStream.
+ * Dynamically instantiates the Transform plugins to ensure that code changes are picked up and to ensure
+ * that macro substitution occurs.
+ *
+ * @param <T> type of input object
+ */
+public class DynamicFusedTransform<T> implements Function2<JavaRDD<T>, Time, JavaRDD<RecordInfo<Object>>> {
+  private final List<DynamicDriverContext> dynamicDriverContexts;
+  private transient FlatMapFunction<T, RecordInfo<Object>> function;
+
+  public DynamicFusedTransform(List<DynamicDriverContext> dynamicDriverContexts) {
+    this.dynamicDriverContexts = dynamicDriverContexts;
+  }
+
+  @Override
+  public JavaRDD<RecordInfo<Object>> call(JavaRDD<T> input, Time batchTime) throws Exception {
+    if (function == null) {
+      List<PluginFunctionContext> pluginFunctionContexts = new ArrayList<>(dynamicDriverContexts.size());
+      for (DynamicDriverContext dynamicDriverContext : dynamicDriverContexts) {
+        pluginFunctionContexts.add(dynamicDriverContext.getPluginFunctionContext());
+      }
+      function = Compat.convert(new FusedTransformFunction<T>(pluginFunctionContexts));
+    }
+    return input.flatMap(function);
+  }
+}
@@ -16,10 +16,12 @@
 
 package co.cask.cdap.etl.mock.batch;
 
+import co.cask.cdap.api.TxRunnable;
 import co.cask.cdap.api.annotation.Macro;
 import co.cask.cdap.api.annotation.Name;
 import co.cask.cdap.api.annotation.Plugin;
 import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.data.DatasetContext;
 import co.cask.cdap.api.data.batch.Output;
 import co.cask.cdap.api.data.format.StructuredRecord;
 import co.cask.cdap.api.data.schema.Schema;
@@ -37,10 +39,14 @@ import co.cask.cdap.etl.api.PipelineConfigurer;
 import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
 import co.cask.cdap.etl.api.batch.BatchSink;
 import co.cask.cdap.etl.api.batch.BatchSinkContext;
+import co.cask.cdap.etl.api.streaming.ContinuousContext;
+import co.cask.cdap.etl.api.streaming.ContinuousSink;
+import co.cask.cdap.etl.api.streaming.ContinuousWriter;
 import co.cask.cdap.etl.proto.v2.ETLPlugin;
 import co.cask.cdap.format.StructuredRecordStringConverter;
 import co.cask.cdap.test.DataSetManager;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -49,10 +55,11 @@ import java.util.UUID;
 
 /**
  * Mock sink that writes records to a Table and has a utility method for getting all records written.
+ * It can also be used in streaming pipelines that run in continuous mode.
  */
 @Plugin(type = BatchSink.PLUGIN_TYPE)
 @Name("Mock")
-public class MockSink extends BatchSink<StructuredRecord, byte[], Put> {
+public class MockSink extends BatchSink<StructuredRecord, byte[], Put> implements ContinuousSink<StructuredRecord> {
   public static final PluginClass PLUGIN_CLASS = getPluginClass();
   private static final byte[] SCHEMA_COL = Bytes.toBytes("s");
   private static final byte[] RECORD_COL = Bytes.toBytes("r");
@@ -93,12 +100,48 @@ public class MockSink extends BatchSink<StructuredRecord, byte[], Put> {
 
   @Override
   public void transform(StructuredRecord input, Emitter<KeyValue<byte[], Put>> emitter) throws Exception {
+    Put put = toPut(input);
+    emitter.emit(new KeyValue<>(put.getRow(), put));
+  }
+
+  @Override
+  public ContinuousWriter<StructuredRecord> createWriter(final ContinuousContext context) {
+    return new ContinuousWriter<StructuredRecord>() {
+      private final List<Put> puts = new ArrayList<>();
+
+      @Override
+      public void write(StructuredRecord input) throws Exception {
+        puts.add(toPut(input));
+      }
+
+      @Override
+      public void flush() throws Exception {
+        context.execute(new TxRunnable() {
+          @Override
+          public void run(DatasetContext datasetContext) throws Exception {
+            Table table = datasetContext.getDataset(config.tableName);
+            for (Put put : puts) {
+              table.put(put);
+            }
+          }
+        });
+        puts.clear();
+      }
+
+      @Override
+      public void close() {
+        // no-op
+      }
+    };
+  }
+
+  private Put toPut(StructuredRecord input) throws IOException {
     byte[] ts = Bytes.toBytes(System.currentTimeMillis());
     byte[] rowkey = Bytes.concat(ts, Bytes.toBytes(UUID.randomUUID()));
     Put put = new Put(rowkey);
     put.add(SCHEMA_COL, input.getSchema().toString());
     put.add(RECORD_COL, StructuredRecordStringConverter.toJsonString(input));
-    emitter.emit(new KeyValue<>(rowkey, put));
+    return put;
   }
 
   public static ETLPlugin getPlugin(String tableName) {
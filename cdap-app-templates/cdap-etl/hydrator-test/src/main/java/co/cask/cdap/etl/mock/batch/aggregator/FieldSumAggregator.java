@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.etl.mock.batch.aggregator;
+
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.etl.api.CombinableAggregator;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.batch.BatchAggregator;
+import co.cask.cdap.etl.api.batch.BatchRuntimeContext;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Groups on a string field and sums a long field. Partial sums are computed before the shuffle. Used to test
+ * combinable aggregators. The output schema has the group field and the sum field.
+ */
+@Plugin(type = BatchAggregator.PLUGIN_TYPE)
+@Name("FieldSum")
+public class FieldSumAggregator extends BatchAggregator<String, StructuredRecord, StructuredRecord>
+  implements CombinableAggregator<String, StructuredRecord, StructuredRecord> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
+  private final Config config;
+  private Schema outputSchema;
+
+  public FieldSumAggregator(Config config) {
+    this.config = config;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    pipelineConfigurer.getStageConfigurer().setOutputSchema(config.getOutputSchema());
+  }
+
+  @Override
+  public void initialize(BatchRuntimeContext context) throws Exception {
+    outputSchema = config.getOutputSchema();
+  }
+
+  @Override
+  public void groupBy(StructuredRecord input, Emitter<String> emitter) throws Exception {
+    emitter.emit((String) input.get(config.groupField));
+  }
+
+  @Override
+  public StructuredRecord initializeAggregate(StructuredRecord groupValue) throws Exception {
+    return StructuredRecord.builder(outputSchema)
+      .set(config.groupField, groupValue.get(config.groupField))
+      .set(config.sumField, groupValue.get(config.sumField))
+      .build();
+  }
+
+  @Override
+  public StructuredRecord mergeAggregates(StructuredRecord aggregate1, StructuredRecord aggregate2) throws Exception {
+    long sum = (long) aggregate1.get(config.sumField) + (long) aggregate2.get(config.sumField);
+    return StructuredRecord.builder(outputSchema)
+      .set(config.groupField, aggregate1.get(config.groupField))
+      .set(config.sumField, sum)
+      .build();
+  }
+
+  @Override
+  public void aggregate(String groupKey, Iterator<StructuredRecord> groupValues,
+                        Emitter<StructuredRecord> emitter) throws Exception {
+    StructuredRecord result = groupValues.next();
+    while (groupValues.hasNext()) {
+      result = mergeAggregates(result, groupValues.next());
+    }
+    emitter.emit(result);
+  }
+
+  /**
+   * Conf for the aggregator.
+   */
+  public static class Config extends PluginConfig {
+    private final String groupField;
+
+    private final String sumField;
+
+    public Config() {
+      this.groupField = "group";
+      this.sumField = "value";
+    }
+
+    private Schema getOutputSchema() {
+      return Schema.recordOf(
+        groupField + "." + sumField + ".sum",
+        Schema.Field.of(groupField, Schema.of(Schema.Type.STRING)),
+        Schema.Field.of(sumField, Schema.of(Schema.Type.LONG)));
+    }
+  }
+
+  public static ETLPlugin getPlugin(String groupField, String sumField) {
+    Map<String, String> properties = new HashMap<>();
+    properties.put("groupField", groupField);
+    properties.put("sumField", sumField);
+    return new ETLPlugin("FieldSum", BatchAggregator.PLUGIN_TYPE, properties, null);
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("groupField", new PluginPropertyField("groupField", "", "string", true, false));
+    properties.put("sumField", new PluginPropertyField("sumField", "", "string", true, false));
+    return new PluginClass(BatchAggregator.PLUGIN_TYPE, "FieldSum", "", FieldSumAggregator.class.getName(),
+                           "config", properties);
+  }
+}
@@ -34,6 +34,7 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -94,7 +95,7 @@ public class MockJoiner extends BatchJoiner<StructuredRecord, StructuredRecord,
 
   @Override
   public JoinConfig getJoinConfig() {
-    return new JoinConfig(config.getRequiredInputs());
+    return new JoinConfig(config.getRequiredInputs(), config.getInMemoryInputs());
   }
 
   @Override
@@ -142,12 +143,15 @@ public class MockJoiner extends BatchJoiner<StructuredRecord, StructuredRecord,
     private final String selectedFields;
     @Nullable
     private final String requiredInputs;
+    @Nullable
+    private final String inMemoryInputs;
 
 
     public Config() {
       this.joinKeys = "joinKeys";
       this.selectedFields = "selectedFields";
       this.requiredInputs = "requiredInputs";
+      this.inMemoryInputs = null;
     }
 
     private void validateConfig() {
@@ -199,13 +203,28 @@ public class MockJoiner extends BatchJoiner<StructuredRecord, StructuredRecord,
     private Iterable<String> getRequiredInputs() {
       return Splitter.on(',').trimResults().omitEmptyStrings().split(requiredInputs);
     }
+
+    private Iterable<String> getInMemoryInputs() {
+      if (inMemoryInputs == null) {
+        return Collections.emptyList();
+      }
+      return Splitter.on(',').trimResults().omitEmptyStrings().split(inMemoryInputs);
+    }
   }
 
   public static ETLPlugin getPlugin(String joinKeys, String requiredInputs, String selectedFields) {
+    return getPlugin(joinKeys, requiredInputs, selectedFields, null);
+  }
+
+  public static ETLPlugin getPlugin(String joinKeys, String requiredInputs, String selectedFields,
+                                    @Nullable String inMemoryInputs) {
     Map<String, String> properties = new HashMap<>();
     properties.put("joinKeys", joinKeys);
     properties.put("requiredInputs", requiredInputs);
     properties.put("selectedFields", selectedFields);
+    if (inMemoryInputs != null) {
+      properties.put("inMemoryInputs", inMemoryInputs);
+    }
     return new ETLPlugin("MockJoiner", BatchJoiner.PLUGIN_TYPE, properties, null);
   }
 
@@ -214,6 +233,7 @@ public class MockJoiner extends BatchJoiner<StructuredRecord, StructuredRecord,
     properties.put("joinKeys", new PluginPropertyField("joinKeys", "", "string", true, false));
     properties.put("requiredInputs", new PluginPropertyField("requiredInputs", "", "string", true, false));
     properties.put("selectedFields", new PluginPropertyField("selectedFields", "", "string", true, false));
+    properties.put("inMemoryInputs", new PluginPropertyField("inMemoryInputs", "", "string", false, false));
     return new PluginClass(BatchJoiner.PLUGIN_TYPE, "MockJoiner", "", MockJoiner.class.getName(),
                            "config", properties);
   }
@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.etl.mock.spark.streaming;
+
+import co.cask.cdap.api.annotation.Name;
+import co.cask.cdap.api.annotation.Plugin;
+import co.cask.cdap.api.data.format.StructuredRecord;
+import co.cask.cdap.api.data.schema.Schema;
+import co.cask.cdap.api.plugin.PluginClass;
+import co.cask.cdap.api.plugin.PluginConfig;
+import co.cask.cdap.api.plugin.PluginPropertyField;
+import co.cask.cdap.etl.api.Emitter;
+import co.cask.cdap.etl.api.PipelineConfigurer;
+import co.cask.cdap.etl.api.streaming.ContinuousContext;
+import co.cask.cdap.etl.api.streaming.ContinuousReader;
+import co.cask.cdap.etl.api.streaming.ContinuousSource;
+import co.cask.cdap.etl.api.streaming.StreamingContext;
+import co.cask.cdap.etl.api.streaming.StreamingSource;
+import co.cask.cdap.etl.proto.v2.ETLPlugin;
+import co.cask.cdap.format.StructuredRecordStringConverter;
+import com.google.common.collect.ImmutableMap;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.apache.spark.streaming.api.java.JavaDStream;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+
+/**
+ * Mock source that can only be read in continuous mode. The checkpoint is the index of the next record to read.
+ */
+@Plugin(type = StreamingSource.PLUGIN_TYPE)
+@Name("MockContinuous")
+public class MockContinuousSource extends StreamingSource<StructuredRecord>
+  implements ContinuousSource<StructuredRecord> {
+  public static final PluginClass PLUGIN_CLASS = getPluginClass();
+  private static final Gson GSON = new Gson();
+  private static final Type STRING_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
+
+  private final Conf conf;
+
+  public MockContinuousSource(Conf conf) {
+    this.conf = conf;
+  }
+
+  @Override
+  public void configurePipeline(PipelineConfigurer pipelineConfigurer) {
+    try {
+      pipelineConfigurer.getStageConfigurer().setOutputSchema(Schema.parseJson(conf.schema));
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Could not parse schema " + conf.schema);
+    }
+  }
+
+  @Override
+  public JavaDStream<StructuredRecord> getStream(StreamingContext context) throws Exception {
+    throw new UnsupportedOperationException("This source can only be read in continuous mode.");
+  }
+
+  @Override
+  public ContinuousReader<StructuredRecord> createReader(ContinuousContext context,
+                                                         @Nullable String checkpoint) throws Exception {
+    Schema schema = Schema.parseJson(conf.schema);
+    List<String> recordsAsStrings = GSON.fromJson(conf.records, STRING_LIST_TYPE);
+    final List<StructuredRecord> inputRecords = new ArrayList<>();
+    for (String recordStr : recordsAsStrings) {
+      inputRecords.add(StructuredRecordStringConverter.fromJsonString(recordStr, schema));
+    }
+    final int start = checkpoint == null ? 0 : Integer.parseInt(checkpoint);
+
+    return new ContinuousReader<StructuredRecord>() {
+      private int next = start;
+
+      @Override
+      public void read(Emitter<StructuredRecord> emitter, long timeoutMillis) throws Exception {
+        if (next >= inputRecords.size()) {
+          TimeUnit.MILLISECONDS.sleep(timeoutMillis);
+          return;
+        }
+        while (next < inputRecords.size()) {
+          emitter.emit(inputRecords.get(next));
+          next++;
+        }
+      }
+
+      @Nullable
+      @Override
+      public String getCheckpoint() {
+        return next == 0 ? null : String.valueOf(next);
+      }
+
+      @Override
+      public void close() {
+        // no-op
+      }
+    };
+  }
+
+  /**
+   * Config for mock source.
+   */
+  public static class Conf extends PluginConfig {
+    private String schema;
+    private String records;
+  }
+
+  public static ETLPlugin getPlugin(Schema schema, List<StructuredRecord> records) throws IOException {
+    List<String> recordsStrs = new ArrayList<>(records.size());
+    for (StructuredRecord record : records) {
+      recordsStrs.add(StructuredRecordStringConverter.toJsonString(record));
+    }
+    return new ETLPlugin("MockContinuous", StreamingSource.PLUGIN_TYPE,
+                         ImmutableMap.of("schema", schema.toString(), "records", GSON.toJson(recordsStrs)),
+                         null);
+  }
+
+  private static PluginClass getPluginClass() {
+    Map<String, PluginPropertyField> properties = new HashMap<>();
+    properties.put("schema", new PluginPropertyField("schema", "", "string", true, false));
+    properties.put("records", new PluginPropertyField("records", "", "string", true, false));
+    return new PluginClass(StreamingSource.PLUGIN_TYPE, "MockContinuous", "", MockContinuousSource.class.getName(),
+                           "conf", properties);
+  }
+}
@@ -638,6 +638,9 @@ public final class Constants {
     public static final String SERVICE_DESCRIPTION = "Service to handle metrics requests.";
     public static final String PROCESSOR_MAX_DELAY_MS = "metrics.processor.max.delay.ms";
     public static final String QUEUE_SIZE = "metrics.processor.queue.size";
+    public static final String PERSIST_PARTITIONS = "metrics.processor.persist.partitions";
+    public static final String QUERY_CACHE_SIZE = "metrics.query.cache.size";
+    public static final String QUERY_CACHE_WATERMARK_DELAY_SECONDS = "metrics.query.cache.watermark.delay.seconds";
 
     public static final String ENTITY_TABLE_NAME = "metrics.data.entity.tableName";
     public static final String METRICS_TABLE_PREFIX = "metrics.data.table.prefix";
@@ -790,6 +793,7 @@ public final class Constants {
         public static final String PROCESS_MIN_DELAY = "log.process.min.delay";
         public static final String PROCESS_MAX_DELAY = "log.process.max.delay";
         public static final String PROCESS_MESSAGES_COUNT = "log.process.message.count";
+        public static final String PUBLISH_DROPPED_COUNT = "log.publish.dropped.count";
       }
     }
 
@@ -897,6 +901,8 @@ public final class Constants {
     public static final String TMS_APPENDER_QUEUE_SIZE = "log.tms.queue.size";
     public static final String NUM_PARTITIONS = "log.publish.num.partitions";
     public static final String LOG_PUBLISH_PARTITION_KEY = "log.publish.partition.key";
+    public static final String LOG_PUBLISH_OVERFLOW_POLICY = "log.publish.overflow.policy";
+    public static final String LOG_READER_PARALLELISM = "log.reader.parallelism";
 
     public static final String PIPELINE_CONFIG_DIR = "log.process.pipeline.config.dir";
     public static final String PIPELINE_LIBRARY_DIR = "log.process.pipeline.lib.dir";
@@ -1366,6 +1372,8 @@ public final class Constants {
     public static final String LOCAL_DATA_CLEANUP_FREQUENCY = "messaging.local.data.cleanup.frequency.secs";
 
     public static final String CACHE_SIZE_MB = "messaging.cache.size.mb";
+    public static final String CACHE_MODE = "messaging.cache.mode";
+    public static final String CACHE_OFFHEAP_SEGMENT_SIZE_KB = "messaging.cache.offheap.segment.size.kb";
 
     public static final String HBASE_MAX_SCAN_THREADS = "messaging.hbase.max.scan.threads";
     public static final String HBASE_SCAN_CACHE_ROWS = "messaging.hbase.scan.cache.rows";
@@ -1376,6 +1384,9 @@ public final class Constants {
     public static final String PAYLOAD_TABLE_HBASE_SPLITS = "messaging.payload.table.hbase.splits";
     public static final String SYSTEM_TOPICS = "messaging.system.topics";
     public static final String TABLE_CACHE_EXPIRATION_SECONDS = "messaging.table.expiration.seconds";
+    public static final String WRITER_MODE = "messaging.writer.mode";
+    public static final String WRITER_GROUP_COMMIT_MAX_BATCH_SIZE = "messaging.writer.group.commit.max.batch.size";
+    public static final String WRITER_GROUP_COMMIT_LINGER_MS = "messaging.writer.group.commit.linger.ms";
     public static final String TABLE_HBASE_SPLIT_POLICY = "messaging.table.hbase.split.policy";
     public static final String TOPIC_DEFAULT_TTL_SECONDS = "messaging.topic.default.ttl.seconds";
     public static final String COPROCESSOR_METADATA_CACHE_UPDATE_FREQUENCY_SECONDS =
@@ -1385,6 +1396,22 @@ public final class Constants {
     public static final String HTTP_SERVER_EXECUTOR_THREADS = "messaging.http.server.executor.threads";
     public static final String HTTP_SERVER_MAX_REQUEST_SIZE_MB = "messaging.http.server.max.request.size.mb";
     public static final String HTTP_SERVER_CONSUME_CHUNK_SIZE = "messaging.http.server.consume.chunk.size";
+    public static final String HTTP_SERVER_CONSUME_MAX_WAIT_MS = "messaging.http.server.consume.max.wait.ms";
+    public static final String HTTP_SERVER_CONSUME_WAIT_THREADS = "messaging.http.server.consume.wait.threads";
+
+    public static final String CLIENT_ASYNC_MAX_OUTSTANDING_REQUESTS =
+      "messaging.client.async.max.outstanding.requests";
+    public static final String CLIENT_ASYNC_MAX_COALESCE_BYTES = "messaging.client.async.max.coalesce.bytes";
+    public static final String CLIENT_BINARY_ENABLED = "messaging.client.binary.enabled";
+    public static final String CLIENT_BINARY_NEGOTIATION_RETRY_SECONDS =
+      "messaging.client.binary.negotiation.retry.seconds";
+
+    public static final String BINARY_SERVER_ENABLED = "messaging.binary.server.enabled";
+    public static final String BINARY_SERVER_MAX_CONNECTION_REQUESTS =
+      "messaging.binary.server.max.connection.requests";
+    public static final String BINARY_SERVER_MAX_QUEUED_REQUESTS = "messaging.binary.server.max.queued.requests";
+    public static final String BINARY_SERVER_PORT = "messaging.binary.server.port";
+    public static final String BINARY_SERVER_THREADS = "messaging.binary.server.threads";
 
     // Distributed mode related configurations
     public static final String HA_FENCING_DELAY_SECONDS = "messaging.ha.fencing.delay.seconds";
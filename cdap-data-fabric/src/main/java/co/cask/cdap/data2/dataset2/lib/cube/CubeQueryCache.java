@@ -0,0 +1,317 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Table;
+
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the time series scanned by {@link DefaultCube} for queries, so that repeated queries over a sliding
+ * time window, such as those from dashboards, only scan the part of the time range that is not cached.
+ *
+ * <p>
+ * Only data points older than the watermark are cached, which is the current time minus a configurable delay,
+ * aligned to the query resolution. Data points before the watermark are considered final since all
+ * metrics for that time have been written. Entries are keyed by the query with the time range, limit and
+ * interpolator removed, since those are applied after scanning.
+ * </p>
+ *
+ * <p>
+ * Writes to the cube can happen in a different process, so late writes are not always seen by
+ * {@link #factsAdded(long)}. Such writers record a version in storage shared with the querying process.
+ * The querying process passes it to {@link #syncVersion(long)} before each query.
+ * As a last resort, entries are fully refreshed after a maximum age.
+ * </p>
+ */
+public final class CubeQueryCache {
+
+  private static final long MAX_ENTRY_AGE_SECONDS = TimeUnit.MINUTES.toSeconds(10);
+
+  /**
+   * Scans the cube for a time range.
+   */
+  interface RangeScanner {
+
+    /**
+     * Scans the given time range.
+     *
+     * @param startTs start of the time range, inclusive
+     * @param endTs end of the time range, inclusive
+     * @return the {@link ScanResult}
+     */
+    ScanResult scan(long startTs, long endTs);
+  }
+
+  /**
+   * The result of {@link RangeScanner#scan(long, long)}.
+   */
+  static final class ScanResult {
+
+    private final Table<Map<String, String>, String, Map<Long, Long>> timeSeries;
+    private final boolean complete;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param timeSeries the scanned time series, in the form of {dimension values, measure} -> {time -> value}s
+     * @param complete {@code false} if the scan stopped before reaching the end, hence the result cannot be cached
+     */
+    ScanResult(Table<Map<String, String>, String, Map<Long, Long>> timeSeries, boolean complete) {
+      this.timeSeries = timeSeries;
+      this.complete = complete;
+    }
+  }
+
+  private final Cache<CacheKey, CacheEntry> cache;
+  private final long watermarkDelaySeconds;
+  private final LongSupplier clock;
+  private long version = -1L;
+
+  /**
+   * Creates a new instance.
+   *
+   * @param maxSize maximum number of queries to cache
+   * @param watermarkDelaySeconds number of seconds after which data points are considered final
+   */
+  public CubeQueryCache(int maxSize, long watermarkDelaySeconds) {
+    this(maxSize, watermarkDelaySeconds, () -> TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()));
+  }
+
+  @VisibleForTesting
+  CubeQueryCache(int maxSize, long watermarkDelaySeconds, LongSupplier clock) {
+    this.cache = CacheBuilder.newBuilder()
+      .maximumSize(maxSize)
+      .expireAfterAccess(MAX_ENTRY_AGE_SECONDS, TimeUnit.SECONDS)
+      .build();
+    this.watermarkDelaySeconds = watermarkDelaySeconds;
+    this.clock = clock;
+  }
+
+  /**
+   * Returns the time series for the given query. Time ranges that are not cached are scanned by the given scanner.
+   *
+   * @param aggregation the name of the aggregation to query
+   * @param query the query
+   * @param scanner the {@link RangeScanner} for scanning time ranges that are not cached
+   * @return the time series of the query, in the form of {dimension values, measure} -> {time -> value}s
+   */
+  Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(String aggregation, CubeQuery query,
+                                                                    RangeScanner scanner) {
+    long now = clock.getAsLong();
+    long watermark = getWatermark(now, query.getResolution());
+    long startTs = query.getStartTs();
+    long endTs = query.getEndTs();
+
+    if (startTs >= watermark) {
+      // Nothing can be cached
+      return scanner.scan(startTs, endTs).timeSeries;
+    }
+
+    CacheKey key = new CacheKey(aggregation, query);
+    CacheEntry entry = cache.getIfPresent(key);
+    if (entry == null || !entry.covers(startTs) || now - entry.createTime > MAX_ENTRY_AGE_SECONDS) {
+      ScanResult scanned = scanner.scan(startTs, endTs);
+      if (scanned.complete) {
+        // Cache the final part of the result
+        long cacheEnd = Math.min(watermark, endTs + 1);
+        cache.put(key, new CacheEntry(startTs, cacheEnd, now, copyRange(scanned.timeSeries, startTs, cacheEnd)));
+      }
+      return scanned.timeSeries;
+    }
+
+    // Take the cached part and scan the rest
+    Table<Map<String, String>, String, Map<Long, Long>> result =
+      copyRange(entry.timeSeries, startTs, Math.min(entry.end, endTs + 1));
+    if (endTs < entry.end) {
+      return result;
+    }
+
+    ScanResult scanned = scanner.scan(entry.end, endTs);
+    // Extend the entry to the new watermark if the scanned range covers it. The data points before the query start
+    // time are dropped, since queries over a sliding time window never go back.
+    if (scanned.complete && watermark > entry.end && endTs + 1 >= watermark) {
+      Table<Map<String, String>, String, Map<Long, Long>> extended = copyRange(result, startTs, entry.end);
+      merge(extended, copyRange(scanned.timeSeries, entry.end, watermark));
+      cache.put(key, new CacheEntry(startTs, watermark, entry.createTime, extended));
+    }
+    merge(result, scanned.timeSeries);
+    return result;
+  }
+
+  /**
+   * Notifies that facts with the given minimum timestamp were added to the cube. If the timestamp is before
+   * the watermark of any resolution, all cache entries are invalidated.
+   */
+  public void factsAdded(long minTimestamp) {
+    if (isBeforeWatermark(minTimestamp)) {
+      invalidateAll();
+    }
+  }
+
+  /**
+   * Returns whether facts with the given timestamp may already be cached, which is when the timestamp is before
+   * the watermark of any resolution.
+   */
+  public boolean isBeforeWatermark(long timestamp) {
+    return timestamp < clock.getAsLong() - watermarkDelaySeconds;
+  }
+
+  /**
+   * Invalidates all entries if the given version is different from the one passed in the previous call.
+   * The version is kept in storage shared with the processes that write to the cube. Writers increment it
+   * after writing or deleting facts that may already be cached.
+   */
+  public synchronized void syncVersion(long version) {
+    if (this.version != version) {
+      invalidateAll();
+      this.version = version;
+    }
+  }
+
+  /**
+   * Removes all entries from the cache.
+   */
+  public void invalidateAll() {
+    cache.invalidateAll();
+  }
+
+  private long getWatermark(long now, int resolution) {
+    long time = now - watermarkDelaySeconds;
+    return time < 0 ? 0 : time / resolution * resolution;
+  }
+
+  /**
+   * Returns a copy of the given time series with only the data points in the given time range.
+   *
+   * @param startTs start of the time range, inclusive
+   * @param endTs end of the time range, exclusive
+   */
+  private static Table<Map<String, String>, String, Map<Long, Long>> copyRange(
+    Table<Map<String, String>, String, ? extends Map<Long, Long>> timeSeries, long startTs, long endTs) {
+    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    for (Table.Cell<Map<String, String>, String, ? extends Map<Long, Long>> cell : timeSeries.cellSet()) {
+      NavigableMap<Long, Long> values = new TreeMap<>();
+      for (Map.Entry<Long, Long> entry : cell.getValue().entrySet()) {
+        if (entry.getKey() >= startTs && entry.getKey() < endTs) {
+          values.put(entry.getKey(), entry.getValue());
+        }
+      }
+      if (!values.isEmpty()) {
+        result.put(cell.getRowKey(), cell.getColumnKey(), values);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Merges the time series from the source into the target. The two time series must not have overlapping
+   * timestamps.
+   */
+  private static void merge(Table<Map<String, String>, String, Map<Long, Long>> target,
+                            Table<Map<String, String>, String, Map<Long, Long>> source) {
+    for (Table.Cell<Map<String, String>, String, Map<Long, Long>> cell : source.cellSet()) {
+      Map<Long, Long> values = target.get(cell.getRowKey(), cell.getColumnKey());
+      if (values == null) {
+        target.put(cell.getRowKey(), cell.getColumnKey(), new TreeMap<>(cell.getValue()));
+      } else {
+        values.putAll(cell.getValue());
+      }
+    }
+  }
+
+  /**
+   * The key of the cache, which is the query normalized without the time range, limit and interpolator.
+   */
+  private static final class CacheKey {
+
+    private final String aggregation;
+    private final int resolution;
+    private final Map<String, AggregationFunction> measurements;
+    private final Map<String, String> dimensionValues;
+    // The grouping order doesn't matter since grouped dimension values are stored in sorted maps
+    private final Set<String> groupByDimensions;
+    private final int hashCode;
+
+    CacheKey(String aggregation, CubeQuery query) {
+      this.aggregation = aggregation;
+      this.resolution = query.getResolution();
+      this.measurements = ImmutableMap.copyOf(query.getMeasurements());
+      this.dimensionValues = ImmutableMap.copyOf(query.getDimensionValues());
+      this.groupByDimensions = ImmutableSet.copyOf(query.getGroupByDimensions());
+      this.hashCode = Objects.hashCode(aggregation, resolution, measurements, dimensionValues, groupByDimensions);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      CacheKey other = (CacheKey) o;
+      return resolution == other.resolution
+        && aggregation.equals(other.aggregation)
+        && measurements.equals(other.measurements)
+        && dimensionValues.equals(other.dimensionValues)
+        && groupByDimensions.equals(other.groupByDimensions);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  /**
+   * An immutable cache entry that holds the time series of the time range {@code [start, end)}.
+   */
+  private static final class CacheEntry {
+
+    private final long start;
+    private final long end;
+    private final long createTime;
+    private final Table<Map<String, String>, String, Map<Long, Long>> timeSeries;
+
+    CacheEntry(long start, long end, long createTime, Table<Map<String, String>, String, Map<Long, Long>> timeSeries) {
+      this.start = start;
+      this.end = end;
+      this.createTime = createTime;
+      this.timeSeries = timeSeries;
+    }
+
+    boolean covers(long timestamp) {
+      return start <= timestamp && timestamp < end;
+    }
+  }
+}
@@ -67,6 +67,8 @@ public class DefaultCube implements Cube, MeteredDataset {
   private final Map<Integer, FactTable> resolutionToFactTable;
   private final Map<String, ? extends Aggregation> aggregations;
   private final Map<String, AggregationAlias> aggregationAliasMap;
+  @Nullable
+  private final CubeQueryCache queryCache;
 
   @Nullable
   private MetricsCollector metrics;
@@ -74,7 +76,19 @@ public class DefaultCube implements Cube, MeteredDataset {
   public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
                      Map<String, ? extends Aggregation> aggregations,
                      Map<String, AggregationAlias> aggregationAliasMap) {
+    this(resolutions, factTableSupplier, aggregations, aggregationAliasMap, null);
+  }
+
+  /**
+   * Creates a {@link DefaultCube} that uses the given {@link CubeQueryCache} for caching query results.
+   * The cache should only be used by one cube.
+   */
+  public DefaultCube(int[] resolutions, FactTableSupplier factTableSupplier,
+                     Map<String, ? extends Aggregation> aggregations,
+                     Map<String, AggregationAlias> aggregationAliasMap,
+                     @Nullable CubeQueryCache queryCache) {
     this.aggregations = aggregations;
+    this.queryCache = queryCache;
     this.resolutionToFactTable = Maps.newHashMap();
     for (int resolution : resolutions) {
       resolutionToFactTable.put(resolution, factTableSupplier.get(resolution, 3600));
@@ -91,7 +105,9 @@ public class DefaultCube implements Cube, MeteredDataset {
   public void add(Collection<? extends CubeFact> facts) {
     List<Fact> toWrite = Lists.newArrayList();
     int dimValuesCount = 0;
+    long minTimestamp = Long.MAX_VALUE;
     for (CubeFact fact : facts) {
+      minTimestamp = Math.min(minTimestamp, fact.getTimestamp());
       for (Map.Entry<String, ? extends Aggregation> aggEntry : aggregations.entrySet()) {
         Aggregation agg = aggEntry.getValue();
         AggregationAlias aggregationAlias = null;
@@ -116,6 +132,9 @@ public class DefaultCube implements Cube, MeteredDataset {
     for (FactTable table : resolutionToFactTable.values()) {
       table.add(toWrite);
     }
+    if (queryCache != null) {
+      queryCache.factsAdded(minTimestamp);
+    }
 
     incrementMetric("cube.cubeFact.add.request.count", 1);
     incrementMetric("cube.cubeFact.added.count", facts.size());
@@ -204,13 +223,22 @@ public class DefaultCube implements Cube, MeteredDataset {
       dimensionValues.add(new DimensionValue(dimensionName, query.getDimensionValues().get(dimensionName)));
     }
 
-    FactScan scan = new FactScan(query.getStartTs(), query.getEndTs(),
-                                 query.getMeasurements().keySet(), dimensionValues);
-
-    // 3) execute scan query
+    // 3) execute scan query, only for the time range not in the cache if caching is enabled
     FactTable table = resolutionToFactTable.get(query.getResolution());
-    FactScanner scanner = table.scan(scan);
-    Table<Map<String, String>, String, Map<Long, Long>> resultMap = getTimeSeries(query, scanner);
+    Table<Map<String, String>, String, Map<Long, Long>> resultMap;
+    if (queryCache == null) {
+      resultMap = HashBasedTable.create();
+      FactScan scan = new FactScan(query.getStartTs(), query.getEndTs(),
+                                   query.getMeasurements().keySet(), dimensionValues);
+      getTimeSeries(query, table.scan(scan), resultMap);
+    } else {
+      resultMap = queryCache.getTimeSeries(aggName, query, (startTs, endTs) -> {
+        Table<Map<String, String>, String, Map<Long, Long>> timeSeries = HashBasedTable.create();
+        FactScan scan = new FactScan(startTs, endTs, query.getMeasurements().keySet(), dimensionValues);
+        boolean complete = getTimeSeries(query, table.scan(scan), timeSeries);
+        return new CubeQueryCache.ScanResult(timeSeries, complete);
+      });
+    }
 
     incrementMetric("cube.query.request.success.count", 1);
     incrementMetric("cube.query.result.size", resultMap.size());
@@ -223,6 +251,9 @@ public class DefaultCube implements Cube, MeteredDataset {
 
   @Override
   public void delete(CubeDeleteQuery query) {
+    if (queryCache != null) {
+      queryCache.invalidateAll();
+    }
     //this may be very inefficient and its better to use TTL, this is to only support existing old functionality.
     List<DimensionValue> dimensionValues = Lists.newArrayList();
     // find all the aggregations that match the dimensionValues in the query and
@@ -329,10 +360,15 @@ public class DefaultCube implements Cube, MeteredDataset {
     return currentBest;
   }
 
-  private Table<Map<String, String>, String, Map<Long, Long>> getTimeSeries(CubeQuery query, FactScanner scanner) {
-    // {dimension values, measure} -> {time -> value}s
-    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
-
+  /**
+   * Scans the given {@link FactScanner} and aggregates the time series into the given result table,
+   * in the form of {dimension values, measure} -> {time -> value}s.
+   *
+   * @return {@code true} if the scan is completed; {@code false} if it stopped after scanning the maximum
+   *         number of records
+   */
+  private boolean getTimeSeries(CubeQuery query, FactScanner scanner,
+                                Table<Map<String, String>, String, Map<Long, Long>> result) {
     int count = 0;
     while (scanner.hasNext()) {
       FactScanResult next = scanner.next();
@@ -394,10 +430,10 @@ public class DefaultCube implements Cube, MeteredDataset {
         }
       }
       if (++count >= MAX_RECORDS_TO_SCAN) {
-        break;
+        return false;
       }
     }
-    return result;
+    return true;
   }
 
   private Collection<TimeSeries> convertToQueryResult(CubeQuery query,
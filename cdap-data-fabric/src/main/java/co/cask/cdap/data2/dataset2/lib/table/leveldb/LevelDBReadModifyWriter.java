@@ -0,0 +1,178 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import com.google.common.base.Throwables;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Serializes read-modify-write operations, such as increment and swap, on a LevelDB table from concurrent threads.
+ * There is one instance per table, shared by all {@link LevelDBTableCore} of the same table.
+ *
+ * It uses the same non-blocking algorithm as the ConcurrentMessageWriter in the messaging service:
+ *
+ * <pre>
+ * 1. A thread enqueues its {@link Operation} to a ConcurrentLinkedQueue.
+ * 2. Use CAS to set an AtomicBoolean flag to true.
+ * 3. If successfully set the flag to true, this thread becomes the writer and proceed to run step 4-6.
+ * 4. Drains the queue and applies all the operations as one batch with the given {@link BatchApplier}.
+ * 5. Completes each of the operations applied.
+ * 6. Set the AtomicBoolean flag back to false.
+ * 7. If the operation enqueued by this thread is NOT completed, go back to step 2.
+ * </pre>
+ *
+ * Since only one thread applies operations at a time, the batch applier can read the current values once per batch,
+ * merge all operations on the same cell in memory and persist the results with one write.
+ */
+@ThreadSafe
+final class LevelDBReadModifyWriter {
+
+  /**
+   * Applies a batch of operations.
+   */
+  interface BatchApplier {
+
+    /**
+     * Applies the given operations in order and persists the results. Operations that cannot be applied
+     * should be completed with a failure by calling {@link Operation#fail(Throwable)}; the remaining
+     * operations will be completed when this method returns.
+     *
+     * @throws IOException if failed to persist the results, in which case all operations not yet
+     *                     completed will be failed
+     */
+    void apply(List<Operation<?>> operations) throws IOException;
+  }
+
+  private final Queue<Operation<?>> queue = new ConcurrentLinkedQueue<>();
+  private final List<Operation<?>> inflight = new ArrayList<>();
+  private final AtomicBoolean writerFlag = new AtomicBoolean();
+
+  /**
+   * Executes the given operation and blocks until it is applied, possibly together with operations
+   * from other threads.
+   *
+   * @param operation the operation to execute
+   * @param applier the {@link BatchApplier} to use if the current thread becomes the writer
+   * @return the result of the operation
+   * @throws IOException if failed to persist the operation
+   */
+  <T> T execute(Operation<T> operation, BatchApplier applier) throws IOException {
+    queue.add(operation);
+    while (!operation.isCompleted()) {
+      if (!tryApply(applier)) {
+        Thread.yield();
+      }
+    }
+    return operation.getResult();
+  }
+
+  /**
+   * Tries to acquire the writer flag and apply the pending operations.
+   *
+   * @return {@code true} if acquired the writer flag and applied all pending operations;
+   *         otherwise {@code false} will be returned.
+   */
+  private boolean tryApply(BatchApplier applier) {
+    if (!writerFlag.compareAndSet(false, true)) {
+      return false;
+    }
+    try {
+      // Capture the current operations instead of using a live iterator to bound the batch size.
+      // The number of operations in the queue is bounded by the number of threads calling execute.
+      Operation<?> operation = queue.poll();
+      while (operation != null) {
+        inflight.add(operation);
+        operation = queue.poll();
+      }
+      if (inflight.isEmpty()) {
+        return true;
+      }
+
+      Throwable failure = null;
+      try {
+        applier.apply(inflight);
+      } catch (Throwable t) {
+        failure = t;
+      }
+      for (Operation<?> op : inflight) {
+        op.complete(failure);
+      }
+      inflight.clear();
+    } finally {
+      writerFlag.set(false);
+    }
+    return true;
+  }
+
+  /**
+   * Base class for operations executed by {@link LevelDBReadModifyWriter}.
+   *
+   * @param <T> type of the operation result
+   */
+  abstract static class Operation<T> {
+
+    private T result;
+    private Throwable failure;
+    private volatile boolean completed;
+
+    /**
+     * Sets the result of this operation. It is called by the {@link BatchApplier}.
+     */
+    final void setResult(@Nullable T result) {
+      this.result = result;
+    }
+
+    /**
+     * Fails this operation. It is called by the {@link BatchApplier}.
+     */
+    final void fail(Throwable failure) {
+      this.failure = failure;
+      this.completed = true;
+    }
+
+    private void complete(@Nullable Throwable failure) {
+      if (completed) {
+        return;
+      }
+      if (failure != null) {
+        this.failure = failure;
+      }
+      this.completed = true;
+    }
+
+    private boolean isCompleted() {
+      return completed;
+    }
+
+    private T getResult() throws IOException {
+      if (failure != null) {
+        Throwables.propagateIfPossible(failure, IOException.class);
+        throw new IOException(failure);
+      }
+      return result;
+    }
+  }
+}
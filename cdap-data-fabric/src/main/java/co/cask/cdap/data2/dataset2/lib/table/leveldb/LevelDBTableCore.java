@@ -24,7 +24,6 @@ import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.data2.dataset2.lib.table.FuzzyRowFilter;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Maps;
 import org.apache.tephra.Transaction;
@@ -36,10 +35,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NavigableMap;
 import javax.annotation.Nullable;
@@ -77,10 +78,14 @@ public class LevelDBTableCore {
 
   private final String tableName;
   private final LevelDBTableService service;
+  private final LevelDBReadModifyWriter readModifyWriter;
+  private final LevelDBReadModifyWriter.BatchApplier batchApplier;
 
   public LevelDBTableCore(String tableName, LevelDBTableService service) throws IOException {
     this.tableName = tableName;
     this.service = service;
+    this.readModifyWriter = service.getReadModifyWriter(tableName);
+    this.batchApplier = this::applyBatch;
   }
 
   private DB getDB() throws IOException {
@@ -92,69 +97,33 @@ public class LevelDBTableCore {
   }
 
 
-  public synchronized boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
-    byte[] existing = getRow(row, new byte[][] { column }, null, null, -1, null).get(column);
-    // verify
-    if (oldValue == null && existing != null) {
-      return false;
-    }
-    if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
-      return false;
-    }
-    // write
-    if (newValue == null) {
-      // to-do
-      deleteColumn(row, column);
-    } else {
-      persist(Collections.singletonMap(row, Collections.singletonMap(column, newValue)), System.currentTimeMillis());
-    }
-    return true;
+  public boolean swap(byte[] row, byte[] column, byte[] oldValue, byte[] newValue) throws IOException {
+    return readModifyWriter.execute(new SwapOperation(row, column, oldValue, newValue), batchApplier);
   }
 
-  public synchronized Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
-    Map<byte[], Long> result = getResultMap(row, increments);
-    Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-      replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
-    }
-    persist(ImmutableMap.of(row, replacing), System.currentTimeMillis());
-    return result;
+  public Map<byte[], Long> increment(byte[] row, Map<byte[], Long> increments) throws IOException {
+    return readModifyWriter.execute(new IncrementOperation(row, increments), batchApplier);
   }
 
-
-  public synchronized void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
-    Map<byte[], Map<byte[], byte[]>> resultMap = Maps.newHashMap();
-    for (NavigableMap.Entry<byte[], NavigableMap<byte[], Long>> row : updates.entrySet()) {
-      NavigableMap<byte[], Long> increments = row.getValue();
-      Map<byte[], byte[]> replacing = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-      Map<byte[], Long> result = getResultMap(row.getKey(), increments);
-      for (Map.Entry<byte[], Long> entry : result.entrySet()) {
-        replacing.put(entry.getKey(), Bytes.toBytes(entry.getValue()));
-      }
-      resultMap.put(row.getKey(), replacing);
-    }
-    persist(resultMap, System.currentTimeMillis());
+  public void increment(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) throws IOException {
+    readModifyWriter.execute(new IncrementOperation(updates), batchApplier);
   }
 
-  private Map<byte[], Long> getResultMap(byte[] row, Map<byte[], Long> increments) throws IOException {
-    NavigableMap<byte[], byte[]> existing =
-      getRow(row, increments.keySet().toArray(new byte[increments.size()][]), null, null, -1, null);
-    Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
-    for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
-      long existingValue = 0L;
-      byte[] existingBytes = existing.get(increment.getKey());
-      if (existingBytes != null) {
-        if (existingBytes.length != Bytes.SIZEOF_LONG) {
-          throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
-                                            " row: " + Bytes.toStringBinary(row) +
-                                            " column: " + Bytes.toStringBinary(increment.getKey()));
-        }
-        existingValue = Bytes.toLong(existingBytes);
+  /**
+   * Applies a batch of read-modify-write operations. It is only called by one thread at a time for a given table.
+   * Each cell is read at most once and all the changes are persisted with one {@link WriteBatch}.
+   */
+  private void applyBatch(List<LevelDBReadModifyWriter.Operation<?>> operations) throws IOException {
+    CellCache cells = new CellCache();
+    for (LevelDBReadModifyWriter.Operation<?> operation : operations) {
+      try {
+        ((CellOperation<?>) operation).apply(cells);
+      } catch (RuntimeException e) {
+        // Only fails the operation. Operations validate before changing any cell, hence there is no partial change.
+        operation.fail(e);
       }
-      long newValue = existingValue + increment.getValue();
-      result.put(increment.getKey(), newValue);
     }
-    return result;
+    cells.persist();
   }
 
   public void persist(Map<byte[], ? extends Map<byte[], byte[]>> changes, long version) throws IOException {
@@ -544,6 +513,179 @@ public class LevelDBTableCore {
     }
   }
 
+  /**
+   * Holds the latest values of the cells read and changed by a batch of read-modify-write operations.
+   */
+  private final class CellCache {
+
+    // Value is null for a cell that doesn't exist
+    private final NavigableMap<byte[], NavigableMap<byte[], byte[]>> values = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+    private final NavigableMap<byte[], NavigableMap<byte[], byte[]>> changes = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+
+    /**
+     * Returns the latest values of the given columns of a row. Only columns not yet known are read from the table.
+     */
+    NavigableMap<byte[], byte[]> get(byte[] row, Collection<byte[]> columns) throws IOException {
+      NavigableMap<byte[], byte[]> rowValues =
+        values.computeIfAbsent(row, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR));
+      List<byte[]> missing = new ArrayList<>();
+      for (byte[] column : columns) {
+        if (!rowValues.containsKey(column)) {
+          missing.add(column);
+        }
+      }
+      if (!missing.isEmpty()) {
+        NavigableMap<byte[], byte[]> existing =
+          getRow(row, missing.toArray(new byte[missing.size()][]), null, null, -1, null);
+        for (byte[] column : missing) {
+          rowValues.put(column, existing.get(column));
+        }
+      }
+      return rowValues;
+    }
+
+    /**
+     * Sets the value of a cell that was returned by {@link #get(byte[], Collection)}. A {@code null} value deletes
+     * the cell.
+     */
+    void set(byte[] row, byte[] column, @Nullable byte[] value) {
+      values.get(row).put(column, value);
+      changes.computeIfAbsent(row, k -> Maps.newTreeMap(Bytes.BYTES_COMPARATOR)).put(column, value);
+    }
+
+    /**
+     * Persists all the changes with one {@link WriteBatch}.
+     */
+    void persist() throws IOException {
+      if (changes.isEmpty()) {
+        return;
+      }
+      DB db = getDB();
+      WriteBatch batch = db.createWriteBatch();
+      DBIterator iterator = null;
+      try {
+        long version = System.currentTimeMillis();
+        for (Map.Entry<byte[], NavigableMap<byte[], byte[]>> row : changes.entrySet()) {
+          for (Map.Entry<byte[], byte[]> column : row.getValue().entrySet()) {
+            if (column.getValue() != null) {
+              batch.put(createPutKey(row.getKey(), column.getKey(), version), column.getValue());
+              continue;
+            }
+            if (iterator == null) {
+              iterator = db.iterator();
+            }
+            addToDeleteBatch(batch, iterator, row.getKey(), column.getKey());
+          }
+        }
+        db.write(batch, service.getWriteOptions());
+      } finally {
+        if (iterator != null) {
+          iterator.close();
+        }
+      }
+    }
+  }
+
+  /**
+   * A read-modify-write operation on cells of the table.
+   *
+   * @param <T> type of the operation result
+   */
+  private abstract static class CellOperation<T> extends LevelDBReadModifyWriter.Operation<T> {
+
+    /**
+     * Applies this operation to the given {@link CellCache}. It must not change any cell if it throws.
+     */
+    abstract void apply(CellCache cells) throws IOException;
+  }
+
+  /**
+   * Operation for {@link #swap(byte[], byte[], byte[], byte[])}.
+   */
+  private static final class SwapOperation extends CellOperation<Boolean> {
+
+    private final byte[] row;
+    private final byte[] column;
+    private final byte[] oldValue;
+    private final byte[] newValue;
+
+    SwapOperation(byte[] row, byte[] column, @Nullable byte[] oldValue, @Nullable byte[] newValue) {
+      this.row = row;
+      this.column = column;
+      this.oldValue = oldValue;
+      this.newValue = newValue;
+    }
+
+    @Override
+    void apply(CellCache cells) throws IOException {
+      byte[] existing = cells.get(row, Collections.singletonList(column)).get(column);
+      // verify
+      if (oldValue == null && existing != null) {
+        setResult(false);
+        return;
+      }
+      if (oldValue != null && (existing == null || !Bytes.equals(oldValue, existing))) {
+        setResult(false);
+        return;
+      }
+      cells.set(row, column, newValue);
+      setResult(true);
+    }
+  }
+
+  /**
+   * Operation for increments. The result is the new values of the row if there is only one row being incremented.
+   */
+  private static final class IncrementOperation extends CellOperation<Map<byte[], Long>> {
+
+    private final Map<byte[], ? extends Map<byte[], Long>> updates;
+    private final boolean returnResult;
+
+    IncrementOperation(byte[] row, Map<byte[], Long> increments) {
+      this.updates = Collections.singletonMap(row, increments);
+      this.returnResult = true;
+    }
+
+    IncrementOperation(NavigableMap<byte[], NavigableMap<byte[], Long>> updates) {
+      this.updates = updates;
+      this.returnResult = false;
+    }
+
+    @Override
+    void apply(CellCache cells) throws IOException {
+      // Computes all the new values first so that no cell is changed if any of them is not a long
+      Map<byte[], Map<byte[], Long>> results = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+      for (Map.Entry<byte[], ? extends Map<byte[], Long>> row : updates.entrySet()) {
+        Map<byte[], Long> increments = row.getValue();
+        NavigableMap<byte[], byte[]> existing = cells.get(row.getKey(), increments.keySet());
+        Map<byte[], Long> result = Maps.newTreeMap(Bytes.BYTES_COMPARATOR);
+        for (Map.Entry<byte[], Long> increment : increments.entrySet()) {
+          long existingValue = 0L;
+          byte[] existingBytes = existing.get(increment.getKey());
+          if (existingBytes != null) {
+            if (existingBytes.length != Bytes.SIZEOF_LONG) {
+              throw new NumberFormatException("Attempted to increment a value that is not convertible to long," +
+                                                " row: " + Bytes.toStringBinary(row.getKey()) +
+                                                " column: " + Bytes.toStringBinary(increment.getKey()));
+            }
+            existingValue = Bytes.toLong(existingBytes);
+          }
+          result.put(increment.getKey(), existingValue + increment.getValue());
+        }
+        results.put(row.getKey(), result);
+      }
+
+      for (Map.Entry<byte[], Map<byte[], Long>> row : results.entrySet()) {
+        for (Map.Entry<byte[], Long> column : row.getValue().entrySet()) {
+          cells.set(row.getKey(), column.getKey(), Bytes.toBytes(column.getValue()));
+        }
+      }
+      if (returnResult) {
+        setResult(results.get(updates.keySet().iterator().next()));
+      }
+    }
+  }
+
   // ------- helpers to create the keys for writes and scans ----------
 
   private static byte[] createPutKey(byte[] rowKey, byte[] columnKey, long version) {
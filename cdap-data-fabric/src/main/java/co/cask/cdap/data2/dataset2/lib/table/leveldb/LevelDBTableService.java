@@ -62,6 +62,7 @@ public class LevelDBTableService implements AutoCloseable {
   private boolean isClosed;
 
   private final ConcurrentMap<String, DB> tables = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, LevelDBReadModifyWriter> readModifyWriters = Maps.newConcurrentMap();
 
   /**
    * To avoid database locking issues make sure that the single LevelDBTableService instance
@@ -168,6 +169,15 @@ public class LevelDBTableService implements AutoCloseable {
     return size;
   }
 
+  /**
+   * Returns the {@link LevelDBReadModifyWriter} of the given table. It is shared by all {@link LevelDBTableCore}
+   * of the same table so that increments and swaps are atomic across all of them. It holds no resource of the
+   * table, hence it is kept even if the table is dropped.
+   */
+  LevelDBReadModifyWriter getReadModifyWriter(String tableName) {
+    return readModifyWriters.computeIfAbsent(tableName, name -> new LevelDBReadModifyWriter());
+  }
+
   public WriteOptions getWriteOptions() {
     return writeOptions;
   }
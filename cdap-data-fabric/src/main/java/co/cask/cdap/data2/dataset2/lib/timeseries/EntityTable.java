@@ -44,6 +44,8 @@ import javax.annotation.Nullable;
  * <h5>Entity mapping rows</h5>
  * Each entity would have two rows. One is keyed by {@code [type].[entityName]} and have one "id" column which
  * stores the unique ID. The other is a reverse map from {@code [type].id} to entity name in "name" column.
+ *
+ * This class is thread safe. Access to the underlying table only happens on cache miss and is serialized.
  */
 public final class EntityTable implements Closeable {
 
@@ -83,8 +85,8 @@ public final class EntityTable implements Closeable {
     Preconditions.checkArgument(maxId > 0, "maxId must be > 0.");
 
     this.table = table;
-    this.entityCache = CacheBuilder.newBuilder().build(createEntityCacheLoader());
-    this.idCache = CacheBuilder.newBuilder().build(createIdCacheLoader());
+    this.entityCache = CacheBuilder.newBuilder().build(serialized(createEntityCacheLoader()));
+    this.idCache = CacheBuilder.newBuilder().build(serialized(createIdCacheLoader()));
     this.maxId = maxId;
     this.size = computeSize(maxId);
   }
@@ -127,6 +129,21 @@ public final class EntityTable implements Closeable {
     return size;
   }
 
+  /**
+   * Wraps the given {@link CacheLoader} so that loading is done while holding the table lock.
+   * The cache can load different keys concurrently, while the underlying table is usually not thread safe.
+   */
+  private <K, V> CacheLoader<K, V> serialized(final CacheLoader<K, V> loader) {
+    return new CacheLoader<K, V>() {
+      @Override
+      public V load(K key) throws Exception {
+        synchronized (table) {
+          return loader.load(key);
+        }
+      }
+    };
+  }
+
   private CacheLoader<EntityName, Long> createEntityCacheLoader() {
     return new CacheLoader<EntityName, Long>() {
       @Override
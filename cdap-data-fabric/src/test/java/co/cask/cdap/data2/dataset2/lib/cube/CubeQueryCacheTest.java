@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.cube;
+
+import co.cask.cdap.api.dataset.lib.cube.AggregationFunction;
+import co.cask.cdap.api.dataset.lib.cube.CubeQuery;
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Table;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the {@link AbstractCubeTest} with {@link CubeQueryCache} enabled, plus unit tests for the cache.
+ */
+public class CubeQueryCacheTest extends DefaultCubeTest {
+
+  @Override
+  protected DefaultCube createCube(int[] resolutions, FactTableSupplier supplier,
+                                   Map<String, ? extends Aggregation> aggregations) {
+    return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of(),
+                           new CubeQueryCache(100, 10));
+  }
+
+  @Test
+  public void testIncrementalScan() {
+    AtomicLong now = new AtomicLong(1000);
+    CubeQueryCache cache = new CubeQueryCache(100, 10, now::get);
+    List<long[]> scans = new ArrayList<>();
+    CubeQueryCache.RangeScanner scanner = (startTs, endTs) -> {
+      scans.add(new long[] { startTs, endTs });
+      return new CubeQueryCache.ScanResult(generate(startTs, endTs), true);
+    };
+
+    // Query the last 100 seconds. The first query scans the whole range.
+    Assert.assertEquals(generate(900, 1000), cache.getTimeSeries("agg", createQuery(900, 1000), scanner));
+    assertScanned(scans, 900, 1000);
+
+    // The same query only scans the part after the watermark, which is now - 10
+    Assert.assertEquals(generate(900, 1000), cache.getTimeSeries("agg", createQuery(900, 1000), scanner));
+    assertScanned(scans, 990, 1000);
+
+    // Slide the window forward. Only the part after the previous watermark is scanned.
+    now.set(1005);
+    Assert.assertEquals(generate(905, 1005), cache.getTimeSeries("agg", createQuery(905, 1005), scanner));
+    assertScanned(scans, 990, 1005);
+    Assert.assertEquals(generate(905, 1005), cache.getTimeSeries("agg", createQuery(905, 1005), scanner));
+    assertScanned(scans, 995, 1005);
+
+    // A query that is fully covered by the cache doesn't scan
+    Assert.assertEquals(generate(920, 950), cache.getTimeSeries("agg", createQuery(920, 950), scanner));
+    Assert.assertTrue(scans.isEmpty());
+
+    // A query with start time before the cached range scans the whole range
+    Assert.assertEquals(generate(800, 1005), cache.getTimeSeries("agg", createQuery(800, 1005), scanner));
+    assertScanned(scans, 800, 1005);
+
+    // Adding late facts invalidates the cache
+    cache.factsAdded(900);
+    Assert.assertEquals(generate(800, 1005), cache.getTimeSeries("agg", createQuery(800, 1005), scanner));
+    assertScanned(scans, 800, 1005);
+
+    // Adding recent facts doesn't invalidate the cache
+    cache.factsAdded(1000);
+    Assert.assertEquals(generate(800, 1005), cache.getTimeSeries("agg", createQuery(800, 1005), scanner));
+    assertScanned(scans, 995, 1005);
+  }
+
+  @Test
+  public void testIncompleteScan() {
+    AtomicLong now = new AtomicLong(1000);
+    CubeQueryCache cache = new CubeQueryCache(100, 10, now::get);
+    List<long[]> scans = new ArrayList<>();
+    CubeQueryCache.RangeScanner scanner = (startTs, endTs) -> {
+      scans.add(new long[] { startTs, endTs });
+      return new CubeQueryCache.ScanResult(generate(startTs, endTs), false);
+    };
+
+    // Incomplete scan results are not cached
+    Assert.assertEquals(generate(900, 1000), cache.getTimeSeries("agg", createQuery(900, 1000), scanner));
+    assertScanned(scans, 900, 1000);
+    Assert.assertEquals(generate(900, 1000), cache.getTimeSeries("agg", createQuery(900, 1000), scanner));
+    assertScanned(scans, 900, 1000);
+  }
+
+  @Test
+  public void testSyncVersion() {
+    AtomicLong now = new AtomicLong(1000);
+    CubeQueryCache cache = new CubeQueryCache(100, 10, now::get);
+    List<long[]> scans = new ArrayList<>();
+    CubeQueryCache.RangeScanner scanner = (startTs, endTs) -> {
+      scans.add(new long[] { startTs, endTs });
+      return new CubeQueryCache.ScanResult(generate(startTs, endTs), true);
+    };
+
+    cache.syncVersion(0L);
+    cache.getTimeSeries("agg", createQuery(900, 1000), scanner);
+    assertScanned(scans, 900, 1000);
+
+    // The same version keeps the cache
+    cache.syncVersion(0L);
+    cache.getTimeSeries("agg", createQuery(900, 1000), scanner);
+    assertScanned(scans, 990, 1000);
+
+    // A version changed by a writer in another process invalidates the cache
+    cache.syncVersion(1L);
+    cache.getTimeSeries("agg", createQuery(900, 1000), scanner);
+    assertScanned(scans, 900, 1000);
+
+    Assert.assertTrue(cache.isBeforeWatermark(989));
+    Assert.assertFalse(cache.isBeforeWatermark(990));
+  }
+
+  private void assertScanned(List<long[]> scans, long startTs, long endTs) {
+    Assert.assertEquals(1, scans.size());
+    Assert.assertArrayEquals(new long[] { startTs, endTs }, scans.get(0));
+    scans.clear();
+  }
+
+  private CubeQuery createQuery(long startTs, long endTs) {
+    return new CubeQuery(null, startTs, endTs, 1, Integer.MAX_VALUE,
+                         ImmutableMap.of("count", AggregationFunction.SUM),
+                         ImmutableMap.of("namespace", "ns"), ImmutableList.of("app"), null);
+  }
+
+  /**
+   * Generates a time series for the time range {@code [startTs, endTs]}, with the value equals to the time.
+   */
+  private Table<Map<String, String>, String, Map<Long, Long>> generate(long startTs, long endTs) {
+    Table<Map<String, String>, String, Map<Long, Long>> result = HashBasedTable.create();
+    Map<Long, Long> values = new HashMap<>();
+    for (long ts = startTs; ts <= endTs; ts++) {
+      values.put(ts, ts);
+    }
+    result.put(Collections.singletonMap("app", "app1"), "count", values);
+    return result;
+  }
+}
@@ -46,6 +46,11 @@ public class DefaultCubeTest extends AbstractCubeTest {
       }
     };
 
+    return createCube(resolutions, supplier, aggregations);
+  }
+
+  protected DefaultCube createCube(int[] resolutions, FactTableSupplier supplier,
+                                   Map<String, ? extends Aggregation> aggregations) {
     return new DefaultCube(resolutions, supplier, aggregations, ImmutableMap.<String, AggregationAlias>of());
   }
 }
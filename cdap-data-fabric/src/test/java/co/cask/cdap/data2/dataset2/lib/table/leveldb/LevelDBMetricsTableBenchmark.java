@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.data2.dataset2.lib.table.leveldb;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.dataset.DatasetContext;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.data2.dataset2.lib.table.inmemory.PrefixedNamespaces;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.io.Files;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.NavigableMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * JMH benchmark for the throughput of increments on {@link LevelDBMetricsTable}, which is how metrics are
+ * aggregated in standalone and sandbox. All threads share the same table, either incrementing the same cell,
+ * which is the most contended case, or incrementing a row of their own.
+ *
+ * To run it, build the test classes and execute
+ * {@code org.openjdk.jmh.Main LevelDBMetricsTableBenchmark} with the test classpath of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class LevelDBMetricsTableBenchmark {
+
+  private static final byte[] HOT_ROW = Bytes.toBytes("hot");
+  private static final byte[] COLUMN = Bytes.toBytes("c");
+  private static final NavigableMap<byte[], Long> INCREMENT =
+    ImmutableSortedMap.<byte[], Long>orderedBy(Bytes.BYTES_COMPARATOR).put(COLUMN, 1L).build();
+
+  private File dataDir;
+  private LevelDBTableService service;
+  private LevelDBMetricsTable table;
+
+  /**
+   * Per thread state that holds the row incremented by the thread.
+   */
+  @State(Scope.Thread)
+  public static class ThreadRow {
+
+    private static final AtomicInteger ID = new AtomicInteger();
+
+    private final byte[] row = Bytes.toBytes("row" + ID.getAndIncrement());
+  }
+
+  @Setup
+  public void setup() throws Exception {
+    dataDir = Files.createTempDir();
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_DATA_LEVELDB_DIR, dataDir.getAbsolutePath());
+
+    service = new LevelDBTableService();
+    service.setConfiguration(cConf);
+    DatasetContext datasetContext = DatasetContext.from(NamespaceId.SYSTEM.getNamespace());
+    service.ensureTableExists(PrefixedNamespaces.namespace(cConf, datasetContext.getNamespaceId(), "metrics"));
+    table = new LevelDBMetricsTable(datasetContext, "metrics", service, cConf);
+  }
+
+  @TearDown
+  public void teardown() throws Exception {
+    table.close();
+    service.close();
+    DirUtils.deleteDirectoryContents(dataDir);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void incrementSameCell1() {
+    table.increment(HOT_ROW, INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void incrementSameCell8() {
+    table.increment(HOT_ROW, INCREMENT);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public void incrementDistinctRows8(ThreadRow threadRow) {
+    NavigableMap<byte[], NavigableMap<byte[], Long>> updates =
+      ImmutableSortedMap.<byte[], NavigableMap<byte[], Long>>orderedBy(Bytes.BYTES_COMPARATOR)
+        .put(threadRow.row, INCREMENT)
+        .build();
+    table.increment(updates);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public long incrementAndGetSameCell8() {
+    return table.incrementAndGet(HOT_ROW, COLUMN, 1L);
+  }
+}
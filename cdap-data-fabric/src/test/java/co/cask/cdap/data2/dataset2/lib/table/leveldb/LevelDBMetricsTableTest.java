@@ -35,12 +35,20 @@ import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.security.auth.context.AuthenticationContextModules;
 import co.cask.cdap.security.authorization.AuthorizationEnforcementModule;
 import co.cask.cdap.security.authorization.AuthorizationTestModule;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.ClassRule;
+import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * metrics table test for levelDB.
  */
@@ -70,6 +78,32 @@ public class LevelDBMetricsTableTest extends MetricsTableTest {
     dsFramework = injector.getInstance(DatasetFramework.class);
   }
 
+  @Test
+  public void testConcurrentIncrementMultipleInstances() throws Exception {
+    // Each thread uses its own table instance of the same dataset, which is how the metrics processor works
+    String name = "testConcurrentIncrementMultipleInstances";
+    int rounds = 500;
+    Map<byte[], Long> inc1 = ImmutableMap.of(X, 1L, Y, 2L);
+    Map<byte[], Long> inc2 = ImmutableMap.of(Y, 1L, Z, 2L);
+    Collection<? extends Thread> threads = ImmutableList.of(new IncThread(getTable(name), A, inc1, rounds),
+                                                            new IncThread(getTable(name), A, inc2, rounds),
+                                                            new IncAndGetThread(getTable(name), A, Z, 5, rounds),
+                                                            new IncAndGetThread(getTable(name), A, Z, 2, rounds));
+    for (Thread t : threads) {
+      t.start();
+    }
+    for (Thread t : threads) {
+      t.join();
+      ((Closeable) t).close();
+    }
+
+    try (MetricsTable table = getTable(name)) {
+      Assert.assertEquals(rounds + 10L, table.incrementAndGet(A, X, 10L));
+      Assert.assertEquals(3 * rounds - 20L, table.incrementAndGet(A, Y, -20L));
+      Assert.assertEquals(9 * rounds, table.incrementAndGet(A, Z, 0L));
+    }
+  }
+
   @Override
   protected MetricsTable getTable(String name) throws Exception {
     DatasetId metricsDatasetInstanceId = NamespaceId.SYSTEM.dataset(name);
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+import java.nio.charset.StandardCharsets;
+import javax.annotation.Nullable;
+
+/**
+ * Definitions of the length-prefixed binary protocol of the messaging system. It is an alternative to the
+ * Avro over HTTP protocol for publishing and fetching messages, which allows multiple requests to be pipelined
+ * on one persistent connection. Every frame has the layout
+ *
+ * <pre>
+ * frame length (int, excluding this field) | frame type (byte) | request id (int) | body
+ * </pre>
+ *
+ * Request frames are sent by the client, and the server replies each of them with a response frame that has
+ * the same type and request id, with the body being
+ *
+ * <pre>
+ * status (short, same as HTTP status code) | response body if status is 200, otherwise an error message (string)
+ * </pre>
+ *
+ * Responses can be sent in a different order than the requests. The first frame on a connection must be
+ * a {@link #HELLO} frame. Request bodies are:
+ *
+ * <pre>
+ * HELLO: protocol version (int). Response: protocol version (int)
+ * PUBLISH, STORE: namespace (string) | topic (string) | transactional (byte) | [transaction write pointer (long)] |
+ *                 number of payloads (int) | payloads (bytes)...
+ *                 Response: empty, or the Avro encoded {@link Schemas.V1.PublishResponse} for transactional publish
+ * FETCH: namespace (string) | topic (string) | start type (byte) | [message id (bytes) or timestamp (long)] |
+ *        inclusive (byte) | limit (int) | encoded transaction (bytes, length -1 if absent)
+ *        Response: number of messages (int) | messages as Avro encoded {@link Schemas.V1.ConsumeResponse} elements
+ * </pre>
+ *
+ * Strings are encoded as bytes of the UTF-8 encoding, and bytes are encoded as length (int) followed by the content.
+ */
+public final class BinaryProtocol {
+
+  public static final int VERSION = 1;
+
+  public static final byte HELLO = 0;
+  public static final byte PUBLISH = 1;
+  public static final byte STORE = 2;
+  public static final byte FETCH = 3;
+
+  public static final byte FETCH_START_NONE = 0;
+  public static final byte FETCH_START_MESSAGE_ID = 1;
+  public static final byte FETCH_START_TIMESTAMP = 2;
+
+  public static final short STATUS_OK = 200;
+
+  // Size of the frame header after the length field, which is the type and the request id
+  public static final int HEADER_SIZE = 1 + 4;
+
+  /**
+   * Creates a buffer for a new frame with the header written. The frame length is written as zero and must be
+   * updated with {@link #updateFrameLength(ByteBuf)} after the body is written.
+   */
+  public static ByteBuf newFrame(ByteBufAllocator allocator, byte type, int requestId, int initialBodySize) {
+    ByteBuf frame = allocator.buffer(4 + HEADER_SIZE + initialBodySize);
+    frame.writeInt(0);
+    frame.writeByte(type);
+    frame.writeInt(requestId);
+    return frame;
+  }
+
+  /**
+   * Writes the frame length to the beginning of the given frame, based on the number of readable bytes.
+   */
+  public static ByteBuf updateFrameLength(ByteBuf frame) {
+    frame.setInt(frame.readerIndex(), frame.readableBytes() - 4);
+    return frame;
+  }
+
+  /**
+   * Writes a string to the given buffer.
+   */
+  public static void writeString(ByteBuf buffer, String str) {
+    writeBytes(buffer, str.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Reads a string from the given buffer.
+   */
+  public static String readString(ByteBuf buffer) {
+    int length = buffer.readInt();
+    String str = buffer.toString(buffer.readerIndex(), length, StandardCharsets.UTF_8);
+    buffer.skipBytes(length);
+    return str;
+  }
+
+  /**
+   * Writes a byte array to the given buffer. A {@code null} array is written with length {@code -1}.
+   */
+  public static void writeBytes(ByteBuf buffer, @Nullable byte[] bytes) {
+    if (bytes == null) {
+      buffer.writeInt(-1);
+      return;
+    }
+    buffer.writeInt(bytes.length);
+    buffer.writeBytes(bytes);
+  }
+
+  /**
+   * Reads a byte array from the given buffer.
+   *
+   * @return the byte array or {@code null} if a {@code null} array was written
+   */
+  @Nullable
+  public static byte[] readBytes(ByteBuf buffer) {
+    int length = buffer.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    buffer.readBytes(bytes);
+    return bytes;
+  }
+
+  private BinaryProtocol() {
+    // no-op
+  }
+}
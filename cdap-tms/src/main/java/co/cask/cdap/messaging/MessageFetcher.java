@@ -22,6 +22,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import org.apache.tephra.Transaction;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -35,6 +36,7 @@ public abstract class MessageFetcher {
   private boolean includeStart = true;
   private Long startTime;
   private Transaction transaction;
+  private long maxWaitMillis;
 
   // by default there is virtually no limit
   private int limit = Integer.MAX_VALUE;
@@ -96,6 +98,24 @@ public abstract class MessageFetcher {
     return this;
   }
 
+  /**
+   * Sets the maximum amount of time to wait for new messages if there is no message available when
+   * {@link #fetch()} is called. By default, this is set to {@code 0}, meaning {@link #fetch()} returns
+   * immediately. It is ignored if a transaction is set, since a transactional fetch can't see messages
+   * published by transactions started after it.
+   *
+   * @param maxWait maximum time to wait
+   * @param unit unit of the time
+   * @return this instance
+   */
+  public MessageFetcher setMaxWait(long maxWait, TimeUnit unit) {
+    if (maxWait < 0) {
+      throw new IllegalArgumentException("Invalid message fetching max wait. Max wait must be >= 0");
+    }
+    this.maxWaitMillis = unit.toMillis(maxWait);
+    return this;
+  }
+
   @Nullable
   protected byte[] getStartOffset() {
     return startOffset;
@@ -119,6 +139,10 @@ public abstract class MessageFetcher {
     return limit;
   }
 
+  protected long getMaxWaitMillis() {
+    return maxWaitMillis;
+  }
+
   /**
    * Returns a {@link CloseableIterator} that iterates over messages fetched from the messaging system.
    *
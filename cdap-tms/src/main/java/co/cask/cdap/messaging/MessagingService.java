@@ -24,6 +24,7 @@ import co.cask.cdap.proto.id.TopicId;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import javax.annotation.Nullable;
 
 /**
@@ -118,6 +119,51 @@ public interface MessagingService {
    */
   void storePayload(StoreRequest request) throws TopicNotFoundException, IOException;
 
+  /**
+   * Publishes a list of messages to the messaging system asynchronously. The returned {@link CompletableFuture}
+   * will be completed with the same result, or failed with the same exception, as the
+   * {@link #publish(StoreRequest)} method. The payloads in the given {@link StoreRequest} must not be modified
+   * until the returned future is completed.
+   *
+   * The default implementation calls {@link #publish(StoreRequest)} from the calling thread.
+   *
+   * @param request the {@link StoreRequest} containing messages to be published
+   * @return a {@link CompletableFuture} that will be completed when the publish is completed. If the store
+   *         request is transactional, the future result is a {@link RollbackDetail} containing information
+   *         for rollback; otherwise the future result will be {@code null}.
+   */
+  default CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    CompletableFuture<RollbackDetail> future = new CompletableFuture<>();
+    try {
+      future.complete(publish(request));
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+    return future;
+  }
+
+  /**
+   * Stores a list of messages to the messaging system asynchronously. The returned {@link CompletableFuture}
+   * will be completed when the {@link #storePayload(StoreRequest)} call is completed, or failed with the
+   * same exception. The payloads in the given {@link StoreRequest} must not be modified until the returned
+   * future is completed.
+   *
+   * The default implementation calls {@link #storePayload(StoreRequest)} from the calling thread.
+   *
+   * @param request the {@link StoreRequest} containing messages to be stored
+   * @return a {@link CompletableFuture} that will be completed when the store is completed
+   */
+  default CompletableFuture<Void> storePayloadAsync(StoreRequest request) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    try {
+      storePayload(request);
+      future.complete(null);
+    } catch (Throwable t) {
+      future.completeExceptionally(t);
+    }
+    return future;
+  }
+
   /**
    * Rollbacks messages published to the given topic with the given transaction.
    *
@@ -63,7 +63,7 @@ import javax.annotation.Nullable;
  *
  * @param <T> type of entry stored in the cache
  */
-public class MessageCache<T> {
+public class MessageCache<T> implements MessageEntryCache<T> {
 
   private static final String METRICS_WEIGHT = "cache.weight";
   private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
@@ -71,6 +71,8 @@ public class MessageCache<T> {
   private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
   private static final String METRICS_ADD_REDUCE_WEIGHT = "cache.add.reduce.weight";
   private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  private static final String METRICS_SCAN_HITS = "cache.scan.hits";
+  private static final String METRICS_SCAN_MISSES = "cache.scan.misses";
   private static final String METRICS_SCAN_REDUCE_WEIGHT = "cache.scan.reduce.weight";
 
   private final NavigableSet<CacheEntry<T>> cache;
@@ -103,22 +105,12 @@ public class MessageCache<T> {
     this.cacheLock = new ReentrantReadWriteLock();
   }
 
-  /**
-   * Returns the {@link Comparator} used by this cache.
-   */
+  @Override
   public Comparator<T> getComparator() {
     return comparator;
   }
 
-  /**
-   * Adds a list of entries to the cache. The entries provided must be in strictly increasing order and should be
-   * larger than existing entries in the cache. Also, this method doesn't allow concurrent invocation.
-   *
-   * @param entries a {@link Iterator} to provide entries to be added to the cache
-   * @throws ConcurrentModificationException if called by multiple threads concurrently
-   * @throws IllegalArgumentException if the entries provided are not in strictly increasing order
-   *                                  or not larger existing cached entries
-   */
+  @Override
   public void addAll(Iterator<T> entries) {
     if (!adding.compareAndSet(false, true)) {
       // This is to guard against bug, otherwise this shouldn't happen
@@ -180,15 +172,7 @@ public class MessageCache<T> {
     }
   }
 
-  /**
-   * Creates a {@link Scanner} for fetching cached entries in ascending order.
-   *
-   * @param startEntry the entry to start fetching from
-   * @param includeStart {@code true} to include the startEntry in the resulting {@link Scanner}
-   *                                 if it exists in the cache
-   * @param limit maximum number of entries to fetch
-   * @return a {@link Scanner} for accessing to the fetched entries
-   */
+  @Override
   public Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter) {
     List<T> entries = new LinkedList<>();
 
@@ -216,6 +200,9 @@ public class MessageCache<T> {
     }
 
     metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+    // It is a hit if the cache has all entries starting from the start entry
+    boolean hit = firstInCache != null && comparator.compare(firstInCache, startEntry) <= 0;
+    metricsContext.increment(hit ? METRICS_SCAN_HITS : METRICS_SCAN_MISSES, 1L);
 
     return new AbstractScanner<T>(entries.iterator(), firstInCache) {
       @Override
@@ -230,14 +217,7 @@ public class MessageCache<T> {
     };
   }
 
-  /**
-   * Updates entries in the cache. Update to each entry shouldn't change the ordering of the entry based on the
-   * {@link Comparator} provided to this cache.
-   *
-   * @param startEntry the starting entry for the update to start (inclusive)
-   * @param endEntry the ending entry for the update to end (inclusive)
-   * @param updater a {@link EntryUpdater} to update the content of a entry
-   */
+  @Override
   public void updateEntries(T startEntry, T endEntry, EntryUpdater<T> updater) {
     CacheEntry<T> startCacheEntry = new CacheEntry<>(startEntry, 0);
 
@@ -276,10 +256,7 @@ public class MessageCache<T> {
     }
   }
 
-  /**
-   * Clears the cache. The caller is responsible to make sure there is no concurrent call to the
-   * {@link #addAll(Iterator)} method.
-   */
+  @Override
   public void clear() {
     // To clear the cache, first set the limit to 0, the reset it back to proper limit
     Limits oldLimits = limits.get();
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.cache;
+
+import co.cask.cdap.messaging.store.MessageFilter;
+
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+/**
+ * A cache for ordered message entries, which is shared between publishers and fetchers of the same topic.
+ * Implementations can assume a single writer with concurrent fetchers, and that entries are added in strictly
+ * increasing order.
+ *
+ * @param <T> type of entry stored in the cache
+ */
+public interface MessageEntryCache<T> {
+
+  /**
+   * Returns the {@link Comparator} used by this cache.
+   */
+  Comparator<T> getComparator();
+
+  /**
+   * Adds a list of entries to the cache. The entries provided must be in strictly increasing order and should be
+   * larger than existing entries in the cache. Also, this method doesn't allow concurrent invocation.
+   *
+   * @param entries a {@link Iterator} to provide entries to be added to the cache
+   * @throws ConcurrentModificationException if called by multiple threads concurrently
+   * @throws IllegalArgumentException if the entries provided are not in strictly increasing order
+   *                                  or not larger existing cached entries
+   */
+  void addAll(Iterator<T> entries);
+
+  /**
+   * Creates a {@link MessageCache.Scanner} for fetching cached entries in ascending order.
+   *
+   * @param startEntry the entry to start fetching from
+   * @param includeStart {@code true} to include the startEntry in the resulting {@link MessageCache.Scanner}
+   *                                 if it exists in the cache
+   * @param limit maximum number of entries to fetch
+   * @param filter a {@link MessageFilter} to select entries to fetch
+   * @return a {@link MessageCache.Scanner} for accessing to the fetched entries
+   */
+  MessageCache.Scanner<T> scan(T startEntry, boolean includeStart, int limit, MessageFilter<T> filter);
+
+  /**
+   * Updates entries in the cache. Update to each entry shouldn't change the ordering of the entry based on the
+   * {@link Comparator} provided by this cache.
+   *
+   * @param startEntry the starting entry for the update to start (inclusive)
+   * @param endEntry the ending entry for the update to end (inclusive)
+   * @param updater a {@link MessageCache.EntryUpdater} to update the content of a entry
+   */
+  void updateEntries(T startEntry, T endEntry, MessageCache.EntryUpdater<T> updater);
+
+  /**
+   * Returns {@code true} if this cache stores its own encoded copy of the entries given to {@link #addAll(Iterator)},
+   * hence the caller doesn't need to prepare the entries for caching; otherwise the entries are stored as given.
+   */
+  default boolean isEncodingEntries() {
+    return false;
+  }
+
+  /**
+   * Clears the cache. The caller is responsible to make sure there is no concurrent call to the
+   * {@link #addAll(Iterator)} method.
+   */
+  void clear();
+}
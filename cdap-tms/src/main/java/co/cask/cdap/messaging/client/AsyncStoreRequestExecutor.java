@@ -0,0 +1,304 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.client;
+
+import co.cask.cdap.messaging.RollbackDetail;
+import co.cask.cdap.messaging.StoreRequest;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Preconditions;
+import org.apache.twill.common.Threads;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Executes {@link StoreRequest} asynchronously with a bounded number of outstanding requests.
+ *
+ * <p>
+ * Requests for the same topic are written one at a time in the order they were submitted, while requests for
+ * different topics are written concurrently. Non-transactional requests for the same topic that are submitted
+ * while a previous request to that topic is in-flight are coalesced into one request, up to a maximum payload size.
+ * Since non-transactional requests don't have any {@link RollbackDetail}, all the coalesced requests share the
+ * same result.
+ * </p>
+ *
+ * <p>
+ * When the maximum number of outstanding requests is reached, the thread submitting a new request blocks until
+ * one of the outstanding requests is completed. This provides backpressure to the callers.
+ * </p>
+ */
+@ThreadSafe
+final class AsyncStoreRequestExecutor {
+
+  /**
+   * The function for performing the actual write.
+   */
+  interface WriteFunction {
+
+    /**
+     * Writes the given {@link StoreRequest}.
+     *
+     * @param request the request to write
+     * @param publish {@code true} to publish the messages, {@code false} to store the payloads
+     * @return the {@link RollbackDetail} for transactional publish or {@code null} otherwise
+     * @throws Exception if failed to write
+     */
+    @Nullable
+    RollbackDetail write(StoreRequest request, boolean publish) throws Exception;
+  }
+
+  private final WriteFunction writeFunction;
+  private final int maxCoalesceBytes;
+  private final Semaphore outstandingPermits;
+  private final ThreadPoolExecutor executor;
+  private final Map<TopicId, TopicQueue> publishQueues;
+  private final Map<TopicId, TopicQueue> storeQueues;
+
+  /**
+   * Constructor.
+   *
+   * @param writeFunction the {@link WriteFunction} for performing the actual write
+   * @param maxOutstanding maximum number of requests that can be in-flight or waiting to be sent
+   * @param maxCoalesceBytes maximum number of payload bytes when coalescing multiple requests into one
+   */
+  AsyncStoreRequestExecutor(WriteFunction writeFunction, int maxOutstanding, int maxCoalesceBytes) {
+    Preconditions.checkArgument(maxOutstanding > 0, "Maximum number of outstanding requests must be > 0");
+    this.writeFunction = writeFunction;
+    this.maxCoalesceBytes = maxCoalesceBytes;
+    this.outstandingPermits = new Semaphore(maxOutstanding);
+    // Each outstanding request holds a permit and there is at most one thread per topic,
+    // hence the number of threads is bounded by the number of permits.
+    this.executor = new ThreadPoolExecutor(maxOutstanding, maxOutstanding, 60L, TimeUnit.SECONDS,
+                                           new LinkedBlockingQueue<>(),
+                                           Threads.createDaemonThreadFactory("messaging-client-writer-%d"));
+    this.executor.allowCoreThreadTimeOut(true);
+    this.publishQueues = new HashMap<>();
+    this.storeQueues = new HashMap<>();
+  }
+
+  /**
+   * Submits the given {@link StoreRequest} to be written. This method blocks if the maximum number of
+   * outstanding requests has been reached.
+   *
+   * @param request the request to write
+   * @param publish {@code true} to publish the messages, {@code false} to store the payloads
+   * @return a {@link CompletableFuture} that will be completed with the result of the write
+   */
+  CompletableFuture<RollbackDetail> submit(StoreRequest request, boolean publish) {
+    CompletableFuture<RollbackDetail> future = new CompletableFuture<>();
+    TopicId topicId = request.getTopicId();
+    Map<TopicId, TopicQueue> queues = publish ? publishQueues : storeQueues;
+
+    List<byte[]> payloads = null;
+    int payloadBytes = 0;
+    if (!request.isTransactional()) {
+      // Copy the payloads to a list since the StoreRequest may only be iterated once
+      payloads = new ArrayList<>();
+      for (byte[] payload : request) {
+        payloads.add(payload);
+        payloadBytes += payload.length;
+      }
+      synchronized (this) {
+        if (coalesce(queues.get(topicId), payloads, payloadBytes, future)) {
+          return future;
+        }
+      }
+    }
+
+    // Need a new batch, which requires a permit
+    try {
+      outstandingPermits.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.completeExceptionally(e);
+      return future;
+    }
+
+    TopicQueue queue;
+    WriteBatch batch;
+    synchronized (this) {
+      queue = queues.get(topicId);
+      // Check for coalescing again since a new batch could have been created while waiting for the permit
+      if (payloads != null && coalesce(queue, payloads, payloadBytes, future)) {
+        outstandingPermits.release();
+        return future;
+      }
+      if (queue == null) {
+        queue = new TopicQueue(topicId, publish);
+        queues.put(topicId, queue);
+      }
+      if (payloads == null) {
+        queue.pending.addLast(new WriteBatch(request, future));
+      } else {
+        WriteBatch coalesceBatch = new WriteBatch(topicId);
+        coalesceBatch.add(payloads, payloadBytes, future);
+        queue.pending.addLast(coalesceBatch);
+      }
+      if (queue.inflight) {
+        // The batch will be written after the in-flight one completed
+        return future;
+      }
+      queue.inflight = true;
+      batch = queue.pending.pollFirst();
+    }
+
+    try {
+      TopicQueue writeQueue = queue;
+      WriteBatch firstBatch = batch;
+      executor.execute(() -> drain(writeQueue, firstBatch));
+    } catch (Throwable t) {
+      // This shouldn't happen as the executor has an unbounded queue and never get shutdown
+      outstandingPermits.release();
+      batch.complete(null, t);
+      synchronized (this) {
+        queue.inflight = false;
+      }
+    }
+    return future;
+  }
+
+  /**
+   * Tries to add the given payloads to the last pending batch of the given queue.
+   * This method must be called while holding the lock of this object.
+   *
+   * @return {@code true} if the payloads are added to an existing batch
+   */
+  private boolean coalesce(@Nullable TopicQueue queue, List<byte[]> payloads,
+                           int payloadBytes, CompletableFuture<RollbackDetail> future) {
+    if (queue == null) {
+      return false;
+    }
+    WriteBatch last = queue.pending.peekLast();
+    return last != null && last.add(payloads, payloadBytes, future);
+  }
+
+  /**
+   * Writes the given batch and then keeps writing the pending batches of the given queue until it is empty.
+   */
+  private void drain(TopicQueue queue, WriteBatch firstBatch) {
+    WriteBatch batch = firstBatch;
+    while (batch != null) {
+      RollbackDetail rollbackDetail = null;
+      Throwable failure = null;
+      try {
+        rollbackDetail = writeFunction.write(batch.getRequest(), queue.publish);
+      } catch (Throwable t) {
+        failure = t;
+      }
+      // Release the permit before completing the futures, since the callbacks run in this thread and
+      // may submit new requests, which would block on the permit otherwise
+      outstandingPermits.release();
+      batch.complete(rollbackDetail, failure);
+
+      synchronized (this) {
+        batch = queue.pending.pollFirst();
+        if (batch == null) {
+          queue.inflight = false;
+          (queue.publish ? publishQueues : storeQueues).remove(queue.topicId, queue);
+        }
+      }
+    }
+  }
+
+  /**
+   * The queue of batches to be written to a topic.
+   */
+  private static final class TopicQueue {
+
+    private final TopicId topicId;
+    private final boolean publish;
+    private final Deque<WriteBatch> pending;
+    private boolean inflight;
+
+    TopicQueue(TopicId topicId, boolean publish) {
+      this.topicId = topicId;
+      this.publish = publish;
+      this.pending = new LinkedList<>();
+    }
+  }
+
+  /**
+   * A batch of {@link StoreRequest} to be written as one request.
+   */
+  private final class WriteBatch {
+
+    private final List<CompletableFuture<RollbackDetail>> futures;
+    private final StoreRequest request;
+    private final StoreRequestBuilder builder;
+    private int payloadBytes;
+
+    /**
+     * Creates a batch that contains only the given request. No other request can be added to it.
+     */
+    WriteBatch(StoreRequest request, CompletableFuture<RollbackDetail> future) {
+      this.futures = Collections.singletonList(future);
+      this.request = request;
+      this.builder = null;
+    }
+
+    /**
+     * Creates a batch for coalescing non-transactional requests for the given topic.
+     */
+    WriteBatch(TopicId topicId) {
+      this.futures = new ArrayList<>();
+      this.request = null;
+      this.builder = StoreRequestBuilder.of(topicId);
+    }
+
+    /**
+     * Adds the given payloads to this batch. The payloads of the first request are always added.
+     * This method must be called while holding the {@link AsyncStoreRequestExecutor} lock.
+     *
+     * @return {@code true} if the payloads are added; {@code false} if this batch cannot take more payloads
+     */
+    boolean add(List<byte[]> payloads, int bytes, CompletableFuture<RollbackDetail> future) {
+      if (builder == null || (!futures.isEmpty() && payloadBytes + bytes > maxCoalesceBytes)) {
+        return false;
+      }
+      builder.addPayloads(payloads);
+      payloadBytes += bytes;
+      futures.add(future);
+      return true;
+    }
+
+    StoreRequest getRequest() {
+      return request == null ? builder.build() : request;
+    }
+
+    void complete(@Nullable RollbackDetail rollbackDetail, @Nullable Throwable failure) {
+      for (CompletableFuture<RollbackDetail> future : futures) {
+        if (failure == null) {
+          future.complete(rollbackDetail);
+        } else {
+          future.completeExceptionally(failure);
+        }
+      }
+    }
+  }
+}
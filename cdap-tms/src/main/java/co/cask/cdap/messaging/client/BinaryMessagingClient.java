@@ -0,0 +1,249 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.client;
+
+import co.cask.cdap.messaging.BinaryProtocol;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import org.apache.twill.common.Threads;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A connection to the messaging system binary protocol server as defined by {@link BinaryProtocol}.
+ * Requests from multiple threads are pipelined on the same connection, with responses matched to requests
+ * by the request id.
+ */
+@ThreadSafe
+final class BinaryMessagingClient implements Closeable {
+
+  private final EventLoopGroup eventLoopGroup;
+  private final Channel channel;
+  private final long timeoutMillis;
+  private final Map<Integer, CompletableFuture<ByteBuf>> pendingRequests;
+  private final AtomicInteger nextRequestId;
+  private volatile boolean closed;
+
+  /**
+   * Connects to the binary protocol server and performs the protocol handshake.
+   *
+   * @param address the address of the binary protocol server
+   * @param connectTimeoutMillis the timeout for connecting to the server
+   * @param timeoutMillis the timeout for each request
+   * @param maxFrameSize the maximum size of the response frame
+   * @return a {@link BinaryMessagingClient} ready for making requests
+   * @throws IOException if failed to connect or the handshake failed
+   */
+  static BinaryMessagingClient connect(InetSocketAddress address, int connectTimeoutMillis,
+                                       long timeoutMillis, int maxFrameSize) throws IOException {
+    EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1, Threads.createDaemonThreadFactory("messaging-binary-%d"));
+    BinaryMessagingClient client = null;
+    try {
+      client = new BinaryMessagingClient(eventLoopGroup, address, connectTimeoutMillis, timeoutMillis, maxFrameSize);
+      ByteBuf response = client.call(BinaryProtocol.HELLO, body -> body.writeInt(BinaryProtocol.VERSION));
+      try {
+        int status = response.readShort();
+        if (status != BinaryProtocol.STATUS_OK) {
+          throw new IOException("Binary protocol handshake failed with status " + status + ". Reason: "
+                                  + BinaryProtocol.readString(response));
+        }
+      } finally {
+        response.release();
+      }
+      return client;
+    } catch (Throwable t) {
+      if (client != null) {
+        client.close();
+      } else {
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+      }
+      throw t;
+    }
+  }
+
+  private BinaryMessagingClient(EventLoopGroup eventLoopGroup, InetSocketAddress address, int connectTimeoutMillis,
+                                long timeoutMillis, int maxFrameSize) throws IOException {
+    this.eventLoopGroup = eventLoopGroup;
+    this.timeoutMillis = timeoutMillis;
+    this.pendingRequests = new ConcurrentHashMap<>();
+    this.nextRequestId = new AtomicInteger();
+
+    Bootstrap bootstrap = new Bootstrap()
+      .group(eventLoopGroup)
+      .channel(NioSocketChannel.class)
+      .option(ChannelOption.TCP_NODELAY, true)
+      .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+      .handler(new ChannelInitializer<SocketChannel>() {
+        @Override
+        protected void initChannel(SocketChannel ch) {
+          ch.pipeline()
+            .addLast("decoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4))
+            .addLast("handler", new ResponseHandler());
+        }
+      });
+
+    ChannelFuture connectFuture = bootstrap.connect(address).awaitUninterruptibly();
+    if (!connectFuture.isSuccess()) {
+      throw new IOException("Failed to connect to messaging binary server at " + address, connectFuture.cause());
+    }
+    this.channel = connectFuture.channel();
+  }
+
+  /**
+   * Returns {@code true} if this connection is closed.
+   */
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Sends a request and blocks until the response is received.
+   *
+   * @param type the request type
+   * @param bodyWriter a {@link Consumer} to write the request body
+   * @return a {@link ByteBuf} containing the response body, starting with the status. The caller is responsible
+   *         for releasing it
+   * @throws IOException if failed to send the request or receive the response
+   */
+  ByteBuf call(byte type, Consumer<ByteBuf> bodyWriter) throws IOException {
+    if (closed) {
+      throw new IOException("Connection to messaging binary server is closed");
+    }
+
+    int requestId = nextRequestId.incrementAndGet();
+    ByteBuf frame = BinaryProtocol.newFrame(channel.alloc(), type, requestId, 256);
+    try {
+      bodyWriter.accept(frame);
+    } catch (Throwable t) {
+      frame.release();
+      throw t;
+    }
+
+    CompletableFuture<ByteBuf> future = new CompletableFuture<>();
+    pendingRequests.put(requestId, future);
+    channel.writeAndFlush(BinaryProtocol.updateFrameLength(frame)).addListener(f -> {
+      if (!f.isSuccess()) {
+        failRequest(requestId, f.cause());
+      }
+    });
+    // Check again in case the connection was closed before the request was added
+    if (closed) {
+      failRequest(requestId, null);
+    }
+
+    try {
+      return timeoutMillis > 0 ? future.get(timeoutMillis, TimeUnit.MILLISECONDS) : future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      releaseOnComplete(requestId, future);
+      throw new IOException("Interrupted while waiting for response from messaging binary server", e);
+    } catch (TimeoutException e) {
+      releaseOnComplete(requestId, future);
+      // The connection is no longer usable since it is unknown whether the server processed the request
+      close();
+      throw new IOException("Timeout in waiting for response from messaging binary server", e);
+    } catch (ExecutionException e) {
+      throw new IOException("Failed to make request to messaging binary server", e.getCause());
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    channel.close();
+    eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+    failAll();
+  }
+
+  /**
+   * Fails the pending request of the given id.
+   */
+  private void failRequest(int requestId, Throwable cause) {
+    CompletableFuture<ByteBuf> future = pendingRequests.remove(requestId);
+    if (future != null) {
+      future.completeExceptionally(cause == null ? new IOException("Connection closed") : cause);
+    }
+  }
+
+  /**
+   * Fails all pending requests.
+   */
+  private void failAll() {
+    for (Integer requestId : pendingRequests.keySet()) {
+      failRequest(requestId, null);
+    }
+  }
+
+  /**
+   * Removes the given pending request and releases the response if it is already received.
+   */
+  private void releaseOnComplete(int requestId, CompletableFuture<ByteBuf> future) {
+    pendingRequests.remove(requestId);
+    future.thenAccept(ByteBuf::release);
+  }
+
+  /**
+   * The channel handler for matching response frames with pending requests.
+   */
+  private final class ResponseHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+      frame.readByte();
+      CompletableFuture<ByteBuf> future = pendingRequests.remove(frame.readInt());
+      if (future != null && !future.complete(frame.retain())) {
+        frame.release();
+      }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+      closed = true;
+      failAll();
+      super.channelInactive(ctx);
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      closed = true;
+      failAll();
+      ctx.close();
+    }
+  }
+}
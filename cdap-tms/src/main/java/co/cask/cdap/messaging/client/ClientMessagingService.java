@@ -22,9 +22,11 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicAlreadyExistsException;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.ServiceUnavailableException;
+import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.http.DefaultHttpRequestConfig;
 import co.cask.cdap.common.internal.remote.RemoteClient;
+import co.cask.cdap.messaging.BinaryProtocol;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.RollbackDetail;
@@ -45,8 +47,11 @@ import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import com.google.common.net.HttpHeaders;
 import com.google.gson.Gson;
+import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import com.google.inject.Inject;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
@@ -60,20 +65,26 @@ import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
 import org.apache.twill.discovery.DiscoveryServiceClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
@@ -83,10 +94,16 @@ import javax.annotation.Nullable;
  * The client implementation of {@link MessagingService}. This client is intended for internal
  * higher level API implementation only.
  *
+ * If the messaging system has the binary protocol enabled, publish, store and fetch calls are made with the
+ * binary protocol as defined by {@link BinaryProtocol}, which pipelines requests on one persistent connection.
+ * All other calls, as well as fetch calls that wait for new messages, are made with HTTP. If the binary protocol
+ * is not available, all calls are made with HTTP.
+ *
  * NOTE: This class shouldn't expose to end user (e.g. cdap-client module).
  */
 public final class ClientMessagingService implements MessagingService {
 
+  private static final Logger LOG = LoggerFactory.getLogger(ClientMessagingService.class);
   private static final HttpRequestConfig HTTP_REQUEST_CONFIG = new DefaultHttpRequestConfig();
   private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
   private static final Gson GSON = new Gson();
@@ -95,12 +112,41 @@ public final class ClientMessagingService implements MessagingService {
   private static final Type TOPIC_LIST_TYPE = new TypeToken<List<String>>() { }.getType();
 
   private final RemoteClient remoteClient;
+  private final RemoteClient protocolClient;
+  private final AsyncStoreRequestExecutor asyncExecutor;
+  private final boolean binaryEnabled;
+  private final long negotiationRetryNanos;
+  private final int maxFrameSize;
+  private volatile BinaryMessagingClient binaryClient;
+  private long nextNegotiationNanos;
 
   @VisibleForTesting
+  public ClientMessagingService(DiscoveryServiceClient discoveryServiceClient) {
+    this(CConfiguration.create(), discoveryServiceClient);
+  }
+
   @Inject
-  public ClientMessagingService(final DiscoveryServiceClient discoveryServiceClient) {
+  ClientMessagingService(CConfiguration cConf, DiscoveryServiceClient discoveryServiceClient) {
     this.remoteClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
                                          HTTP_REQUEST_CONFIG, "/v1/namespaces/");
+    this.protocolClient = new RemoteClient(discoveryServiceClient, Constants.Service.MESSAGING_SERVICE,
+                                           HTTP_REQUEST_CONFIG, "/v1/protocols/");
+    this.binaryEnabled = cConf.getBoolean(Constants.MessagingSystem.CLIENT_BINARY_ENABLED);
+    this.negotiationRetryNanos = TimeUnit.SECONDS.toNanos(
+      cConf.getLong(Constants.MessagingSystem.CLIENT_BINARY_NEGOTIATION_RETRY_SECONDS));
+    // Fetch responses can go over the max request size by the last message in the response
+    this.maxFrameSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB) * 1024 * 1024 * 2;
+    this.nextNegotiationNanos = System.nanoTime();
+    this.asyncExecutor = new AsyncStoreRequestExecutor(
+      (request, publish) -> {
+        if (publish) {
+          return publish(request);
+        }
+        storePayload(request);
+        return null;
+      },
+      cConf.getInt(Constants.MessagingSystem.CLIENT_ASYNC_MAX_OUTSTANDING_REQUESTS),
+      cConf.getInt(Constants.MessagingSystem.CLIENT_ASYNC_MAX_COALESCE_BYTES));
   }
 
   @Override
@@ -181,6 +227,21 @@ public final class ClientMessagingService implements MessagingService {
   @Nullable
   @Override
   public RollbackDetail publish(StoreRequest request) throws TopicNotFoundException, IOException {
+    BinaryMessagingClient binaryClient = getBinaryClient();
+    if (binaryClient != null) {
+      ByteBuf response = performBinaryWriteRequest(binaryClient, request, true);
+      try {
+        if (!response.isReadable()) {
+          return null;
+        }
+        byte[] encoded = new byte[response.readableBytes()];
+        response.readBytes(encoded);
+        return new ClientRollbackDetail(encoded);
+      } finally {
+        response.release();
+      }
+    }
+
     HttpResponse response = performWriteRequest(request, true);
 
     byte[] body = response.getResponseBody();
@@ -195,9 +256,38 @@ public final class ClientMessagingService implements MessagingService {
 
   @Override
   public void storePayload(StoreRequest request) throws TopicNotFoundException, IOException {
+    BinaryMessagingClient binaryClient = getBinaryClient();
+    if (binaryClient != null) {
+      performBinaryWriteRequest(binaryClient, request, false).release();
+      return;
+    }
     performWriteRequest(request, false);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * The request is executed by a background thread. Requests to the same topic are sent one at a time in
+   * submission order, while requests to different topics are sent concurrently. Non-transactional requests to
+   * the same topic that are waiting to be sent are coalesced into one request. The number of outstanding requests
+   * is bounded by the {@link Constants.MessagingSystem#CLIENT_ASYNC_MAX_OUTSTANDING_REQUESTS} setting. If the
+   * limit is reached, this method blocks until one of the outstanding requests is completed.
+   */
+  @Override
+  public CompletableFuture<RollbackDetail> publishAsync(StoreRequest request) {
+    return asyncExecutor.submit(request, true);
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * The request is executed in the same way as {@link #publishAsync(StoreRequest)}.
+   */
+  @Override
+  public CompletableFuture<Void> storePayloadAsync(StoreRequest request) {
+    return asyncExecutor.submit(request, false).thenApply(rollbackDetail -> null);
+  }
+
   @Override
   public void rollback(TopicId topicId, RollbackDetail rollbackDetail) throws TopicNotFoundException, IOException {
     ByteBuffer requestBody = (rollbackDetail instanceof ClientRollbackDetail)
@@ -259,6 +349,135 @@ public final class ClientMessagingService implements MessagingService {
     return response;
   }
 
+  /**
+   * Makes a request to the binary protocol server for writing to the messaging system.
+   *
+   * @param binaryClient the connection to the binary protocol server
+   * @param request contains information about what to write
+   * @param publish {@code true} to make publish call, {@code false} to make store call.
+   * @return the response body, which the caller is responsible for releasing
+   * @throws IOException if failed to perform the write operation
+   * @throws TopicNotFoundException if the topic to write to does not exist
+   */
+  private ByteBuf performBinaryWriteRequest(BinaryMessagingClient binaryClient, StoreRequest request,
+                                            boolean publish) throws IOException, TopicNotFoundException {
+    TopicId topicId = request.getTopicId();
+    ByteBuf response = binaryClient.call(publish ? BinaryProtocol.PUBLISH : BinaryProtocol.STORE, body -> {
+      BinaryProtocol.writeString(body, topicId.getNamespace());
+      BinaryProtocol.writeString(body, topicId.getTopic());
+      body.writeBoolean(request.isTransactional());
+      if (request.isTransactional()) {
+        body.writeLong(request.getTransactionWritePointer());
+      }
+      // Reserve the count and set it after writing the payloads, since the StoreRequest can only be iterated once
+      int countIndex = body.writerIndex();
+      body.writeInt(0);
+      int count = 0;
+      for (byte[] payload : request) {
+        BinaryProtocol.writeBytes(body, payload);
+        count++;
+      }
+      body.setInt(countIndex, count);
+    });
+    handleBinaryError(binaryClient, response, topicId, "Failed to " + (publish ? "publish" : "store")
+      + " message to topic " + topicId);
+    return response;
+  }
+
+  /**
+   * Returns the connection to the binary protocol server, or {@code null} if the binary protocol is not available.
+   * If there is no connection, the binary protocol is negotiated through the HTTP server. If the negotiation failed,
+   * it is retried after {@link Constants.MessagingSystem#CLIENT_BINARY_NEGOTIATION_RETRY_SECONDS}.
+   */
+  @Nullable
+  private BinaryMessagingClient getBinaryClient() {
+    if (!binaryEnabled) {
+      return null;
+    }
+    BinaryMessagingClient client = binaryClient;
+    if (client != null && !client.isClosed()) {
+      return client;
+    }
+
+    synchronized (this) {
+      client = binaryClient;
+      if (client != null && !client.isClosed()) {
+        return client;
+      }
+      binaryClient = null;
+      if (System.nanoTime() - nextNegotiationNanos < 0) {
+        return null;
+      }
+      try {
+        client = negotiateBinaryProtocol();
+      } catch (Exception e) {
+        LOG.debug("Failed to negotiate messaging binary protocol. Using HTTP.", e);
+        client = null;
+      }
+      if (client == null) {
+        nextNegotiationNanos = System.nanoTime() + negotiationRetryNanos;
+      }
+      binaryClient = client;
+      return client;
+    }
+  }
+
+  /**
+   * Discovers the binary protocol server through the HTTP server and connects to it.
+   *
+   * @return the connection to the binary protocol server or {@code null} if it is not available
+   */
+  @Nullable
+  private BinaryMessagingClient negotiateBinaryProtocol() throws IOException {
+    // Resolve the URL first so that the binary protocol server is on the same host as the HTTP server
+    URL url = protocolClient.resolve("binary");
+    HttpResponse response = protocolClient.execute(HttpRequest.get(url).build());
+    if (response.getResponseCode() != HttpURLConnection.HTTP_OK) {
+      // Older servers, or servers that don't have binary protocol enabled, respond with 404
+      return null;
+    }
+    JsonObject protocol = GSON.fromJson(response.getResponseBodyAsString(), JsonObject.class);
+    if (protocol.get("version").getAsInt() != BinaryProtocol.VERSION) {
+      return null;
+    }
+    InetSocketAddress address = new InetSocketAddress(url.getHost(), protocol.get("port").getAsInt());
+    BinaryMessagingClient client = BinaryMessagingClient.connect(address, HTTP_REQUEST_CONFIG.getConnectTimeout(),
+                                                                 HTTP_REQUEST_CONFIG.getReadTimeout(), maxFrameSize);
+    LOG.debug("Using messaging binary protocol at {}", address);
+    return client;
+  }
+
+  /**
+   * Returns {@code true} if calls are made with the binary protocol.
+   */
+  @VisibleForTesting
+  public boolean isBinaryProtocolActive() {
+    return getBinaryClient() != null;
+  }
+
+  /**
+   * Handles error response from the given binary protocol response body. The status is consumed from the response
+   * body if it is successful. Otherwise, the response body is released and an exception is thrown.
+   */
+  private void handleBinaryError(BinaryMessagingClient binaryClient, ByteBuf response, TopicId topicId,
+                                 String errorPrefix) throws IOException, TopicNotFoundException {
+    int status = response.readShort();
+    if (status == BinaryProtocol.STATUS_OK) {
+      return;
+    }
+    String message = BinaryProtocol.readString(response);
+    response.release();
+
+    if (status == HttpURLConnection.HTTP_NOT_FOUND) {
+      throw new TopicNotFoundException(topicId.getNamespace(), topicId.getTopic());
+    }
+    if (status == HttpURLConnection.HTTP_UNAVAILABLE) {
+      // The server may be shutting down, hence negotiate again for the next call
+      binaryClient.close();
+    }
+    handleError(status, () -> message, errorPrefix);
+  }
+
   /**
    * Creates the URL path for making HTTP requests for the given topic.
    */
@@ -381,6 +600,12 @@ public final class ClientMessagingService implements MessagingService {
 
     @Override
     public CloseableIterator<RawMessage> fetch() throws IOException, TopicNotFoundException {
+      // Fetch that waits for new messages is only supported by HTTP
+      BinaryMessagingClient binaryClient = getMaxWaitMillis() > 0L ? null : getBinaryClient();
+      if (binaryClient != null) {
+        return new BinaryMessageIterator(binaryClient);
+      }
+
       GenericRecord record = new GenericData.Record(Schemas.V1.ConsumeRequest.SCHEMA);
 
       if (getStartOffset() != null) {
@@ -398,10 +623,22 @@ public final class ClientMessagingService implements MessagingService {
 
       // The cask common http library doesn't support read streaming, and we don't want to buffer all messages
       // in memory, hence we use the HttpURLConnection directly instead.
-      URL url = remoteClient.resolve(createTopicPath(topicId) + "/poll");
+      // If max wait is set, the server holds the request until there are new messages or the max wait has passed.
+      // Servers that don't support waiting would just ignore the query parameter and return immediately.
+      String path = createTopicPath(topicId) + "/poll";
+      long maxWaitMillis = getMaxWaitMillis();
+      int readTimeout = HTTP_REQUEST_CONFIG.getReadTimeout();
+      if (maxWaitMillis > 0L) {
+        path += "?maxWaitMillis=" + maxWaitMillis;
+        if (readTimeout > 0) {
+          readTimeout = (int) Math.min(Integer.MAX_VALUE, readTimeout + maxWaitMillis);
+        }
+      }
+
+      URL url = remoteClient.resolve(path);
       final HttpURLConnection urlConn = (HttpURLConnection)  url.openConnection();
       urlConn.setConnectTimeout(HTTP_REQUEST_CONFIG.getConnectTimeout());
-      urlConn.setReadTimeout(HTTP_REQUEST_CONFIG.getReadTimeout());
+      urlConn.setReadTimeout(readTimeout);
       urlConn.setRequestMethod("POST");
       urlConn.setRequestProperty(HttpHeaders.CONTENT_TYPE, "avro/binary");
       urlConn.setDoInput(true);
@@ -474,5 +711,96 @@ public final class ClientMessagingService implements MessagingService {
         }
       };
     }
+
+    /**
+     * A {@link CloseableIterator} that fetches messages with the binary protocol. Since each response is
+     * limited by the max frame size, it fetches again starting from the last message received
+     * if there are more messages available.
+     */
+    private final class BinaryMessageIterator extends AbstractCloseableIterator<RawMessage> {
+
+      private final BinaryMessagingClient binaryClient;
+      private final byte[] encodedTx;
+      private final List<RawMessage> messages;
+      private Iterator<RawMessage> iterator;
+      private byte[] lastMessageId;
+      private int remaining;
+      private boolean hasMore;
+
+      BinaryMessageIterator(BinaryMessagingClient binaryClient) throws IOException, TopicNotFoundException {
+        this.binaryClient = binaryClient;
+        this.encodedTx = getTransaction() == null ? null : TRANSACTION_CODEC.encode(getTransaction());
+        this.messages = new ArrayList<>();
+        this.remaining = getLimit();
+        // Fetch the first batch eagerly so that failures are raised from the fetch call
+        fetchBatch();
+      }
+
+      @Override
+      protected RawMessage computeNext() {
+        if (!iterator.hasNext() && hasMore && remaining > 0) {
+          try {
+            fetchBatch();
+          } catch (Exception e) {
+            throw Throwables.propagate(e);
+          }
+        }
+        if (!iterator.hasNext()) {
+          return endOfData();
+        }
+        return iterator.next();
+      }
+
+      @Override
+      public void close() {
+        // No-op since all messages are already received
+      }
+
+      private void fetchBatch() throws IOException, TopicNotFoundException {
+        ByteBuf response = binaryClient.call(BinaryProtocol.FETCH, body -> {
+          BinaryProtocol.writeString(body, topicId.getNamespace());
+          BinaryProtocol.writeString(body, topicId.getTopic());
+          if (lastMessageId != null) {
+            body.writeByte(BinaryProtocol.FETCH_START_MESSAGE_ID);
+            BinaryProtocol.writeBytes(body, lastMessageId);
+            body.writeBoolean(false);
+          } else if (getStartOffset() != null) {
+            body.writeByte(BinaryProtocol.FETCH_START_MESSAGE_ID);
+            BinaryProtocol.writeBytes(body, getStartOffset());
+            body.writeBoolean(isIncludeStart());
+          } else if (getStartTime() != null) {
+            body.writeByte(BinaryProtocol.FETCH_START_TIMESTAMP);
+            body.writeLong(getStartTime());
+            body.writeBoolean(isIncludeStart());
+          } else {
+            body.writeByte(BinaryProtocol.FETCH_START_NONE);
+            body.writeBoolean(isIncludeStart());
+          }
+          body.writeInt(remaining);
+          BinaryProtocol.writeBytes(body, encodedTx);
+        });
+        handleBinaryError(binaryClient, response, topicId, "Failed to fetch messages from topic " + topicId);
+
+        try {
+          int count = response.readInt();
+          hasMore = response.readBoolean();
+          remaining -= count;
+
+          // The messages are encoded the same way as the elements in the HTTP response
+          messages.clear();
+          Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(response), null);
+          for (int i = 0; i < count; i++) {
+            byte[] id = Bytes.toBytes(decoder.readBytes(null));
+            messages.add(new RawMessage(id, Bytes.toBytes(decoder.readBytes(null))));
+          }
+          if (!messages.isEmpty()) {
+            lastMessageId = messages.get(messages.size() - 1).getId();
+          }
+          iterator = messages.iterator();
+        } finally {
+          response.release();
+        }
+      }
+    }
   }
 }
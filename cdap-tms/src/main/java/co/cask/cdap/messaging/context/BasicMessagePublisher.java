@@ -22,6 +22,7 @@ import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.client.StoreRequestBuilder;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.util.concurrent.Uninterruptibles;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TransactionAware;
 
@@ -31,6 +32,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Implementation of {@link MessagePublisher} that implements {@link TransactionAware} so that messages will be
@@ -91,13 +94,33 @@ final class BasicMessagePublisher extends AbstractMessagePublisher implements Tr
 
   @Override
   public boolean commitTx() throws Exception {
-    // One potential improvement in future we can make is to publish concurrently for different topics using a executor.
+    // Publish to all topics concurrently and then wait for all of them to complete
+    Map<TopicId, CompletableFuture<RollbackDetail>> futures = new HashMap<>();
     for (Map.Entry<TopicId, StoreRequestBuilder> entry : txPublishRequests.entrySet()) {
       // If the payload of publish request is empty, no need to publish
       if (!entry.getValue().hasPayload()) {
         continue;
       }
-      rollbackDetails.put(entry.getKey(), messagingService.publish(entry.getValue().build()));
+      futures.put(entry.getKey(), messagingService.publishAsync(entry.getValue().build()));
+    }
+
+    // Wait for all publishes to complete, even some of them failed, so that the rollback details of the
+    // successful ones are available to the rollbackTx call.
+    Exception failure = null;
+    for (Map.Entry<TopicId, CompletableFuture<RollbackDetail>> entry : futures.entrySet()) {
+      try {
+        rollbackDetails.put(entry.getKey(), Uninterruptibles.getUninterruptibly(entry.getValue()));
+      } catch (ExecutionException e) {
+        Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        if (failure == null) {
+          failure = cause;
+        } else {
+          failure.addSuppressed(cause);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
     return true;
   }
@@ -0,0 +1,189 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.data;
+
+import co.cask.cdap.messaging.Schemas;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.avro.io.BinaryData;
+
+/**
+ * A {@link RawMessage} that is backed by a pre-encoded frame. The frame is the Avro binary encoding of the
+ * message as an element of the consume response (see {@link Schemas.V1.ConsumeResponse}), hence it can be
+ * sent to consumers as is, without copying or encoding the message again. The payload is only copied out
+ * of the frame when {@link #getPayload()} is called for the first time.
+ */
+public final class FramedRawMessage extends RawMessage {
+
+  private final int payloadOffset;
+  private ByteBuf frame;
+  private byte[] payload;
+  private boolean detached;
+
+  /**
+   * Returns the number of bytes needed for encoding a message with the given id and payload sizes.
+   */
+  public static int getEncodedSize(int idSize, int payloadSize) {
+    return getVarIntSize(idSize) + idSize + getVarIntSize(payloadSize) + payloadSize;
+  }
+
+  /**
+   * Creates a {@link FramedRawMessage} by encoding the given message id and payload to the given buffer,
+   * starting at the writer index of the buffer. The resulting message shares the content and the reference count
+   * of the given buffer.
+   *
+   * @param id the message id
+   * @param payload the message payload
+   * @param buffer the buffer to encode to. It must have at least {@link #getEncodedSize(int, int)} bytes writable
+   * @return a new {@link FramedRawMessage}
+   */
+  public static FramedRawMessage create(byte[] id, byte[] payload, ByteBuf buffer) {
+    int startIndex = buffer.writerIndex();
+    byte[] lengthBytes = new byte[5];
+
+    // Avro encodes bytes as (zig-zag var-int length + bytes)
+    buffer.writeBytes(lengthBytes, 0, BinaryData.encodeInt(id.length, lengthBytes, 0));
+    buffer.writeBytes(id);
+    buffer.writeBytes(lengthBytes, 0, BinaryData.encodeInt(payload.length, lengthBytes, 0));
+    int payloadOffset = buffer.writerIndex() - startIndex;
+    buffer.writeBytes(payload);
+
+    return new FramedRawMessage(id, buffer.slice(startIndex, buffer.writerIndex() - startIndex), payloadOffset);
+  }
+
+  /**
+   * Creates a {@link FramedRawMessage} that wraps the given payload without copying it. Only the message id and the
+   * lengths are encoded to a new heap buffer, which is combined with the payload array to form the frame.
+   * The payload returned by {@link #getPayload()} is the given array.
+   *
+   * @param id the message id
+   * @param payload the message payload
+   * @return a new {@link FramedRawMessage}
+   */
+  public static FramedRawMessage wrap(byte[] id, byte[] payload) {
+    int headerSize = getEncodedSize(id.length, payload.length) - payload.length;
+    ByteBuf header = Unpooled.buffer(headerSize, headerSize);
+    byte[] lengthBytes = new byte[5];
+    header.writeBytes(lengthBytes, 0, BinaryData.encodeInt(id.length, lengthBytes, 0));
+    header.writeBytes(id);
+    header.writeBytes(lengthBytes, 0, BinaryData.encodeInt(payload.length, lengthBytes, 0));
+
+    FramedRawMessage message = new FramedRawMessage(id, Unpooled.wrappedBuffer(header, Unpooled.wrappedBuffer(payload)),
+                                                    headerSize);
+    message.payload = payload;
+    return message;
+  }
+
+  /**
+   * Creates a {@link FramedRawMessage} from a frame previously encoded by {@link #create(byte[], byte[], ByteBuf)}.
+   * The resulting message shares the content and the reference count of the given buffer.
+   *
+   * @param frame the buffer containing exactly one encoded message between its reader and writer indices
+   * @return a new {@link FramedRawMessage}
+   */
+  public static FramedRawMessage decode(ByteBuf frame) {
+    int startIndex = frame.readerIndex();
+    int index = startIndex;
+
+    int idSize = readVarInt(frame, index);
+    index += getVarIntSize(idSize);
+    byte[] id = new byte[idSize];
+    frame.getBytes(index, id);
+    index += idSize;
+    int payloadSize = readVarInt(frame, index);
+    index += getVarIntSize(payloadSize);
+
+    if (index + payloadSize != frame.writerIndex()) {
+      throw new IllegalArgumentException("Invalid message frame of size " + frame.readableBytes());
+    }
+    return new FramedRawMessage(id, frame, index - startIndex);
+  }
+
+  private FramedRawMessage(byte[] id, ByteBuf frame, int payloadOffset) {
+    super(id, null);
+    this.frame = frame;
+    this.payloadOffset = payloadOffset;
+  }
+
+  @Override
+  public byte[] getPayload() {
+    if (payload == null) {
+      byte[] bytes = new byte[frame.readableBytes() - payloadOffset];
+      frame.getBytes(frame.readerIndex() + payloadOffset, bytes);
+      payload = bytes;
+    }
+    return payload;
+  }
+
+  /**
+   * Copies the frame to the heap, so that this message stays valid after the buffer it was created from is
+   * released. This must be called before releasing the buffer if the message is still in use afterwards.
+   */
+  public void detach() {
+    if (!detached) {
+      frame = Unpooled.copiedBuffer(frame);
+      detached = true;
+    }
+  }
+
+  /**
+   * Returns the size of the encoded frame in bytes.
+   */
+  public int getEncodedSize() {
+    return frame.readableBytes();
+  }
+
+  /**
+   * Returns the encoded frame. The returned buffer shares the content with this message, but has its own
+   * reader and writer indices. Its reference count is already incremented, hence the caller is responsible
+   * for releasing it, which happens automatically when it is written to a Netty channel.
+   */
+  public ByteBuf retainedFrame() {
+    return frame.retainedDuplicate();
+  }
+
+  /**
+   * Reads a zig-zag var-int encoded int from the given buffer at the given index.
+   */
+  private static int readVarInt(ByteBuf buffer, int index) {
+    int value = 0;
+    int shift = 0;
+    byte b;
+    do {
+      if (shift > 28) {
+        throw new IllegalArgumentException("Invalid var-int encoding in message frame");
+      }
+      b = buffer.getByte(index++);
+      value |= (b & 0x7f) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return (value >>> 1) ^ -(value & 1);
+  }
+
+  /**
+   * Returns the number of bytes used by zig-zag var-int encoding of the given non-negative int.
+   */
+  private static int getVarIntSize(int value) {
+    // Zig-zag encoding of a non-negative int n is 2n, with 7 bits per byte
+    long zigZag = ((long) value) << 1;
+    int size = 1;
+    while ((zigZag >>>= 7) != 0) {
+      size++;
+    }
+    return size;
+  }
+}
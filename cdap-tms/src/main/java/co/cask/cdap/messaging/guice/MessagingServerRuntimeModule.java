@@ -23,7 +23,7 @@ import co.cask.cdap.data2.util.hbase.HBaseTableUtil;
 import co.cask.cdap.data2.util.hbase.HBaseTableUtilFactory;
 import co.cask.cdap.gateway.handlers.CommonHandlers;
 import co.cask.cdap.messaging.MessagingService;
-import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
 import co.cask.cdap.messaging.distributed.LeaderElectionMessagingService;
 import co.cask.cdap.messaging.server.FetchHandler;
 import co.cask.cdap.messaging.server.MessagingHttpService;
@@ -111,7 +111,7 @@ public class MessagingServerRuntimeModule extends RuntimeModule {
       bind(MessageTableCacheProvider.class).toInstance(new MessageTableCacheProvider() {
         @Nullable
         @Override
-        public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+        public MessageEntryCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
           return null;
         }
 
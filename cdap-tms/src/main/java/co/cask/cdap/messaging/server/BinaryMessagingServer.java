@@ -0,0 +1,449 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.api.common.HttpErrorStatusProvider;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.common.ServiceUnavailableException;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.messaging.BinaryProtocol;
+import co.cask.cdap.messaging.MessageFetcher;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.RollbackDetail;
+import co.cask.cdap.messaging.StoreRequest;
+import co.cask.cdap.messaging.data.FramedRawMessage;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.AbstractIdleService;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.ImmediateEventExecutor;
+import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Threads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The server for the messaging system binary protocol as defined by {@link BinaryProtocol}. It runs alongside
+ * the {@link MessagingHttpService} and serves publish, store and fetch requests. Requests from the same connection
+ * are handled concurrently by a thread pool, hence clients can pipeline requests on one connection.
+ * The server stops reading from a connection when it has too many requests in progress, and rejects requests
+ * with a service unavailable error when the thread pool queue is full.
+ */
+final class BinaryMessagingServer extends AbstractIdleService {
+
+  private static final Logger LOG = LoggerFactory.getLogger(BinaryMessagingServer.class);
+  private static final TransactionCodec TRANSACTION_CODEC = new TransactionCodec();
+
+  private final CConfiguration cConf;
+  private final MessagingService messagingService;
+  private final int maxFrameSize;
+  private final int maxFetchSize;
+  private final int maxConnectionRequests;
+  private volatile InetSocketAddress bindAddress;
+  private ChannelGroup channelGroup;
+  private EventLoopGroup bossGroup;
+  private EventLoopGroup workerGroup;
+  private ExecutorService executor;
+
+  BinaryMessagingServer(CConfiguration cConf, MessagingService messagingService) {
+    this.cConf = cConf;
+    this.messagingService = messagingService;
+    this.maxFrameSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB) * 1024 * 1024;
+    // Leave room in the fetch response for the last message added, which can go over the limit
+    this.maxFetchSize = maxFrameSize / 2;
+    this.maxConnectionRequests = cConf.getInt(Constants.MessagingSystem.BINARY_SERVER_MAX_CONNECTION_REQUESTS);
+  }
+
+  /**
+   * Returns the address that this server is bound to.
+   */
+  InetSocketAddress getBindAddress() {
+    InetSocketAddress addr = this.bindAddress;
+    if (addr == null) {
+      throw new IllegalStateException("Messaging binary server hasn't been started");
+    }
+    return addr;
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    int threads = cConf.getInt(Constants.MessagingSystem.BINARY_SERVER_THREADS);
+    int maxQueued = cConf.getInt(Constants.MessagingSystem.BINARY_SERVER_MAX_QUEUED_REQUESTS);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                                         new ArrayBlockingQueue<>(maxQueued),
+                                                         Threads.createDaemonThreadFactory("messaging-binary-%d"));
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
+
+    channelGroup = new DefaultChannelGroup(ImmediateEventExecutor.INSTANCE);
+    bossGroup = new NioEventLoopGroup(1, Threads.createDaemonThreadFactory("messaging-binary-boss"));
+    workerGroup = new NioEventLoopGroup(cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_WORKER_THREADS),
+                                        Threads.createDaemonThreadFactory("messaging-binary-worker-%d"));
+
+    ServerBootstrap bootstrap = new ServerBootstrap()
+      .group(bossGroup, workerGroup)
+      .channel(NioServerSocketChannel.class)
+      .childHandler(new ChannelInitializer<SocketChannel>() {
+        @Override
+        protected void initChannel(SocketChannel ch) {
+          channelGroup.add(ch);
+          ch.pipeline()
+            .addLast("flush", new FlushConsolidationHandler(256, true))
+            .addLast("decoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4))
+            .addLast("handler", new RequestHandler());
+        }
+      });
+
+    // Bind to the same address as the HTTP server
+    String host = cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS);
+    int port = cConf.getInt(Constants.MessagingSystem.BINARY_SERVER_PORT);
+    InetSocketAddress address = host == null ? new InetSocketAddress(port) : new InetSocketAddress(host, port);
+    Channel serverChannel = bootstrap.bind(address).sync().channel();
+    channelGroup.add(serverChannel);
+    bindAddress = (InetSocketAddress) serverChannel.localAddress();
+    LOG.info("Messaging binary server started on {}", bindAddress);
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    try {
+      channelGroup.close().awaitUninterruptibly();
+    } finally {
+      bindAddress = null;
+      bossGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+      workerGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+      executor.shutdownNow();
+    }
+    LOG.info("Messaging binary server stopped");
+  }
+
+  /**
+   * Handles a request frame and returns the response frame.
+   */
+  private ByteBuf handleRequest(ByteBufAllocator allocator, byte type, int requestId, ByteBuf body) throws Exception {
+    switch (type) {
+      case BinaryProtocol.PUBLISH: {
+        StoreRequest storeRequest = decodeStoreRequest(body);
+        // Empty payload is only allowed for transactional publish
+        if (!storeRequest.isTransactional() && !storeRequest.hasPayload()) {
+          throw new BadRequestException("Empty payload is only allowed for publishing transactional message. Topic: "
+                                          + storeRequest.getTopicId());
+        }
+        RollbackDetail rollbackDetail = messagingService.publish(storeRequest);
+        ByteBuf response = newResponse(allocator, type, requestId, 38);
+        if (rollbackDetail != null) {
+          ByteBuf encoded = StoreHandler.encodeRollbackDetail(rollbackDetail);
+          response.writeBytes(encoded);
+          encoded.release();
+        }
+        return BinaryProtocol.updateFrameLength(response);
+      }
+      case BinaryProtocol.STORE: {
+        StoreRequest storeRequest = decodeStoreRequest(body);
+        // It must be transactional with payload for store request
+        if (!storeRequest.isTransactional() || !storeRequest.hasPayload()) {
+          throw new BadRequestException("Store request must be transactional with payload. Topic: "
+                                          + storeRequest.getTopicId());
+        }
+        messagingService.storePayload(storeRequest);
+        return BinaryProtocol.updateFrameLength(newResponse(allocator, type, requestId, 0));
+      }
+      case BinaryProtocol.FETCH:
+        return fetch(allocator, requestId, body);
+      default:
+        throw new BadRequestException("Unsupported request type " + type);
+    }
+  }
+
+  /**
+   * Decodes a {@link StoreRequest} from the body of a publish or store request.
+   */
+  private StoreRequest decodeStoreRequest(ByteBuf body) {
+    TopicId topicId = new NamespaceId(BinaryProtocol.readString(body)).topic(BinaryProtocol.readString(body));
+    boolean transactional = body.readBoolean();
+    long writePointer = transactional ? body.readLong() : -1L;
+    int count = body.readInt();
+    List<byte[]> payloads = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      payloads.add(BinaryProtocol.readBytes(body));
+    }
+    return new ListStoreRequest(topicId, transactional, writePointer, payloads);
+  }
+
+  /**
+   * Fetches messages based on the given fetch request body and returns the response frame. The response contains
+   * messages up to the max frame size. If there are more messages available, the has more flag in the response is
+   * set, so that the client can fetch again from the last message it received.
+   */
+  private ByteBuf fetch(ByteBufAllocator allocator, int requestId, ByteBuf body) throws Exception {
+    TopicId topicId = new NamespaceId(BinaryProtocol.readString(body)).topic(BinaryProtocol.readString(body));
+    MessageFetcher fetcher = messagingService.prepareFetch(topicId);
+
+    byte startType = body.readByte();
+    byte[] startMessageId = startType == BinaryProtocol.FETCH_START_MESSAGE_ID ? BinaryProtocol.readBytes(body) : null;
+    long startTime = startType == BinaryProtocol.FETCH_START_TIMESTAMP ? body.readLong() : -1L;
+    boolean inclusive = body.readBoolean();
+    if (startMessageId != null) {
+      fetcher.setStartMessage(startMessageId, inclusive);
+    } else if (startTime >= 0L) {
+      fetcher.setStartTime(startTime);
+    }
+    fetcher.setLimit(body.readInt());
+    byte[] encodedTx = BinaryProtocol.readBytes(body);
+    if (encodedTx != null) {
+      fetcher.setTransaction(TRANSACTION_CODEC.decode(encodedTx));
+    }
+
+    CompositeByteBuf response = allocator.compositeBuffer(Integer.MAX_VALUE);
+    // Messages that are not framed already are encoded into this buffer and added to the response as slices
+    ByteBuf encoded = Unpooled.buffer();
+    int encodedStart = 0;
+    int count = 0;
+    boolean hasMore = false;
+
+    try (CloseableIterator<RawMessage> iterator = fetcher.fetch()) {
+      while (iterator.hasNext()) {
+        if (response.readableBytes() + encoded.writerIndex() - encodedStart >= maxFetchSize) {
+          hasMore = true;
+          break;
+        }
+        RawMessage message = iterator.next();
+        count++;
+        if (message instanceof FramedRawMessage) {
+          addEncoded(response, encoded, encodedStart);
+          encodedStart = encoded.writerIndex();
+          response.addComponent(true, ((FramedRawMessage) message).retainedFrame());
+        } else {
+          byte[] payload = message.getPayload();
+          encoded.ensureWritable(FramedRawMessage.getEncodedSize(message.getId().length, payload.length));
+          FramedRawMessage.create(message.getId(), payload, encoded);
+        }
+      }
+      addEncoded(response, encoded, encodedStart);
+    } catch (Throwable t) {
+      response.release();
+      throw t;
+    } finally {
+      encoded.release();
+    }
+
+    ByteBuf header = newResponse(allocator, BinaryProtocol.FETCH, requestId, 5);
+    header.writeInt(count);
+    header.writeBoolean(hasMore);
+    response.addComponent(true, 0, header);
+    return BinaryProtocol.updateFrameLength(response);
+  }
+
+  /**
+   * Adds the bytes in the encoded buffer starting from the given index to the given composite buffer.
+   */
+  private void addEncoded(CompositeByteBuf response, ByteBuf encoded, int startIndex) {
+    int length = encoded.writerIndex() - startIndex;
+    if (length > 0) {
+      response.addComponent(true, encoded.retainedSlice(startIndex, length));
+    }
+  }
+
+  /**
+   * Creates a new response frame with the OK status written.
+   */
+  private ByteBuf newResponse(ByteBufAllocator allocator, byte type, int requestId, int initialBodySize) {
+    ByteBuf response = BinaryProtocol.newFrame(allocator, type, requestId, initialBodySize + 2);
+    response.writeShort(BinaryProtocol.STATUS_OK);
+    return response;
+  }
+
+  /**
+   * Creates a response frame for the given failure. The status is mapped the same way as the
+   * {@link MessagingHttpService} does for HTTP requests.
+   */
+  private ByteBuf newErrorResponse(ByteBufAllocator allocator, byte type, int requestId, Throwable t) {
+    int status = HttpURLConnection.HTTP_INTERNAL_ERROR;
+    String message = null;
+
+    if (t instanceof IllegalArgumentException) {
+      status = HttpURLConnection.HTTP_BAD_REQUEST;
+      message = t.getMessage();
+    } else {
+      for (Throwable cause : Throwables.getCausalChain(t)) {
+        if (cause instanceof ServiceUnavailableException) {
+          status = HttpURLConnection.HTTP_UNAVAILABLE;
+        } else if (cause instanceof HttpErrorStatusProvider) {
+          status = ((HttpErrorStatusProvider) cause).getStatusCode();
+        } else if (cause.getClass().getName().endsWith("NotFoundException")) {
+          status = HttpURLConnection.HTTP_NOT_FOUND;
+        } else if (cause.getClass().getName().endsWith("AlreadyExistsException")) {
+          status = HttpURLConnection.HTTP_CONFLICT;
+        } else {
+          continue;
+        }
+        message = cause.getMessage();
+        break;
+      }
+    }
+
+    if (message == null) {
+      LOG.error("Unexpected error in handling binary request of type {}", type, t);
+      message = Throwables.getRootCause(t).getMessage();
+    } else {
+      LOG.trace("Error in handling binary request of type {}", type, t);
+    }
+
+    ByteBuf response = BinaryProtocol.newFrame(allocator, type, requestId, 64);
+    response.writeShort(status);
+    BinaryProtocol.writeString(response, message == null ? "" : message);
+    return BinaryProtocol.updateFrameLength(response);
+  }
+
+  /**
+   * The channel handler for decoding request frames and dispatching them to the executor.
+   */
+  private final class RequestHandler extends SimpleChannelInboundHandler<ByteBuf> {
+
+    private boolean handshaked;
+    // Number of requests that are not responded yet. It is only accessed from the channel event loop.
+    private int pendingRequests;
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, ByteBuf frame) {
+      byte type = frame.readByte();
+      int requestId = frame.readInt();
+
+      if (!handshaked) {
+        handshake(ctx, type, requestId, frame);
+        return;
+      }
+
+      // Stop reading more requests from the connection if it has too many requests in progress
+      if (++pendingRequests >= maxConnectionRequests) {
+        ctx.channel().config().setAutoRead(false);
+      }
+
+      ByteBuf body = frame.retain();
+      try {
+        executor.execute(() -> {
+          ByteBuf response;
+          try {
+            response = handleRequest(ctx.alloc(), type, requestId, body);
+          } catch (Throwable t) {
+            response = newErrorResponse(ctx.alloc(), type, requestId, t);
+          } finally {
+            body.release();
+          }
+          ctx.writeAndFlush(response).addListener(future -> requestCompleted(ctx));
+        });
+      } catch (RejectedExecutionException e) {
+        body.release();
+        ctx.writeAndFlush(newErrorResponse(ctx.alloc(), type, requestId,
+                                           new ServiceUnavailableException(Constants.Service.MESSAGING_SERVICE)))
+          .addListener(future -> requestCompleted(ctx));
+      }
+    }
+
+    /**
+     * Called from the channel event loop when the response of a request was written. It resumes reading from the
+     * connection if it was stopped due to too many requests in progress.
+     */
+    private void requestCompleted(ChannelHandlerContext ctx) {
+      if (--pendingRequests < maxConnectionRequests && !ctx.channel().config().isAutoRead()) {
+        ctx.channel().config().setAutoRead(true);
+      }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+      if (cause instanceof IOException) {
+        LOG.trace("Connection closed by client", cause);
+      } else {
+        LOG.warn("Exception raised in binary connection from {}. Closing the connection.",
+                 ctx.channel().remoteAddress(), cause);
+      }
+      ctx.close();
+    }
+
+    /**
+     * Handles the protocol handshake, which must be the first frame of a connection.
+     */
+    private void handshake(ChannelHandlerContext ctx, byte type, int requestId, ByteBuf frame) {
+      if (type != BinaryProtocol.HELLO || frame.readInt() != BinaryProtocol.VERSION) {
+        ctx.writeAndFlush(newErrorResponse(ctx.alloc(), type, requestId,
+                                           new BadRequestException("Unsupported protocol handshake")))
+          .addListener(future -> ctx.close());
+        return;
+      }
+      handshaked = true;
+      ByteBuf response = newResponse(ctx.alloc(), type, requestId, 4);
+      response.writeInt(BinaryProtocol.VERSION);
+      ctx.writeAndFlush(BinaryProtocol.updateFrameLength(response));
+    }
+  }
+
+  /**
+   * A {@link StoreRequest} backed by a list of payloads.
+   */
+  private static final class ListStoreRequest extends StoreRequest {
+
+    private final List<byte[]> payloads;
+
+    ListStoreRequest(TopicId topicId, boolean transactional, long transactionWritePointer, List<byte[]> payloads) {
+      super(topicId, transactional, transactionWritePointer);
+      this.payloads = payloads;
+    }
+
+    @Override
+    public boolean hasPayload() {
+      return !payloads.isEmpty();
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+      return payloads.iterator();
+    }
+  }
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
 import co.cask.cdap.common.BadRequestException;
+import co.cask.cdap.common.HttpExceptionHandler;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.io.ByteBuffers;
@@ -28,26 +29,34 @@ import co.cask.cdap.common.logging.Loggers;
 import co.cask.cdap.messaging.MessageFetcher;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.Schemas;
+import co.cask.cdap.messaging.data.FramedRawMessage;
 import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.service.TopicWriteNotifier;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import co.cask.http.AbstractHttpHandler;
 import co.cask.http.BodyProducer;
+import co.cask.http.ExceptionHandler;
+import co.cask.http.HandlerContext;
 import co.cask.http.HttpResponder;
 import com.google.common.collect.ImmutableSet;
 import com.google.inject.Inject;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufInputStream;
 import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
 import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.http.DefaultHttpHeaders;
+import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import org.apache.avro.generic.GenericData;
 import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
 import org.apache.avro.io.DatumReader;
 import org.apache.avro.io.DatumWriter;
 import org.apache.avro.io.Decoder;
@@ -55,6 +64,8 @@ import org.apache.avro.io.DecoderFactory;
 import org.apache.avro.io.Encoder;
 import org.apache.avro.io.EncoderFactory;
 import org.apache.tephra.TransactionCodec;
+import org.apache.twill.common.Cancellable;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -65,10 +76,17 @@ import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.annotation.Nullable;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
 
 /**
  * A netty http handler for handling message fetching REST API for the messaging system.
@@ -86,19 +104,53 @@ public final class FetchHandler extends AbstractHttpHandler {
   );
 
   private final MessagingService messagingService;
+  private final TopicWriteNotifier writeNotifier;
+  private final ExceptionHandler exceptionHandler;
+  private final long maxWaitMillis;
+  private final int waitThreads;
   private int messageChunkSize;
+  private ScheduledExecutorService waitExecutor;
 
   @Inject
-  FetchHandler(CConfiguration cConf, MessagingService messagingService) {
+  FetchHandler(CConfiguration cConf, MessagingService messagingService, TopicWriteNotifier writeNotifier) {
     this.messagingService = messagingService;
+    this.writeNotifier = writeNotifier;
+    this.exceptionHandler = new HttpExceptionHandler();
     this.messageChunkSize = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE);
+    this.maxWaitMillis = cConf.getLong(Constants.MessagingSystem.HTTP_SERVER_CONSUME_MAX_WAIT_MS);
+    this.waitThreads = cConf.getInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_WAIT_THREADS);
   }
 
+  @Override
+  public void init(HandlerContext context) {
+    super.init(context);
+    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+      waitThreads, Threads.createDaemonThreadFactory("messaging-fetch-wait-%d"));
+    executor.setRemoveOnCancelPolicy(true);
+    waitExecutor = executor;
+  }
+
+  @Override
+  public void destroy(HandlerContext context) {
+    try {
+      waitExecutor.shutdownNow();
+    } finally {
+      super.destroy(context);
+    }
+  }
+
+  /**
+   * Fetches messages from the given topic. If the {@code maxWaitMillis} query parameter is larger than zero and
+   * there is no message available, the request will be held until new messages are written to the topic or the
+   * given amount of time has passed. The wait doesn't block any request handling thread. Transactional fetches
+   * never wait.
+   */
   @POST
   @Path("poll")
   public void poll(FullHttpRequest request, HttpResponder responder,
                    @PathParam("namespace") String namespace,
-                   @PathParam("topic") String topic) throws Exception {
+                   @PathParam("topic") String topic,
+                   @QueryParam("maxWaitMillis") @DefaultValue("0") long maxWaitMillis) throws Exception {
 
     TopicId topicId = new NamespaceId(namespace).topic(topic);
 
@@ -111,8 +163,29 @@ public final class FetchHandler extends AbstractHttpHandler {
     Decoder decoder = DecoderFactory.get().directBinaryDecoder(new ByteBufInputStream(request.content()), null);
     DatumReader<GenericRecord> datumReader = new GenericDatumReader<>(Schemas.V1.ConsumeRequest.SCHEMA);
 
-    // Fetch the messages
-    CloseableIterator<RawMessage> iterator = fetchMessages(datumReader.read(null, decoder), topicId);
+    GenericRecord fetchRequest = datumReader.read(null, decoder);
+
+    if (maxWaitMillis < 0) {
+      throw new BadRequestException("Invalid maxWaitMillis " + maxWaitMillis + ". It must be >= 0.");
+    }
+    // A transactional fetch doesn't wait, since it can't see messages published by transactions started after it.
+    // Clients should wait with a non-transactional fetch before starting the transaction.
+    long waitMillis = fetchRequest.get("transaction") == null ? Math.min(maxWaitMillis, this.maxWaitMillis) : 0L;
+    if (waitMillis <= 0L) {
+      // Fetch the messages
+      sendMessages(responder, fetchMessages(fetchRequest, topicId));
+      return;
+    }
+
+    // Copy the request line for error reporting, since the request will be released after this method returned
+    HttpRequest requestLine = new DefaultHttpRequest(request.protocolVersion(), request.method(), request.uri());
+    new WaitingFetch(requestLine, responder, topicId, fetchRequest, waitMillis).fetch();
+  }
+
+  /**
+   * Sends the messages from the given {@link CloseableIterator} as the response.
+   */
+  private void sendMessages(HttpResponder responder, CloseableIterator<RawMessage> iterator) {
     try {
       responder.sendContent(HttpResponseStatus.OK, new MessagesBodyProducer(iterator, messageChunkSize),
                             new DefaultHttpHeaders().set(HttpHeaderNames.CONTENT_TYPE, "avro/binary"));
@@ -156,20 +229,109 @@ public final class FetchHandler extends AbstractHttpHandler {
     return fetcher.fetch();
   }
 
+  /**
+   * A fetch request that waits for new messages if there is no message available. Instead of blocking a thread,
+   * it listens to writes to the topic through the {@link TopicWriteNotifier} and fetches again when there is
+   * a write or when the max wait time has passed.
+   */
+  private final class WaitingFetch {
+
+    private final HttpRequest request;
+    private final HttpResponder responder;
+    private final TopicId topicId;
+    private final GenericRecord fetchRequest;
+    private final long deadlineNanos;
+
+    WaitingFetch(HttpRequest request, HttpResponder responder, TopicId topicId,
+                 GenericRecord fetchRequest, long waitMillis) {
+      this.request = request;
+      this.responder = responder;
+      this.topicId = topicId;
+      this.fetchRequest = fetchRequest;
+      this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(waitMillis);
+    }
+
+    /**
+     * Fetches messages and sends them back if there are messages or the deadline has passed.
+     * Otherwise waits for new messages.
+     */
+    void fetch() throws Exception {
+      // Get the generation before fetching so that no write is missed between the fetch and the wait
+      long generation = writeNotifier.getGeneration(topicId);
+      CloseableIterator<RawMessage> iterator = fetchMessages(fetchRequest, topicId);
+      long waitNanos = deadlineNanos - System.nanoTime();
+      try {
+        if (waitNanos <= 0L || iterator.hasNext()) {
+          sendMessages(responder, iterator);
+          return;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+      iterator.close();
+      new Waiter().start(generation, waitNanos);
+    }
+
+    /**
+     * Waits for either a write to the topic or the timeout, whichever comes first, and then fetches again.
+     */
+    private final class Waiter implements Runnable {
+
+      private final AtomicBoolean resumed = new AtomicBoolean();
+      private volatile Cancellable listener;
+      private volatile ScheduledFuture<?> timeout;
+
+      void start(long generation, long waitNanos) {
+        listener = writeNotifier.addListener(topicId, generation, this);
+        if (!resumed.get()) {
+          timeout = waitExecutor.schedule(this, waitNanos, TimeUnit.NANOSECONDS);
+        }
+      }
+
+      @Override
+      public void run() {
+        if (!resumed.compareAndSet(false, true)) {
+          return;
+        }
+        // The listener is called from the thread that writes to the topic, hence fetch again from the executor
+        waitExecutor.execute(this::resume);
+      }
+
+      private void resume() {
+        Cancellable listener = this.listener;
+        if (listener != null) {
+          listener.cancel();
+        }
+        ScheduledFuture<?> timeout = this.timeout;
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+
+        // Since it is not running in the request handling thread, failures have to be sent back to the client here
+        try {
+          fetch();
+        } catch (Throwable t) {
+          exceptionHandler.handle(t, request, responder);
+        }
+      }
+    }
+  }
+
   /**
    * A {@link BodyProducer} to encode and send back messages.
    * Instead of using GenericDatumWriter, we perform the array encoding manually so that we don't have to buffer
-   * all messages in memory before sending out.
+   * all messages in memory before sending out. Messages that are already encoded as {@link FramedRawMessage}
+   * are added to the response as is, without copying.
    */
-  private static class MessagesBodyProducer extends BodyProducer {
+  static final class MessagesBodyProducer extends BodyProducer {
 
     private final CloseableIterator<RawMessage> iterator;
     private final List<RawMessage> messages;
     private final int messageChunkSize;
-    private final ByteBuf chunk;
-    private final Encoder encoder;
     private final GenericRecord messageRecord;
     private final DatumWriter<GenericRecord> messageWriter;
+    private BinaryEncoder encoder;
     private boolean arrayStarted;
     private boolean arrayEnded;
 
@@ -177,8 +339,6 @@ public final class FetchHandler extends AbstractHttpHandler {
       this.iterator = iterator;
       this.messages = new ArrayList<>();
       this.messageChunkSize = messageChunkSize;
-      this.chunk = Unpooled.buffer(messageChunkSize);
-      this.encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(chunk), null);
 
       // These are for writing individual message (response is an array of messages)
       this.messageRecord = new GenericData.Record(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
@@ -201,30 +361,53 @@ public final class FetchHandler extends AbstractHttpHandler {
         return Unpooled.EMPTY_BUFFER;
       }
 
-      chunk.clear();
-
-      if (!arrayStarted) {
-        arrayStarted = true;
-        encoder.writeArrayStart();
-      }
-
       // Try to buffer up to buffer size
       int size = 0;
+      int encodeSize = 0;
+      int framedCount = 0;
       messages.clear();
       while (iterator.hasNext() && size < messageChunkSize) {
         RawMessage message = iterator.next();
         messages.add(message);
 
-        // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
-        // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
-        // but we don't expect id and payload of such size
-        size += message.getId().length + message.getPayload().length + 8;
+        if (message instanceof FramedRawMessage) {
+          size += ((FramedRawMessage) message).getEncodedSize();
+          framedCount++;
+        } else {
+          // Avro encodes bytes as (len + bytes), hence adding 8 to cater for the length of the id and payload
+          // Straightly speaking it can be up to 9 bytes each (hence 18 bytes),
+          // but we don't expect id and payload of such size
+          int messageSize = message.getId().length + message.getPayload().length + 8;
+          size += messageSize;
+          encodeSize += messageSize;
+        }
+      }
+
+      // Buffer for the array block headers and messages that need encoding. Reserve 16 bytes for the block headers.
+      ByteBuf encoded = Unpooled.buffer(encodeSize + 16);
+      encoder = EncoderFactory.get().directBinaryEncoder(new ByteBufOutputStream(encoded), encoder);
+
+      if (!arrayStarted) {
+        arrayStarted = true;
+        encoder.writeArrayStart();
       }
 
+      // If there are framed messages, the chunk is a composite of the encoded pieces and the framed messages
+      CompositeByteBuf chunk = framedCount == 0 ? null : Unpooled.compositeBuffer(framedCount * 2 + 2);
+      int encodedStart = 0;
+
       encoder.setItemCount(messages.size());
       for (RawMessage message : messages) {
         encoder.startItem();
 
+        if (message instanceof FramedRawMessage) {
+          // The framed message is already encoded the same way as the DatumWriter does
+          addEncoded(chunk, encoded, encodedStart);
+          encodedStart = encoded.writerIndex();
+          chunk.addComponent(true, ((FramedRawMessage) message).retainedFrame());
+          continue;
+        }
+
         // Write individual message (array element) with DatumWrite.
         // This provides greater flexibility on schema evolution.
         // The response will likely always be an array, but the element schema can evolve.
@@ -238,13 +421,27 @@ public final class FetchHandler extends AbstractHttpHandler {
         encoder.writeArrayEnd();
       }
 
-      return chunk.copy();
+      if (chunk == null) {
+        return encoded;
+      }
+      addEncoded(chunk, encoded, encodedStart);
+      encoded.release();
+      return chunk;
+    }
+
+    /**
+     * Adds the bytes in the encoded buffer starting from the given index to the given composite buffer.
+     */
+    private void addEncoded(CompositeByteBuf chunk, ByteBuf encoded, int startIndex) {
+      int length = encoded.writerIndex() - startIndex;
+      if (length > 0) {
+        chunk.addComponent(true, encoded.retainedSlice(startIndex, length));
+      }
     }
 
     @Override
     public void finished() throws Exception {
       iterator.close();
-      chunk.release();
     }
 
     @Override
@@ -22,6 +22,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.http.CommonNettyHttpServiceBuilder;
 import co.cask.cdap.common.metrics.MetricsReporterHook;
+import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.security.spi.authentication.SecurityRequestContext;
 import co.cask.http.HttpHandler;
 import co.cask.http.HttpResponder;
@@ -39,10 +40,13 @@ import org.apache.twill.discovery.DiscoveryService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 /**
- * The http server for supporting messaging system REST API.
+ * The http server for supporting messaging system REST API. If enabled, it also runs the
+ * {@link BinaryMessagingServer} for the binary protocol, which can be discovered through the HTTP server.
  */
 public class MessagingHttpService extends AbstractIdleService {
 
@@ -52,21 +56,32 @@ public class MessagingHttpService extends AbstractIdleService {
   private final DiscoveryService discoveryService;
   private final MetricsCollectionService metricsCollectionService;
   private final Set<HttpHandler> handlers;
+  private final MessagingService messagingService;
+  private BinaryMessagingServer binaryServer;
   private NettyHttpService httpService;
   private Cancellable cancelDiscovery;
 
   @Inject
   public MessagingHttpService(CConfiguration cConf, DiscoveryService discoveryService,
                               MetricsCollectionService metricsCollectionService,
-                              @Named(Constants.MessagingSystem.HANDLER_BINDING_NAME) Set<HttpHandler> handlers) {
+                              @Named(Constants.MessagingSystem.HANDLER_BINDING_NAME) Set<HttpHandler> handlers,
+                              MessagingService messagingService) {
     this.cConf = cConf;
     this.discoveryService = discoveryService;
     this.metricsCollectionService = metricsCollectionService;
     this.handlers = handlers;
+    this.messagingService = messagingService;
   }
 
   @Override
   protected void startUp() throws Exception {
+    List<HttpHandler> handlers = new ArrayList<>(this.handlers);
+    if (cConf.getBoolean(Constants.MessagingSystem.BINARY_SERVER_ENABLED)) {
+      binaryServer = new BinaryMessagingServer(cConf, messagingService);
+      binaryServer.startAndWait();
+      handlers.add(new ProtocolNegotiationHandler(binaryServer.getBindAddress().getPort()));
+    }
+
     httpService = new CommonNettyHttpServiceBuilder(cConf, Constants.Service.MESSAGING_SERVICE)
       .setHost(cConf.get(Constants.MessagingSystem.HTTP_SERVER_BIND_ADDRESS))
       .setHandlerHooks(ImmutableList.of(
@@ -93,7 +108,14 @@ public class MessagingHttpService extends AbstractIdleService {
       })
       .setHttpHandlers(handlers)
       .build();
-    httpService.start();
+    try {
+      httpService.start();
+    } catch (Exception e) {
+      if (binaryServer != null) {
+        binaryServer.stopAndWait();
+      }
+      throw e;
+    }
     cancelDiscovery = discoveryService.register(new Discoverable(Constants.Service.MESSAGING_SERVICE,
                                                                  httpService.getBindAddress()));
     LOG.info("Messaging HTTP server started on {}", httpService.getBindAddress());
@@ -104,7 +126,13 @@ public class MessagingHttpService extends AbstractIdleService {
     try {
       cancelDiscovery.cancel();
     } finally {
-      httpService.stop();
+      try {
+        httpService.stop();
+      } finally {
+        if (binaryServer != null) {
+          binaryServer.stopAndWait();
+        }
+      }
     }
     LOG.info("Messaging HTTP server stopped");
   }
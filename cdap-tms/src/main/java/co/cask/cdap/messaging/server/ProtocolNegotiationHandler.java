@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.messaging.BinaryProtocol;
+import co.cask.http.AbstractHttpHandler;
+import co.cask.http.HttpResponder;
+import com.google.gson.JsonObject;
+import io.netty.handler.codec.http.HttpRequest;
+import io.netty.handler.codec.http.HttpResponseStatus;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+
+/**
+ * A netty http handler for clients to discover the binary protocol server. It is only added to the
+ * {@link MessagingHttpService} when the binary protocol server is enabled. Clients fall back to
+ * the HTTP protocol if this endpoint is not available.
+ */
+@Path("/v1/protocols")
+public final class ProtocolNegotiationHandler extends AbstractHttpHandler {
+
+  private final int binaryPort;
+
+  ProtocolNegotiationHandler(int binaryPort) {
+    this.binaryPort = binaryPort;
+  }
+
+  @GET
+  @Path("/binary")
+  public void getBinaryProtocol(HttpRequest request, HttpResponder responder) {
+    JsonObject json = new JsonObject();
+    json.addProperty("port", binaryPort);
+    json.addProperty("version", BinaryProtocol.VERSION);
+    responder.sendJson(HttpResponseStatus.OK, json.toString());
+  }
+}
@@ -144,7 +144,7 @@ public final class StoreHandler extends AbstractHttpHandler {
   /**
    * Encodes the {@link RollbackDetail} object as avro record based on the {@link Schemas.V1.PublishResponse#SCHEMA}.
    */
-  private ByteBuf encodeRollbackDetail(RollbackDetail rollbackDetail) throws IOException {
+  static ByteBuf encodeRollbackDetail(RollbackDetail rollbackDetail) throws IOException {
     Schema schema = Schemas.V1.PublishResponse.SCHEMA;
 
     // Constructs the response object as GenericRecord
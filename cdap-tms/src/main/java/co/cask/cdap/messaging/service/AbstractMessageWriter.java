@@ -0,0 +1,220 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.messaging.RollbackDetail;
+import co.cask.cdap.messaging.StoreRequest;
+import co.cask.cdap.messaging.TopicMetadata;
+import com.google.common.base.Throwables;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Base class for writers that batch {@link StoreRequest} from concurrent threads and persist them
+ * through a single {@link StoreRequestWriter}. Sub-classes decide how the batching is done and
+ * how the calling thread waits for its request to be persisted.
+ */
+abstract class AbstractMessageWriter implements Closeable {
+
+  private final StoreRequestWriter<?> messagesWriter;
+  private final MetricsCollector metricsCollector;
+  private final AtomicBoolean closed;
+  private volatile Runnable writeListener;
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   */
+  AbstractMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
+    this.messagesWriter = messagesWriter;
+    this.metricsCollector = metricsCollector;
+    this.closed = new AtomicBoolean();
+  }
+
+  /**
+   * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. This method
+   * is safe to be called concurrently from multiple threads.
+   *
+   * @param storeRequest contains information about payload to be store
+   * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
+   * @return if the store request is transactional, then returns a {@link RollbackDetail} containing
+   *         information for rollback; otherwise {@code null} will be returned.
+   * @throws IOException if failed to persist the data
+   */
+  @Nullable
+  final RollbackDetail persist(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
+    if (closed.get()) {
+      throw new IOException("Message writer is already closed");
+    }
+
+    PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
+    enqueue(pendingStoreRequest);
+
+    metricsCollector.increment("persist.requested", 1L);
+
+    awaitCompletion(pendingStoreRequest);
+
+    if (pendingStoreRequest.isSuccess()) {
+      metricsCollector.increment("persist.success", 1L);
+      if (!pendingStoreRequest.isTransactional()) {
+        return null;
+      }
+      return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
+                                      pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
+                                      pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
+    } else {
+      metricsCollector.increment("persist.failure", 1L);
+      Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
+      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
+                            pendingStoreRequest.getFailureCause());
+    }
+  }
+
+  @Override
+  public final void close() throws IOException {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      // Flush everything in the queue. New requests are rejected since the closed flag is already set.
+      flushAll();
+    } finally {
+      messagesWriter.close();
+    }
+  }
+
+  /**
+   * Returns {@code true} if {@link #close()} has been called.
+   */
+  final boolean isClosed() {
+    return closed.get();
+  }
+
+  /**
+   * Sets a listener to be called after every batch is successfully written. The listener is called from
+   * the writing thread, hence it must not block.
+   */
+  final void setWriteListener(@Nullable Runnable writeListener) {
+    this.writeListener = writeListener;
+  }
+
+  /**
+   * Returns the {@link MetricsCollector} for emitting metrics.
+   */
+  final MetricsCollector getMetricsCollector() {
+    return metricsCollector;
+  }
+
+  /**
+   * Writes the given batch of {@link PendingStoreRequest} with the {@link StoreRequestWriter} and marks all of them
+   * as completed. The given list will be cleared when this method returns.
+   * This method must not be called concurrently.
+   */
+  final void writeBatch(List<PendingStoreRequest> batch) {
+    metricsCollector.gauge("persist.queue.size", batch.size());
+
+    Throwable failureCause = null;
+    try {
+      messagesWriter.write(batch.iterator());
+    } catch (Throwable t) {
+      failureCause = t;
+    }
+
+    Iterator<PendingStoreRequest> iterator = batch.iterator();
+    while (iterator.hasNext()) {
+      iterator.next().completed(failureCause);
+      iterator.remove();
+    }
+
+    Runnable listener = writeListener;
+    if (failureCause == null && listener != null) {
+      listener.run();
+    }
+  }
+
+  /**
+   * Adds the given {@link PendingStoreRequest} to the queue of requests to be written.
+   */
+  abstract void enqueue(PendingStoreRequest pendingStoreRequest);
+
+  /**
+   * Blocks until the given {@link PendingStoreRequest} is completed.
+   *
+   * @throws IOException if the wait is interrupted
+   */
+  abstract void awaitCompletion(PendingStoreRequest pendingStoreRequest) throws IOException;
+
+  /**
+   * Blocks until all the requests enqueued are written. This method is called from {@link #close()}
+   * before the underlying {@link StoreRequestWriter} is closed.
+   */
+  abstract void flushAll() throws IOException;
+
+  /**
+   * Straightforward implementation of {@link RollbackDetail}
+   */
+  private static final class SimpleRollbackDetail implements RollbackDetail {
+
+    private final long transactionWritePointer;
+    private final long startTimestamp;
+    private final int startSequenceId;
+    private final long endTimestamp;
+    private final int endSequenceId;
+
+    SimpleRollbackDetail(long transactionWritePointer, long startTimestamp,
+                         int startSequenceId, long endTimestamp, int endSequenceId) {
+      this.transactionWritePointer = transactionWritePointer;
+      this.startTimestamp = startTimestamp;
+      this.startSequenceId = startSequenceId;
+      this.endTimestamp = endTimestamp;
+      this.endSequenceId = endSequenceId;
+    }
+
+    @Override
+    public long getTransactionWritePointer() {
+      return transactionWritePointer;
+    }
+
+    @Override
+    public long getStartTimestamp() {
+      return startTimestamp;
+    }
+
+    @Override
+    public int getStartSequenceId() {
+      return startSequenceId;
+    }
+
+    @Override
+    public long getEndTimestamp() {
+      return endTimestamp;
+    }
+
+    @Override
+    public int getEndSequenceId() {
+      return endSequenceId;
+    }
+  }
+}
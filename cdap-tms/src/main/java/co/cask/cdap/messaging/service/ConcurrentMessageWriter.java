@@ -18,21 +18,14 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.metrics.MetricsCollector;
 import co.cask.cdap.api.metrics.NoopMetricsContext;
-import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.StoreRequest;
-import co.cask.cdap.messaging.TopicMetadata;
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.base.Throwables;
 
-import java.io.Closeable;
-import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
-import javax.annotation.Nullable;
 import javax.annotation.concurrent.ThreadSafe;
 
 /**
@@ -60,13 +53,11 @@ import javax.annotation.concurrent.ThreadSafe;
  * get written and flushed.
  */
 @ThreadSafe
-final class ConcurrentMessageWriter implements Closeable {
+final class ConcurrentMessageWriter extends AbstractMessageWriter {
 
-  private final StoreRequestWriter<?> messagesWriter;
-  private final MetricsCollector metricsCollector;
-  private final PendingStoreQueue pendingStoreQueue;
+  private final Queue<PendingStoreRequest> writeQueue;
+  private final List<PendingStoreRequest> inflightRequests;
   private final AtomicBoolean writerFlag;
-  private final AtomicBoolean closed;
 
   /**
    * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
@@ -83,60 +74,39 @@ final class ConcurrentMessageWriter implements Closeable {
    * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
    */
   ConcurrentMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector) {
-    this.messagesWriter = messagesWriter;
-    this.metricsCollector = metricsCollector;
-    this.pendingStoreQueue = new PendingStoreQueue(metricsCollector);
+    super(messagesWriter, metricsCollector);
+    this.writeQueue = new ConcurrentLinkedQueue<>();
+    this.inflightRequests = new ArrayList<>(100);
     this.writerFlag = new AtomicBoolean();
-    this.closed = new AtomicBoolean();
   }
 
-  /**
-   * Persists the given {@link StoreRequest} to the {@link StoreRequestWriter} in this class. This method
-   * is safe to be called concurrently from multiple threads.
-   *
-   * @param storeRequest contains information about payload to be store
-   * @param metadata {@link TopicMetadata} for the topic in the {@link StoreRequest}
-   * @return if the store request is transactional, then returns a {@link RollbackDetail} containing
-   *         information for rollback; otherwise {@code null} will be returned.
-   * @throws IOException if failed to persist the data
-   */
-  @Nullable
-  RollbackDetail persist(StoreRequest storeRequest, TopicMetadata metadata) throws IOException {
-    if (closed.get()) {
-      throw new IOException("Message writer is already closed");
-    }
-
-    PendingStoreRequest pendingStoreRequest = new PendingStoreRequest(storeRequest, metadata);
-    pendingStoreQueue.enqueue(pendingStoreRequest);
-
-    metricsCollector.increment("persist.requested", 1L);
+  @Override
+  void enqueue(PendingStoreRequest pendingStoreRequest) {
+    writeQueue.add(pendingStoreRequest);
+  }
 
+  @Override
+  void awaitCompletion(PendingStoreRequest pendingStoreRequest) {
     while (!pendingStoreRequest.isCompleted()) {
       if (!tryWrite()) {
         Thread.yield();
       }
     }
+  }
 
-    if (pendingStoreRequest.isSuccess()) {
-      metricsCollector.increment("persist.success", 1L);
-      if (!pendingStoreRequest.isTransactional()) {
-        return null;
-      }
-      return new SimpleRollbackDetail(pendingStoreRequest.getTransactionWritePointer(),
-                                      pendingStoreRequest.getStartTimestamp(), pendingStoreRequest.getStartSequenceId(),
-                                      pendingStoreRequest.getEndTimestamp(), pendingStoreRequest.getEndSequenceId());
-    } else {
-      metricsCollector.increment("persist.failure", 1L);
-      Throwables.propagateIfInstanceOf(pendingStoreRequest.getFailureCause(), IOException.class);
-      throw new IOException("Unable to write message to " + storeRequest.getTopicId(),
-                            pendingStoreRequest.getFailureCause());
+  @Override
+  void flushAll() {
+    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
+    // flag was already set to true.
+    while (!tryWrite()) {
+      Thread.yield();
     }
   }
 
   /**
    * Tries to acquire the writer flag and persist the pending requests.
    *
-   * @return {@code true} if acquired the writer flag and called {@link PendingStoreQueue#persist(StoreRequestWriter)};
+   * @return {@code true} if acquired the writer flag and persisted all pending requests;
    *         otherwise {@code false} will be returned.
    */
   private boolean tryWrite() {
@@ -144,134 +114,21 @@ final class ConcurrentMessageWriter implements Closeable {
       return false;
     }
     try {
-      pendingStoreQueue.persist(messagesWriter);
-    } finally {
-      writerFlag.set(false);
-    }
-    return true;
-  }
-
-  @Override
-  public void close() throws IOException {
-    if (!closed.compareAndSet(false, true)) {
-      return;
-    }
-    // Flush everything in the queue.
-    // When this thread can grab the writer flag, all pending write requests must be completed since the closed
-    // flag was already set to false.
-    while (!tryWrite()) {
-      Thread.yield();
-    }
-    messagesWriter.close();
-  }
-
-  /**
-   * A resettable {@link Iterator} to provide {@link StoreRequest} to {@link StoreRequestWriter}.
-   * Except the {@link #enqueue(PendingStoreRequest)} method, all methods on this class can only be
-   * called while holding the writer flag.
-   */
-  private static final class PendingStoreQueue {
-
-    private final MetricsCollector metricsCollector;
-    private final Queue<PendingStoreRequest> writeQueue;
-    private final List<PendingStoreRequest> inflightRequests;
-
-    private PendingStoreQueue(MetricsCollector metricsCollector) {
-      this.metricsCollector = metricsCollector;
-      this.writeQueue = new ConcurrentLinkedQueue<>();
-      this.inflightRequests = new ArrayList<>(100);
-    }
-
-    /**
-     * Puts the given {@link PendingStoreRequest} to the concurrent queue.
-     */
-    void enqueue(PendingStoreRequest storeRequest) {
-      writeQueue.add(storeRequest);
-    }
-
-    /**
-     * Persists all {@link PendingStoreRequest} currently in the queue with the given writer.
-     */
-    void persist(StoreRequestWriter<?> writer) {
       // Capture all current events.
       // The reason for capturing instead of using a live iterator is to avoid the possible case of infinite write
       // time. E.g. while generating the entry to write to the storage table, a new store request get enqueued.
       // The number of requests in the queue is bounded by the number of threads that call this method.
       // Since this method is expected to be called (indirectly) from a http handler thread, that is bounded by
       // the thread pool size used by the http service.
-      inflightRequests.clear();
       PendingStoreRequest request = writeQueue.poll();
       while (request != null) {
         inflightRequests.add(request);
         request = writeQueue.poll();
       }
-
-      metricsCollector.gauge("persist.queue.size", inflightRequests.size());
-
-      try {
-        writer.write(inflightRequests.iterator());
-        completeAll(null);
-      } catch (Throwable t) {
-        completeAll(t);
-      }
-    }
-
-    /**
-     * Marks all inflight requests as collected through the {@link Iterator#next()} method as completed.
-     * This method must be called while holding the writer flag.
-     */
-    void completeAll(@Nullable Throwable failureCause) {
-      Iterator<PendingStoreRequest> iterator = inflightRequests.iterator();
-      while (iterator.hasNext()) {
-        iterator.next().completed(failureCause);
-        iterator.remove();
-      }
-    }
-  }
-
-  /**
-   * Straightforward implementation of {@link RollbackDetail}
-   */
-  private static final class SimpleRollbackDetail implements RollbackDetail {
-
-    private final long transactionWritePointer;
-    private final long startTimestamp;
-    private final int startSequenceId;
-    private final long endTimestamp;
-    private final int endSequenceId;
-
-    SimpleRollbackDetail(long transactionWritePointer, long startTimestamp,
-                         int startSequenceId, long endTimestamp, int endSequenceId) {
-      this.transactionWritePointer = transactionWritePointer;
-      this.startTimestamp = startTimestamp;
-      this.startSequenceId = startSequenceId;
-      this.endTimestamp = endTimestamp;
-      this.endSequenceId = endSequenceId;
-    }
-
-    @Override
-    public long getTransactionWritePointer() {
-      return transactionWritePointer;
-    }
-
-    @Override
-    public long getStartTimestamp() {
-      return startTimestamp;
-    }
-
-    @Override
-    public int getStartSequenceId() {
-      return startSequenceId;
-    }
-
-    @Override
-    public long getEndTimestamp() {
-      return endTimestamp;
-    }
-
-    @Override
-    public int getEndSequenceId() {
-      return endSequenceId;
+      writeBatch(inflightRequests);
+    } finally {
+      writerFlag.set(false);
     }
+    return true;
   }
 }
@@ -29,6 +29,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.NoSuchElementException;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
@@ -42,19 +43,62 @@ final class CoreMessageFetcher extends MessageFetcher {
   private static final Logger LOG = LoggerFactory.getLogger(CoreMessageFetcher.class);
 
   private final TopicMetadata topicMetadata;
+  private final TopicWriteNotifier writeNotifier;
   private final TableProvider<MessageTable> messageTableProvider;
   private final TableProvider<PayloadTable> payloadTableProvider;
 
-  CoreMessageFetcher(TopicMetadata topicMetadata,
+  CoreMessageFetcher(TopicMetadata topicMetadata, TopicWriteNotifier writeNotifier,
                      TableProvider<MessageTable> messageTableProvider,
                      TableProvider<PayloadTable> payloadTableProvider) {
     this.topicMetadata = topicMetadata;
+    this.writeNotifier = writeNotifier;
     this.messageTableProvider = messageTableProvider;
     this.payloadTableProvider = payloadTableProvider;
   }
 
   @Override
   public CloseableIterator<RawMessage> fetch() throws IOException {
+    // A transactional fetch doesn't wait, since it can't see messages published by transactions started after it,
+    // and waiting would keep the transaction open
+    long maxWaitMillis = getTransaction() == null ? getMaxWaitMillis() : 0L;
+    if (maxWaitMillis <= 0L) {
+      return doFetch();
+    }
+
+    TopicId topicId = topicMetadata.getTopicId();
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+    while (true) {
+      // Get the generation before fetching so that no write is missed between the fetch and the wait
+      long generation = writeNotifier.getGeneration(topicId);
+      CloseableIterator<RawMessage> iterator = doFetch();
+      long waitNanos = deadline - System.nanoTime();
+      try {
+        if (waitNanos <= 0L || iterator.hasNext()) {
+          return iterator;
+        }
+      } catch (Throwable t) {
+        iterator.close();
+        throw t;
+      }
+
+      // Release the table before waiting for new messages
+      iterator.close();
+      try {
+        writeNotifier.await(topicId, generation, waitNanos, TimeUnit.NANOSECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        InterruptedIOException ex = new InterruptedIOException("Interrupted while waiting for messages in "
+                                                                 + topicId);
+        ex.initCause(e);
+        throw ex;
+      }
+    }
+  }
+
+  /**
+   * Creates a {@link CloseableIterator} to fetch messages from the tables.
+   */
+  private CloseableIterator<RawMessage> doFetch() throws IOException {
     MessageTable messageTable = messageTableProvider.get();
     try {
       return new MessageCloseableIterator(messageTable);
@@ -210,8 +254,11 @@ final class CoreMessageFetcher extends MessageFetcher {
               throw Throwables.propagate(e);
             }
           } else {
-            // Otherwise, the message entry is the next message
-            nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
+            // Otherwise, the message entry is the next message. Use the message from the entry if available.
+            nextMessage = messageEntry.getRawMessage();
+            if (nextMessage == null) {
+              nextMessage = new RawMessage(createMessageId(messageEntry, null), messageEntry.getPayload());
+            }
           }
         } else {
           // If there is no more message from the message iterator as well, then no more message to fetch
@@ -77,24 +77,28 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
 
   private static final Logger LOG = LoggerFactory.getLogger(CoreMessagingService.class);
 
+  private static final String WRITER_MODE_CONCURRENT = "concurrent";
+  private static final String WRITER_MODE_GROUP_COMMIT = "group.commit";
+
   private final CConfiguration cConf;
   private final TableFactory tableFactory;
   private final LoadingCache<TopicId, TopicMetadata> topicCache;
-  private final LoadingCache<TopicId, ConcurrentMessageWriter> messageTableWriterCache;
-  private final LoadingCache<TopicId, ConcurrentMessageWriter> payloadTableWriterCache;
+  private final LoadingCache<TopicId, AbstractMessageWriter> messageTableWriterCache;
+  private final LoadingCache<TopicId, AbstractMessageWriter> payloadTableWriterCache;
   private final TimeProvider timeProvider;
   private final MetricsCollectionService metricsCollectionService;
+  private final TopicWriteNotifier writeNotifier;
   private final long txMaxLifeTimeInMillis;
 
   @Inject
   CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
-                       MetricsCollectionService metricsCollectionService) {
-    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService);
+                       MetricsCollectionService metricsCollectionService, TopicWriteNotifier writeNotifier) {
+    this(cConf, tableFactory, TimeProvider.SYSTEM_TIME, metricsCollectionService, writeNotifier);
   }
 
   @VisibleForTesting
-  CoreMessagingService(CConfiguration cConf, TableFactory tableFactory,
-                       TimeProvider timeProvider, MetricsCollectionService metricsCollectionService) {
+  CoreMessagingService(CConfiguration cConf, TableFactory tableFactory, TimeProvider timeProvider,
+                       MetricsCollectionService metricsCollectionService, TopicWriteNotifier writeNotifier) {
     this.cConf = cConf;
     this.tableFactory = tableFactory;
     this.topicCache = createTopicCache();
@@ -112,6 +116,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
     //        messaging service ->
     //          "metrics collection"
     this.metricsCollectionService = metricsCollectionService;
+    this.writeNotifier = writeNotifier;
     this.txMaxLifeTimeInMillis = TimeUnit.SECONDS.toMillis(cConf.getLong(TxConstants.Manager.CFG_TX_MAX_LIFETIME,
                                                                          TxConstants.Manager.DEFAULT_TX_MAX_LIFETIME));
   }
@@ -142,6 +147,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
       topicCache.invalidate(topicId);
       messageTableWriterCache.invalidate(topicId);
       payloadTableWriterCache.invalidate(topicId);
+      writeNotifier.topicDeleted(topicId);
     }
   }
 
@@ -166,7 +172,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   @Override
   public MessageFetcher prepareFetch(final TopicId topicId) throws TopicNotFoundException, IOException {
     final TopicMetadata metadata = getTopic(topicId);
-    return new CoreMessageFetcher(metadata, new TableProvider<MessageTable>() {
+    return new CoreMessageFetcher(metadata, writeNotifier, new TableProvider<MessageTable>() {
       @Override
       public MessageTable get() throws IOException {
         return createMessageTable(metadata);
@@ -331,7 +337,7 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
   }
 
   /**
-   * Creates a {@link LoadingCache} for {@link ConcurrentMessageWriter}
+   * Creates a {@link LoadingCache} for {@link AbstractMessageWriter}
    * for writing to {@link MessageTable} or {@link PayloadTable}.
    *
    * @param messageTable {@code true} for building a cache for the {@link MessageTable};
@@ -339,16 +345,16 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
    * @param cConf the system configuration
    * @return a {@link LoadingCache} for
    */
-  private LoadingCache<TopicId, ConcurrentMessageWriter> createTableWriterCache(final boolean messageTable,
+  private LoadingCache<TopicId, AbstractMessageWriter> createTableWriterCache(final boolean messageTable,
                                                                                 final CConfiguration cConf) {
     long expireSecs = cConf.getLong(Constants.MessagingSystem.TABLE_CACHE_EXPIRATION_SECONDS);
 
     return CacheBuilder.newBuilder()
       .expireAfterAccess(expireSecs, TimeUnit.SECONDS)
-      .removalListener(new RemovalListener<TopicId, ConcurrentMessageWriter>() {
+      .removalListener(new RemovalListener<TopicId, AbstractMessageWriter>() {
         @Override
-        public void onRemoval(RemovalNotification<TopicId, ConcurrentMessageWriter> notification) {
-          ConcurrentMessageWriter writer = notification.getValue();
+        public void onRemoval(RemovalNotification<TopicId, AbstractMessageWriter> notification) {
+          AbstractMessageWriter writer = notification.getValue();
           if (writer != null) {
             try {
               writer.close();
@@ -358,9 +364,9 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
           }
         }
       })
-      .build(new CacheLoader<TopicId, ConcurrentMessageWriter>() {
+      .build(new CacheLoader<TopicId, AbstractMessageWriter>() {
         @Override
-        public ConcurrentMessageWriter load(TopicId topicId) throws Exception {
+        public AbstractMessageWriter load(TopicId topicId) throws Exception {
           TopicMetadata metadata = getTopic(topicId);
           StoreRequestWriter<?> messagesWriter = messageTable
             ? new MessageTableStoreRequestWriter(createMessageTable(metadata), timeProvider)
@@ -373,11 +379,40 @@ public class CoreMessagingService extends AbstractIdleService implements Messagi
             Constants.Metrics.Tag.TABLE, messageTable ? "message" : "payload"
           ));
 
-          return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+          AbstractMessageWriter writer = createMessageWriter(topicId, messageTable, messagesWriter, metricsContext);
+          if (messageTable) {
+            // Wake up consumers waiting for new messages in the topic.
+            // Writes to the payload table are not visible to consumers until the message table is written.
+            writer.setWriteListener(() -> writeNotifier.notifyWrite(topicId));
+          }
+          return writer;
         }
       });
   }
 
+  /**
+   * Creates a {@link AbstractMessageWriter} based on the writer mode configured in {@link CConfiguration}.
+   */
+  private AbstractMessageWriter createMessageWriter(TopicId topicId, boolean messageTable,
+                                                    StoreRequestWriter<?> messagesWriter,
+                                                    MetricsContext metricsContext) {
+    String mode = cConf.get(Constants.MessagingSystem.WRITER_MODE, WRITER_MODE_CONCURRENT);
+    if (WRITER_MODE_CONCURRENT.equalsIgnoreCase(mode)) {
+      return new ConcurrentMessageWriter(messagesWriter, metricsContext);
+    }
+    if (WRITER_MODE_GROUP_COMMIT.equalsIgnoreCase(mode)) {
+      String name = String.format("%s-%s-%s", messageTable ? "message" : "payload",
+                                  topicId.getNamespace(), topicId.getTopic());
+      return new GroupCommitMessageWriter(messagesWriter, metricsContext, name,
+                                          cConf.getInt(Constants.MessagingSystem.WRITER_GROUP_COMMIT_MAX_BATCH_SIZE),
+                                          cConf.getLong(Constants.MessagingSystem.WRITER_GROUP_COMMIT_LINGER_MS));
+    }
+    throw new IllegalArgumentException(String.format("Unsupported messaging writer mode '%s' set in %s. "
+                                                       + "Supported modes are '%s' and '%s'.",
+                                                     mode, Constants.MessagingSystem.WRITER_MODE,
+                                                     WRITER_MODE_CONCURRENT, WRITER_MODE_GROUP_COMMIT));
+  }
+
   /**
    * Creates a new instance of {@link MetadataTable}.
    */
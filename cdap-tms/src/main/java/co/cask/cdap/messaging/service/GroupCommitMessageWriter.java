@@ -0,0 +1,193 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.StoreRequest;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Class to support writing to message/payload tables with high concurrency using group commit.
+ *
+ * Instead of having the calling threads compete for the writer flag as in {@link ConcurrentMessageWriter},
+ * a dedicated flusher thread owned by this writer performs all the writes:
+ *
+ * <pre>
+ * 1. The calling thread constructs a PendingStoreRequest and enqueue it to a BlockingQueue.
+ * 2. The calling thread parks until the PendingStoreRequest is COMPLETED (succeed/failure).
+ * 3. The flusher thread blocks on the queue until there is at least one request.
+ * 4. The flusher thread drains the queue until it has collected the max batch size or the linger time has passed.
+ * 5. The batch is written through the StoreRequestWriter and every PendingStoreRequest in it is marked as COMPLETED,
+ *    which unparks the calling threads.
+ * </pre>
+ *
+ * Requests enqueued while a batch is being written are naturally grouped into the next batch, hence no CPU is
+ * spent on waiting threads while a slow flush is in progress.
+ */
+@ThreadSafe
+final class GroupCommitMessageWriter extends AbstractMessageWriter {
+
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommitMessageWriter.class);
+
+  // Interval for the flusher thread to check for the closed flag when the queue is empty,
+  // as well as for the calling threads to check if the flusher thread is still alive
+  private static final long POLL_INTERVAL_MILLIS = 100L;
+
+  private final BlockingQueue<PendingStoreRequest> writeQueue;
+  private final int maxBatchSize;
+  private final long lingerNanos;
+  private final Thread flusher;
+
+  /**
+   * Constructor with a {@link NoopMetricsContext}. This constructor should only be used in unit-testing.
+   */
+  @VisibleForTesting
+  GroupCommitMessageWriter(StoreRequestWriter<?> messagesWriter, String name, int maxBatchSize, long lingerMillis) {
+    this(messagesWriter, new NoopMetricsContext(), name, maxBatchSize, lingerMillis);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param messagesWriter the {@link StoreRequestWriter} for persisting {@link StoreRequest}.
+   * @param metricsCollector the {@link MetricsCollector} for collecting metrics emitted by this class.
+   * @param name name of this writer. It is used to name the flusher thread.
+   * @param maxBatchSize maximum number of {@link StoreRequest} to be written in one batch
+   * @param lingerMillis maximum number of milliseconds to wait for more requests before writing a batch
+   *                     that is smaller than {@code maxBatchSize}
+   */
+  GroupCommitMessageWriter(StoreRequestWriter<?> messagesWriter, MetricsCollector metricsCollector,
+                           String name, int maxBatchSize, long lingerMillis) {
+    super(messagesWriter, metricsCollector);
+    Preconditions.checkArgument(maxBatchSize > 0, "Max batch size must be > 0");
+    Preconditions.checkArgument(lingerMillis >= 0, "Linger time must be >= 0");
+
+    this.writeQueue = new LinkedBlockingQueue<>();
+    this.maxBatchSize = maxBatchSize;
+    this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+    this.flusher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        runFlusher();
+      }
+    }, "message-writer-" + name);
+    this.flusher.setDaemon(true);
+    this.flusher.start();
+  }
+
+  @Override
+  void enqueue(PendingStoreRequest pendingStoreRequest) {
+    writeQueue.add(pendingStoreRequest);
+  }
+
+  @Override
+  void awaitCompletion(PendingStoreRequest pendingStoreRequest) throws IOException {
+    try {
+      while (!pendingStoreRequest.awaitCompletion(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+        // If the request was enqueued after the flusher thread terminated due to close, fail the request.
+        if (!flusher.isAlive() && writeQueue.remove(pendingStoreRequest)) {
+          pendingStoreRequest.completed(new IOException("Message writer is already closed"));
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      InterruptedIOException ex = new InterruptedIOException("Interrupted while persisting message to "
+                                                               + pendingStoreRequest.getTopicId());
+      ex.initCause(e);
+      throw ex;
+    }
+  }
+
+  @Override
+  void flushAll() throws IOException {
+    // The flusher thread will drain the queue before terminating since the closed flag was already set to true.
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for the flusher thread " + flusher.getName());
+    }
+  }
+
+  /**
+   * The main loop of the flusher thread.
+   */
+  private void runFlusher() {
+    List<PendingStoreRequest> batch = new ArrayList<>(Math.min(maxBatchSize, 100));
+    while (true) {
+      try {
+        PendingStoreRequest request = writeQueue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        if (request == null) {
+          // Only terminate when the queue is empty after closed.
+          // Requests that sneak in after this check are failed by the calling thread in awaitCompletion.
+          if (isClosed() && writeQueue.isEmpty()) {
+            return;
+          }
+          continue;
+        }
+        batch.add(request);
+        collectBatch(batch);
+      } catch (InterruptedException e) {
+        // Shouldn't happen since the flusher thread is never interrupted by this class. Just drain whatever in
+        // the queue and exit.
+        LOG.warn("Flusher thread {} interrupted. Flushing pending requests.", Thread.currentThread().getName());
+        writeQueue.drainTo(batch);
+        writeBatch(batch);
+        return;
+      }
+      writeBatch(batch);
+    }
+  }
+
+  /**
+   * Collects requests from the queue into the given batch, until either the batch is full,
+   * the queue is empty or the linger time has passed.
+   */
+  private void collectBatch(List<PendingStoreRequest> batch) throws InterruptedException {
+    writeQueue.drainTo(batch, maxBatchSize - batch.size());
+    if (lingerNanos <= 0L) {
+      return;
+    }
+
+    long deadline = System.nanoTime() + lingerNanos;
+    while (batch.size() < maxBatchSize) {
+      long waitNanos = deadline - System.nanoTime();
+      if (waitNanos <= 0L) {
+        return;
+      }
+      PendingStoreRequest request = writeQueue.poll(waitNanos, TimeUnit.NANOSECONDS);
+      if (request == null) {
+        return;
+      }
+      batch.add(request);
+      writeQueue.drainTo(batch, maxBatchSize - batch.size());
+    }
+  }
+}
@@ -20,6 +20,8 @@ import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
 
 import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
 /**
@@ -30,7 +32,7 @@ final class PendingStoreRequest extends StoreRequest {
   private final StoreRequest originalRequest;
   private final TopicMetadata metadata;
 
-  private boolean completed;
+  private final CountDownLatch completion;
   private long startTimestamp;
   private long endTimestamp;
   private int startSequenceId;
@@ -42,6 +44,7 @@ final class PendingStoreRequest extends StoreRequest {
           originalRequest.getTransactionWritePointer());
     this.originalRequest = originalRequest;
     this.metadata = topicMetadata;
+    this.completion = new CountDownLatch(1);
   }
 
   TopicMetadata getTopicMetadata() {
@@ -49,7 +52,16 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   boolean isCompleted() {
-    return completed;
+    return completion.getCount() == 0L;
+  }
+
+  /**
+   * Blocks the calling thread until this request is completed or the given timeout has passed.
+   *
+   * @return {@code true} if this request is completed; {@code false} if the timeout passed
+   */
+  boolean awaitCompletion(long timeout, TimeUnit unit) throws InterruptedException {
+    return completion.await(timeout, unit);
   }
 
   boolean isSuccess() {
@@ -65,8 +77,8 @@ final class PendingStoreRequest extends StoreRequest {
   }
 
   void completed(@Nullable Throwable failureCause) {
-    completed = true;
     this.failureCause = failureCause;
+    completion.countDown();
   }
 
   void setStartTimestamp(long startTimestamp) {
@@ -114,7 +126,7 @@ final class PendingStoreRequest extends StoreRequest {
   @Override
   public String toString() {
     return "PendingStoreRequest{" +
-      "completed=" + completed +
+      "completed=" + isCompleted() +
       ", startTimestamp=" + startTimestamp +
       ", startSequenceId=" + startSequenceId +
       ", endTimestamp=" + endTimestamp +
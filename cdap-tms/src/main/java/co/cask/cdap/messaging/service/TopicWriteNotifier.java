@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.proto.id.TopicId;
+import com.google.inject.Singleton;
+import org.apache.twill.common.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * Tracks writes to the message table of each topic so that message fetching can wait for new messages
+ * instead of polling the table repeatedly.
+ *
+ * Each topic has a write generation, which is incremented every time a batch of messages is written to the
+ * message table of the topic. A consumer reads the generation before fetching, and if the fetch returns
+ * nothing, it waits for the generation to change before fetching again. Reading the generation before
+ * fetching guarantees no write is missed between the fetch and the wait.
+ */
+@Singleton
+@ThreadSafe
+public final class TopicWriteNotifier {
+
+  private static final Logger LOG = LoggerFactory.getLogger(TopicWriteNotifier.class);
+
+  private final ConcurrentMap<TopicId, TopicListeners> topics = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the current write generation of the given topic.
+   */
+  public long getGeneration(TopicId topicId) {
+    return getTopicListeners(topicId).generation.get();
+  }
+
+  /**
+   * Signals that messages were written to the given topic. It is called after a batch of messages
+   * is successfully written to the message table.
+   */
+  public void notifyWrite(TopicId topicId) {
+    getTopicListeners(topicId).notifyWrite();
+  }
+
+  /**
+   * Signals that the given topic was deleted. All listeners of the topic will be called.
+   */
+  public void topicDeleted(TopicId topicId) {
+    TopicListeners listeners = topics.remove(topicId);
+    if (listeners != null) {
+      listeners.notifyWrite();
+    }
+  }
+
+  /**
+   * Adds a listener that will be called once when the write generation of the given topic is different
+   * from the given generation. If the generation has already changed, the listener will be called
+   * from the current thread before this method returns. Otherwise the listener is called from the thread
+   * that writes to the topic, hence it must not block.
+   *
+   * @param topicId the topic to listen on
+   * @param generation the generation as returned by {@link #getGeneration(TopicId)}
+   * @param listener the listener to call
+   * @return a {@link Cancellable} to remove the listener
+   */
+  public Cancellable addListener(TopicId topicId, long generation, Runnable listener) {
+    return getTopicListeners(topicId).addListener(generation, listener);
+  }
+
+  /**
+   * Blocks until the write generation of the given topic is different from the given generation,
+   * or the given amount of time has passed.
+   *
+   * @param topicId the topic to wait on
+   * @param generation the generation as returned by {@link #getGeneration(TopicId)}
+   * @param timeout the maximum time to wait
+   * @param unit the unit of the timeout
+   * @return {@code true} if the generation has changed; {@code false} if timed out
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public boolean await(TopicId topicId, long generation, long timeout, TimeUnit unit) throws InterruptedException {
+    CountDownLatch latch = new CountDownLatch(1);
+    Cancellable cancellable = addListener(topicId, generation, latch::countDown);
+    try {
+      return latch.await(timeout, unit);
+    } finally {
+      cancellable.cancel();
+    }
+  }
+
+  private TopicListeners getTopicListeners(TopicId topicId) {
+    return topics.computeIfAbsent(topicId, k -> new TopicListeners());
+  }
+
+  /**
+   * Holds the write generation and the listeners of a topic.
+   */
+  private static final class TopicListeners {
+
+    private final AtomicLong generation = new AtomicLong();
+    private final Set<Runnable> listeners = Collections.newSetFromMap(new IdentityHashMap<>());
+    // Fast path for writers to skip locking when there is no listener
+    private volatile boolean hasListeners;
+
+    void notifyWrite() {
+      generation.incrementAndGet();
+      if (!hasListeners) {
+        return;
+      }
+
+      List<Runnable> toCall;
+      synchronized (this) {
+        toCall = new ArrayList<>(listeners);
+        listeners.clear();
+        hasListeners = false;
+      }
+      for (Runnable listener : toCall) {
+        callListener(listener);
+      }
+    }
+
+    Cancellable addListener(long expectedGeneration, Runnable listener) {
+      Runnable wrapper = listener::run;
+      synchronized (this) {
+        listeners.add(wrapper);
+        hasListeners = true;
+      }
+
+      // Check the generation after the listener is added. Since both the generation and the hasListeners flag
+      // are volatile, either this thread sees the new generation or the writer thread sees the listener.
+      if (generation.get() != expectedGeneration && remove(wrapper)) {
+        callListener(wrapper);
+      }
+      return () -> remove(wrapper);
+    }
+
+    private synchronized boolean remove(Runnable listener) {
+      boolean removed = listeners.remove(listener);
+      hasListeners = !listeners.isEmpty();
+      return removed;
+    }
+
+    private void callListener(Runnable listener) {
+      try {
+        listener.run();
+      } catch (Throwable t) {
+        LOG.warn("Exception raised when calling topic write listener {}", listener, t);
+      }
+    }
+  }
+}
@@ -20,6 +20,7 @@ import co.cask.cdap.api.dataset.lib.CloseableIterator;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.proto.id.TopicId;
 import org.apache.tephra.Transaction;
 
@@ -82,6 +83,16 @@ public interface MessageTable extends Closeable {
      * Returns the sequence id generated when this entry was written to the message table.
      */
     short getSequenceId();
+
+    /**
+     * Returns a {@link RawMessage} representing this entry if it is readily available, so that the message
+     * can be sent to consumers without encoding it again. This method returns {@code null} by default,
+     * as well as if {@link #isPayloadReference()} returns {@code true}.
+     */
+    @Nullable
+    default RawMessage getRawMessage() {
+      return null;
+    }
   }
 
   /**
@@ -23,7 +23,10 @@ import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
+import co.cask.cdap.messaging.data.FramedRawMessage;
 import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.store.MessageFilter;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.TransactionMessageFilter;
@@ -42,7 +45,7 @@ import java.util.Map;
 import javax.annotation.Nullable;
 
 /**
- * A {@link MessageTable} that uses {@link MessageCache} for caching recently published messages.
+ * A {@link MessageTable} that uses {@link MessageEntryCache} for caching recently published messages.
  */
 final class CachingMessageTable implements MessageTable {
 
@@ -73,7 +76,7 @@ final class CachingMessageTable implements MessageTable {
   @Override
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, long startTime,
                                         int limit, @Nullable Transaction transaction) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, startTime, limit, transaction);
@@ -92,7 +95,14 @@ final class CachingMessageTable implements MessageTable {
     }
 
     // Otherwise scan the table and return a combine result.
-    CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, startTime, limit, transaction);
+    CloseableIterator<Entry> tableIterator;
+    try {
+      tableIterator = messageTable.fetch(metadata, startTime, limit, transaction);
+    } catch (Exception e) {
+      // Release the resources held by the cache scanner
+      scanner.close();
+      throw e;
+    }
     return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
   }
 
@@ -100,7 +110,7 @@ final class CachingMessageTable implements MessageTable {
   public CloseableIterator<Entry> fetch(TopicMetadata metadata, MessageId messageId, boolean inclusive,
                                         int limit, @Nullable Transaction transaction) throws IOException {
 
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache == null) {
       // If no caching for the given topic, just return result from table directly
       return messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
@@ -121,7 +131,14 @@ final class CachingMessageTable implements MessageTable {
     }
 
     // Otherwise scan the table and return a combine result.
-    CloseableIterator<Entry> tableIterator = messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
+    CloseableIterator<Entry> tableIterator;
+    try {
+      tableIterator = messageTable.fetch(metadata, messageId, inclusive, limit, transaction);
+    } catch (Exception e) {
+      // Release the resources held by the cache scanner
+      scanner.close();
+      throw e;
+    }
     return new CombineMessageEntryIterator(tableIterator, scanner, messageCache.getComparator(), limit);
   }
 
@@ -133,9 +150,13 @@ final class CachingMessageTable implements MessageTable {
 
     Multimap<TopicId, Entry> topicEntries = iterator.getEntries();
     for (Map.Entry<TopicId, Collection<Entry>> entry : topicEntries.asMap().entrySet()) {
-      MessageCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
+      MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(entry.getKey());
       // Write it to the cache if it is enabled for the topic
       if (messageCache != null) {
+        // Caches that encode the entries themselves, e.g. into off-heap memory, don't need the entries framed
+        if (!messageCache.isEncodingEntries()) {
+          frameEntries(entry.getValue());
+        }
         messageCache.addAll(entry.getValue().iterator());
       }
     }
@@ -143,7 +164,7 @@ final class CachingMessageTable implements MessageTable {
 
   @Override
   public void rollback(TopicMetadata metadata, RollbackDetail rollbackDetail) throws IOException {
-    MessageCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
+    MessageEntryCache<Entry> messageCache = cacheProvider.getMessageCache(metadata.getTopicId());
     if (messageCache != null) {
       // Rollback from the cache first so that we don't have to worry about invalid list pruning for the cache,
       // assuming the rollback from cache shouldn't fail.
@@ -176,6 +197,19 @@ final class CachingMessageTable implements MessageTable {
     messageTable.close();
   }
 
+  /**
+   * Frames each of the given entries in the wire format of the fetch response, so that cached messages can be sent
+   * to consumers without copying or encoding. The frame wraps the payload array of the entry, so that the payload
+   * is neither copied nor stored twice, and the memory is reclaimed by GC together with the entry.
+   */
+  private void frameEntries(Collection<Entry> entries) {
+    for (Entry entry : entries) {
+      if (!entry.isPayloadReference()) {
+        ((CacheMessageTableEntry) entry).frame();
+      }
+    }
+  }
+
   /**
    * Adjusts the given {@link Entry} based on the grace period.
    *
@@ -203,7 +237,7 @@ final class CachingMessageTable implements MessageTable {
   }
 
   /**
-   * Creates a {@link MessageFilter} for scanning entries from the {@link MessageCache}.
+   * Creates a {@link MessageFilter} for scanning entries from the {@link MessageEntryCache}.
    */
   private MessageFilter<Entry> createFilter(TopicMetadata metadata, @Nullable Transaction transaction) {
     final int generation = metadata.getGeneration();
@@ -235,7 +269,7 @@ final class CachingMessageTable implements MessageTable {
 
   /**
    * A {@link CloseableIterator} of {@link Entry} by combine entries scanned from {@link MessageTable}
-   * and from {@link MessageCache}.
+   * and from {@link MessageEntryCache}.
    */
   private static final class CombineMessageEntryIterator extends AbstractCloseableIterator<Entry> {
 
@@ -330,7 +364,7 @@ final class CachingMessageTable implements MessageTable {
   }
 
   /**
-   * A {@link Entry} implementation used for entries in {@link MessageCache}, which allows
+   * A {@link Entry} implementation used for entries in {@link MessageEntryCache}, which allows
    * altering the transaction write point for rollback purpose of messages that were published transactionally.
    */
   @VisibleForTesting
@@ -340,11 +374,12 @@ final class CachingMessageTable implements MessageTable {
     private final TopicId topicId;
     private final int generation;
     private final boolean transactional;
-    private final byte[] payload;
     private final long publishTimestamp;
     private final short sequenceId;
     private long transactionWritePointer;
     private boolean rollback;
+    private byte[] payload;
+    private FramedRawMessage message;
 
     CacheMessageTableEntry(TopicMetadata topicMetadata, long publishTimestamp, short sequenceId) {
       this.lookupOnly = true;
@@ -367,6 +402,39 @@ final class CachingMessageTable implements MessageTable {
       this.sequenceId = other.getSequenceId();
     }
 
+    CacheMessageTableEntry(TopicId topicId, int generation, boolean transactional, long transactionWritePointer,
+                           long publishTimestamp, short sequenceId, boolean rollback,
+                           @Nullable FramedRawMessage message) {
+      this.lookupOnly = false;
+      this.topicId = topicId;
+      this.generation = generation;
+      this.transactional = transactional;
+      this.transactionWritePointer = transactionWritePointer;
+      this.publishTimestamp = publishTimestamp;
+      this.sequenceId = sequenceId;
+      this.rollback = rollback;
+      this.message = message;
+    }
+
+    /**
+     * Creates a {@link FramedRawMessage} for this entry that wraps the payload of this entry.
+     */
+    void frame() {
+      byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(publishTimestamp, sequenceId, 0L, (short) 0, rawId, 0);
+      message = FramedRawMessage.wrap(rawId, payload);
+    }
+
+    /**
+     * Copies the message of this entry out of the buffer it was read from, so that this entry stays valid after
+     * the buffer is released.
+     */
+    void detach() {
+      if (message != null) {
+        message.detach();
+      }
+    }
+
     void rollback() {
       if (isTransactional()) {
         rollback = true;
@@ -389,7 +457,10 @@ final class CachingMessageTable implements MessageTable {
 
     @Override
     public boolean isPayloadReference() {
-      return getPayload() == null;
+      if (lookupOnly) {
+        throw new UnsupportedOperationException();
+      }
+      return payload == null && message == null;
     }
 
     @Override
@@ -414,7 +485,14 @@ final class CachingMessageTable implements MessageTable {
       if (lookupOnly) {
         throw new UnsupportedOperationException();
       }
-      return payload;
+      // Entries read from off-heap memory only have the message, which copies the payload once on the first call
+      return payload != null || message == null ? payload : message.getPayload();
+    }
+
+    @Nullable
+    @Override
+    public RawMessage getRawMessage() {
+      return message;
     }
 
     @Override
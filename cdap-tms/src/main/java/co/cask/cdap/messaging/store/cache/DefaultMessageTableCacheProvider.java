@@ -22,6 +22,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.messaging.MessagingServiceUtils;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.ImmutableMap;
@@ -38,9 +39,12 @@ import javax.annotation.Nullable;
  */
 public class DefaultMessageTableCacheProvider implements MessageTableCacheProvider {
 
+  private static final String CACHE_MODE_HEAP = "heap";
+  private static final String CACHE_MODE_OFFHEAP = "offheap";
+
   private final CConfiguration cConf;
   private final MetricsCollectionService metricsCollectionService;
-  private Map<TopicId, MessageCache<MessageTable.Entry>> topicMessageCaches;
+  private Map<TopicId, MessageEntryCache<MessageTable.Entry>> topicMessageCaches;
   private volatile boolean initialized;
 
   @Inject
@@ -54,11 +58,11 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Nullable
   @Override
-  public MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+  public MessageEntryCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
     if (!initialized) {
       synchronized (this) {
         if (!initialized) {
-          Map<TopicId, MessageCache<MessageTable.Entry>> caches = new HashMap<>();
+          Map<TopicId, MessageEntryCache<MessageTable.Entry>> caches = new HashMap<>();
 
           long cacheSize = cConf.getInt(Constants.MessagingSystem.CACHE_SIZE_MB) * 1024 * 1024;
           Set<TopicId> systemTopics = MessagingServiceUtils.getSystemTopics(cConf, true);
@@ -75,9 +79,20 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
               // Have reduce trigger as 70% of the hard limit and min retain as 50% of the hard limit
               // In future, it can be adjusted dynamically based on metrics
               MessageCache.Limits limits = new MessageCache.Limits(hardLimit / 2, hardLimit * 7 / 10, hardLimit);
+              String mode = cConf.get(Constants.MessagingSystem.CACHE_MODE, CACHE_MODE_HEAP);
               for (TopicId topic : systemTopics) {
-                caches.put(topic, new MessageCache<>(comparator, weigher, limits,
-                                                     createMetricsContext(cConf, topic, metricsCollectionService)));
+                MetricsContext metricsContext = createMetricsContext(cConf, topic, metricsCollectionService);
+                if (CACHE_MODE_HEAP.equalsIgnoreCase(mode)) {
+                  caches.put(topic, new MessageCache<>(comparator, weigher, limits, metricsContext));
+                } else if (CACHE_MODE_OFFHEAP.equalsIgnoreCase(mode)) {
+                  int segmentSize = cConf.getInt(Constants.MessagingSystem.CACHE_OFFHEAP_SEGMENT_SIZE_KB) * 1024;
+                  caches.put(topic, new OffHeapMessageTableCache(topic, limits, segmentSize, metricsContext));
+                } else {
+                  throw new IllegalArgumentException(String.format("Unsupported messaging cache mode '%s' set in %s. "
+                                                                     + "Supported modes are '%s' and '%s'.",
+                                                                   mode, Constants.MessagingSystem.CACHE_MODE,
+                                                                   CACHE_MODE_HEAP, CACHE_MODE_OFFHEAP));
+                }
               }
             }
           }
@@ -93,7 +108,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
 
   @Override
   public void clear() {
-    Collection<MessageCache<MessageTable.Entry>> caches;
+    Collection<MessageEntryCache<MessageTable.Entry>> caches;
 
     synchronized (this) {
       initialized = false;
@@ -102,7 +117,7 @@ public class DefaultMessageTableCacheProvider implements MessageTableCacheProvid
     }
 
     if (caches != null) {
-      for (MessageCache<MessageTable.Entry> cache : caches) {
+      for (MessageEntryCache<MessageTable.Entry> cache : caches) {
         cache.clear();
       }
     }
@@ -16,28 +16,28 @@
 
 package co.cask.cdap.messaging.store.cache;
 
-import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.proto.id.TopicId;
 
 import javax.annotation.Nullable;
 
 /**
- * A provider to provide {@link MessageCache} over {@link MessageTable.Entry} based on {@link TopicId}.
+ * A provider to provide {@link MessageEntryCache} over {@link MessageTable.Entry} based on {@link TopicId}.
  */
 public interface MessageTableCacheProvider {
 
   /**
-   * Returns a {@link MessageCache} for the given topic.
+   * Returns a {@link MessageEntryCache} for the given topic.
    *
    * @param topicId the topic id
-   * @return a {@link MessageCache} or {@code null} if caching is not enabled for the given topic.
+   * @return a {@link MessageEntryCache} or {@code null} if caching is not enabled for the given topic.
    */
   @Nullable
-  MessageCache<MessageTable.Entry> getMessageCache(TopicId topicId);
+  MessageEntryCache<MessageTable.Entry> getMessageCache(TopicId topicId);
 
   /**
-   * Resets all {@link MessageCache} created by this cache provider.
+   * Resets all {@link MessageEntryCache} created by this cache provider.
    */
   void clear();
 }
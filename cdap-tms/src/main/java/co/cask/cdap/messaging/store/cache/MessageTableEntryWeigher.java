@@ -17,6 +17,8 @@
 package co.cask.cdap.messaging.store.cache;
 
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.data.FramedRawMessage;
+import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.store.MessageTable;
 
 /**
@@ -28,6 +30,11 @@ final class MessageTableEntryWeigher implements MessageCache.Weigher<MessageTabl
   public int weight(MessageTable.Entry entry) {
     // Some fixed overhead for the primitive and reference fields
     int weight = 40;
+    RawMessage message = entry.getRawMessage();
+    if (message instanceof FramedRawMessage) {
+      // The frame wraps the payload, hence the encoded size covers both the payload and the frame header
+      return weight + ((FramedRawMessage) message).getEncodedSize();
+    }
     byte[] payload = entry.getPayload();
     weight += payload == null ? 0 : payload.length;
     return weight;
@@ -0,0 +1,515 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
+import co.cask.cdap.messaging.data.FramedRawMessage;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.store.MessageFilter;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.AbstractIterator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link MessageEntryCache} for {@link MessageTable.Entry} that keeps the cached entries outside of the Java heap,
+ * so that the cache size doesn't affect GC pauses.
+ *
+ * Entries are appended to direct memory segments of fixed size, with the payload encoded as a
+ * {@link FramedRawMessage}. Each segment has an index from (generation, publish timestamp, sequence id) to the
+ * entry offset in the segment, which is stored in primitive arrays, hence the number of heap objects doesn't grow
+ * with the number of cached entries. Entry objects are only created for the entries being scanned.
+ *
+ * The {@link MessageCache.Limits} are applied to the total size of the segments. When the size is larger than the
+ * reduce trigger, or when allocating a new segment would exceed the hard limit, the oldest segments are evicted
+ * as a whole until the size is back to the min retain.
+ *
+ * Segments are allocated from a {@link PooledByteBufAllocator} and are reference counted, so that their memory
+ * is freed as soon as they are no longer used instead of waiting for GC to collect the buffers. The cache holds one
+ * reference to each segment and releases it when the segment is evicted. A {@link MessageCache.Scanner} holds a
+ * reference to each segment it read entries from until it is closed, so that the entries are read from the segments
+ * without copying while the scanner is open. When the scanner is closed, the entries it has returned are copied to
+ * the heap before the segments are released, since the caller can still hold on to them, e.g. the messages fetched
+ * by an in-process subscriber. Frames that are written to the network before the scanner is closed are retained with
+ * {@link FramedRawMessage#retainedFrame()}, which shares the segment memory instead of the heap copy.
+ */
+final class OffHeapMessageTableCache implements MessageEntryCache<MessageTable.Entry> {
+
+  private static final String METRICS_BYTES_RESIDENT = "cache.bytes.resident";
+  private static final String METRICS_SEGMENTS = "cache.segments";
+  private static final String METRICS_ENTRIES_ADDED = "cache.entries.added";
+  private static final String METRICS_ENTRIES_REMOVED = "cache.entries.removed";
+  private static final String METRICS_ADD_REQUESTS = "cache.add.requests";
+  private static final String METRICS_SCAN_REQUESTS = "cache.scan.requests";
+  private static final String METRICS_SCAN_HITS = "cache.scan.hits";
+  private static final String METRICS_SCAN_MISSES = "cache.scan.misses";
+
+  // Minimum number of segments for the hard limit, so that evicting a segment doesn't drop too much of the cache
+  private static final int MIN_SEGMENTS = 4;
+  private static final ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
+
+  private final TopicId topicId;
+  private final MessageCache.Limits limits;
+  private final int segmentSize;
+  private final MetricsContext metricsContext;
+  private final Comparator<MessageTable.Entry> comparator;
+  private final Deque<Segment> segments;
+  private final ReadWriteLock cacheLock;
+  private final AtomicBoolean adding;
+  private long residentBytes;
+
+  /**
+   * Creates a new instance of the cache.
+   *
+   * @param topicId the topic that this cache is for
+   * @param limits the limits for maintaining the total size of the segments in bytes
+   * @param segmentSize the size of each segment in bytes. It will be reduced if it is too large for the limits.
+   * @param metricsContext a {@link MetricsContext} for emitting metrics about this cache.
+   */
+  OffHeapMessageTableCache(TopicId topicId, MessageCache.Limits limits,
+                           int segmentSize, MetricsContext metricsContext) {
+    Preconditions.checkArgument(segmentSize > 0, "Segment size must be > 0");
+    this.topicId = topicId;
+    this.limits = limits;
+    this.segmentSize = (int) Math.max(1L, Math.min(segmentSize, limits.getHardLimit() / MIN_SEGMENTS));
+    this.metricsContext = metricsContext;
+    this.comparator = new MessageTableEntryComparator();
+    this.segments = new ArrayDeque<>();
+    this.cacheLock = new ReentrantReadWriteLock();
+    this.adding = new AtomicBoolean();
+  }
+
+  @Override
+  public Comparator<MessageTable.Entry> getComparator() {
+    return comparator;
+  }
+
+  @Override
+  public boolean isEncodingEntries() {
+    return true;
+  }
+
+  @Override
+  public void addAll(Iterator<MessageTable.Entry> entries) {
+    if (!adding.compareAndSet(false, true)) {
+      // This is to guard against bug, otherwise this shouldn't happen
+      throw new ConcurrentModificationException(
+        "The OffHeapMessageTableCache.addAll method shouldn't be called concurrently by multiple threads.");
+    }
+
+    int entriesAdded = 0;
+    int entriesRemoved = 0;
+    cacheLock.writeLock().lock();
+    try {
+      while (entries.hasNext()) {
+        MessageTable.Entry entry = entries.next();
+
+        // Entries must be in strictly increasing order
+        Segment segment = segments.peekLast();
+        if (segment != null && segment.compare(segment.size() - 1, entry) >= 0) {
+          // Clear the cache to reset state. This is just for precaution, as this shouldn't happen,
+          // unless there is bug in the TMS system (from the caller side).
+          removeSegments(0L, false);
+          throw new IllegalArgumentException("Cache entry must be in strictly increasing order. " +
+                                               "Entry " + entry + " is smaller than or equal to " +
+                                               "the last entry in the cache.");
+        }
+
+        byte[] payload = entry.isPayloadReference() ? null : entry.getPayload();
+        int size = Segment.getEntrySize(payload);
+        if (segment == null || !segment.hasRoom(size)) {
+          int capacity = Math.max(segmentSize, size);
+          if (residentBytes + capacity > limits.getHardLimit()) {
+            entriesRemoved += removeSegments(Math.max(0L, limits.getMinRetain() - capacity), false);
+          }
+          segment = new Segment(capacity);
+          segments.addLast(segment);
+          residentBytes += capacity;
+        }
+        segment.append(entry, payload);
+        entriesAdded++;
+      }
+
+      if (residentBytes > limits.getReduceTrigger()) {
+        entriesRemoved += removeSegments(limits.getMinRetain(), true);
+      }
+      emitSizeMetrics();
+    } finally {
+      cacheLock.writeLock().unlock();
+      adding.set(false);
+    }
+
+    metricsContext.increment(METRICS_ADD_REQUESTS, 1L);
+    metricsContext.increment(METRICS_ENTRIES_ADDED, entriesAdded);
+    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+  }
+
+  @Override
+  public MessageCache.Scanner<MessageTable.Entry> scan(MessageTable.Entry startEntry, boolean includeStart,
+                                                       int limit, MessageFilter<MessageTable.Entry> filter) {
+    List<CachingMessageTable.CacheMessageTableEntry> entries = new ArrayList<>();
+    List<Segment> retainedSegments = new ArrayList<>();
+    MessageTable.Entry firstInCache;
+
+    // Acquire the read lock to guard against segments being modified or evicted while reading the entries.
+    cacheLock.readLock().lock();
+    try {
+      firstInCache = segments.isEmpty() ? null : segments.peekFirst().read(0, topicId);
+
+      boolean started = false;
+      scan:
+      for (Segment segment : segments) {
+        int idx = 0;
+        if (!started) {
+          // Skip segments that only have entries smaller than the start entry
+          if (segment.compare(segment.size() - 1, startEntry) < 0) {
+            continue;
+          }
+          idx = segment.search(startEntry, includeStart);
+          started = true;
+        }
+
+        for (; idx < segment.size(); idx++) {
+          if (entries.size() >= limit) {
+            break scan;
+          }
+          CachingMessageTable.CacheMessageTableEntry entry = segment.read(idx, topicId);
+          MessageFilter.Result result = filter.apply(entry);
+          if (result == MessageFilter.Result.ACCEPT) {
+            // Keep the segment alive until the scanner is closed, even if it is evicted
+            if (retainedSegments.isEmpty() || retainedSegments.get(retainedSegments.size() - 1) != segment) {
+              retainedSegments.add(segment.retain());
+            }
+            entries.add(entry);
+          } else if (result == MessageFilter.Result.HOLD) {
+            // Hold means not to scan more, so just break
+            break scan;
+          }
+        }
+      }
+    } finally {
+      cacheLock.readLock().unlock();
+    }
+
+    metricsContext.increment(METRICS_SCAN_REQUESTS, 1L);
+    // It is a hit if the cache has all entries starting from the start entry
+    boolean hit = firstInCache != null && comparator.compare(firstInCache, startEntry) <= 0;
+    metricsContext.increment(hit ? METRICS_SCAN_HITS : METRICS_SCAN_MISSES, 1L);
+
+    return new SegmentScanner(entries, firstInCache, retainedSegments);
+  }
+
+  @Override
+  public void updateEntries(MessageTable.Entry startEntry, MessageTable.Entry endEntry,
+                            MessageCache.EntryUpdater<MessageTable.Entry> updater) {
+    cacheLock.writeLock().lock();
+    try {
+      for (Segment segment : segments) {
+        if (segment.compare(segment.size() - 1, startEntry) < 0) {
+          continue;
+        }
+        for (int idx = segment.search(startEntry, true); idx < segment.size(); idx++) {
+          if (segment.compare(idx, endEntry) > 0) {
+            return;
+          }
+
+          // Update a copy of the entry and write the changes back to the segment
+          CachingMessageTable.CacheMessageTableEntry entry = segment.read(idx, topicId);
+          try {
+            updater.updateEntry(entry);
+          } catch (RuntimeException e) {
+            removeSegments(0L, false);
+            throw e;
+          }
+          if (entry.isRollback()) {
+            segment.setRollback(idx);
+          }
+        }
+      }
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    int entriesRemoved;
+    cacheLock.writeLock().lock();
+    try {
+      entriesRemoved = removeSegments(0L, false);
+      emitSizeMetrics();
+    } finally {
+      cacheLock.writeLock().unlock();
+    }
+    metricsContext.increment(METRICS_ENTRIES_REMOVED, entriesRemoved);
+  }
+
+  /**
+   * Returns the total size in bytes of all the segments.
+   */
+  @VisibleForTesting
+  long getResidentBytes() {
+    cacheLock.readLock().lock();
+    try {
+      return residentBytes;
+    } finally {
+      cacheLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Removes the oldest segments until the total size is not larger than the given target.
+   * This method must be called while holding the write lock.
+   *
+   * @param targetBytes the target size in bytes
+   * @param keepLast {@code true} to never remove the last segment
+   * @return number of entries removed
+   */
+  private int removeSegments(long targetBytes, boolean keepLast) {
+    int entriesRemoved = 0;
+    int minSegments = keepLast ? 1 : 0;
+    while (residentBytes > targetBytes && segments.size() > minSegments) {
+      Segment segment = segments.pollFirst();
+      residentBytes -= segment.capacity();
+      entriesRemoved += segment.size();
+      // The memory is freed once all the scanners and messages reading from the segment release it
+      segment.release();
+    }
+    return entriesRemoved;
+  }
+
+  private void emitSizeMetrics() {
+    metricsContext.gauge(METRICS_BYTES_RESIDENT, residentBytes);
+    metricsContext.gauge(METRICS_SEGMENTS, segments.size());
+  }
+
+  /**
+   * A direct memory segment that entries are appended to. Each entry is stored as
+   *
+   * <pre>
+   * flags (1 byte) | transaction write pointer (8 bytes) | frame size (4 bytes) | frame (FramedRawMessage)
+   * </pre>
+   *
+   * The frame size is {@code -1} if the entry is a payload reference. The generation, publish timestamp and
+   * sequence id are only stored in the index.
+   */
+  private static final class Segment {
+
+    private static final int HEADER_SIZE = 1 + 8 + 4;
+    private static final int FLAG_TRANSACTIONAL = 1;
+    private static final int FLAG_ROLLBACK = 2;
+    private static final int INITIAL_INDEX_SIZE = 64;
+
+    private final ByteBuf buffer;
+    private int[] generations;
+    private long[] keys;
+    private int[] offsets;
+    private int size;
+
+    /**
+     * Returns the number of bytes needed for storing an entry with the given payload.
+     */
+    static int getEntrySize(@Nullable byte[] payload) {
+      return HEADER_SIZE + (payload == null ? 0 : FramedRawMessage.getEncodedSize(MessageId.RAW_ID_SIZE,
+                                                                                   payload.length));
+    }
+
+    Segment(int capacity) {
+      this.buffer = ALLOCATOR.directBuffer(capacity, capacity);
+      this.generations = new int[INITIAL_INDEX_SIZE];
+      this.keys = new long[INITIAL_INDEX_SIZE];
+      this.offsets = new int[INITIAL_INDEX_SIZE];
+    }
+
+    int size() {
+      return size;
+    }
+
+    int capacity() {
+      return buffer.capacity();
+    }
+
+    Segment retain() {
+      buffer.retain();
+      return this;
+    }
+
+    void release() {
+      buffer.release();
+    }
+
+    boolean hasRoom(int entrySize) {
+      return buffer.writableBytes() >= entrySize;
+    }
+
+    /**
+     * Appends the given entry to this segment. The caller must make sure this segment has room for the entry.
+     */
+    void append(MessageTable.Entry entry, @Nullable byte[] payload) {
+      if (size == offsets.length) {
+        int newLength = size * 2;
+        generations = Arrays.copyOf(generations, newLength);
+        keys = Arrays.copyOf(keys, newLength);
+        offsets = Arrays.copyOf(offsets, newLength);
+      }
+
+      int offset = buffer.writerIndex();
+      generations[size] = entry.getGeneration();
+      keys[size] = toKey(entry.getPublishTimestamp(), entry.getSequenceId());
+      offsets[size] = offset;
+
+      buffer.writeByte(entry.isTransactional() ? FLAG_TRANSACTIONAL : 0);
+      buffer.writeLong(entry.getTransactionWritePointer());
+      if (payload == null) {
+        buffer.writeInt(-1);
+      } else {
+        buffer.writeInt(FramedRawMessage.getEncodedSize(MessageId.RAW_ID_SIZE, payload.length));
+        byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+        MessageId.putRawId(entry.getPublishTimestamp(), entry.getSequenceId(), 0L, (short) 0, rawId, 0);
+        FramedRawMessage.create(rawId, payload, buffer);
+      }
+      size++;
+    }
+
+    /**
+     * Creates an entry from the content of the given index.
+     */
+    CachingMessageTable.CacheMessageTableEntry read(int idx, TopicId topicId) {
+      int offset = offsets[idx];
+      byte flags = buffer.getByte(offset);
+      long transactionWritePointer = buffer.getLong(offset + 1);
+      int frameSize = buffer.getInt(offset + 9);
+      FramedRawMessage message = frameSize < 0 ? null
+        : FramedRawMessage.decode(buffer.slice(offset + HEADER_SIZE, frameSize));
+
+      return new CachingMessageTable.CacheMessageTableEntry(topicId, generations[idx],
+                                                            (flags & FLAG_TRANSACTIONAL) != 0,
+                                                            transactionWritePointer,
+                                                            keys[idx] >> 16, (short) keys[idx],
+                                                            (flags & FLAG_ROLLBACK) != 0, message);
+    }
+
+    void setRollback(int idx) {
+      int offset = offsets[idx];
+      buffer.setByte(offset, buffer.getByte(offset) | FLAG_ROLLBACK);
+    }
+
+    /**
+     * Compares the entry at the given index with the given entry, in the same order as the
+     * {@link MessageTableEntryComparator}.
+     */
+    int compare(int idx, MessageTable.Entry entry) {
+      int cmp = Integer.compare(generations[idx], entry.getGeneration());
+      if (cmp != 0) {
+        return cmp;
+      }
+      return Long.compare(keys[idx], toKey(entry.getPublishTimestamp(), entry.getSequenceId()));
+    }
+
+    /**
+     * Returns the index of the first entry that is larger than (or equal to, if inclusive is {@code true})
+     * the given entry; or {@link #size()} if there is no such entry.
+     */
+    int search(MessageTable.Entry entry, boolean inclusive) {
+      int low = 0;
+      int high = size;
+      while (low < high) {
+        int mid = (low + high) >>> 1;
+        int cmp = compare(mid, entry);
+        if (cmp < 0 || (cmp == 0 && !inclusive)) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * Combines the publish timestamp and sequence id into a long that has the same ordering.
+     */
+    private static long toKey(long publishTimestamp, short sequenceId) {
+      return (publishTimestamp << 16) | (sequenceId & 0xFFFF);
+    }
+  }
+
+  /**
+   * A {@link MessageCache.Scanner} over the entries read from the segments. When it is closed, it detaches the entries
+   * that it has returned from the segments and then releases the segments.
+   */
+  private static final class SegmentScanner extends AbstractIterator<MessageTable.Entry>
+    implements MessageCache.Scanner<MessageTable.Entry> {
+
+    private final List<CachingMessageTable.CacheMessageTableEntry> entries;
+    private final MessageTable.Entry firstInCache;
+    private final List<Segment> retainedSegments;
+    private int returned;
+    private boolean closed;
+
+    SegmentScanner(List<CachingMessageTable.CacheMessageTableEntry> entries,
+                   @Nullable MessageTable.Entry firstInCache, List<Segment> retainedSegments) {
+      this.entries = entries;
+      this.firstInCache = firstInCache;
+      this.retainedSegments = retainedSegments;
+    }
+
+    @Override
+    protected MessageTable.Entry computeNext() {
+      return returned < entries.size() ? entries.get(returned++) : endOfData();
+    }
+
+    @Nullable
+    @Override
+    public MessageTable.Entry getFirstInCache() {
+      return firstInCache;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      // Entries not yet returned are dropped, while the returned ones can still be used by the caller
+      for (int i = 0; i < returned; i++) {
+        entries.get(i).detach();
+      }
+      for (Segment segment : retainedSegments) {
+        segment.release();
+      }
+    }
+  }
+}
@@ -33,6 +33,7 @@ import co.cask.cdap.common.service.AbstractRetryableScheduledService;
 import co.cask.cdap.common.service.RetryStrategy;
 import co.cask.cdap.common.utils.ImmutablePair;
 import co.cask.cdap.common.utils.TimeBoundIterator;
+import co.cask.cdap.messaging.LongPollMessageFetcher;
 import co.cask.cdap.messaging.data.MessageId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.collect.AbstractIterator;
@@ -42,8 +43,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 import javax.xml.ws.handler.MessageContext;
 
@@ -78,7 +81,8 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
    * @param txTimeoutSeconds transaction timeout in seconds to use when processing messages
    * @param maxTxTimeoutSeconds max transaction timeout in seconds to use, any tx timeout larger than this number
    *                           is not allowed
-   * @param emptyFetchDelayMillis number of milliseconds to sleep after a fetch returns empty result
+   * @param emptyFetchDelayMillis maximum number of milliseconds to wait for new messages when there is no message
+   *                              available in the topic
    * @param retryStrategy the {@link RetryStrategy} to determine retry on failure
    * @param metricsContext the {@link MetricsContext} for emitting metrics about the message consumption.
    */
@@ -223,12 +227,14 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
     long startTime = System.currentTimeMillis();
 
     final List<Message> messages = fetchMessages(messageId);
-    metricsContext.gauge("tms.fetch.time.ms", System.currentTimeMillis() - startTime);
+    long fetchTime = System.currentTimeMillis() - startTime;
+    metricsContext.gauge("tms.fetch.time.ms", fetchTime);
     metricsContext.increment("tms.fetch.messages", messages.size());
 
-    // Return if stopping or request to sleep for configured number of milliseconds if there are no notifications
+    // Return if stopping or if there are no notifications. Since the fetch may already have waited for new messages,
+    // only request to sleep for the remaining of the configured number of milliseconds.
     if (messages.isEmpty() || state() != State.RUNNING) {
-      return emptyFetchDelayMillis;
+      return Math.max(0L, emptyFetchDelayMillis - fetchTime);
     }
 
     startTime = System.currentTimeMillis();
@@ -287,22 +293,29 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
    */
   private List<Message> fetchMessages(@Nullable final String messageId) throws TopicNotFoundException, IOException {
     if (!transactionalFetch) {
-      return doFetchMessages(messageId);
+      return doFetchMessages(messageId, fetchSize, emptyFetchDelayMillis);
+    }
+
+    // Wait for new messages before starting the transaction, so that the transaction is not kept open while waiting.
+    // A transactional fetch also can't see messages published by transactions started after it.
+    if (doFetchMessages(messageId, 1, emptyFetchDelayMillis).isEmpty()) {
+      return Collections.emptyList();
     }
     return Transactionals.execute(getTransactional(), context -> {
-      return doFetchMessages(messageId);
+      return doFetchMessages(messageId, fetchSize, 0L);
     }, TopicNotFoundException.class, IOException.class);
   }
 
   /**
-   * Actually fetching messages from TMS.
+   * Actually fetching messages from TMS. If the {@link MessageFetcher} supports long poll, it waits up to the
+   * given number of milliseconds for new messages if there is no message available, instead of returning immediately.
    */
-  private List<Message> doFetchMessages(@Nullable String messageId) throws TopicNotFoundException, IOException {
+  private List<Message> doFetchMessages(@Nullable String messageId, int limit,
+                                        long maxWaitMillis) throws TopicNotFoundException, IOException {
     List<Message> messages = new ArrayList<>();
     LOG.trace("Fetching from topic '{}' with messageId '{}'", messageId);
     MessageFetcher messageFetcher = getMessagingContext().getMessageFetcher();
-    try (CloseableIterator<Message> iterator = messageFetcher.fetch(topicId.getNamespace(),
-                                                                    topicId.getTopic(), fetchSize, messageId)) {
+    try (CloseableIterator<Message> iterator = fetch(messageFetcher, messageId, limit, maxWaitMillis)) {
       while (iterator.hasNext() && state() == State.RUNNING) {
         messages.add(iterator.next());
       }
@@ -310,6 +323,15 @@ public abstract class AbstractMessagingSubscriberService<T> extends AbstractRetr
     return messages;
   }
 
+  private CloseableIterator<Message> fetch(MessageFetcher messageFetcher, @Nullable String messageId, int limit,
+                                          long maxWaitMillis) throws TopicNotFoundException, IOException {
+    if (messageFetcher instanceof LongPollMessageFetcher && maxWaitMillis > 0L) {
+      return ((LongPollMessageFetcher) messageFetcher).fetch(topicId.getNamespace(), topicId.getTopic(), limit,
+                                                             messageId, maxWaitMillis, TimeUnit.MILLISECONDS);
+    }
+    return messageFetcher.fetch(topicId.getNamespace(), topicId.getTopic(), limit, messageId);
+  }
+
   /**
    * Returns the publish time encoded in the given message id.
    *
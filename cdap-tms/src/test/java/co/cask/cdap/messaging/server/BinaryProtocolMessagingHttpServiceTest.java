@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.client.ClientMessagingService;
+import co.cask.cdap.messaging.client.StoreRequestBuilder;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the {@link MessagingHttpServiceTest} with the client using the binary protocol.
+ */
+public class BinaryProtocolMessagingHttpServiceTest extends MessagingHttpServiceTest {
+
+  @BeforeClass
+  public static void init() throws IOException {
+    CConfiguration cConf = CConfiguration.create();
+    cConf.setBoolean(Constants.MessagingSystem.BINARY_SERVER_ENABLED, true);
+    // Use a small frame size to test fetching messages with multiple responses
+    cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_MAX_REQUEST_SIZE_MB, 1);
+    // Use a small limit of concurrent requests per connection to test reading being paused and resumed
+    cConf.setInt(Constants.MessagingSystem.BINARY_SERVER_MAX_CONNECTION_REQUESTS, 2);
+    init(cConf);
+
+    Assert.assertTrue(((ClientMessagingService) client).isBinaryProtocolActive());
+  }
+
+  @Test
+  public void testLargeFetch() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("large");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Publish messages that cannot fit in one response frame
+    byte[] payload = new byte[100 * 1024];
+    for (int i = 0; i < 10; i++) {
+      Arrays.fill(payload, (byte) i);
+      client.publish(StoreRequestBuilder.of(topicId).addPayload(payload).build());
+    }
+
+    // Fetch with limit across multiple responses
+    List<byte[]> payloads = fetchPayloads(topicId, 7);
+    Assert.assertEquals(7, payloads.size());
+
+    // Fetch all messages
+    payloads = fetchPayloads(topicId, Integer.MAX_VALUE);
+    Assert.assertEquals(10, payloads.size());
+    for (int i = 0; i < 10; i++) {
+      Arrays.fill(payload, (byte) i);
+      Assert.assertArrayEquals(payload, payloads.get(i));
+    }
+
+    client.deleteTopic(topicId);
+  }
+
+  private List<byte[]> fetchPayloads(TopicId topicId, int limit) throws Exception {
+    List<byte[]> payloads = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setLimit(limit).fetch()) {
+      while (iterator.hasNext()) {
+        payloads.add(iterator.next().getPayload());
+      }
+    }
+    return payloads;
+  }
+}
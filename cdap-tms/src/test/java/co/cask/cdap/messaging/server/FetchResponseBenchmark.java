@@ -0,0 +1,143 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.messaging.data.FramedRawMessage;
+import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.data.RawMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for producing fetch responses from cached messages, with one topic fanned out to 50 consumers.
+ * It compares messages that are encoded for every response against messages that are {@link FramedRawMessage}
+ * as stored in the message cache. Each benchmark operation produces the complete response of one fetch call.
+ *
+ * To run it, build the test classes and execute {@code org.openjdk.jmh.Main FetchResponseBenchmark}
+ * with the test classpath of this module. Adding {@code -prof gc} shows the allocation rate per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(50)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class FetchResponseBenchmark {
+
+  @Param({"encoded", "framed"})
+  private String messageType;
+
+  @Param({"100", "4096"})
+  private int payloadSize;
+
+  @Param({"100"})
+  private int messagesPerFetch;
+
+  // Same as the default value of the messaging.http.server.consume.chunk.size configuration
+  @Param({"8192"})
+  private int chunkSize;
+
+  private List<RawMessage> messages;
+
+  @Setup
+  public void setup() {
+    List<byte[]> ids = new ArrayList<>();
+    List<byte[]> payloads = new ArrayList<>();
+    int encodedSize = 0;
+    for (int i = 0; i < messagesPerFetch; i++) {
+      byte[] rawId = new byte[MessageId.RAW_ID_SIZE];
+      MessageId.putRawId(System.currentTimeMillis(), (short) i, 0L, (short) 0, rawId, 0);
+      byte[] payload = new byte[payloadSize];
+      payload[i % payloadSize] = (byte) i;
+      ids.add(rawId);
+      payloads.add(payload);
+      encodedSize += FramedRawMessage.getEncodedSize(rawId.length, payload.length);
+    }
+
+    messages = new ArrayList<>();
+    if ("framed".equals(messageType)) {
+      // Same as how the CachingMessageTable frames a batch of entries
+      ByteBuf buffer = Unpooled.wrappedBuffer(ByteBuffer.allocateDirect(encodedSize)).clear();
+      for (int i = 0; i < messagesPerFetch; i++) {
+        messages.add(FramedRawMessage.create(ids.get(i), payloads.get(i), buffer));
+      }
+    } else {
+      for (int i = 0; i < messagesPerFetch; i++) {
+        messages.add(new RawMessage(ids.get(i), payloads.get(i)));
+      }
+    }
+  }
+
+  @Benchmark
+  public long fetch() throws Exception {
+    FetchHandler.MessagesBodyProducer producer = new FetchHandler.MessagesBodyProducer(new MessageIterator(messages),
+                                                                                     chunkSize);
+    long bytes = 0L;
+    ByteBuf chunk = producer.nextChunk();
+    while (chunk.isReadable()) {
+      bytes += chunk.readableBytes();
+      // Release it the same way as the chunk is written to the channel
+      chunk.release();
+      chunk = producer.nextChunk();
+    }
+    producer.finished();
+    return bytes;
+  }
+
+  /**
+   * A {@link CloseableIterator} over a list of {@link RawMessage}, which simulates scanning from the message cache.
+   */
+  private static final class MessageIterator extends AbstractCloseableIterator<RawMessage> {
+
+    private final Iterator<RawMessage> iterator;
+
+    MessageIterator(List<RawMessage> messages) {
+      this.iterator = messages.iterator();
+    }
+
+    @Override
+    protected RawMessage computeNext() {
+      return iterator.hasNext() ? iterator.next() : endOfData();
+    }
+
+    @Override
+    public void close() {
+      // no-op
+    }
+  }
+}
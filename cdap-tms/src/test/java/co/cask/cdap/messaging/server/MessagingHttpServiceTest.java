@@ -37,6 +37,7 @@ import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.base.Stopwatch;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterators;
 import com.google.inject.AbstractModule;
@@ -44,7 +45,6 @@ import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.tephra.Transaction;
 import org.apache.tephra.TxConstants;
-import org.apache.twill.discovery.DiscoveryServiceClient;
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -58,6 +58,12 @@ import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -68,13 +74,20 @@ public class MessagingHttpServiceTest {
   @ClassRule
   public static final TemporaryFolder TEMP_FOLDER = new TemporaryFolder();
 
-  private static CConfiguration cConf;
-  private static MessagingHttpService httpService;
-  private static MessagingService client;
+  protected static CConfiguration cConf;
+  protected static MessagingHttpService httpService;
+  protected static MessagingService client;
 
   @BeforeClass
   public static void init() throws IOException {
-    cConf = CConfiguration.create();
+    init(CConfiguration.create());
+  }
+
+  /**
+   * Starts the {@link MessagingHttpService} and creates the client with the given {@link CConfiguration}.
+   */
+  protected static void init(CConfiguration cConf) throws IOException {
+    MessagingHttpServiceTest.cConf = cConf;
     cConf.set(Constants.CFG_LOCAL_DATA_DIR, TEMP_FOLDER.newFolder().getAbsolutePath());
     cConf.setInt(Constants.MessagingSystem.HTTP_SERVER_CONSUME_CHUNK_SIZE, 128);
     // Set max life time to a high value so that dummy tx ids that we create in the tests still work
@@ -95,7 +108,7 @@ public class MessagingHttpServiceTest {
     httpService = injector.getInstance(MessagingHttpService.class);
     httpService.startAndWait();
 
-    client = new ClientMessagingService(injector.getInstance(DiscoveryServiceClient.class));
+    client = injector.getInstance(ClientMessagingService.class);
   }
 
   @AfterClass
@@ -594,4 +607,99 @@ public class MessagingHttpServiceTest {
                           .map(RawMessage::getPayload)
                           .map(Bytes::toString).collect(Collectors.toList()));
   }
+
+  @Test
+  public void testAsyncPublish() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testAsyncPublish");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Publish non-transactional messages asynchronously. Some of them may get coalesced.
+    List<CompletableFuture<RollbackDetail>> futures = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      futures.add(client.publishAsync(StoreRequestBuilder.of(topicId).addPayload("m" + i).build()));
+    }
+    for (CompletableFuture<RollbackDetail> future : futures) {
+      Assert.assertNull(future.get(10, TimeUnit.SECONDS));
+    }
+
+    // Transactional publish should return the rollback detail
+    RollbackDetail rollbackDetail = client.publishAsync(StoreRequestBuilder.of(topicId)
+                                                          .setTransaction(1L)
+                                                          .addPayload("tx").build()).get(10, TimeUnit.SECONDS);
+    Assert.assertNotNull(rollbackDetail);
+    Assert.assertEquals(1L, rollbackDetail.getTransactionWritePointer());
+
+    // All messages should be there in publish order
+    List<RawMessage> messages = new ArrayList<>();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId).setLimit(200).fetch()) {
+      Iterators.addAll(messages, iterator);
+    }
+    Assert.assertEquals(101, messages.size());
+    for (int i = 0; i < 100; i++) {
+      Assert.assertEquals("m" + i, Bytes.toString(messages.get(i).getPayload()));
+    }
+
+    // Publish to non-existing topic should fail the future
+    try {
+      client.publishAsync(StoreRequestBuilder.of(new NamespaceId("ns1").topic("nonExist"))
+                            .addPayload("a").build()).get(10, TimeUnit.SECONDS);
+      Assert.fail("Expected TopicNotFoundException");
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TopicNotFoundException);
+    }
+
+    client.rollback(topicId, rollbackDetail);
+    client.deleteTopic(topicId);
+  }
+
+  @Test
+  public void testLongPoll() throws Exception {
+    TopicId topicId = new NamespaceId("ns1").topic("testLongPoll");
+    client.createTopic(new TopicMetadata(topicId));
+
+    // Fetching from an empty topic should wait for the max wait time
+    Stopwatch stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setMaxWait(500, TimeUnit.MILLISECONDS).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.MILLISECONDS) >= 500);
+
+    // Fetching with a long wait should return as soon as there is new message published
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    List<RawMessage> messages;
+    try {
+      Future<List<RawMessage>> future = executor.submit(() -> {
+        List<RawMessage> fetched = new ArrayList<>();
+        try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                            .setMaxWait(1, TimeUnit.MINUTES).fetch()) {
+          Iterators.addAll(fetched, iterator);
+        }
+        return fetched;
+      });
+
+      // Publish after the fetch request is waiting
+      TimeUnit.MILLISECONDS.sleep(200);
+      client.publish(StoreRequestBuilder.of(topicId).addPayload("m1").build());
+
+      messages = future.get(10, TimeUnit.SECONDS);
+      Assert.assertEquals(1, messages.size());
+      Assert.assertEquals("m1", Bytes.toString(messages.get(0).getPayload()));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    // Transactional fetch should not wait, since it can't see messages published by later transactions
+    Transaction transaction = new Transaction(1L, 1L, new long[0], new long[0], 1L);
+    stopwatch = new Stopwatch().start();
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(topicId)
+                                                        .setStartMessage(messages.get(0).getId(), false)
+                                                        .setTransaction(transaction)
+                                                        .setMaxWait(1, TimeUnit.MINUTES).fetch()) {
+      Assert.assertFalse(iterator.hasNext());
+    }
+    Assert.assertTrue(stopwatch.elapsedTime(TimeUnit.MILLISECONDS) < TimeUnit.MINUTES.toMillis(1));
+
+    client.deleteTopic(topicId);
+  }
 }
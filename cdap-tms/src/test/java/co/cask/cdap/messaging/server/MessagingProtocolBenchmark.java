@@ -0,0 +1,158 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.server;
+
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.common.guice.ConfigModule;
+import co.cask.cdap.common.guice.DiscoveryRuntimeModule;
+import co.cask.cdap.common.metrics.NoOpMetricsCollectionService;
+import co.cask.cdap.common.utils.DirUtils;
+import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.client.ClientMessagingService;
+import co.cask.cdap.messaging.client.StoreRequestBuilder;
+import co.cask.cdap.messaging.data.RawMessage;
+import co.cask.cdap.messaging.guice.MessagingServerRuntimeModule;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.io.Files;
+import com.google.inject.AbstractModule;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for comparing the HTTP protocol and the binary protocol of the messaging system with 100 bytes
+ * payloads, using an in-memory messaging service. The publish benchmark publishes one message per operation and
+ * the fetch benchmark fetches {@link #FETCH_SIZE} messages per call, hence the scores of both are in messages per
+ * second. Multiple threads share the same client, so that the binary protocol pipelines requests on one connection.
+ *
+ * To run it, build the test classes and execute {@code org.openjdk.jmh.Main MessagingProtocolBenchmark}
+ * with the test classpath of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class MessagingProtocolBenchmark {
+
+  private static final int FETCH_SIZE = 100;
+
+  @Param({"http", "binary"})
+  private String protocol;
+
+  @Param({"100"})
+  private int payloadSize;
+
+  private File dataDir;
+  private MessagingHttpService httpService;
+  private MessagingService client;
+  private TopicId publishTopic;
+  private TopicId fetchTopic;
+  private byte[] payload;
+
+  @Setup
+  public void setup() throws Exception {
+    dataDir = Files.createTempDir();
+
+    CConfiguration cConf = CConfiguration.create();
+    cConf.set(Constants.CFG_LOCAL_DATA_DIR, dataDir.getAbsolutePath());
+    cConf.setBoolean(Constants.MessagingSystem.BINARY_SERVER_ENABLED, true);
+    cConf.setBoolean(Constants.MessagingSystem.CLIENT_BINARY_ENABLED, "binary".equals(protocol));
+
+    Injector injector = Guice.createInjector(
+      new ConfigModule(cConf),
+      new DiscoveryRuntimeModule().getInMemoryModules(),
+      new MessagingServerRuntimeModule().getInMemoryModules(),
+      new AbstractModule() {
+        @Override
+        protected void configure() {
+          bind(MetricsCollectionService.class).toInstance(new NoOpMetricsCollectionService());
+        }
+      }
+    );
+
+    httpService = injector.getInstance(MessagingHttpService.class);
+    httpService.startAndWait();
+    ClientMessagingService client = injector.getInstance(ClientMessagingService.class);
+    if (client.isBinaryProtocolActive() != "binary".equals(protocol)) {
+      throw new IllegalStateException("Client is not using the " + protocol + " protocol");
+    }
+    this.client = client;
+
+    publishTopic = NamespaceId.DEFAULT.topic("publish");
+    fetchTopic = NamespaceId.DEFAULT.topic("fetch");
+    client.createTopic(new TopicMetadata(publishTopic));
+    client.createTopic(new TopicMetadata(fetchTopic));
+
+    payload = new byte[payloadSize];
+    StoreRequestBuilder builder = StoreRequestBuilder.of(fetchTopic);
+    for (int i = 0; i < FETCH_SIZE; i++) {
+      builder.addPayload(payload);
+    }
+    client.publish(builder.build());
+  }
+
+  @TearDown
+  public void teardown() throws Exception {
+    try {
+      httpService.stopAndWait();
+    } finally {
+      DirUtils.deleteDirectoryContents(dataDir);
+    }
+  }
+
+  @Benchmark
+  public void publish() throws Exception {
+    client.publish(StoreRequestBuilder.of(publishTopic).addPayload(payload).build());
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(FETCH_SIZE)
+  public int fetch() throws Exception {
+    int count = 0;
+    try (CloseableIterator<RawMessage> iterator = client.prepareFetch(fetchTopic).setLimit(FETCH_SIZE).fetch()) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        count++;
+      }
+    }
+    return count;
+  }
+}
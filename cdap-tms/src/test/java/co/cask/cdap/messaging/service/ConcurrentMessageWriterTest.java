@@ -18,6 +18,7 @@ package co.cask.cdap.messaging.service;
 
 import co.cask.cdap.api.common.Bytes;
 import co.cask.cdap.api.metrics.MetricsCollector;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.StoreRequest;
 import co.cask.cdap.messaging.TopicMetadata;
@@ -55,6 +56,18 @@ public class ConcurrentMessageWriterTest {
 
   private static final Logger LOG = LoggerFactory.getLogger(ConcurrentMessageWriterTest.class);
 
+  /**
+   * Creates the {@link AbstractMessageWriter} to be tested.
+   */
+  protected AbstractMessageWriter createWriter(StoreRequestWriter<?> storeRequestWriter,
+                                               MetricsCollector metricsCollector) {
+    return new ConcurrentMessageWriter(storeRequestWriter, metricsCollector);
+  }
+
+  private AbstractMessageWriter createWriter(StoreRequestWriter<?> storeRequestWriter) {
+    return createWriter(storeRequestWriter, new NoopMetricsContext());
+  }
+
   @Test
   public void testBasic() throws IOException {
     TopicId topicId1 = new NamespaceId("ns1").topic("t1");
@@ -64,7 +77,7 @@ public class ConcurrentMessageWriterTest {
     TopicMetadata metadata2 = new TopicMetadata(topicId2, new HashMap<String, String>(), 1);
 
     TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
-    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter);
+    AbstractMessageWriter writer = createWriter(testWriter);
     writer.persist(new TestStoreRequest(topicId1, Arrays.asList("1", "2", "3")), metadata1);
 
     // There should be 3 messages being written
@@ -111,7 +124,7 @@ public class ConcurrentMessageWriterTest {
 
     // Write the payloads
     TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider());
-    ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter);
+    AbstractMessageWriter writer = createWriter(testWriter);
     writer.persist(new TestStoreRequest(topicId, payloads), metadata);
 
     List<RawMessage> messages = testWriter.getMessages().get(topicId);
@@ -154,7 +167,7 @@ public class ConcurrentMessageWriterTest {
     // before flushing.
     // This will make all requests batched together
     final CountDownLatch latch = new CountDownLatch(requestCount);
-    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter, new MetricsCollector() {
+    final AbstractMessageWriter writer = createWriter(testWriter, new MetricsCollector() {
       @Override
       public void increment(String metricName, long value) {
         if ("persist.requested".equals(metricName)) {
@@ -216,7 +229,7 @@ public class ConcurrentMessageWriterTest {
     final TopicMetadata metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
     TestStoreRequestWriter testWriter = new TestStoreRequestWriter(new TimeProvider.IncrementalTimeProvider(),
                                                                    writeLatencyMillis);
-    final ConcurrentMessageWriter writer = new ConcurrentMessageWriter(testWriter);
+    final AbstractMessageWriter writer = createWriter(testWriter);
 
     final List<String> payload = new ArrayList<>(payloadsPerRequest);
     for (int i = 0; i < payloadsPerRequest; i++) {
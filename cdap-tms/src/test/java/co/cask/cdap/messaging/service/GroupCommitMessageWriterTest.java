@@ -0,0 +1,33 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.metrics.MetricsCollector;
+
+/**
+ * Unit-test for {@link GroupCommitMessageWriter}.
+ */
+public class GroupCommitMessageWriterTest extends ConcurrentMessageWriterTest {
+
+  @Override
+  protected AbstractMessageWriter createWriter(StoreRequestWriter<?> storeRequestWriter,
+                                               MetricsCollector metricsCollector) {
+    // Use a small linger time so that requests enqueued around the same time from different threads
+    // are written in the same batch, which is what the tests in the base class are expecting.
+    return new GroupCommitMessageWriter(storeRequestWriter, metricsCollector, "test", 20, 100L);
+  }
+}
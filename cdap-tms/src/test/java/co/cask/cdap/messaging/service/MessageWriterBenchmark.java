@@ -0,0 +1,192 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.service;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.common.utils.TimeProvider;
+import co.cask.cdap.messaging.RollbackDetail;
+import co.cask.cdap.messaging.StoreRequest;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javax.annotation.Nullable;
+
+/**
+ * JMH benchmark for comparing the {@link ConcurrentMessageWriter} and the {@link GroupCommitMessageWriter}.
+ * The publish latency distribution (including p99) is reported by the {@link Mode#SampleTime} mode, while the
+ * process CPU time spent per message written is printed at the end of each trial.
+ *
+ * To run it, build the test classes and execute {@code org.openjdk.jmh.Main MessageWriterBenchmark}
+ * with the test classpath of this module.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(64)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class MessageWriterBenchmark {
+
+  // Same as the values of the messaging.writer.mode configuration
+  @Param({"concurrent", "group.commit"})
+  private String mode;
+
+  // Simulated latency of a storage flush, e.g. HBase put
+  @Param({"100", "2000"})
+  private long flushLatencyMicros;
+
+  @Param({"10"})
+  private int payloadsPerRequest;
+
+  private TopicMetadata metadata;
+  private StoreRequest storeRequest;
+  private LatencyStoreRequestWriter storeRequestWriter;
+  private AbstractMessageWriter writer;
+  private long startCpuNanos;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    TopicId topicId = NamespaceId.DEFAULT.topic("benchmark");
+    metadata = new TopicMetadata(topicId, new HashMap<String, String>(), 1);
+
+    List<byte[]> payloads = new ArrayList<>(payloadsPerRequest);
+    for (int i = 0; i < payloadsPerRequest; i++) {
+      payloads.add(Bytes.toBytes("Payload " + i));
+    }
+    storeRequest = new PayloadStoreRequest(topicId, payloads);
+    storeRequestWriter = new LatencyStoreRequestWriter(TimeUnit.MICROSECONDS.toNanos(flushLatencyMicros));
+
+    if ("group.commit".equals(mode)) {
+      writer = new GroupCommitMessageWriter(storeRequestWriter, new NoopMetricsContext(), "benchmark", 1000, 0L);
+    } else {
+      writer = new ConcurrentMessageWriter(storeRequestWriter);
+    }
+    startCpuNanos = getProcessCpuTime();
+  }
+
+  @TearDown(Level.Trial)
+  public void teardown() throws IOException {
+    long cpuNanos = getProcessCpuTime() - startCpuNanos;
+    long messages = storeRequestWriter.getMessageCount();
+    writer.close();
+    System.out.printf("%nmode=%s, flushLatencyMicros=%d: %d messages written, CPU time per message = %.2f us%n",
+                      mode, flushLatencyMicros, messages,
+                      messages == 0 ? 0d : (double) cpuNanos / messages / TimeUnit.MICROSECONDS.toNanos(1));
+  }
+
+  @Benchmark
+  @Nullable
+  public RollbackDetail publish() throws IOException {
+    return writer.persist(storeRequest, metadata);
+  }
+
+  private static long getProcessCpuTime() {
+    return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+      .getProcessCpuTime();
+  }
+
+  /**
+   * A {@link StoreRequest} that always returns the same list of payloads.
+   */
+  private static final class PayloadStoreRequest extends StoreRequest {
+
+    private final List<byte[]> payloads;
+
+    PayloadStoreRequest(TopicId topicId, List<byte[]> payloads) {
+      super(topicId, false, -1L);
+      this.payloads = payloads;
+    }
+
+    @Override
+    public boolean hasPayload() {
+      return !payloads.isEmpty();
+    }
+
+    @Override
+    public Iterator<byte[]> iterator() {
+      return payloads.iterator();
+    }
+  }
+
+  /**
+   * A {@link StoreRequestWriter} that discards all entries and parks for a fixed amount of time on each write
+   * to simulate the latency of flushing to the storage.
+   */
+  private static final class LatencyStoreRequestWriter extends StoreRequestWriter<byte[]> {
+
+    private final long flushLatencyNanos;
+    private final AtomicLong messageCount;
+
+    LatencyStoreRequestWriter(long flushLatencyNanos) {
+      super(TimeProvider.SYSTEM_TIME, false);
+      this.flushLatencyNanos = flushLatencyNanos;
+      this.messageCount = new AtomicLong();
+    }
+
+    @Override
+    byte[] getEntry(TopicMetadata metadata, boolean transactional, long transactionWritePointer,
+                    long writeTimestamp, short sequenceId, @Nullable byte[] payload) {
+      return payload;
+    }
+
+    @Override
+    void doWrite(Iterator<byte[]> entries) throws IOException {
+      long count = 0;
+      while (entries.hasNext()) {
+        entries.next();
+        count++;
+      }
+      messageCount.addAndGet(count);
+      LockSupport.parkNanos(flushLatencyNanos);
+    }
+
+    long getMessageCount() {
+      return messageCount.get();
+    }
+
+    @Override
+    public void close() throws IOException {
+      // No-op
+    }
+  }
+}
@@ -22,9 +22,12 @@ import co.cask.cdap.api.metrics.NoopMetricsContext;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.utils.TimeProvider;
 import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.Schemas;
 import co.cask.cdap.messaging.TopicMetadata;
 import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.data.FramedRawMessage;
 import co.cask.cdap.messaging.data.MessageId;
+import co.cask.cdap.messaging.data.RawMessage;
 import co.cask.cdap.messaging.store.ImmutableMessageTableEntry;
 import co.cask.cdap.messaging.store.MessageTable;
 import co.cask.cdap.messaging.store.leveldb.LevelDBMessageTableTest;
@@ -36,11 +39,19 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalListener;
 import com.google.common.cache.RemovalNotification;
 import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DecoderFactory;
 import org.apache.tephra.Transaction;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
@@ -171,4 +182,49 @@ public class CachingMessageTableTest extends LevelDBMessageTableTest {
       Assert.assertTrue(iterator.next() instanceof CachingMessageTable.CacheMessageTableEntry);
     }
   }
+  @Test
+  public void testFramedEntries() throws Exception {
+    MessageTable messageTable = getMessageTable();
+    TopicMetadata metadata = new TopicMetadata(NamespaceId.DEFAULT.topic("framed"),
+                                               TopicMetadata.GENERATION_KEY, 1,
+                                               TopicMetadata.TTL_KEY, 86400);
+    List<MessageTable.Entry> entries = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      byte[] key = Bytes.concat(MessagingUtils.toDataKeyPrefix(metadata.getTopicId(), metadata.getGeneration()),
+                                Bytes.toBytes((long) i), Bytes.toBytes((short) i));
+      entries.add(new ImmutableMessageTableEntry(key, Bytes.toBytes("Payload " + i), null));
+    }
+    messageTable.store(entries.iterator());
+
+    DatumReader<GenericRecord> reader = new GenericDatumReader<>(Schemas.V1.ConsumeResponse.SCHEMA.getElementType());
+    try (CloseableIterator<MessageTable.Entry> iter = messageTable.fetch(metadata, 0, 100, null)) {
+      int i = 0;
+      while (iter.hasNext()) {
+        MessageTable.Entry entry = iter.next();
+        Assert.assertFalse(entry.isPayloadReference());
+        Assert.assertEquals("Payload " + i, Bytes.toString(entry.getPayload()));
+
+        // The entry from cache should carry a framed message that has the same id and payload
+        RawMessage message = entry.getRawMessage();
+        Assert.assertTrue(message instanceof FramedRawMessage);
+        MessageId messageId = new MessageId(message.getId());
+        Assert.assertEquals(i, messageId.getPublishTimestamp());
+        Assert.assertEquals(i, messageId.getSequenceId());
+        Assert.assertEquals("Payload " + i, Bytes.toString(message.getPayload()));
+
+        // The frame should be decodable as an element of the consume response
+        ByteBuf frame = ((FramedRawMessage) message).retainedFrame();
+        try {
+          GenericRecord record = reader.read(null, DecoderFactory.get().binaryDecoder(ByteBufUtil.getBytes(frame),
+                                                                                      null));
+          Assert.assertArrayEquals(message.getId(), Bytes.toBytes((ByteBuffer) record.get("id")));
+          Assert.assertEquals("Payload " + i, Bytes.toString((ByteBuffer) record.get("payload")));
+        } finally {
+          frame.release();
+        }
+        i++;
+      }
+      Assert.assertEquals(10, i);
+    }
+  }
 }
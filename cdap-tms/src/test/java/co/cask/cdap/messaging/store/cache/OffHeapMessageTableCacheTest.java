@@ -0,0 +1,269 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.messaging.store.cache;
+
+import co.cask.cdap.api.common.Bytes;
+import co.cask.cdap.api.metrics.NoopMetricsContext;
+import co.cask.cdap.messaging.MessagingUtils;
+import co.cask.cdap.messaging.TopicMetadata;
+import co.cask.cdap.messaging.cache.MessageCache;
+import co.cask.cdap.messaging.cache.MessageEntryCache;
+import co.cask.cdap.messaging.data.FramedRawMessage;
+import co.cask.cdap.messaging.store.ImmutableMessageTableEntry;
+import co.cask.cdap.messaging.store.MessageFilter;
+import co.cask.cdap.messaging.store.MessageTable;
+import co.cask.cdap.messaging.store.leveldb.LevelDBMessageTableTest;
+import co.cask.cdap.proto.id.NamespaceId;
+import co.cask.cdap.proto.id.TopicId;
+import com.google.common.collect.Lists;
+import io.netty.buffer.ByteBuf;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Unit test for {@link OffHeapMessageTableCache}. It also runs all the {@link MessageTable} tests through
+ * a {@link CachingMessageTable} that uses the {@link OffHeapMessageTableCache}.
+ */
+public class OffHeapMessageTableCacheTest extends LevelDBMessageTableTest {
+
+  private static final TopicMetadata METADATA = new TopicMetadata(NamespaceId.DEFAULT.topic("offheap"),
+                                                                  TopicMetadata.GENERATION_KEY, 1,
+                                                                  TopicMetadata.TTL_KEY, 86400);
+  private static MessageTableCacheProvider cacheProvider;
+
+  @BeforeClass
+  public static void initCache() {
+    final ConcurrentMap<TopicId, MessageEntryCache<MessageTable.Entry>> caches = new ConcurrentHashMap<>();
+    cacheProvider = new MessageTableCacheProvider() {
+      @Override
+      public MessageEntryCache<MessageTable.Entry> getMessageCache(TopicId topicId) {
+        return caches.computeIfAbsent(topicId, t -> new OffHeapMessageTableCache(
+          t, new MessageCache.Limits(5000, 7000, 10000), 1000, new NoopMetricsContext()));
+      }
+
+      @Override
+      public void clear() {
+        for (MessageEntryCache<MessageTable.Entry> cache : caches.values()) {
+          cache.clear();
+        }
+        caches.clear();
+      }
+    };
+  }
+
+  @Override
+  protected MessageTable getMessageTable() throws Exception {
+    MessageTable messageTable = super.getMessageTable();
+    return new CachingMessageTable(cConf, messageTable, cacheProvider);
+  }
+
+  @Test
+  public void testScan() {
+    OffHeapMessageTableCache cache = new OffHeapMessageTableCache(METADATA.getTopicId(),
+                                                                  new MessageCache.Limits(5000, 7000, 10000),
+                                                                  1000, new NoopMetricsContext());
+    // Add entries with odd timestamps, in two batches
+    cache.addAll(createEntries(1, 20).iterator());
+    cache.addAll(createEntries(21, 40).iterator());
+
+    MessageFilter<MessageTable.Entry> filter = MessageFilter.alwaysAccept();
+
+    // Scan from a start entry that is not in the cache
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(0), true, 100, filter)) {
+      Assert.assertEquals(1L, scanner.getFirstInCache().getPublishTimestamp());
+      assertEntries(Lists.newArrayList(scanner), 1, 40);
+    }
+
+    // Scan from an entry in the cache, inclusive and exclusive, with limit
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(21), true, 5, filter)) {
+      assertEntries(Lists.newArrayList(scanner), 21, 25);
+    }
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(21), false, 5, filter)) {
+      assertEntries(Lists.newArrayList(scanner), 22, 26);
+    }
+
+    // Scan from an entry beyond the last one
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(41), true, 5, filter)) {
+      Assert.assertFalse(scanner.hasNext());
+    }
+
+    // Entries must be added in increasing order
+    try {
+      cache.addAll(createEntries(40, 41).iterator());
+      Assert.fail("Expected failure when adding entries out of order");
+    } catch (IllegalArgumentException e) {
+      // Expected, the cache should be cleared
+      Assert.assertEquals(0L, cache.getResidentBytes());
+    }
+  }
+
+  @Test
+  public void testSegmentEviction() {
+    // With a hard limit of 10000 bytes, each segment is 2500 bytes
+    OffHeapMessageTableCache cache = new OffHeapMessageTableCache(METADATA.getTopicId(),
+                                                                  new MessageCache.Limits(5000, 7000, 10000),
+                                                                  4096, new NoopMetricsContext());
+    MessageFilter<MessageTable.Entry> filter = MessageFilter.alwaysAccept();
+
+    // Each entry takes 95 bytes (13 bytes of header and 82 bytes of frame), hence a segment holds 26 entries.
+    int timestamp = 1;
+    for (int i = 0; i < 10; i++) {
+      cache.addAll(createEntries(timestamp, timestamp + 9).iterator());
+      timestamp += 10;
+      Assert.assertTrue(cache.getResidentBytes() <= 7000);
+    }
+
+    // Only the entries in the remaining segments are in the cache, and they must be the latest entries
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(0), true, 1000, filter)) {
+      List<MessageTable.Entry> entries = Lists.newArrayList(scanner);
+      Assert.assertFalse(entries.isEmpty());
+      Assert.assertTrue(entries.size() < 100);
+      Assert.assertEquals(entries.get(0).getPublishTimestamp(), scanner.getFirstInCache().getPublishTimestamp());
+      // Eviction is by whole segment, hence the number of entries must be a multiple of the segment capacity,
+      // except for the last segment
+      Assert.assertEquals(0, (100 - entries.size()) % 26);
+      assertEntries(entries, 101 - entries.size(), 100);
+    }
+
+    cache.clear();
+    Assert.assertEquals(0L, cache.getResidentBytes());
+  }
+
+  @Test
+  public void testSegmentRelease() {
+    OffHeapMessageTableCache cache = new OffHeapMessageTableCache(METADATA.getTopicId(),
+                                                                  new MessageCache.Limits(5000, 7000, 10000),
+                                                                  1000, new NoopMetricsContext());
+    cache.addAll(createEntries(1, 20).iterator());
+
+    ByteBuf frame;
+    MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(1), true, 100,
+                                                                  MessageFilter.alwaysAccept());
+    try {
+      List<MessageTable.Entry> entries = Lists.newArrayList(scanner);
+      frame = ((FramedRawMessage) entries.get(0).getRawMessage()).retainedFrame();
+
+      // Entries are still readable after the segments are evicted, as long as the scanner is not closed
+      cache.clear();
+      Assert.assertEquals(0L, cache.getResidentBytes());
+      assertEntries(entries, 1, 20);
+    } finally {
+      scanner.close();
+    }
+
+    // Closing the scanner again should be a no-op
+    scanner.close();
+
+    // The retained frame is the last reference to the segment, hence releasing it frees the segment
+    Assert.assertEquals(1, frame.refCnt());
+    Assert.assertTrue(frame.release());
+  }
+
+  @Test
+  public void testEntriesOutliveScanner() {
+    OffHeapMessageTableCache cache = new OffHeapMessageTableCache(METADATA.getTopicId(),
+                                                                  new MessageCache.Limits(5000, 7000, 10000),
+                                                                  1000, new NoopMetricsContext());
+    cache.addAll(createEntries(1, 20).iterator());
+
+    List<MessageTable.Entry> entries;
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(1), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      entries = Lists.newArrayList(scanner);
+      // Evict the segments while the entries are held, without reading the payloads
+      cache.clear();
+    }
+
+    // The segments are freed once the scanner is closed, while the entries it returned are still readable
+    assertEntries(entries, 1, 20);
+    for (MessageTable.Entry entry : entries) {
+      FramedRawMessage message = (FramedRawMessage) entry.getRawMessage();
+      ByteBuf frame = message.retainedFrame();
+      try {
+        Assert.assertEquals(message.getEncodedSize(), frame.readableBytes());
+        Assert.assertArrayEquals(message.getPayload(), FramedRawMessage.decode(frame).getPayload());
+      } finally {
+        frame.release();
+      }
+    }
+  }
+
+  @Test
+  public void testRollback() {
+    OffHeapMessageTableCache cache = new OffHeapMessageTableCache(METADATA.getTopicId(),
+                                                                  new MessageCache.Limits(5000, 7000, 10000),
+                                                                  1000, new NoopMetricsContext());
+    cache.addAll(createEntries(1, 20).iterator());
+
+    // Rollback entries from 5 to 9
+    cache.updateEntries(createLookup(5), createLookup(9), new MessageCache.EntryUpdater<MessageTable.Entry>() {
+      @Override
+      public void updateEntry(MessageTable.Entry entry) {
+        ((CachingMessageTable.CacheMessageTableEntry) entry).rollback();
+      }
+    });
+
+    try (MessageCache.Scanner<MessageTable.Entry> scanner = cache.scan(createLookup(1), true, 100,
+                                                                       MessageFilter.alwaysAccept())) {
+      List<MessageTable.Entry> entries = Lists.newArrayList(scanner);
+      assertEntries(entries, 1, 20);
+      for (MessageTable.Entry entry : entries) {
+        long timestamp = entry.getPublishTimestamp();
+        Assert.assertEquals(timestamp >= 5 && timestamp <= 9,
+                            ((CachingMessageTable.CacheMessageTableEntry) entry).isRollback());
+      }
+    }
+  }
+
+  /**
+   * Creates transactional entries with publish timestamps in the given range, with 60 bytes of payload each.
+   */
+  private List<MessageTable.Entry> createEntries(long startTimestamp, long endTimestamp) {
+    List<MessageTable.Entry> entries = new ArrayList<>();
+    for (long timestamp = startTimestamp; timestamp <= endTimestamp; timestamp++) {
+      byte[] key = Bytes.concat(MessagingUtils.toDataKeyPrefix(METADATA.getTopicId(), METADATA.getGeneration()),
+                                Bytes.toBytes(timestamp), Bytes.toBytes((short) 0));
+      byte[] payload = Bytes.toBytes(String.format("%-60s", "Payload " + timestamp));
+      entries.add(new CachingMessageTable.CacheMessageTableEntry(
+        new ImmutableMessageTableEntry(key, payload, Bytes.toBytes(timestamp))));
+    }
+    return entries;
+  }
+
+  private MessageTable.Entry createLookup(long timestamp) {
+    return new CachingMessageTable.CacheMessageTableEntry(METADATA, timestamp, (short) 0);
+  }
+
+  private void assertEntries(List<MessageTable.Entry> entries, long startTimestamp, long endTimestamp) {
+    Assert.assertEquals(endTimestamp - startTimestamp + 1, entries.size());
+    long timestamp = startTimestamp;
+    for (MessageTable.Entry entry : entries) {
+      Assert.assertEquals(timestamp, entry.getPublishTimestamp());
+      Assert.assertTrue(entry.isTransactional());
+      Assert.assertEquals(timestamp, entry.getTransactionWritePointer());
+      Assert.assertEquals(String.format("%-60s", "Payload " + timestamp), Bytes.toString(entry.getPayload()));
+      Assert.assertNotNull(entry.getRawMessage());
+      timestamp++;
+    }
+  }
+}
@@ -16,6 +16,8 @@
 
 package co.cask.cdap.logging.appender;
 
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.AbstractRetryableScheduledService;
 import co.cask.cdap.common.service.RetryStrategy;
 import kafka.producer.KeyedMessage;
@@ -24,12 +26,12 @@ import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
- * A class that continuously serializes logs from a queue and publishes them.
+ * A class that continuously serializes logs from a queue and publishes them. Log messages are buffered in a
+ * {@link LogMessageRingBuffer}, so that adding a message does not take any lock and the serialization happens in the
+ * publishing thread. What happens when the buffer is full is controlled by the {@link LogOverflowPolicy}.
  *
  * @param <MESSAGE> the type of message used in the in-memory buffer, before publishing
  */
@@ -37,18 +39,38 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
   private static final Logger LOG = LoggerFactory.getLogger(AbstractLogPublisher.class);
 
   private final int queueSize;
-  private final BlockingQueue<LogMessage> messageQueue;
+  private final LogMessageRingBuffer messageQueue;
   private final List<MESSAGE> buffer;
   private volatile boolean failed;
   private volatile Thread publishThread;
+  private volatile MetricsContext metricsContext;
+  private long reportedDropped;
 
   public AbstractLogPublisher(int queueSize, RetryStrategy retryStrategy) {
+    this(queueSize, LogOverflowPolicy.BLOCK, retryStrategy);
+  }
+
+  public AbstractLogPublisher(int queueSize, LogOverflowPolicy overflowPolicy, RetryStrategy retryStrategy) {
     super(retryStrategy);
     this.queueSize = queueSize;
-    this.messageQueue = new ArrayBlockingQueue<>(queueSize);
+    this.messageQueue = new LogMessageRingBuffer(queueSize, overflowPolicy);
     this.buffer = new ArrayList<>(queueSize);
   }
 
+  /**
+   * Sets the {@link MetricsContext} for emitting the number of log messages dropped by the {@link LogOverflowPolicy}.
+   */
+  public void setMetricsContext(MetricsContext metricsContext) {
+    this.metricsContext = metricsContext;
+  }
+
+  /**
+   * Returns the total number of log messages dropped by the {@link LogOverflowPolicy}.
+   */
+  public long getDroppedCount() {
+    return messageQueue.getDroppedCount();
+  }
+
   /**
    * Creates a {@link MESSAGE}, which the type is dependent on the implementation. This is buffered in-memory before
    * being published.
@@ -66,12 +88,15 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
   protected abstract void publish(List<MESSAGE> logMessages) throws Exception;
 
   /**
-   * Adds a log message for publishing.
+   * Adds a log message for publishing. Depending on the {@link LogOverflowPolicy}, this method either blocks or drops
+   * the message if the buffer is full.
    *
    * @param logMessage the log message to add for publishing
+   * @return {@code true} if the message was added, {@code false} if it was dropped
+   * @throws InterruptedException if the thread is interrupted while waiting for space in the buffer
    */
-  public final void addMessage(LogMessage logMessage) throws InterruptedException {
-    messageQueue.put(logMessage);
+  public final boolean addMessage(LogMessage logMessage) throws InterruptedException {
+    return messageQueue.add(logMessage);
   }
 
   @Override
@@ -81,6 +106,7 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
     // We only clear the buffer once the messages are successfully published
     buffer.clear();
     failed = false;
+    reportDroppedMessages();
     return 0;
   }
 
@@ -117,6 +143,7 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
       // Ignore those that cannot be publish since we are already in shutdown sequence
       buffer.clear();
     }
+    reportDroppedMessages();
   }
 
   /**
@@ -129,6 +156,21 @@ public abstract class AbstractLogPublisher<MESSAGE> extends AbstractRetryableSch
     LOG.error(errorMessage, exception);
   }
 
+  /**
+   * Emits the number of messages dropped since the last call as metrics.
+   */
+  private void reportDroppedMessages() {
+    MetricsContext metricsContext = this.metricsContext;
+    if (metricsContext == null) {
+      return;
+    }
+    long dropped = messageQueue.getDroppedCount();
+    if (dropped > reportedDropped) {
+      metricsContext.increment(Constants.Metrics.Name.Log.PUBLISH_DROPPED_COUNT, dropped - reportedDropped);
+      reportedDropped = dropped;
+    }
+  }
+
   /**
    * Publishes messages from the message queue to Kafka.
    *
@@ -0,0 +1,254 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.Level;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded, lock-free ring buffer of {@link LogMessage} that supports multiple producers and a single consumer.
+ * Each slot carries a sequence number that tells whether the slot is free for the producer that claimed the position
+ * or holds a message for the consumer. Producers claim positions with a CAS on the tail, so adding a message never
+ * takes a lock. When the buffer is full, the {@link LogOverflowPolicy} decides whether the producer waits or the
+ * message is dropped.
+ */
+final class LogMessageRingBuffer {
+
+  // Time for a blocked producer to wait before checking for free space again
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final LogOverflowPolicy overflowPolicy;
+  private final int capacity;
+  private final int slotCount;
+  private final int mask;
+  private final AtomicReferenceArray<LogMessage> slots;
+  private final AtomicLongArray sequences;
+  private final AtomicLong tail;
+  private final AtomicLong dropped;
+  private final int debugLimit;
+  private final int infoLimit;
+  private final int warnLimit;
+
+  // Only updated by the consumer thread
+  private volatile long head;
+  private volatile Thread waitingConsumer;
+
+  LogMessageRingBuffer(int capacity, LogOverflowPolicy overflowPolicy) {
+    Preconditions.checkArgument(capacity > 0, "Buffer capacity must be positive: %s", capacity);
+    Preconditions.checkArgument(capacity <= 1 << 30, "Buffer capacity is too large: %s", capacity);
+    this.overflowPolicy = overflowPolicy;
+    this.capacity = capacity;
+    // The slots are indexed with a mask, hence their number is the capacity rounded up to a power of two.
+    // The extra slots are never used, since offer() checks the capacity.
+    this.slotCount = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = slotCount - 1;
+    this.slots = new AtomicReferenceArray<>(slotCount);
+    this.sequences = new AtomicLongArray(slotCount);
+    for (int i = 0; i < slotCount; i++) {
+      sequences.set(i, i);
+    }
+    this.tail = new AtomicLong();
+    this.dropped = new AtomicLong();
+    this.debugLimit = Math.max(1, capacity / 2);
+    this.infoLimit = Math.max(1, capacity - capacity / 4);
+    this.warnLimit = Math.max(1, capacity - capacity / 8);
+  }
+
+  /**
+   * Returns the number of messages the buffer can hold, which is the capacity it was created with.
+   */
+  int getCapacity() {
+    return capacity;
+  }
+
+  /**
+   * Returns the total number of messages dropped because of the overflow policy.
+   */
+  long getDroppedCount() {
+    return dropped.get();
+  }
+
+  /**
+   * Returns the approximate number of messages in the buffer.
+   */
+  int size() {
+    long size = tail.get() - head;
+    return (int) Math.max(0L, Math.min(capacity, size));
+  }
+
+  /**
+   * Returns {@code true} if there is no message ready for the consumer.
+   */
+  boolean isEmpty() {
+    long pos = head;
+    return sequences.get((int) pos & mask) != pos + 1;
+  }
+
+  /**
+   * Adds a message to the buffer. This method can be called from multiple threads concurrently.
+   *
+   * @param message the message to add
+   * @return {@code true} if the message was added, {@code false} if it was dropped by the overflow policy
+   * @throws InterruptedException if the thread is interrupted while waiting for space under the
+   *                              {@link LogOverflowPolicy#BLOCK} policy
+   */
+  boolean add(LogMessage message) throws InterruptedException {
+    if (!admit(message)) {
+      dropped.incrementAndGet();
+      return false;
+    }
+    while (!offer(message)) {
+      if (overflowPolicy != LogOverflowPolicy.BLOCK) {
+        dropped.incrementAndGet();
+        return false;
+      }
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      LockSupport.parkNanos(this, BLOCK_PARK_NANOS);
+    }
+
+    Thread consumer = waitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+    return true;
+  }
+
+  /**
+   * Removes the next message from the buffer. This method must only be called from the consumer thread.
+   *
+   * @return the next message or {@code null} if the buffer is empty
+   */
+  LogMessage poll() {
+    long pos = head;
+    int index = (int) pos & mask;
+    if (sequences.get(index) != pos + 1) {
+      return null;
+    }
+    LogMessage message = slots.get(index);
+    slots.lazySet(index, null);
+    // Release the slot to the producer that will claim the same index in the next round
+    sequences.lazySet(index, pos + slotCount);
+    head = pos + 1;
+    return message;
+  }
+
+  /**
+   * Removes the next message from the buffer, waiting up to the given time if the buffer is empty.
+   * This method must only be called from the consumer thread.
+   *
+   * @return the next message or {@code null} if no message arrived before the timeout
+   * @throws InterruptedException if the thread is interrupted while waiting
+   */
+  LogMessage poll(long timeout, TimeUnit unit) throws InterruptedException {
+    LogMessage message = poll();
+    if (message != null) {
+      return message;
+    }
+
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+    waitingConsumer = Thread.currentThread();
+    try {
+      // Check again after publishing the waiting thread, so that a message added concurrently is not missed
+      while ((message = poll()) == null) {
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+          return null;
+        }
+        LockSupport.parkNanos(this, remaining);
+      }
+      return message;
+    } finally {
+      waitingConsumer = null;
+    }
+  }
+
+  /**
+   * Claims a slot and stores the message in it.
+   *
+   * @return {@code false} if the buffer is full
+   */
+  private boolean offer(LogMessage message) {
+    while (true) {
+      long pos = tail.get();
+      int index = (int) pos & mask;
+      long diff = sequences.get(index) - pos;
+      if (diff == 0) {
+        // The head may be stale, which can only make the buffer look fuller than it is
+        if (pos - head >= capacity) {
+          return false;
+        }
+        if (tail.compareAndSet(pos, pos + 1)) {
+          slots.lazySet(index, message);
+          // A volatile write, so that the read of waitingConsumer in add() cannot happen before it
+          sequences.set(index, pos + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        // The slot still holds the message from the previous round, hence the buffer is full
+        return false;
+      }
+      // Otherwise another producer claimed the position first, retry with the new tail
+    }
+  }
+
+  /**
+   * Decides whether a message is accepted based on the overflow policy and how full the buffer is.
+   */
+  private boolean admit(LogMessage message) {
+    switch (overflowPolicy) {
+      case DROP_LOWEST_LEVEL:
+        return size() < getLimit(message.getLevel());
+      case SAMPLE:
+        int size = size();
+        if (size < debugLimit) {
+          return true;
+        }
+        // Accept with a probability of the free space over half of the capacity
+        return ThreadLocalRandom.current().nextInt(debugLimit) < capacity - size;
+      default:
+        return true;
+    }
+  }
+
+  private int getLimit(Level level) {
+    if (level == null) {
+      return capacity;
+    }
+    switch (level.toInt()) {
+      case Level.ERROR_INT:
+        return capacity;
+      case Level.WARN_INT:
+        return warnLimit;
+      case Level.INFO_INT:
+        return infoLimit;
+      default:
+        return debugLimit;
+    }
+  }
+}
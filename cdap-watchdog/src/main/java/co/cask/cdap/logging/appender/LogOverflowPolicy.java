@@ -0,0 +1,68 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+
+import java.util.Arrays;
+
+/**
+ * Policy applied by {@link AbstractLogPublisher} when log messages are added faster than they can be published.
+ */
+public enum LogOverflowPolicy {
+
+  /**
+   * The logging thread waits until there is room in the buffer. No log message is lost.
+   */
+  BLOCK,
+
+  /**
+   * Messages of lower levels are dropped first as the buffer fills up. {@code TRACE} and {@code DEBUG} messages are
+   * only accepted while the buffer is less than half full, {@code INFO} while it is less than three quarters full and
+   * {@code WARN} while it is less than seven eighths full. {@code ERROR} messages are accepted as long as there is
+   * room.
+   */
+  DROP_LOWEST_LEVEL,
+
+  /**
+   * Once the buffer is half full, messages are randomly sampled with a probability that decreases linearly to zero as
+   * the buffer becomes full.
+   */
+  SAMPLE;
+
+  /**
+   * Returns the policy set by {@link Constants.Logging#LOG_PUBLISH_OVERFLOW_POLICY}, or {@link #BLOCK} if it is not
+   * set. The value is case insensitive.
+   *
+   * @throws IllegalArgumentException if the value is not a valid policy
+   */
+  public static LogOverflowPolicy fromConfiguration(CConfiguration cConf) {
+    String value = cConf.get(Constants.Logging.LOG_PUBLISH_OVERFLOW_POLICY);
+    if (value == null) {
+      return BLOCK;
+    }
+    for (LogOverflowPolicy policy : values()) {
+      if (policy.name().equalsIgnoreCase(value.trim())) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException(
+      String.format("Invalid value '%s' for configuration '%s'. It must be one of %s.", value,
+                    Constants.Logging.LOG_PUBLISH_OVERFLOW_POLICY, Arrays.toString(values()).toLowerCase()));
+  }
+}
@@ -16,13 +16,17 @@
 
 package co.cask.cdap.logging.appender.kafka;
 
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.logging.appender.AbstractLogPublisher;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LogOverflowPolicy;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.proto.id.NamespaceId;
+import com.google.common.collect.ImmutableMap;
 import com.google.inject.Inject;
 import kafka.producer.KeyedMessage;
 
@@ -45,6 +49,17 @@ public final class KafkaLogAppender extends LogAppender {
     this.kafkaLogPublisher = new KafkaLogPublisher(cConf);
   }
 
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} used to emit the number of dropped log messages.
+   * It is optional because not every process that uses this appender has metrics collection.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    kafkaLogPublisher.setMetricsContext(metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, APPENDER_NAME)));
+  }
+
   @Override
   public void start() {
     kafkaLogPublisher.startAndWait();
@@ -82,7 +97,9 @@ public final class KafkaLogAppender extends LogAppender {
     private SimpleKafkaProducer producer;
 
     private KafkaLogPublisher(CConfiguration cConf) {
-      super(QUEUE_SIZE, RetryStrategies.fromConfiguration(cConf, "system.log.process."));
+      super(QUEUE_SIZE,
+            LogOverflowPolicy.fromConfiguration(cConf),
+            RetryStrategies.fromConfiguration(cConf, "system.log.process."));
       this.cConf = cConf;
       this.topic = cConf.get(Constants.Logging.KAFKA_TOPIC);
       this.loggingEventSerializer = new LoggingEventSerializer();
@@ -21,7 +21,9 @@ import co.cask.cdap.common.io.ByteBuffers;
 import co.cask.cdap.common.io.Syncable;
 import co.cask.cdap.logging.serialize.LoggingEvent;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
+import co.cask.cdap.logging.write.LogFileIndex;
 import com.google.common.io.Closeables;
+import com.google.common.io.CountingOutputStream;
 import org.apache.avro.Schema;
 import org.apache.avro.file.DataFileWriter;
 import org.apache.avro.generic.GenericDatumWriter;
@@ -47,26 +49,33 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   private static final Logger LOG = LoggerFactory.getLogger(LogFileOutputStream.class);
 
   private final Location location;
+  private final String filePermissions;
   private final long createTime;
   private final Closeable closeable;
   private final LoggingEventSerializer serializer;
+  private final LogFileIndex.Builder indexBuilder;
 
   private OutputStream outputStream;
+  private CountingOutputStream countingOutputStream;
   private DataFileWriter<GenericRecord> dataFileWriter;
   private long fileSize;
 
   LogFileOutputStream(Location location, String filePermissions,
                       int syncIntervalBytes, long createTime, Closeable closeable) throws IOException {
     this.location = location;
+    this.filePermissions = filePermissions;
     this.closeable = closeable;
     this.serializer = new LoggingEventSerializer();
+    this.indexBuilder = new LogFileIndex.Builder();
 
     Schema schema = serializer.getAvroSchema();
     try {
       this.outputStream =
         filePermissions.isEmpty() ? location.getOutputStream() : location.getOutputStream(filePermissions);
+      // Count the bytes written to find the offsets of the blocks for the index
+      this.countingOutputStream = new CountingOutputStream(outputStream);
       this.dataFileWriter = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema));
-      this.dataFileWriter.create(schema, outputStream);
+      this.dataFileWriter.create(schema, countingOutputStream);
       this.dataFileWriter.setSyncInterval(syncIntervalBytes);
       this.createTime = createTime;
       this.fileSize = 0;
@@ -82,18 +91,32 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   }
 
   void append(ILoggingEvent event) throws IOException {
+    long position = countingOutputStream.getCount();
+    write(event);
+    indexBuilder.addEvent(event);
+    // Avro writes and flushes the current block once it reaches the sync interval, which starts a new block
+    long newPosition = countingOutputStream.getCount();
+    if (newPosition != position) {
+      indexBuilder.endBlock(newPosition);
+    }
+  }
+
+  private void write(ILoggingEvent event) throws IOException {
     // If the event is already a LoggingEvent, we don't need to re-encode.
     if (event instanceof LoggingEvent) {
       ByteBuffer encoded = ((LoggingEvent) event).getEncoded();
       if (encoded != null) {
         // TODO: CDAP-8735 Remove the copying after upgraded to Avro 1.7.4+
         dataFileWriter.appendEncoded(ByteBuffers.copy(encoded));
-      } else {
-        dataFileWriter.append(((LoggingEvent) event).getRecord());
+        return;
+      }
+      GenericRecord record = ((LoggingEvent) event).getRecord();
+      if (record != null) {
+        dataFileWriter.append(record);
+        return;
       }
-      return;
     }
-    dataFileWriter.append(serializer.toGenericRecord(event));
+    dataFileWriter.appendEncoded(ByteBuffer.wrap(serializer.toBytes(event)));
   }
 
   /**
@@ -115,6 +138,7 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
   @Override
   public void flush() throws IOException {
     fileSize = dataFileWriter.sync();
+    indexBuilder.endBlock(fileSize);
   }
 
   @Override
@@ -132,8 +156,26 @@ class LogFileOutputStream implements Closeable, Flushable, Syncable {
     LOG.trace("Closing file {}", location);
     try {
       dataFileWriter.close();
+      // Closing writes out the last block
+      indexBuilder.endBlock(countingOutputStream.getCount());
+      writeIndex();
     } finally {
       closeable.close();
     }
   }
+
+  /**
+   * Writes the index of the blocks in the file. Failing to write the index is not fatal,
+   * since readers fall back to scanning the file.
+   */
+  private void writeIndex() {
+    if (indexBuilder.isEmpty()) {
+      return;
+    }
+    try {
+      indexBuilder.build(countingOutputStream.getCount()).write(location, filePermissions);
+    } catch (IOException e) {
+      LOG.warn("Failed to write index for log file {}", location, e);
+    }
+  }
 }
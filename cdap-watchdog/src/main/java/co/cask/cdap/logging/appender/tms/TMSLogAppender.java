@@ -19,18 +19,21 @@ package co.cask.cdap.logging.appender.tms;
 import co.cask.cdap.api.messaging.MessagePublisher;
 import co.cask.cdap.api.messaging.MessagingContext;
 import co.cask.cdap.api.messaging.TopicNotFoundException;
+import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.logging.appender.AbstractLogPublisher;
 import co.cask.cdap.logging.appender.LogAppender;
 import co.cask.cdap.logging.appender.LogMessage;
+import co.cask.cdap.logging.appender.LogOverflowPolicy;
 import co.cask.cdap.logging.appender.kafka.LogPartitionType;
 import co.cask.cdap.logging.serialize.LoggingEventSerializer;
 import co.cask.cdap.messaging.MessagingService;
 import co.cask.cdap.messaging.context.MultiThreadMessagingContext;
 import co.cask.cdap.proto.id.NamespaceId;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.hash.Hashing;
 import com.google.inject.Inject;
 
@@ -57,6 +60,17 @@ public final class TMSLogAppender extends LogAppender {
     this.tmsLogPublisher = new TMSLogPublisher(cConf, messagingService, queueSize);
   }
 
+  /**
+   * Optional guice injection for the {@link MetricsCollectionService} used to emit the number of dropped log messages.
+   * It is optional because not every process that uses this appender has metrics collection.
+   */
+  @Inject(optional = true)
+  void setMetricsCollectionService(MetricsCollectionService metricsCollectionService) {
+    tmsLogPublisher.setMetricsContext(metricsCollectionService.getContext(
+      ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, NamespaceId.SYSTEM.getNamespace(),
+                      Constants.Metrics.Tag.COMPONENT, APPENDER_NAME)));
+  }
+
   @Override
   public void start() {
     tmsLogPublisher.startAndWait();
@@ -102,7 +116,9 @@ public final class TMSLogAppender extends LogAppender {
     private final LogPartitionType logPartitionType;
 
     private TMSLogPublisher(CConfiguration cConf, MessagingService messagingService, int queueSize) {
-      super(queueSize, RetryStrategies.fromConfiguration(cConf, "system.log.process."));
+      super(queueSize,
+            LogOverflowPolicy.fromConfiguration(cConf),
+            RetryStrategies.fromConfiguration(cConf, "system.log.process."));
       this.topicPrefix = cConf.get(Constants.Logging.TMS_TOPIC_PREFIX);
       this.numPartitions = cConf.getInt(Constants.Logging.NUM_PARTITIONS);
       this.loggingEventSerializer = new LoggingEventSerializer();
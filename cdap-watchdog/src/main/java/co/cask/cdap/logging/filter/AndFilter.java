@@ -42,6 +42,16 @@ public class AndFilter implements Filter {
     return true;
   }
 
+  @Override
+  public boolean mayMatch(EventSummary summary) {
+    for (Filter expression : expressions) {
+      if (!expression.mayMatch(summary)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
@@ -0,0 +1,37 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.filter;
+
+import ch.qos.logback.classic.Level;
+
+/**
+ * Summary of a group of log events, such as a block of a log file. It is used to tell if a {@link Filter}
+ * can match any of the events without reading them. Answers may be false positives, but never false negatives.
+ */
+public interface EventSummary {
+
+  /**
+   * Returns {@code true} if there may be an event with level greater than or equal to the given level.
+   */
+  boolean mayHaveLevel(Level level);
+
+  /**
+   * Returns {@code true} if there may be an event with the given value for the given MDC key.
+   */
+  boolean mayHaveMdc(String key, String value);
+}
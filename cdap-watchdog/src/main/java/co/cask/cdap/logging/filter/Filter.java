@@ -24,6 +24,14 @@ import ch.qos.logback.classic.spi.ILoggingEvent;
 public interface Filter {
   boolean match(ILoggingEvent event);
 
+  /**
+   * Returns {@code true} if this filter may match any of the events in the given summary. Filters that cannot
+   * be checked against a summary must return {@code true}.
+   */
+  default boolean mayMatch(EventSummary summary) {
+    return true;
+  }
+
   Filter EMPTY_FILTER = new EmptyFilter();
 
   /**
@@ -34,6 +34,11 @@ public class LogLevelExpression implements Filter {
     return event.getLevel().isGreaterOrEqual(getLevel());
   }
 
+  @Override
+  public boolean mayMatch(EventSummary summary) {
+    return summary.mayHaveLevel(getLevel());
+  }
+
   public Level getLevel() {
     return level;
   }
@@ -42,6 +42,16 @@ public class OrFilter implements Filter {
     return false;
   }
 
+  @Override
+  public boolean mayMatch(EventSummary summary) {
+    for (Filter expression : expressions) {
+      if (expression.mayMatch(summary)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
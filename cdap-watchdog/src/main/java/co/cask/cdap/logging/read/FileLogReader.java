@@ -18,38 +18,70 @@ package co.cask.cdap.logging.read;
 
 import co.cask.cdap.api.dataset.lib.AbstractCloseableIterator;
 import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.common.logging.LoggingContext;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import co.cask.cdap.logging.filter.AndFilter;
 import co.cask.cdap.logging.filter.Filter;
 import co.cask.cdap.logging.meta.FileMetaDataReader;
 import co.cask.cdap.logging.write.LogLocation;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * Reads log events from a file.
+ * Reads log events from a file. When a read spans multiple files, up to
+ * {@link Constants.Logging#LOG_READER_PARALLELISM} files are read concurrently ahead of the files being returned, and
+ * their events are merged by event time. The executor is shared by all reads, so a read whose next file has not been
+ * started by the executor reads it in the calling thread instead of waiting behind the files of other reads.
  */
 public class FileLogReader implements LogReader {
   private static final Logger LOG = LoggerFactory.getLogger(FileLogReader.class);
 
   private final FileMetaDataReader fileMetadataReader;
+  private final int parallelism;
+  private final ExecutorService executor;
 
   @Inject
-  public FileLogReader(FileMetaDataReader fileMetadataReader) {
+  public FileLogReader(CConfiguration cConf, FileMetaDataReader fileMetadataReader) {
     this.fileMetadataReader = fileMetadataReader;
+    this.parallelism = cConf.getInt(Constants.Logging.LOG_READER_PARALLELISM);
+    Preconditions.checkArgument(parallelism > 0, "The value of '%s' must be positive, but is %s",
+                                Constants.Logging.LOG_READER_PARALLELISM, parallelism);
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(parallelism, parallelism, 60, TimeUnit.SECONDS,
+                                                         new LinkedBlockingQueue<Runnable>(),
+                                                         Threads.createDaemonThreadFactory("log-reader-%d"));
+    // The reader is never closed, so let idle threads terminate
+    executor.allowCoreThreadTimeOut(true);
+    this.executor = executor;
   }
 
   @Override
@@ -75,12 +107,8 @@ public class FileLogReader implements LogReader {
         return;
       }
 
-      for (LogLocation file : sortedFilesInRange) {
-        LOG.trace("Reading file {}", file);
-        file.readLog(logFilter, fromTimeMs, Long.MAX_VALUE, maxEvents - callback.getCount(), callback);
-        if (callback.getCount() >= maxEvents) {
-          break;
-        }
+      for (LogEvent event : readNext(sortedFilesInRange, logFilter, fromTimeMs, maxEvents)) {
+        callback.handle(event);
       }
     } catch (Throwable e) {
       LOG.error("Got exception: ", e);
@@ -107,24 +135,7 @@ public class FileLogReader implements LogReader {
       long fromTimeMs = readRange.getToMillis() - 1;
 
       LOG.trace("Using fromTimeMs={}, readRange={}", fromTimeMs, readRange);
-      List<Collection<LogEvent>> logSegments = Lists.newLinkedList();
-      int count = 0;
-      for (LogLocation file : Lists.reverse(sortedFilesInRange)) {
-        try {
-          LOG.trace("Reading file {}", file);
-
-          Collection<LogEvent> events = file.readLogPrev(logFilter, fromTimeMs, maxEvents - count);
-          logSegments.add(events);
-          count += events.size();
-          if (count >= maxEvents) {
-            break;
-          }
-        } catch (IOException e) {
-          LOG.warn("Got exception reading log file {}", file, e);
-        }
-      }
-
-      for (LogEvent event : Iterables.concat(Lists.reverse(logSegments))) {
+      for (LogEvent event : readPrev(sortedFilesInRange, logFilter, fromTimeMs, maxEvents)) {
         callback.handle(event);
       }
     } catch (Throwable e) {
@@ -159,45 +170,377 @@ public class FileLogReader implements LogReader {
         };
       }
 
-      final Iterator<LogLocation> filesIter = sortedFilesInRange.iterator();
-
-      CloseableIterator<CloseableIterator<LogEvent>> closeableIterator =
-        new CloseableIterator<CloseableIterator<LogEvent>>() {
-          private CloseableIterator<LogEvent> curr = null;
+      return new MergingLogEventIterator(sortedFilesInRange, logFilter, fromTimeMs, toTimeMs);
+    } catch (Throwable e) {
+      LOG.error("Got exception: ", e);
+      throw Throwables.propagate(e);
+    }
+  }
 
-          @Override
-          public void close() {
-            if (curr != null) {
-              curr.close();
+  /**
+   * Reads the first maxEvents log events from the given files, which are sorted by start time. The files are read
+   * in order, with up to {@link #parallelism} files being read concurrently, and the events of each file are merged
+   * with the events read so far. Reading stops once there are maxEvents events and the next file starts after
+   * the last of them.
+   */
+  private List<LogEvent> readNext(List<LogLocation> files, final Filter logFilter,
+                                  final long fromTimeMs, final int maxEvents) {
+    if (maxEvents <= 0) {
+      return Collections.emptyList();
+    }
+    PeekingIterator<LogLocation> filesIter = Iterators.peekingIterator(files.iterator());
+    Deque<FileRead<List<LogEvent>>> pending = new ArrayDeque<>();
+    List<LogEvent> events = Collections.emptyList();
+    try {
+      while (true) {
+        while (pending.size() < parallelism && filesIter.hasNext()) {
+          final LogLocation file = filesIter.next();
+          pending.add(readAhead(file, new Callable<List<LogEvent>>() {
+            @Override
+            public List<LogEvent> call() {
+              LOG.trace("Reading file {}", file);
+              List<LogEvent> fileEvents = new ArrayList<>();
+              try (CloseableIterator<LogEvent> fileIter = file.readLog(logFilter, fromTimeMs,
+                                                                       Long.MAX_VALUE, maxEvents)) {
+                Iterators.addAll(fileEvents, fileIter);
+              }
+              return fileEvents;
             }
-          }
+          }));
+        }
+        if (pending.isEmpty()) {
+          return events;
+        }
 
-          @Override
-          public boolean hasNext() {
-            return filesIter.hasNext();
-          }
+        // Merge the next file, together with the files after it that have already been read
+        List<List<LogEvent>> segments = new ArrayList<>();
+        segments.add(events);
+        do {
+          segments.add(pending.poll().get(Collections.<LogEvent>emptyList()));
+        } while (!pending.isEmpty() && pending.peek().isDone());
+        events = merge(segments, maxEvents, false);
+
+        LogLocation nextFile = pending.isEmpty() ? (filesIter.hasNext() ? filesIter.peek() : null)
+          : pending.peek().getFile();
+        if (nextFile == null || (events.size() >= maxEvents
+          && nextFile.getEventTimeMs() > events.get(events.size() - 1).getLoggingEvent().getTimeStamp())) {
+          return events;
+        }
+      }
+    } finally {
+      for (FileRead<List<LogEvent>> read : pending) {
+        read.cancel();
+      }
+    }
+  }
 
-          @Override
-          public CloseableIterator<LogEvent> next() {
-            if (curr != null) {
-              curr.close();
+  /**
+   * Reads the last maxEvents log events from the given files, which are sorted by start time. The files are read
+   * from the last one, with up to {@link #parallelism} files being read concurrently, and the events of each file
+   * are merged with the events read so far. Reading stops once there are maxEvents events and all of them are
+   * after the start of the earliest file read, since the files before it only have earlier events.
+   */
+  private List<LogEvent> readPrev(List<LogLocation> files, final Filter logFilter,
+                                  final long fromTimeMs, final int maxEvents) {
+    if (maxEvents <= 0) {
+      return Collections.emptyList();
+    }
+    Iterator<LogLocation> filesIter = Lists.reverse(files).iterator();
+    Deque<FileRead<List<LogEvent>>> pending = new ArrayDeque<>();
+    List<LogEvent> events = Collections.emptyList();
+    try {
+      while (true) {
+        while (pending.size() < parallelism && filesIter.hasNext()) {
+          final LogLocation file = filesIter.next();
+          pending.add(readAhead(file, new Callable<List<LogEvent>>() {
+            @Override
+            public List<LogEvent> call() {
+              LOG.trace("Reading file {}", file);
+              try {
+                return new ArrayList<>(file.readLogPrev(logFilter, fromTimeMs, maxEvents));
+              } catch (IOException e) {
+                LOG.warn("Got exception reading log file {}", file, e);
+                return Collections.emptyList();
+              }
             }
-            LogLocation file = filesIter.next();
-            LOG.trace("Reading file {}", file);
-            curr = file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
-            return curr;
-          }
+          }));
+        }
+        if (pending.isEmpty()) {
+          return events;
+        }
+
+        // Merge the next file, together with the files before it that have already been read
+        List<List<LogEvent>> segments = new ArrayList<>();
+        segments.add(events);
+        LogLocation earliestFile;
+        do {
+          FileRead<List<LogEvent>> read = pending.poll();
+          earliestFile = read.getFile();
+          segments.add(read.get(Collections.<LogEvent>emptyList()));
+        } while (!pending.isEmpty() && pending.peek().isDone());
+        events = merge(segments, maxEvents, true);
+
+        if (events.size() >= maxEvents
+          && events.get(0).getLoggingEvent().getTimeStamp() >= earliestFile.getEventTimeMs()) {
+          return events;
+        }
+      }
+    } finally {
+      for (FileRead<List<LogEvent>> read : pending) {
+        read.cancel();
+      }
+    }
+  }
+
+  /**
+   * Starts reading a file on the executor.
+   */
+  private <T> FileRead<T> readAhead(LogLocation file, Callable<T> callable) {
+    FileRead<T> read = new FileRead<>(file, callable);
+    executor.execute(read);
+    return read;
+  }
+
+  /**
+   * Merges lists of log events that are sorted by event time into one list sorted by event time with a k-way merge.
+   * Events with the same event time are kept in the order of the lists they come from.
+   *
+   * @param segments lists of log events to merge
+   * @param limit maximum number of events to return
+   * @param keepLast whether to keep the last events or the first events when there are more than limit events
+   * @return the merged list of events
+   */
+  @VisibleForTesting
+  static List<LogEvent> merge(List<? extends List<LogEvent>> segments, int limit, boolean keepLast) {
+    PriorityQueue<EventSource> queue = new PriorityQueue<>(Math.max(1, segments.size()));
+    int size = 0;
+    for (int i = 0; i < segments.size(); i++) {
+      List<LogEvent> segment = segments.get(i);
+      size += segment.size();
+      if (!segment.isEmpty()) {
+        queue.add(new EventSource(i, segment.iterator()));
+      }
+    }
 
+    // When keeping the first events, the merge can stop after limit events
+    int count = keepLast ? size : Math.min(size, limit);
+    List<LogEvent> merged = new ArrayList<>(count);
+    while (merged.size() < count) {
+      EventSource source = queue.poll();
+      merged.add(source.getHead());
+      if (source.advance()) {
+        queue.add(source);
+      }
+    }
+    return keepLast && merged.size() > limit ? merged.subList(merged.size() - limit, merged.size()) : merged;
+  }
+
+  /**
+   * Log events being merged, ordered by the event time of the next event. Sources with a lower order come first
+   * for events with the same event time.
+   */
+  private static class EventSource implements Comparable<EventSource> {
+    private final int order;
+    private final Iterator<LogEvent> iterator;
+    private LogEvent head;
+
+    EventSource(int order, Iterator<LogEvent> iterator) {
+      this.order = order;
+      this.iterator = iterator;
+      this.head = iterator.next();
+    }
+
+    LogEvent getHead() {
+      return head;
+    }
+
+    /**
+     * Moves to the next event.
+     *
+     * @return {@code false} if there are no more events
+     */
+    boolean advance() {
+      if (!iterator.hasNext()) {
+        return false;
+      }
+      head = iterator.next();
+      return true;
+    }
+
+    @Override
+    public int compareTo(EventSource other) {
+      int cmp = Long.compare(head.getLoggingEvent().getTimeStamp(), other.head.getLoggingEvent().getTimeStamp());
+      return cmp != 0 ? cmp : Integer.compare(order, other.order);
+    }
+  }
+
+  /**
+   * Log events of an open log file.
+   */
+  private static final class OpenFile extends EventSource {
+    private final CloseableIterator<LogEvent> fileIter;
+
+    OpenFile(int order, CloseableIterator<LogEvent> fileIter) {
+      super(order, fileIter);
+      this.fileIter = fileIter;
+    }
+
+    void close() {
+      fileIter.close();
+    }
+  }
+
+  /**
+   * A log file being read by the executor, or by the thread that needs its result if the executor has not started it.
+   *
+   * @param <T> type of the result of reading the file
+   */
+  private static final class FileRead<T> implements Runnable {
+    private final LogLocation file;
+    private final FutureTask<T> task;
+    // set by the first thread to read the file, or when the read is cancelled before it started
+    private final AtomicBoolean claimed;
+
+    FileRead(LogLocation file, Callable<T> callable) {
+      this.file = file;
+      this.task = new FutureTask<>(callable);
+      this.claimed = new AtomicBoolean();
+    }
+
+    @Override
+    public void run() {
+      if (claimed.compareAndSet(false, true)) {
+        task.run();
+      }
+    }
+
+    LogLocation getFile() {
+      return file;
+    }
+
+    boolean isDone() {
+      return task.isDone();
+    }
+
+    /**
+     * Waits for the file to be read.
+     *
+     * @param defaultValue value to return if reading the file failed
+     */
+    T get(T defaultValue) {
+      // Read the file in this thread if the executor has not started reading it yet
+      run();
+      try {
+        return Uninterruptibles.getUninterruptibly(task);
+      } catch (ExecutionException e) {
+        LOG.warn("Got exception reading log file {}", file, e.getCause());
+        return defaultValue;
+      }
+    }
+
+    void cancel() {
+      task.cancel(true);
+    }
+
+    /**
+     * Cancels the read if no thread has started reading the file.
+     *
+     * @return {@code true} if the read was cancelled, {@code false} if the file is being read or has been read
+     */
+    boolean cancelIfNotStarted() {
+      if (!claimed.compareAndSet(false, true)) {
+        return false;
+      }
+      task.cancel(false);
+      return true;
+    }
+  }
+
+  /**
+   * Iterator over the log events of multiple files, merged by event time. The files are sorted by start time,
+   * and a file is only opened once the events of the files opened before it reach its start time. Up to
+   * {@link #parallelism} files are opened ahead on the executor so that they are ready when needed.
+   */
+  private final class MergingLogEventIterator extends AbstractCloseableIterator<LogEvent> {
+    private final Iterator<LogLocation> filesIter;
+    private final Filter logFilter;
+    private final long fromTimeMs;
+    private final long toTimeMs;
+    private final Deque<FileRead<CloseableIterator<LogEvent>>> opening;
+    private final PriorityQueue<OpenFile> openFiles;
+    private int openCount;
+
+    MergingLogEventIterator(List<LogLocation> files, Filter logFilter, long fromTimeMs, long toTimeMs) {
+      this.filesIter = files.iterator();
+      this.logFilter = logFilter;
+      this.fromTimeMs = fromTimeMs;
+      this.toTimeMs = toTimeMs;
+      this.opening = new ArrayDeque<>();
+      this.openFiles = new PriorityQueue<>();
+      openAhead();
+    }
+
+    @Override
+    protected LogEvent computeNext() {
+      // Open the next files if they can have events before the next event of the open files
+      while (!opening.isEmpty() && (openFiles.isEmpty()
+        || opening.peek().getFile().getEventTimeMs() <= openFiles.peek().getHead().getLoggingEvent().getTimeStamp())) {
+        CloseableIterator<LogEvent> fileIter = opening.poll().get(null);
+        openAhead();
+        if (fileIter == null) {
+          continue;
+        }
+        if (fileIter.hasNext()) {
+          openFiles.add(new OpenFile(openCount++, fileIter));
+        } else {
+          fileIter.close();
+        }
+      }
+
+      OpenFile openFile = openFiles.poll();
+      if (openFile == null) {
+        return endOfData();
+      }
+      LogEvent event = openFile.getHead();
+      if (openFile.advance()) {
+        openFiles.add(openFile);
+      } else {
+        openFile.close();
+      }
+      return event;
+    }
+
+    @Override
+    public void close() {
+      for (OpenFile openFile : openFiles) {
+        openFile.close();
+      }
+      openFiles.clear();
+      // Files being opened must be closed once they are open
+      for (FileRead<CloseableIterator<LogEvent>> read : opening) {
+        if (read.cancelIfNotStarted()) {
+          continue;
+        }
+        CloseableIterator<LogEvent> fileIter = read.get(null);
+        if (fileIter != null) {
+          fileIter.close();
+        }
+      }
+      opening.clear();
+    }
+
+    private void openAhead() {
+      while (opening.size() < parallelism && filesIter.hasNext()) {
+        final LogLocation file = filesIter.next();
+        opening.add(readAhead(file, new Callable<CloseableIterator<LogEvent>>() {
           @Override
-          public void remove() {
-            throw new UnsupportedOperationException("Remove not supported");
+          public CloseableIterator<LogEvent> call() {
+            LOG.trace("Reading file {}", file);
+            // Opening the file seeks to fromTimeMs and reads the first event
+            return file.readLog(logFilter, fromTimeMs, toTimeMs, Integer.MAX_VALUE);
           }
-        };
-
-      return concat(closeableIterator);
-    } catch (Throwable e) {
-      LOG.error("Got exception: ", e);
-      throw Throwables.propagate(e);
+        }));
+      }
     }
   }
 
@@ -85,6 +85,44 @@ public final class LoggingEvent implements ILoggingEvent {
     this.encoded = encoded;
   }
 
+  /**
+   * Creates an instance from values that are already decoded, which has no {@link GenericRecord}.
+   */
+  LoggingEvent(long timestamp, Level level, Map<String, String> mdc, @Nullable String threadName,
+               @Nullable String message, @Nullable String[] argumentArray, @Nullable String formattedMessage,
+               @Nullable String loggerName, @Nullable LoggerContextVO loggerContextVO,
+               @Nullable IThrowableProxy throwableProxy, boolean hasCallerData,
+               @Nullable StackTraceElement[] callerData, @Nullable ByteBuffer encoded) {
+    this.record = null;
+    this.encoded = encoded;
+    this.timestamp = timestamp;
+    this.level = level;
+    this.mdc = mdc;
+    this.threadName = threadName;
+    this.message = message;
+    this.argumentArray = argumentArray;
+    this.formattedMessage = formattedMessage;
+    this.loggerName = loggerName;
+    this.loggerContextVO = loggerContextVO;
+    this.throwableProxy = throwableProxy;
+    this.hasCallerData = hasCallerData;
+    this.callerData = callerData;
+
+    this.timestampPreserved = true;
+    this.levelPreserved = true;
+    this.mdcPreserved = true;
+    this.threadNamePreserved = true;
+    this.messagePreserved = true;
+    this.argumentArrayPreserved = true;
+    this.formattedMessagePreserved = true;
+    this.loggerNamePreserved = true;
+    this.loggerContextVOPreserved = true;
+    this.throwableProxyPreserved = true;
+    this.hasCallerDataPreserved = true;
+    this.callerDataPreserved = true;
+    this.deferredProcessingPrepared = true;
+  }
+
   /**
    * Returns the {@link ByteBuffer} that this event is decoded from or {@code null} if
    * the original encoded buffer is unknown.
@@ -95,8 +133,10 @@ public final class LoggingEvent implements ILoggingEvent {
   }
 
   /**
-   * Returns the {@link GenericRecord} that this event is constructed from.
+   * Returns the {@link GenericRecord} that this event is constructed from or {@code null} if this event is
+   * constructed from decoded values, in which case {@link #getEncoded()} is available.
    */
+  @Nullable
   public GenericRecord getRecord() {
     return record;
   }
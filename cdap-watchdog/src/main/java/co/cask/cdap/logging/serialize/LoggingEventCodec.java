@@ -0,0 +1,446 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ClassPackagingData;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import co.cask.cdap.logging.LoggingUtil;
+import org.apache.avro.io.Decoder;
+import org.apache.avro.io.Encoder;
+import org.apache.avro.util.Utf8;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+
+/**
+ * Encodes and decodes {@link ILoggingEvent} directly with Avro {@link Encoder} and {@link Decoder}, without going
+ * through {@code GenericRecord}. The wire format is exactly the one of {@link LogSchema.LoggingEvent#SCHEMA}, with
+ * fields written in the schema order, so that data written by either this class or the generic datum writer can be
+ * read by both.
+ *
+ * Strings that repeat across events, such as logger names, thread names, MDC keys and stack frames, are cached both
+ * as encoded {@link Utf8} and as decoded {@link String}, so that they are not converted for every event and the
+ * decoded events share the same instances.
+ */
+@NotThreadSafe
+final class LoggingEventCodec {
+
+  // Maximum number of entries in each string cache. A cache is cleared when it is full.
+  private static final int MAX_CACHED_STRINGS = 4096;
+
+  private final Map<String, Utf8> encodeCache = new HashMap<>();
+  private final Map<Utf8, String> decodeCache = new HashMap<>();
+  private final List<String> mapKeys = new ArrayList<>();
+  private final List<String> mapValues = new ArrayList<>();
+  private Utf8 utf8 = new Utf8();
+
+  /**
+   * Encodes the given {@link ILoggingEvent}.
+   */
+  void encode(ILoggingEvent event, Encoder encoder) throws IOException {
+    encoder.writeLong(event.getTimeStamp());
+    encoder.writeInt(event.getLevel() == null ? Level.ERROR_INT : event.getLevel().toInt());
+    Map<String, String> mdc = event.getMDCPropertyMap();
+    writeStringMap(mdc == null ? new HashMap<String, String>() : mdc, encoder);
+    // Marker is not supported in serialization
+    writeNull(encoder);
+    writeCachedString(event.getThreadName(), encoder);
+    writeString(event.getMessage(), encoder);
+    writeArguments(event.getArgumentArray(), encoder);
+    writeString(event.getFormattedMessage(), encoder);
+    writeCachedString(event.getLoggerName(), encoder);
+    writeLoggerContext(event.getLoggerContextVO(), encoder);
+    writeThrowableProxy(event.getThrowableProxy(), encoder);
+    boolean hasCallerData = event.hasCallerData();
+    encoder.writeBoolean(hasCallerData);
+    writeCallerData(hasCallerData ? event.getCallerData() : null, encoder);
+  }
+
+  /**
+   * Decodes a {@link LoggingEvent}.
+   *
+   * @param decoder the decoder to read from
+   * @param encoded the buffer that the decoder reads from, which is retained by the returned event
+   */
+  LoggingEvent decode(Decoder decoder, @Nullable ByteBuffer encoded) throws IOException {
+    long timestamp = decoder.readLong();
+    Level level = Level.toLevel(decoder.readInt());
+    Map<String, String> mdc = LoggingUtil.decodeMDC(readStringMap(decoder));
+    // Marker is not supported in serialization. The Marker record has no field, hence nothing to read for it.
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+    }
+    String threadName = readCachedString(decoder);
+    String message = readString(decoder);
+    String[] argumentArray = readArguments(decoder);
+    String formattedMessage = readString(decoder);
+    String loggerName = readCachedString(decoder);
+    LoggerContextVO loggerContextVO = readLoggerContext(decoder);
+    IThrowableProxy throwableProxy = readThrowableProxy(decoder);
+    boolean hasCallerData = decoder.readBoolean();
+    StackTraceElement[] callerData = readCallerData(decoder);
+
+    return new LoggingEvent(timestamp, level, mdc, threadName, message, argumentArray, formattedMessage, loggerName,
+                            loggerContextVO, throwableProxy, hasCallerData, callerData, encoded);
+  }
+
+  private void writeArguments(@Nullable Object[] arguments, Encoder encoder) throws IOException {
+    if (arguments == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    encoder.writeArrayStart();
+    encoder.setItemCount(arguments.length);
+    for (Object argument : arguments) {
+      encoder.startItem();
+      writeString(argument == null ? null : argument.toString(), encoder);
+    }
+    encoder.writeArrayEnd();
+  }
+
+  @Nullable
+  private String[] readArguments(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    List<String> arguments = new ArrayList<>();
+    for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+      for (long i = 0; i < count; i++) {
+        arguments.add(readString(decoder));
+      }
+    }
+    return arguments.toArray(new String[arguments.size()]);
+  }
+
+  private void writeLoggerContext(@Nullable LoggerContextVO context, Encoder encoder) throws IOException {
+    if (context == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeCachedString(context.getName(), encoder);
+    Map<String, String> propertyMap = context.getPropertyMap();
+    if (propertyMap == null) {
+      writeNull(encoder);
+    } else {
+      writeStringMap(propertyMap, encoder);
+    }
+    encoder.writeLong(context.getBirthTime());
+  }
+
+  @Nullable
+  private LoggerContextVO readLoggerContext(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    String name = readCachedString(decoder);
+    Map<String, String> propertyMap = LoggingUtil.decodeMDC(readStringMap(decoder));
+    long birthTime = decoder.readLong();
+    return new LoggerContextVO(name, propertyMap, birthTime);
+  }
+
+  private void writeThrowableProxy(@Nullable IThrowableProxy throwableProxy, Encoder encoder) throws IOException {
+    if (throwableProxy == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeCachedString(throwableProxy.getClassName(), encoder);
+    writeString(throwableProxy.getMessage(), encoder);
+    encoder.writeInt(throwableProxy.getCommonFrames());
+
+    StackTraceElementProxy[] stackTraceElementProxies = throwableProxy.getStackTraceElementProxyArray();
+    if (stackTraceElementProxies == null) {
+      writeNull(encoder);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(stackTraceElementProxies.length);
+      for (StackTraceElementProxy stackTraceElementProxy : stackTraceElementProxies) {
+        encoder.startItem();
+        writeStackTraceElement(stackTraceElementProxy.getStackTraceElement(), encoder);
+        writeClassPackagingData(stackTraceElementProxy.getClassPackagingData(), encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+
+    writeThrowableProxy(throwableProxy.getCause(), encoder);
+
+    IThrowableProxy[] suppressed = throwableProxy.getSuppressed();
+    if (suppressed == null) {
+      writeNull(encoder);
+    } else {
+      encoder.writeIndex(1);
+      encoder.writeArrayStart();
+      encoder.setItemCount(suppressed.length);
+      for (IThrowableProxy proxy : suppressed) {
+        encoder.startItem();
+        writeThrowableProxy(proxy, encoder);
+      }
+      encoder.writeArrayEnd();
+    }
+  }
+
+  @Nullable
+  private IThrowableProxy readThrowableProxy(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    String className = readCachedString(decoder);
+    String message = readString(decoder);
+    int commonFrames = decoder.readInt();
+
+    StackTraceElementProxy[] stackTraceElementProxies = null;
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+    } else {
+      List<StackTraceElementProxy> proxies = new ArrayList<>();
+      for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+        for (long i = 0; i < count; i++) {
+          StackTraceElementProxy proxy = new StackTraceElementProxy(readStackTraceElement(decoder));
+          ClassPackagingData classPackagingData = readClassPackagingData(decoder);
+          if (classPackagingData != null) {
+            proxy.setClassPackagingData(classPackagingData);
+          }
+          proxies.add(proxy);
+        }
+      }
+      stackTraceElementProxies = proxies.toArray(new StackTraceElementProxy[proxies.size()]);
+    }
+
+    IThrowableProxy cause = readThrowableProxy(decoder);
+
+    IThrowableProxy[] suppressed = null;
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+    } else {
+      List<IThrowableProxy> proxies = new ArrayList<>();
+      for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+        for (long i = 0; i < count; i++) {
+          proxies.add(readThrowableProxy(decoder));
+        }
+      }
+      suppressed = proxies.toArray(new IThrowableProxy[proxies.size()]);
+    }
+    return new ThrowableProxyImpl(cause, className, commonFrames, message, stackTraceElementProxies, suppressed);
+  }
+
+  private void writeClassPackagingData(@Nullable ClassPackagingData classPackagingData,
+                                       Encoder encoder) throws IOException {
+    if (classPackagingData == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeCachedString(classPackagingData.getCodeLocation(), encoder);
+    writeCachedString(classPackagingData.getVersion(), encoder);
+    encoder.writeBoolean(classPackagingData.isExact());
+  }
+
+  @Nullable
+  private ClassPackagingData readClassPackagingData(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    String codeLocation = readCachedString(decoder);
+    String version = readCachedString(decoder);
+    return new ClassPackagingData(codeLocation, version, decoder.readBoolean());
+  }
+
+  private void writeCallerData(@Nullable StackTraceElement[] callerData, Encoder encoder) throws IOException {
+    if (callerData == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    encoder.writeArrayStart();
+    encoder.setItemCount(callerData.length);
+    for (StackTraceElement stackTraceElement : callerData) {
+      encoder.startItem();
+      writeStackTraceElement(stackTraceElement, encoder);
+    }
+    encoder.writeArrayEnd();
+  }
+
+  @Nullable
+  private StackTraceElement[] readCallerData(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    List<StackTraceElement> callerData = new ArrayList<>();
+    for (long count = decoder.readArrayStart(); count > 0; count = decoder.arrayNext()) {
+      for (long i = 0; i < count; i++) {
+        callerData.add(readStackTraceElement(decoder));
+      }
+    }
+    return callerData.toArray(new StackTraceElement[callerData.size()]);
+  }
+
+  private void writeStackTraceElement(@Nullable StackTraceElement stackTraceElement,
+                                      Encoder encoder) throws IOException {
+    if (stackTraceElement == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    writeCachedString(stackTraceElement.getClassName(), encoder);
+    writeCachedString(stackTraceElement.getMethodName(), encoder);
+    writeCachedString(stackTraceElement.getFileName(), encoder);
+    encoder.writeInt(stackTraceElement.getLineNumber());
+  }
+
+  @Nullable
+  private StackTraceElement readStackTraceElement(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    String declaringClass = readCachedString(decoder);
+    String methodName = readCachedString(decoder);
+    String fileName = readCachedString(decoder);
+    return new StackTraceElement(declaringClass, methodName, fileName, decoder.readInt());
+  }
+
+  /**
+   * Writes a non-null map with nullable string values. The entries are collected first since the item count
+   * is written before the entries, and the size of some MDC maps is not cheap to compute.
+   */
+  private void writeStringMap(Map<String, String> map, Encoder encoder) throws IOException {
+    mapKeys.clear();
+    mapValues.clear();
+    for (Map.Entry<String, String> entry : map.entrySet()) {
+      mapKeys.add(entry.getKey() == null ? LoggingUtil.MDC_NULL_KEY : entry.getKey());
+      mapValues.add(entry.getValue());
+    }
+
+    encoder.writeIndex(1);
+    encoder.writeMapStart();
+    encoder.setItemCount(mapKeys.size());
+    for (int i = 0; i < mapKeys.size(); i++) {
+      encoder.startItem();
+      encoder.writeString(getUtf8(mapKeys.get(i)));
+      writeString(mapValues.get(i), encoder);
+    }
+    encoder.writeMapEnd();
+  }
+
+  @Nullable
+  private Map<String, String> readStringMap(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    Map<String, String> map = new HashMap<>();
+    for (long count = decoder.readMapStart(); count > 0; count = decoder.mapNext()) {
+      for (long i = 0; i < count; i++) {
+        utf8 = decoder.readString(utf8);
+        map.put(getString(utf8), readString(decoder));
+      }
+    }
+    return map;
+  }
+
+  private void writeNull(Encoder encoder) throws IOException {
+    encoder.writeIndex(0);
+    encoder.writeNull();
+  }
+
+  private void writeString(@Nullable String value, Encoder encoder) throws IOException {
+    if (value == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    encoder.writeString(value);
+  }
+
+  private void writeCachedString(@Nullable String value, Encoder encoder) throws IOException {
+    if (value == null) {
+      writeNull(encoder);
+      return;
+    }
+    encoder.writeIndex(1);
+    encoder.writeString(getUtf8(value));
+  }
+
+  @Nullable
+  private String readString(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    utf8 = decoder.readString(utf8);
+    return utf8.toString();
+  }
+
+  @Nullable
+  private String readCachedString(Decoder decoder) throws IOException {
+    if (decoder.readIndex() == 0) {
+      decoder.readNull();
+      return null;
+    }
+    utf8 = decoder.readString(utf8);
+    return getString(utf8);
+  }
+
+  /**
+   * Returns the cached {@link Utf8} of the given string.
+   */
+  private Utf8 getUtf8(String value) {
+    Utf8 result = encodeCache.get(value);
+    if (result == null) {
+      if (encodeCache.size() >= MAX_CACHED_STRINGS) {
+        encodeCache.clear();
+      }
+      result = new Utf8(value);
+      encodeCache.put(value, result);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the cached {@link String} of the given {@link Utf8}. The given instance is not retained, so that it can
+   * be reused for reading.
+   */
+  private String getString(Utf8 value) {
+    String result = decodeCache.get(value);
+    if (result == null) {
+      if (decodeCache.size() >= MAX_CACHED_STRINGS) {
+        decodeCache.clear();
+      }
+      result = value.toString();
+      decodeCache.put(new Utf8(result), result);
+    }
+    return result;
+  }
+}
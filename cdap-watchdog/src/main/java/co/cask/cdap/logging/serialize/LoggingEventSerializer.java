@@ -24,8 +24,6 @@ import com.google.common.base.Throwables;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
-import org.apache.avro.generic.GenericDatumReader;
-import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.BinaryDecoder;
 import org.apache.avro.io.BinaryEncoder;
@@ -40,12 +38,16 @@ import javax.annotation.concurrent.NotThreadSafe;
 
 /**
  * Avro serializer for ILoggingEvent.
+ * Events are encoded and decoded with {@link LoggingEventCodec}, which produces the same binary format as the
+ * generic datum writer with the {@link #getAvroSchema()} schema.
  * Method of this class is not thread safe, hence cannot be called from multiple threads concurrently.
  */
 @NotThreadSafe
 public final class LoggingEventSerializer {
 
-  private final GenericDatumReader<GenericRecord> datumReader = new GenericDatumReader<>(getAvroSchema());
+  private final LoggingEventCodec codec = new LoggingEventCodec();
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  private BinaryEncoder encoder;
   private BinaryDecoder decoder;
 
   /**
@@ -59,16 +61,15 @@ public final class LoggingEventSerializer {
    * Encodes a {@link ILoggingEvent} to byte array.
    */
   public byte[] toBytes(ILoggingEvent event) {
-    ByteArrayOutputStream out = new ByteArrayOutputStream();
-    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(out, null);
-    GenericDatumWriter<GenericRecord> writer = new GenericDatumWriter<>(getAvroSchema());
+    output.reset();
+    encoder = EncoderFactory.get().directBinaryEncoder(output, encoder);
     try {
-      writer.write(toGenericRecord(event), encoder);
+      codec.encode(event, encoder);
     } catch (IOException e) {
       // This shouldn't happen since we are writing to byte array output stream.
       throw Throwables.propagate(e);
     }
-    return out.toByteArray();
+    return output.toByteArray();
   }
 
   /**
@@ -80,7 +81,7 @@ public final class LoggingEventSerializer {
    * @throws IOException if fail to decode
    */
   public ILoggingEvent fromBytes(ByteBuffer buffer) throws IOException {
-    return new LoggingEvent(toGenericRecord(buffer), buffer);
+    return codec.decode(getDecoder(buffer), buffer);
   }
 
   /**
@@ -118,18 +119,6 @@ public final class LoggingEventSerializer {
     return decoder;
   }
 
-  /**
-   * Decodes the content of the given {@link ByteBuffer} into {@link GenericRecord}, based on the schema
-   * returned by the {@link #getAvroSchema()} method.
-   *
-   * @param buffer the buffer to decode
-   * @return a {@link GenericRecord} representing the decoded content.
-   * @throws IOException if fail to decode
-   */
-  private GenericRecord toGenericRecord(ByteBuffer buffer) throws IOException {
-    return datumReader.read(null, getDecoder(buffer));
-  }
-
   /**
    * Creates a new {@link GenericRecord} that represents the given {@link ILoggingEvent}.
    */
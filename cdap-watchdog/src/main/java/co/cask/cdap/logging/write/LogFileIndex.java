@@ -0,0 +1,468 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.write;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import co.cask.cdap.common.io.Locations;
+import co.cask.cdap.logging.filter.EventSummary;
+import co.cask.cdap.logging.filter.Filter;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.apache.twill.filesystem.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Index of the blocks in an Avro log file. For each block, the index has the offset of the block,
+ * the minimum and maximum event time and the maximum level of the events in the block, and a bloom filter
+ * over the CDAP MDC values of the events in the block. It is written next to the log file when the log file
+ * is closed, and is used to find the blocks to read without scanning the file.
+ *
+ * The index file has a version, the length of the log file, the number of blocks, and then for each block
+ * the offset and the minimum event time as deltas from the previous block, the maximum event time as a delta
+ * from the minimum event time and the maximum level, all encoded as Avro longs and ints, followed by
+ * a boolean that tells if the bloom filter is the same as the one of the previous block and if not, the bits of
+ * the bloom filter.
+ */
+public final class LogFileIndex {
+  private static final Logger LOG = LoggerFactory.getLogger(LogFileIndex.class);
+
+  public static final String INDEX_SUFFIX = ".idx";
+  private static final int VERSION = 2;
+
+  // CDAP tags in the MDC, such as the run id and the instance id, start with a "."
+  private static final String INDEXED_MDC_PREFIX = ".";
+  private static final int BLOOM_BITS = 256;
+  private static final int BLOOM_HASHES = 3;
+  private static final HashFunction BLOOM_HASH = Hashing.murmur3_128();
+
+  private final long fileLength;
+  private final long[] offsets;
+  private final long[] minTimes;
+  private final long[] maxTimes;
+  private final int[] maxLevels;
+  private final long[][] blooms;
+  // maximum event time of the events before each block
+  private final long[] maxTimesBefore;
+  // minimum event time of the events in and after each block
+  private final long[] minTimesFrom;
+
+  private LogFileIndex(long fileLength, long[] offsets, long[] minTimes, long[] maxTimes,
+                       int[] maxLevels, long[][] blooms) {
+    this.fileLength = fileLength;
+    this.offsets = offsets;
+    this.minTimes = minTimes;
+    this.maxTimes = maxTimes;
+    this.maxLevels = maxLevels;
+    this.blooms = blooms;
+    this.maxTimesBefore = new long[offsets.length];
+    this.minTimesFrom = new long[offsets.length];
+
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < offsets.length; i++) {
+      maxTimesBefore[i] = max;
+      max = Math.max(max, maxTimes[i]);
+    }
+    long min = Long.MAX_VALUE;
+    for (int i = offsets.length - 1; i >= 0; i--) {
+      min = Math.min(min, minTimes[i]);
+      minTimesFrom[i] = min;
+    }
+  }
+
+  /**
+   * Returns the location of the index of the given log file.
+   */
+  public static Location getIndexLocation(Location logLocation) throws IOException {
+    Location parent = Locations.getParent(logLocation);
+    if (parent == null) {
+      throw new IOException("Log file " + logLocation + " does not have a parent directory");
+    }
+    return parent.append(logLocation.getName() + INDEX_SUFFIX);
+  }
+
+  /**
+   * Reads the index of the given log file.
+   *
+   * @param logLocation location of the log file
+   * @return the index, or {@code null} if there is no index or if it does not match the log file
+   */
+  @Nullable
+  public static LogFileIndex read(Location logLocation) {
+    try {
+      Location indexLocation = getIndexLocation(logLocation);
+      if (!indexLocation.exists()) {
+        return null;
+      }
+      LogFileIndex index;
+      try (InputStream is = indexLocation.getInputStream()) {
+        BinaryDecoder decoder = DecoderFactory.get().directBinaryDecoder(is, null);
+        int version = decoder.readInt();
+        if (version != VERSION) {
+          LOG.debug("Ignoring index {} with unsupported version {}", indexLocation, version);
+          return null;
+        }
+        long fileLength = decoder.readLong();
+        int size = decoder.readInt();
+        long[] offsets = new long[size];
+        long[] minTimes = new long[size];
+        long[] maxTimes = new long[size];
+        int[] maxLevels = new int[size];
+        long[][] blooms = new long[size][];
+        long offset = 0;
+        long minTime = 0;
+        long[] bloom = null;
+        byte[] bloomBytes = new byte[BLOOM_BITS / Byte.SIZE];
+        for (int i = 0; i < size; i++) {
+          offset += decoder.readLong();
+          minTime += decoder.readLong();
+          offsets[i] = offset;
+          minTimes[i] = minTime;
+          maxTimes[i] = minTime + decoder.readLong();
+          maxLevels[i] = decoder.readInt();
+          if (bloom == null || !decoder.readBoolean()) {
+            decoder.readFixed(bloomBytes);
+            bloom = new long[BLOOM_BITS / Long.SIZE];
+            ByteBuffer.wrap(bloomBytes).asLongBuffer().get(bloom);
+          }
+          blooms[i] = bloom;
+        }
+        index = new LogFileIndex(fileLength, offsets, minTimes, maxTimes, maxLevels, blooms);
+      }
+      // The log file is only indexed when it is closed, so the index must cover the whole file
+      if (index.fileLength != logLocation.length()) {
+        LOG.debug("Ignoring index {} since it does not match the length of log file {}", indexLocation, logLocation);
+        return null;
+      }
+      return index;
+    } catch (IOException e) {
+      LOG.debug("Failed to read index of log file {}", logLocation, e);
+      return null;
+    }
+  }
+
+  /**
+   * Writes this index next to the given log file. The index is written to a temporary location first,
+   * so that readers never see a partially written index.
+   *
+   * @param logLocation location of the log file
+   * @param filePermissions permissions of the index file, or an empty string to use the default permissions
+   */
+  public void write(Location logLocation, String filePermissions) throws IOException {
+    Location indexLocation = getIndexLocation(logLocation);
+    Location tmpLocation = Locations.getParent(indexLocation).append(indexLocation.getName() + ".tmp");
+    try {
+      try (OutputStream os = filePermissions.isEmpty() ?
+        tmpLocation.getOutputStream() : tmpLocation.getOutputStream(filePermissions)) {
+        BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+        encoder.writeInt(VERSION);
+        encoder.writeLong(fileLength);
+        encoder.writeInt(offsets.length);
+        long offset = 0;
+        long minTime = 0;
+        ByteBuffer bloomBuffer = ByteBuffer.allocate(BLOOM_BITS / Byte.SIZE);
+        for (int i = 0; i < offsets.length; i++) {
+          encoder.writeLong(offsets[i] - offset);
+          encoder.writeLong(minTimes[i] - minTime);
+          encoder.writeLong(maxTimes[i] - minTimes[i]);
+          encoder.writeInt(maxLevels[i]);
+          // Blocks of the same run usually have the same MDC values, hence the same bloom filter
+          if (i > 0) {
+            encoder.writeBoolean(Arrays.equals(blooms[i], blooms[i - 1]));
+          }
+          if (i == 0 || !Arrays.equals(blooms[i], blooms[i - 1])) {
+            bloomBuffer.clear();
+            bloomBuffer.asLongBuffer().put(blooms[i]);
+            encoder.writeFixed(bloomBuffer.array());
+          }
+          offset = offsets[i];
+          minTime = minTimes[i];
+        }
+        encoder.flush();
+      }
+      if (tmpLocation.renameTo(indexLocation) == null) {
+        throw new IOException("Failed to rename " + tmpLocation + " to " + indexLocation);
+      }
+    } catch (IOException e) {
+      Locations.deleteQuietly(tmpLocation);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns the number of blocks in the index.
+   */
+  public int size() {
+    return offsets.length;
+  }
+
+  /**
+   * Returns the offset of the given block, which can be passed to {@link #getSyncPosition(long)}.
+   */
+  public long getOffset(int block) {
+    return offsets[block];
+  }
+
+  /**
+   * Returns the block that starts at or before the given offset.
+   */
+  public int findBlock(long offset) {
+    int block = Arrays.binarySearch(offsets, offset);
+    return block >= 0 ? block : Math.max(0, -block - 2);
+  }
+
+  /**
+   * Returns the first block to read to find events with event time greater than or equal to the given time.
+   * All events in the blocks before it have event time less than the given time.
+   *
+   * @param fromTimeMs start time in millis
+   * @return the block to start reading from
+   */
+  public int findStartBlock(long fromTimeMs) {
+    // maxTimesBefore is non-decreasing, find the last block with maxTimesBefore < fromTimeMs
+    int low = 0;
+    int high = offsets.length - 1;
+    int result = 0;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (maxTimesBefore[mid] < fromTimeMs) {
+        result = mid;
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the block after the last block that can have events with event time less than or equal to
+   * the given time. All events in that block and the blocks after it have event time greater than the given time.
+   *
+   * @param toTimeMs end time in millis
+   * @return the block to stop reading at, which is the number of blocks if all blocks need to be read
+   */
+  public int findEndBlock(long toTimeMs) {
+    // minTimesFrom is non-decreasing, find the first block with minTimesFrom > toTimeMs
+    int low = 0;
+    int high = offsets.length - 1;
+    int result = offsets.length;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (minTimesFrom[mid] > toTimeMs) {
+        result = mid;
+        high = mid - 1;
+      } else {
+        low = mid + 1;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the first block starting from the given block that may have events with event time greater than or
+   * equal to the given time that match the given filter.
+   *
+   * @return the block, or {@code -1} if no block from the given block may have matching events
+   */
+  public int findNextBlock(int block, long fromTimeMs, Filter filter) {
+    for (int i = block; i < offsets.length; i++) {
+      if (maxTimes[i] >= fromTimeMs && filter.mayMatch(new BlockSummary(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the last block before the given block that may have events with event time less than or
+   * equal to the given time that match the given filter.
+   *
+   * @return the block, or {@code -1} if no block before the given block may have matching events
+   */
+  public int findPreviousBlock(int block, long toTimeMs, Filter filter) {
+    for (int i = block - 1; i >= 0; i--) {
+      if (minTimes[i] <= toTimeMs && filter.mayMatch(new BlockSummary(i))) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the position to pass to {@link org.apache.avro.file.DataFileReader#sync(long)} to move to the
+   * block at the given offset. The sync marker of a block is written just before the block, so the reader is moved
+   * to the position of the sync marker.
+   */
+  public static long getSyncPosition(long offset) {
+    return Math.max(0L, offset - DataFileConstants.SYNC_SIZE);
+  }
+
+  @Override
+  public String toString() {
+    return "LogFileIndex{" +
+      "fileLength=" + fileLength +
+      ", offsets=" + Arrays.toString(offsets) +
+      '}';
+  }
+
+  private static boolean isIndexedMdcKey(String key) {
+    return key.startsWith(INDEXED_MDC_PREFIX);
+  }
+
+  private static long hashMdc(String key, String value) {
+    return BLOOM_HASH.newHasher().putString(key).putByte((byte) 0).putString(value).hash().asLong();
+  }
+
+  /**
+   * Returns the bloom filter bits for the given hash, using double hashing with the two halves of the hash.
+   */
+  private static int bloomBit(long hash, int i) {
+    int hash1 = (int) hash;
+    int hash2 = (int) (hash >>> 32);
+    return ((hash1 + i * hash2) & Integer.MAX_VALUE) % BLOOM_BITS;
+  }
+
+  /**
+   * {@link EventSummary} of a block in the index.
+   */
+  private final class BlockSummary implements EventSummary {
+    private final int block;
+
+    private BlockSummary(int block) {
+      this.block = block;
+    }
+
+    @Override
+    public boolean mayHaveLevel(Level level) {
+      return maxLevels[block] >= level.toInt();
+    }
+
+    @Override
+    public boolean mayHaveMdc(String key, String value) {
+      if (!isIndexedMdcKey(key)) {
+        return true;
+      }
+      long[] bloom = blooms[block];
+      long hash = hashMdc(key, value);
+      for (int i = 0; i < BLOOM_HASHES; i++) {
+        int bit = bloomBit(hash, i);
+        if ((bloom[bit / Long.SIZE] & (1L << (bit % Long.SIZE))) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Builds a {@link LogFileIndex} while a log file is written.
+   */
+  public static final class Builder {
+    private long[] offsets = new long[16];
+    private long[] minTimes = new long[16];
+    private long[] maxTimes = new long[16];
+    private int[] maxLevels = new int[16];
+    private long[][] blooms = new long[16][];
+    private int size;
+
+    private long blockOffset;
+    private long blockMinTime = Long.MAX_VALUE;
+    private long blockMaxTime = Long.MIN_VALUE;
+    private int blockMaxLevel = Level.ALL_INT;
+    private long[] blockBloom = new long[BLOOM_BITS / Long.SIZE];
+
+    /**
+     * Adds an event written to the current block.
+     */
+    public void addEvent(ILoggingEvent event) {
+      blockMinTime = Math.min(blockMinTime, event.getTimeStamp());
+      blockMaxTime = Math.max(blockMaxTime, event.getTimeStamp());
+      blockMaxLevel = Math.max(blockMaxLevel, event.getLevel().toInt());
+      for (Map.Entry<String, String> entry : event.getMDCPropertyMap().entrySet()) {
+        if (entry.getValue() != null && isIndexedMdcKey(entry.getKey())) {
+          long hash = hashMdc(entry.getKey(), entry.getValue());
+          for (int i = 0; i < BLOOM_HASHES; i++) {
+            int bit = bloomBit(hash, i);
+            blockBloom[bit / Long.SIZE] |= 1L << (bit % Long.SIZE);
+          }
+        }
+      }
+    }
+
+    /**
+     * Ends the current block. The next block starts at the given offset.
+     *
+     * @param nextOffset offset in the log file right after the sync marker of the current block
+     */
+    public void endBlock(long nextOffset) {
+      if (blockMinTime <= blockMaxTime) {
+        if (size == offsets.length) {
+          offsets = Arrays.copyOf(offsets, size * 2);
+          minTimes = Arrays.copyOf(minTimes, size * 2);
+          maxTimes = Arrays.copyOf(maxTimes, size * 2);
+          maxLevels = Arrays.copyOf(maxLevels, size * 2);
+          blooms = Arrays.copyOf(blooms, size * 2);
+        }
+        offsets[size] = blockOffset;
+        minTimes[size] = blockMinTime;
+        maxTimes[size] = blockMaxTime;
+        maxLevels[size] = blockMaxLevel;
+        blooms[size] = blockBloom;
+        size++;
+        blockBloom = new long[BLOOM_BITS / Long.SIZE];
+      }
+      blockOffset = nextOffset;
+      blockMinTime = Long.MAX_VALUE;
+      blockMaxTime = Long.MIN_VALUE;
+      blockMaxLevel = Level.ALL_INT;
+    }
+
+    /**
+     * Returns {@code true} if no block has been added.
+     */
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    /**
+     * Builds the index. All blocks must have been ended.
+     *
+     * @param fileLength length of the log file
+     */
+    public LogFileIndex build(long fileLength) {
+      return new LogFileIndex(fileLength, Arrays.copyOf(offsets, size), Arrays.copyOf(minTimes, size),
+                              Arrays.copyOf(maxTimes, size), Arrays.copyOf(maxLevels, size),
+                              Arrays.copyOf(blooms, size));
+    }
+  }
+}
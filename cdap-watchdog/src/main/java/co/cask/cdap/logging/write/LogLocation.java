@@ -50,6 +50,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
+import javax.annotation.Nullable;
 
 /**
  * LogLocation representing a log file and methods to read the file's contents.
@@ -150,6 +151,11 @@ public class LogLocation {
    */
   @SuppressWarnings("WeakerAccess")
   public Collection<LogEvent> readLogPrev(Filter logFilter, long fromTimeMs, final int maxEvents) throws IOException {
+    LogFileIndex index = readIndex();
+    if (index != null) {
+      return readLogPrev(index, logFilter, fromTimeMs, maxEvents);
+    }
+
     Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
     int count = 0;
     try {
@@ -206,6 +212,60 @@ public class LogLocation {
     return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
   }
 
+  /**
+   * Reads previous log events using the index of the file. Blocks that only have events after fromTimeMs or
+   * that cannot match the filter are skipped, and the remaining blocks are read backwards one at a time
+   * until there are enough events. The file is not read at all if no block can match.
+   */
+  private Collection<LogEvent> readLogPrev(LogFileIndex index, Filter logFilter, long fromTimeMs, int maxEvents) {
+    Deque<Collection<LogEvent>> logSegments = new LinkedList<>();
+    int count = 0;
+    int block = index.findPreviousBlock(index.findEndBlock(fromTimeMs), fromTimeMs, logFilter);
+    if (block < 0) {
+      LOG.trace("Skipping log file {} since no block can match filter {}", location, logFilter);
+      return ImmutableList.of();
+    }
+
+    try (DataFileReader<GenericRecord> dataFileReader = createReader()) {
+      while (block >= 0 && count < maxEvents) {
+        long startOffset = index.getOffset(block);
+        long endOffset = block + 1 < index.size() ? index.getOffset(block + 1) : Long.MAX_VALUE;
+        dataFileReader.sync(LogFileIndex.getSyncPosition(startOffset));
+        List<LogEvent> logSegment = readBlock(dataFileReader, logFilter, fromTimeMs, endOffset);
+        if (!logSegment.isEmpty()) {
+          logSegments.addFirst(logSegment);
+          count = count + logSegment.size();
+        }
+        LOG.trace("Read log events {} from position {} to endPosition {}", count, startOffset, endOffset);
+        block = index.findPreviousBlock(block, fromTimeMs, logFilter);
+      }
+    } catch (IOException e) {
+      READ_FAILURE_LOG.warn("Got exception while reading log file {}", location, e);
+    }
+
+    int skip = count >= maxEvents ? count - maxEvents : 0;
+    return Lists.newArrayList(Iterables.skip(Iterables.concat(logSegments), skip));
+  }
+
+  /**
+   * Reads the log events with event time less than or equal to fromTimeMs, from the current block
+   * up to the block at endOffset.
+   */
+  private List<LogEvent> readBlock(DataFileReader<GenericRecord> dataFileReader, Filter logFilter,
+                                   long fromTimeMs, long endOffset) throws IOException {
+    List<LogEvent> logSegment = new ArrayList<>();
+    // previousSync() is the offset of the block of the next event once hasNext() has read the block
+    while (dataFileReader.hasNext() && dataFileReader.previousSync() < endOffset) {
+      ILoggingEvent loggingEvent = new LoggingEvent(dataFileReader.next());
+      loggingEvent.prepareForDeferredProcessing();
+      if (loggingEvent.getTimeStamp() <= fromTimeMs && logFilter.match(loggingEvent)) {
+        logSegment.add(new LogEvent(loggingEvent,
+                                    new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, loggingEvent.getTimeStamp())));
+      }
+    }
+    return logSegment;
+  }
+
   /**
    *  Read current block in Avro file from current block sync marker to next block sync marker
    */
@@ -259,6 +319,9 @@ public class LogLocation {
     private final long maxEvents;
 
     private DataFileReader<GenericRecord> dataFileReader;
+    // index of the file, used to skip the blocks that cannot match the filter
+    private LogFileIndex index;
+    private long blockOffset = -1;
 
     private ILoggingEvent loggingEvent;
     private GenericRecord datum;
@@ -275,31 +338,47 @@ public class LogLocation {
       this.maxEvents = maxEvents;
 
       try {
-        dataFileReader = createReader();
-        if (dataFileReader.hasNext()) {
-          datum = dataFileReader.next();
-          loggingEvent = new LoggingEvent(datum);
-          loggingEvent.prepareForDeferredProcessing();
-
-          long prevPrevSyncPos = 0;
-          long prevSyncPos = 0;
-          // Seek to time fromTimeMs
-          while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
-            // Seek to the next sync point
-            long curPos = dataFileReader.tell();
-            prevPrevSyncPos = prevSyncPos;
-            prevSyncPos = dataFileReader.previousSync();
-            LOG.trace("Syncing to pos {}", curPos);
-            dataFileReader.sync(curPos);
-            if (dataFileReader.hasNext()) {
-              loggingEvent = new LoggingEvent(dataFileReader.next(datum));
-              loggingEvent.prepareForDeferredProcessing();
-            }
+        LogFileIndex index = readIndex();
+        if (index != null) {
+          // Skip the blocks that only have events before fromTimeMs or that cannot match the filter
+          int block = index.findNextBlock(index.findStartBlock(fromTimeMs), fromTimeMs, logFilter);
+          if (block < 0) {
+            LOG.trace("Skipping log file {} since no block can match filter {}", location, logFilter);
+            return;
           }
+          dataFileReader = createReader();
+          if (block > 0) {
+            dataFileReader.sync(LogFileIndex.getSyncPosition(index.getOffset(block)));
+          }
+          this.index = index;
+          LOG.trace("Starting at block {} using index of {}", block, location);
+        } else {
+          dataFileReader = createReader();
+          if (dataFileReader.hasNext()) {
+            datum = dataFileReader.next();
+            loggingEvent = new LoggingEvent(datum);
+            loggingEvent.prepareForDeferredProcessing();
+
+            long prevPrevSyncPos = 0;
+            long prevSyncPos = 0;
+            // Seek to time fromTimeMs
+            while (loggingEvent.getTimeStamp() < fromTimeMs && dataFileReader.hasNext()) {
+              // Seek to the next sync point
+              long curPos = dataFileReader.tell();
+              prevPrevSyncPos = prevSyncPos;
+              prevSyncPos = dataFileReader.previousSync();
+              LOG.trace("Syncing to pos {}", curPos);
+              dataFileReader.sync(curPos);
+              if (dataFileReader.hasNext()) {
+                loggingEvent = new LoggingEvent(dataFileReader.next(datum));
+                loggingEvent.prepareForDeferredProcessing();
+              }
+            }
 
-          // We're now likely past the record with fromTimeMs, rewind to the previous sync point
-          dataFileReader.sync(prevPrevSyncPos);
-          LOG.trace("Final sync pos {}", prevPrevSyncPos);
+            // We're now likely past the record with fromTimeMs, rewind to the previous sync point
+            dataFileReader.sync(prevPrevSyncPos);
+            LOG.trace("Final sync pos {}", prevPrevSyncPos);
+          }
         }
 
         // populate the first element
@@ -315,7 +394,10 @@ public class LogLocation {
     private void computeNext() {
       try {
         // read events from file
-        while (next == null && dataFileReader.hasNext()) {
+        while (next == null && dataFileReader != null && dataFileReader.hasNext()) {
+          if (index != null && !skipToMatchingBlock()) {
+            break;
+          }
           loggingEvent = new LoggingEvent(dataFileReader.next(datum));
           loggingEvent.prepareForDeferredProcessing();
 
@@ -338,6 +420,33 @@ public class LogLocation {
       }
     }
 
+    /**
+     * Moves the reader to the next block that can match the filter if the current block cannot match it.
+     *
+     * @return {@code false} if there is no block left that can match the filter
+     */
+    private boolean skipToMatchingBlock() throws IOException {
+      // previousSync() is the offset of the block of the next event once hasNext() has read the block
+      long offset = dataFileReader.previousSync();
+      if (offset == blockOffset) {
+        return true;
+      }
+      int block = index.findBlock(offset);
+      int matchingBlock = index.findNextBlock(block, fromTimeMs, logFilter);
+      if (matchingBlock < 0) {
+        return false;
+      }
+      if (matchingBlock != block) {
+        LOG.trace("Skipping from block {} to block {} of {}", block, matchingBlock, location);
+        dataFileReader.sync(LogFileIndex.getSyncPosition(index.getOffset(matchingBlock)));
+        if (!dataFileReader.hasNext()) {
+          return false;
+        }
+      }
+      blockOffset = dataFileReader.previousSync();
+      return true;
+    }
+
     @Override
     public void close() {
       try {
@@ -371,6 +480,14 @@ public class LogLocation {
     }
   }
 
+  /**
+   * Reads the index of the file. Only files written by the current log framework have an index.
+   */
+  @Nullable
+  private LogFileIndex readIndex() {
+    return VERSION_1.equals(frameworkVersion) ? LogFileIndex.read(location) : null;
+  }
+
   private DataFileReader<GenericRecord> createReader() throws IOException {
     boolean shouldImpersonate = this.getFrameworkVersion().equals(VERSION_0);
     return new DataFileReader<>(new LocationSeekableInput(location, namespaceId, impersonator, shouldImpersonate),
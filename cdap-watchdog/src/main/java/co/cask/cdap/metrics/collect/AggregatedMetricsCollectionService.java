@@ -21,26 +21,35 @@ import co.cask.cdap.api.metrics.MetricValues;
 import co.cask.cdap.api.metrics.MetricsCollectionService;
 import co.cask.cdap.api.metrics.MetricsContext;
 import co.cask.cdap.common.conf.Constants;
-import com.google.common.cache.CacheBuilder;
-import com.google.common.cache.CacheLoader;
-import com.google.common.cache.LoadingCache;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Base class for {@link MetricsCollectionService} which collect metrics through a set of cached
  * {@link AggregatedMetricsEmitter}.
+ *
+ * Each distinct set of tags is interned to one {@link TagMetrics}, which holds the emitters of that tag set and
+ * a {@link MetricsContext} bound to it. A {@link MetricsContext} keeps the reference to its {@link TagMetrics},
+ * hence emitting metrics through it only needs a lookup by the metric name, without hashing the tags or
+ * allocating. Tag sets that have no metrics emitted for {@link #CACHE_EXPIRE_MINUTES} are removed. Contexts stop
+ * updating a tag set once it is marked as expired, and a removed tag set is emitted once more in the next publish
+ * to pick up the updates that were in progress when it expired, so that no metric value is lost without
+ * coordinating every update with the publishing thread.
  */
 public abstract class AggregatedMetricsCollectionService extends AbstractExecutionThreadService
                                                          implements MetricsCollectionService {
@@ -48,33 +57,14 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsCollectionService.class);
   private static final long CACHE_EXPIRE_MINUTES = 1;
 
-  private final LoadingCache<Map<String, String>, MetricsContext> collectors;
-  private final LoadingCache<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> emitters;
+  private final ConcurrentMap<Map<String, String>, TagMetrics> tagMetrics;
+  // Tag sets removed in the last publish. Only accessed from the publishing thread.
+  private final List<TagMetrics> expiredMetrics;
   private Thread runThread;
 
   public AggregatedMetricsCollectionService() {
-    this.collectors = CacheBuilder.newBuilder()
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(createCollectorLoader());
-
-    this.emitters = CacheBuilder.newBuilder()
-      // NOTE : we don't need to have removalListener to  emit metrics, as we have expireAfterAccess set for a minute,
-      // emitters.get() is used to increment/gauge and that would reset the access time,
-      // and since runOneIteration() emits all the metrics for the scheduled duration (every 1 second)
-      // there wont be any loss of emitter entries.
-      .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES)
-      .build(new CacheLoader<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>() {
-        @Override
-        public LoadingCache<String, AggregatedMetricsEmitter> load(Map<String, String> tags) throws Exception {
-          return CacheBuilder.newBuilder().expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).
-            build(new CacheLoader<String, AggregatedMetricsEmitter>() {
-              @Override
-              public AggregatedMetricsEmitter load(String metricName) throws Exception {
-                return new AggregatedMetricsEmitter(metricName);
-              }
-            });
-        }
-      });
+    this.tagMetrics = new ConcurrentHashMap<>();
+    this.expiredMetrics = new ArrayList<>();
   }
 
   /**
@@ -159,7 +149,7 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
 
   @Override
   public final MetricsContext getContext(final Map<String, String> tags) {
-    return collectors.getUnchecked(tags);
+    return getTagMetrics(tags).context;
   }
 
   @Override
@@ -175,30 +165,43 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
     }
   }
 
+  /**
+   * Returns the interned {@link TagMetrics} for the given tags.
+   */
+  private TagMetrics getTagMetrics(Map<String, String> tags) {
+    TagMetrics metrics = tagMetrics.get(tags);
+    if (metrics != null) {
+      return metrics;
+    }
+    // Key by the immutable copy of the tags, since the given map can be mutated by the caller
+    TagMetrics newMetrics = new TagMetrics(tags);
+    metrics = tagMetrics.putIfAbsent(newMetrics.tags, newMetrics);
+    return metrics == null ? newMetrics : metrics;
+  }
+
   private Iterator<MetricValues> getMetrics(final long timestamp) {
-    // NOTE : emitters.asMap does not reset the access time in cache,
-    // so it's the preferred way to access the cache entries. as we access and emit metrics every second.
-    final Iterator<Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>>> iterator =
-      emitters.asMap().entrySet().iterator();
+    final long expireSeconds = TimeUnit.MINUTES.toSeconds(CACHE_EXPIRE_MINUTES);
+    // Tag sets expired in the last publish are emitted for the last time, before the live ones
+    final Iterator<TagMetrics> iterator = Iterators.concat(ImmutableList.copyOf(expiredMetrics).iterator(),
+                                                           tagMetrics.values().iterator());
+    expiredMetrics.clear();
     return new AbstractIterator<MetricValues>() {
       @Override
       protected MetricValues computeNext() {
         while (iterator.hasNext()) {
-          Map.Entry<Map<String, String>, LoadingCache<String, AggregatedMetricsEmitter>> entry = iterator.next();
-          Map<String, AggregatedMetricsEmitter> metricEmitters = entry.getValue().asMap();
-          // +1 because we add extra metric about how many metric values did we emit in this context (see below)
-          List<MetricValue> metricValues = Lists.newArrayListWithCapacity(metricEmitters.size() + 1);
-          for (Map.Entry<String, AggregatedMetricsEmitter> emitterEntry : metricEmitters.entrySet()) {
-            MetricValue metricValue = emitterEntry.getValue().emit();
-            // skip increment by 0
-            if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
-              continue;
-            }
-            metricValues.add(metricValue);
-          }
+          TagMetrics metrics = iterator.next();
+          List<MetricValue> metricValues = metrics.emit();
 
           if (metricValues.isEmpty()) {
-            // skip if there are no metric values to send
+            if (metrics.isExpired() || !metrics.isIdleExpired(timestamp, expireSeconds)) {
+              // skip if there are no metric values to send
+              continue;
+            }
+            // Remove the tag set so that new contexts get a new one, then stop existing contexts from updating it.
+            // Updates that are still in progress are emitted in the next publish.
+            tagMetrics.remove(metrics.tags, metrics);
+            metrics.expire();
+            expiredMetrics.add(metrics);
             continue;
           }
 
@@ -206,45 +209,110 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
           metricValues.add(new MetricValue("metrics.emitted.count", MetricType.COUNTER, metricValues.size() + 1));
 
           LOG.trace("Emit metric {}", metricValues);
-          return new MetricValues(entry.getKey(), timestamp, metricValues);
+          return new MetricValues(metrics.tags, timestamp, metricValues);
         }
         return endOfData();
       }
     };
   }
 
-  private CacheLoader<Map<String, String>, MetricsContext> createCollectorLoader() {
-    return new CacheLoader<Map<String, String>, MetricsContext>() {
-      @Override
-      public MetricsContext load(final Map<String, String> collectorKey) throws Exception {
-        return new MetricsContextImpl(collectorKey);
+  /**
+   * The emitters of one interned set of tags.
+   */
+  private final class TagMetrics {
+
+    private final Map<String, String> tags;
+    private final ConcurrentMap<String, AggregatedMetricsEmitter> emitters;
+    private final MetricsContextImpl context;
+    // Only accessed from the publishing thread
+    private long idleSinceSeconds = -1L;
+    // Set by the publishing thread when this tag set is removed
+    private volatile boolean expired;
+
+    private TagMetrics(Map<String, String> tags) {
+      this.tags = ImmutableMap.copyOf(tags);
+      this.emitters = new ConcurrentHashMap<>();
+      this.context = new MetricsContextImpl(this);
+    }
+
+    /**
+     * Returns {@code true} if this tag set is removed, hence no new update should be made to the emitters.
+     */
+    boolean isExpired() {
+      return expired;
+    }
+
+    /**
+     * Marks this tag set as removed. Updates that started before this call can still change the emitters,
+     * hence the tag set has to be emitted once more afterwards.
+     */
+    void expire() {
+      expired = true;
+    }
+
+    AggregatedMetricsEmitter getEmitter(String metricName) {
+      AggregatedMetricsEmitter emitter = emitters.get(metricName);
+      // Only call computeIfAbsent on miss since it locks even if the key exists
+      return emitter == null ? emitters.computeIfAbsent(metricName, AggregatedMetricsEmitter::new) : emitter;
+    }
+
+    /**
+     * Emits all metric values that are non-zero or are gauges.
+     */
+    List<MetricValue> emit() {
+      // +1 because we add extra metric about how many metric values did we emit in this context
+      List<MetricValue> metricValues = new ArrayList<>(emitters.size() + 1);
+      for (AggregatedMetricsEmitter emitter : emitters.values()) {
+        MetricValue metricValue = emitter.emit();
+        // skip increment by 0
+        if (metricValue.getType() == MetricType.COUNTER && metricValue.getValue() == 0) {
+          continue;
+        }
+        metricValues.add(metricValue);
       }
-    };
+      if (!metricValues.isEmpty()) {
+        idleSinceSeconds = -1L;
+      }
+      return metricValues;
+    }
+
+    /**
+     * Returns {@code true} if there was nothing emitted for the given expiration time.
+     * It is called when nothing is emitted in the current publish.
+     */
+    boolean isIdleExpired(long timestamp, long expireSeconds) {
+      if (idleSinceSeconds < 0) {
+        idleSinceSeconds = timestamp;
+      }
+      return timestamp - idleSinceSeconds >= expireSeconds;
+    }
   }
 
   private final class MetricsContextImpl implements MetricsContext {
 
     private final Map<String, String> tags;
+    private volatile TagMetrics metrics;
 
-    private MetricsContextImpl(final Map<String, String> tags) {
-      this.tags = ImmutableMap.copyOf(tags);
+    private MetricsContextImpl(TagMetrics metrics) {
+      this.tags = metrics.tags;
+      this.metrics = metrics;
     }
 
     @Override
     public void increment(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).increment(value);
+      currentTagMetrics().getEmitter(metricName).increment(value);
     }
 
     @Override
     public void gauge(String metricName, long value) {
-      emitters.getUnchecked(tags).getUnchecked(metricName).gauge(value);
+      currentTagMetrics().getEmitter(metricName).gauge(value);
     }
 
     @Override
     public MetricsContext childContext(String tagName, String tagValue) {
       ImmutableMap<String, String> allTags = ImmutableMap.<String, String>builder()
         .putAll(tags).put(tagName, tagValue).build();
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
     }
 
     @Override
@@ -261,7 +329,21 @@ public abstract class AggregatedMetricsCollectionService extends AbstractExecuti
       Map<String, String> allTags = Maps.newHashMap();
       allTags.putAll(this.tags);
       allTags.putAll(tags);
-      return collectors.getUnchecked(allTags);
+      return getContext(allTags);
+    }
+
+    /**
+     * Returns the {@link TagMetrics} for the tags of this context. If the one this context is bound to was removed
+     * due to inactivity, a new one is interned.
+     */
+    private TagMetrics currentTagMetrics() {
+      TagMetrics metrics = this.metrics;
+      while (metrics.isExpired()) {
+        // The expired one is removed from the map before it is marked, hence this loop ends
+        metrics = getTagMetrics(tags);
+        this.metrics = metrics;
+      }
+      return metrics;
     }
   }
 }
@@ -20,21 +20,26 @@ import co.cask.cdap.api.metrics.MetricValue;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * {@link MetricsEmitter} that aggregates  values for a metric
  * during collection and emit the aggregated value when emit.
+ * Increments are striped with {@link LongAdder} so that concurrent increments don't contend on a single value.
+ * The sum is reset by subtracting the emitted value, so that increments made concurrently with an emit are not lost.
  */
 final class AggregatedMetricsEmitter implements MetricsEmitter {
   private static final Logger LOG = LoggerFactory.getLogger(AggregatedMetricsEmitter.class);
 
+  // marks that there is no gauge value since the last emit
+  private static final long NO_GAUGE = Long.MIN_VALUE;
+
   private final String name;
-  // metric value
-  private final AtomicLong value;
-  // specifies if the metric type is gauge or counter
-  private final AtomicBoolean gaugeUsed;
+  // sum of increments since the last emit or gauge
+  private final LongAdder value;
+  // the last gauge value since the last emit, or NO_GAUGE if the metric type is counter
+  private final AtomicLong gaugeValue;
 
   AggregatedMetricsEmitter(String name) {
     if (name == null || name.isEmpty()) {
@@ -42,25 +47,38 @@ final class AggregatedMetricsEmitter implements MetricsEmitter {
     }
 
     this.name = name;
-    this.value = new AtomicLong();
-    this.gaugeUsed = new AtomicBoolean(false);
+    this.value = new LongAdder();
+    this.gaugeValue = new AtomicLong(NO_GAUGE);
   }
 
   void increment(long value) {
-    this.value.addAndGet(value);
+    this.value.add(value);
   }
 
 
   @Override
   public MetricValue emit() {
-    // todo CDAP-2195 - potential race condition , reseting value and type has to be done together
-    long value = this.value.getAndSet(0);
-    MetricType type = gaugeUsed.getAndSet(false) ? MetricType.GAUGE : MetricType.COUNTER;
-    return new MetricValue(name, type, value);
+    long gauge = gaugeValue.getAndSet(NO_GAUGE);
+    long value = drain();
+    if (gauge != NO_GAUGE) {
+      // Increments after the gauge are added on top of the gauge value
+      return new MetricValue(name, MetricType.GAUGE, gauge + value);
+    }
+    return new MetricValue(name, MetricType.COUNTER, value);
   }
 
   public void gauge(long value) {
-    this.value.set(value);
-    this.gaugeUsed.set(true);
+    drain();
+    gaugeValue.set(value);
+  }
+
+  /**
+   * Returns the sum of increments and subtracts it from the current value. Unlike {@link LongAdder#sumThenReset()},
+   * increments that happen concurrently are either included in the returned sum or kept for the next call.
+   */
+  private long drain() {
+    long sum = value.sum();
+    value.add(-sum);
+    return sum;
   }
 }
@@ -27,11 +27,14 @@ import co.cask.cdap.common.io.Encoder;
 import co.cask.cdap.common.service.RetryStrategies;
 import co.cask.cdap.common.service.RetryStrategy;
 import co.cask.cdap.messaging.MessagingService;
+import co.cask.cdap.messaging.RollbackDetail;
 import co.cask.cdap.messaging.client.StoreRequestBuilder;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.slf4j.Logger;
@@ -45,6 +48,8 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -102,8 +107,28 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
   }
 
   private void publishMetric(Iterable<TopicPayload> topicPayloads) throws IOException {
+    // Publish to all topics concurrently, then wait for each of them to complete, with retry on failure.
+    Map<TopicPayload, CompletableFuture<RollbackDetail>> futures = new LinkedHashMap<>();
     for (TopicPayload topicPayload : topicPayloads) {
-      topicPayload.publish(messagingService);
+      if (topicPayload.hasPayload()) {
+        futures.put(topicPayload, topicPayload.publishAsync(messagingService));
+      }
+    }
+
+    IOException failure = null;
+    for (Map.Entry<TopicPayload, CompletableFuture<RollbackDetail>> entry : futures.entrySet()) {
+      try {
+        entry.getKey().publish(messagingService, entry.getValue());
+      } catch (IOException e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure != null) {
+      throw failure;
     }
   }
 
@@ -136,11 +161,28 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
       payloads.add(payload);
     }
 
-    void publish(MessagingService messagingService) throws IOException {
+    boolean hasPayload() {
+      return !payloads.isEmpty();
+    }
+
+    /**
+     * Starts publishing the payloads asynchronously. The payloads must not be modified until the returned future
+     * is completed.
+     */
+    CompletableFuture<RollbackDetail> publishAsync(MessagingService messagingService) {
+      return messagingService.publishAsync(StoreRequestBuilder.of(topicId).addPayloads(payloads).build());
+    }
+
+    /**
+     * Completes publishing of the payloads. The first attempt is the given asynchronous publish. If it failed,
+     * the payloads will be published again with retry.
+     */
+    void publish(MessagingService messagingService, CompletableFuture<RollbackDetail> firstAttempt) throws IOException {
       if (payloads.isEmpty()) {
         return;
       }
 
+      CompletableFuture<RollbackDetail> attempt = firstAttempt;
       int failureCount = 0;
       long startTime = -1L;
       boolean done = false;
@@ -150,7 +192,11 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
           // Clear the thread interrupt flag when doing the actual publish.
           // Otherwise publish might get interrupted during shutdown, which has the thread interrupted
           interrupted = Thread.interrupted();
-          messagingService.publish(StoreRequestBuilder.of(topicId).addPayloads(payloads).build());
+          CompletableFuture<RollbackDetail> future = attempt;
+          attempt = null;
+          if (future == null || !awaitPublish(future)) {
+            messagingService.publish(StoreRequestBuilder.of(topicId).addPayloads(payloads).build());
+          }
           reset();
           done = true;
         } catch (TopicNotFoundException | ServiceUnavailableException e) {
@@ -191,6 +237,26 @@ public class MessagingMetricsCollectionService extends AggregatedMetricsCollecti
       }
     }
 
+    /**
+     * Waits for the given publish future to complete and rethrows the failure if there is any.
+     *
+     * @return {@code true} if the publish completed; {@code false} if the publish was not performed because the
+     *         publishing thread was interrupted while submitting the asynchronous publish
+     */
+    private boolean awaitPublish(CompletableFuture<RollbackDetail> future) throws TopicNotFoundException, IOException {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+        return true;
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause() == null ? e : e.getCause();
+        if (cause instanceof InterruptedException) {
+          return false;
+        }
+        Throwables.propagateIfPossible(cause, TopicNotFoundException.class, IOException.class);
+        throw Throwables.propagate(cause);
+      }
+    }
+
     private void reset() {
       // clear payloads and reset stats
       payloads.clear();
@@ -36,6 +36,10 @@ public class MetricsConsumerMetaTable {
   private static final byte[] LAST_PROCESS_TIMESTAMP = Bytes.toBytes("lpt");
   private static final byte[] PROCESS_TIMESTAMP_LATEST = Bytes.toBytes("ptl");
 
+  // Topic keys always contain the namespace separator, hence this row can't collide with them
+  private static final byte[] QUERY_CACHE_ROW = Bytes.toBytes("query.cache");
+  private static final byte[] QUERY_CACHE_VERSION = Bytes.toBytes("v");
+
   private final MetricsTable metaTable;
 
   public MetricsConsumerMetaTable(MetricsTable metaTable) {
@@ -94,6 +98,23 @@ public class MetricsConsumerMetaTable {
     return Bytes.toLong(result);
   }
 
+  /**
+   * Returns the version of the metrics query caches. It is incremented whenever metrics that may already be cached
+   * are written or deleted, so that processes other than the writer know when to invalidate their caches.
+   */
+  public long getQueryCacheVersion() {
+    return getLong(QUERY_CACHE_ROW, QUERY_CACHE_VERSION);
+  }
+
+  /**
+   * Increments the version of the metrics query caches.
+   *
+   * @see #getQueryCacheVersion()
+   */
+  public void incrementQueryCacheVersion() {
+    metaTable.incrementAndGet(QUERY_CACHE_ROW, QUERY_CACHE_VERSION, 1L);
+  }
+
   /**
    * Gets the value as a byte array in the {@link MetricsTable} of a given key.
    *
@@ -41,6 +41,7 @@ import co.cask.cdap.common.conf.CConfiguration;
 import co.cask.cdap.common.conf.Constants;
 import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.AggregationAlias;
+import co.cask.cdap.data2.dataset2.lib.cube.CubeQueryCache;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultAggregation;
 import co.cask.cdap.data2.dataset2.lib.cube.DefaultCube;
 import co.cask.cdap.data2.dataset2.lib.cube.FactTableSupplier;
@@ -51,15 +52,19 @@ import co.cask.cdap.metrics.process.TopicIdMetaKey;
 import co.cask.cdap.metrics.process.TopicProcessMeta;
 import co.cask.cdap.proto.id.NamespaceId;
 import co.cask.cdap.proto.id.TopicId;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.Uninterruptibles;
 import com.google.inject.Inject;
+import org.apache.twill.common.Threads;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -68,6 +73,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.Nullable;
 
@@ -97,10 +108,19 @@ public class DefaultMetricStore implements MetricStore {
                                                          Constants.Metrics.Tag.WORKFLOW_RUN_ID)));
 
   private final Supplier<Cube> cube;
+  @Nullable
+  private final CubeQueryCache queryCache;
   private final Supplier<MetricsConsumerMetaTable> metaTableSupplier;
   private MetricsContext metricsContext;
   private final List<TopicId> metricsTopics;
   private final Map<Integer, Long> resolutionTTLMap;
+  private final FactTableSupplier factTableSupplier;
+  // Assignments of aggregations and resolutions for writing metrics in parallel.
+  // It is empty if metrics are written through the single cube.
+  private final List<Map<Integer, Map<String, Aggregation>>> assignments;
+  private final ExecutorService partitionExecutor;
+  // Partitions created lazily from the assignments, guarded by this
+  private List<CubePartition> partitions;
 
 
   static {
@@ -226,12 +246,13 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Inject
-  DefaultMetricStore(MetricDatasetFactory dsFactory, CConfiguration cConf) {
-    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION}, cConf);
+  DefaultMetricStore(MetricDatasetFactory dsFactory, CConfiguration cConf, MetricQueryCacheHolder queryCacheHolder) {
+    this(dsFactory, new int[] {1, 60, 3600, TOTALS_RESOLUTION}, cConf, queryCacheHolder.get());
   }
 
   // NOTE: should never be used apart from data migration during cdap upgrade
-  private DefaultMetricStore(MetricDatasetFactory dsFactory, int resolutions[], CConfiguration cConf) {
+  private DefaultMetricStore(MetricDatasetFactory dsFactory, int resolutions[], CConfiguration cConf,
+                             @Nullable CubeQueryCache queryCache) {
     long secRetentionSecs = cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.SECOND_RESOLUTION +
                                             Constants.Metrics.RETENTION_SECONDS_SUFFIX);
     long minRetentionSecs = cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.MINUTE_RESOLUTION +
@@ -239,22 +260,38 @@ public class DefaultMetricStore implements MetricStore {
     long hourRetentionSecs = cConf.getLong(Constants.Metrics.RETENTION_SECONDS + Constants.Metrics.HOUR_RESOLUTION +
                                              Constants.Metrics.RETENTION_SECONDS_SUFFIX);
     this.resolutionTTLMap = ImmutableMap.of(1, secRetentionSecs, 60, minRetentionSecs, 3600, hourRetentionSecs);
-    FactTableSupplier factTableSupplier = new FactTableSupplier() {
+    this.factTableSupplier = new FactTableSupplier() {
       @Override
       public FactTable get(int resolution, int ignoredRollTime) {
         // roll time will be taken from configuration todo: clean this up
         return dsFactory.getOrCreateFactTable(resolution);
       }
     };
+    this.queryCache = queryCache;
     this.cube = Suppliers.memoize(new Supplier<Cube>() {
       @Override
       public Cube get() {
-        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS, AGGREGATIONS_ALIAS_DIMENSIONS);
+        DefaultCube cube = new DefaultCube(resolutions, factTableSupplier, AGGREGATIONS,
+                                           AGGREGATIONS_ALIAS_DIMENSIONS, queryCache);
         cube.setMetricsCollector(metricsContext);
         return cube;
       }
     });
 
+    int numPartitions = cConf.getInt(Constants.Metrics.PERSIST_PARTITIONS);
+    this.assignments =
+      numPartitions > 1 ? assignPartitions(resolutions, AGGREGATIONS, numPartitions) : Collections.emptyList();
+    // The thread calling add writes to the first partition, hence one less thread is needed
+    if (assignments.size() > 1) {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(assignments.size() - 1, assignments.size() - 1,
+                                                           60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                                                           Threads.createDaemonThreadFactory("metrics-persist-%d"));
+      executor.allowCoreThreadTimeOut(true);
+      this.partitionExecutor = executor;
+    } else {
+      this.partitionExecutor = null;
+    }
+
     this.metaTableSupplier = Suppliers.memoize(dsFactory::createConsumerMeta);
     int topicNumbers = cConf.getInt(Constants.Metrics.MESSAGING_TOPIC_NUM);
     String topicPrefix = cConf.get(Constants.Metrics.TOPIC_PREFIX);
@@ -265,8 +302,14 @@ public class DefaultMetricStore implements MetricStore {
   }
 
   @Override
-  public void setMetricsContext(MetricsContext metricsContext) {
+  public synchronized void setMetricsContext(MetricsContext metricsContext) {
     this.metricsContext = metricsContext;
+    // Partitions created by earlier writes have to emit metrics to the new context as well
+    if (partitions != null) {
+      for (CubePartition partition : partitions) {
+        partition.setMetricsContext(metricsContext);
+      }
+    }
   }
   
   @Override
@@ -276,6 +319,87 @@ public class DefaultMetricStore implements MetricStore {
 
   @Override
   public void add(Collection<? extends MetricValues> metricValues) {
+    List<CubeFact> facts = toCubeFacts(metricValues);
+    List<CubePartition> partitions = getPartitions();
+    if (partitions.isEmpty()) {
+      cube.get().add(facts);
+    } else {
+      addToPartitions(partitions, facts);
+    }
+
+    // Tell the query caches in other processes about late metrics
+    if (queryCache != null) {
+      long oldestTimestamp = Long.MAX_VALUE;
+      for (CubeFact fact : facts) {
+        oldestTimestamp = Math.min(oldestTimestamp, fact.getTimestamp());
+      }
+      if (queryCache.isBeforeWatermark(oldestTimestamp)) {
+        metaTableSupplier.get().incrementQueryCacheVersion();
+      }
+    }
+  }
+
+  /**
+   * Returns the partitions for writing metrics in parallel, creating them with the current metrics context
+   * if they are not created yet.
+   */
+  private synchronized List<CubePartition> getPartitions() {
+    if (partitions == null) {
+      List<CubePartition> result = new ArrayList<>();
+      for (Map<Integer, Map<String, Aggregation>> assignment : assignments) {
+        result.add(new CubePartition(result.size(), assignment, factTableSupplier, metricsContext));
+      }
+      partitions = result;
+    }
+    return partitions;
+  }
+
+  /**
+   * Writes the given facts to all partitions in parallel and blocks until all of them are written.
+   */
+  private void addToPartitions(List<CubePartition> partitions, List<CubeFact> facts) {
+    if (facts.isEmpty()) {
+      return;
+    }
+    long oldestTimestamp = Long.MAX_VALUE;
+    for (CubeFact fact : facts) {
+      oldestTimestamp = Math.min(oldestTimestamp, fact.getTimestamp());
+    }
+
+    List<Future<?>> futures = new ArrayList<>(partitions.size() - 1);
+    for (CubePartition partition : partitions.subList(1, partitions.size())) {
+      long timestamp = oldestTimestamp;
+      futures.add(partitionExecutor.submit(() -> partition.add(facts, timestamp)));
+    }
+
+    Throwable failure = null;
+    try {
+      partitions.get(0).add(facts, oldestTimestamp);
+    } catch (Throwable t) {
+      failure = t;
+    }
+    // Always wait for all partitions, so that no write is still in progress when this method returns
+    for (Future<?> future : futures) {
+      try {
+        Uninterruptibles.getUninterruptibly(future);
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = e.getCause();
+        } else {
+          failure.addSuppressed(e.getCause());
+        }
+      }
+    }
+    if (failure != null) {
+      throw Throwables.propagate(failure);
+    }
+    // Partitions write through their own cubes, hence need to tell the query cache about the new facts
+    if (queryCache != null) {
+      queryCache.factsAdded(oldestTimestamp);
+    }
+  }
+
+  private List<CubeFact> toCubeFacts(Collection<? extends MetricValues> metricValues) {
     List<CubeFact> facts = Lists.newArrayListWithCapacity(metricValues.size());
     for (MetricValues metricValue : metricValues) {
       String scope = metricValue.getTags().get(Constants.Metrics.Tag.SCOPE);
@@ -292,11 +416,14 @@ public class DefaultMetricStore implements MetricStore {
         .addMeasurements(metrics);
       facts.add(fact);
     }
-    cube.get().add(facts);
+    return facts;
   }
 
   @Override
   public Collection<MetricTimeSeries> query(MetricDataQuery query) {
+    if (queryCache != null) {
+      queryCache.syncVersion(metaTableSupplier.get().getQueryCacheVersion());
+    }
     Collection<TimeSeries> cubeResult = cube.get().query(buildCubeQuery(query));
     List<MetricTimeSeries> result = Lists.newArrayList();
     for (TimeSeries timeSeries : cubeResult) {
@@ -337,6 +464,7 @@ public class DefaultMetricStore implements MetricStore {
       // Delete all data before the timestamp. null for MeasureName indicates match any MeasureName.
       deleteMetricsBeforeTimestamp(timestamp, resolution);
     }
+    invalidateQueryCaches();
   }
 
   @Override
@@ -350,6 +478,17 @@ public class DefaultMetricStore implements MetricStore {
   @Override
   public void delete(MetricDeleteQuery query) {
     cube.get().delete(buildCubeDeleteQuery(query));
+    invalidateQueryCaches();
+  }
+
+  /**
+   * Invalidates the query caches of all processes after deleting metrics. Deleting metrics whose TTL expired
+   * doesn't need this, since the caches only hold recent metrics.
+   */
+  private void invalidateQueryCaches() {
+    if (queryCache != null) {
+      metaTableSupplier.get().incrementQueryCacheVersion();
+    }
   }
 
   @Override
@@ -435,4 +574,93 @@ public class DefaultMetricStore implements MetricStore {
       }
     });
   }
+
+  /**
+   * Assigns each pair of aggregation and resolution to one of the partitions in round robin order.
+   *
+   * @param resolutions the resolutions of the cube
+   * @param aggregations the aggregations of the cube
+   * @param numPartitions the maximum number of partitions
+   * @return a list of partitions, each of them is a map from resolution to the aggregations written for that
+   *         resolution. There is no empty partition in the list.
+   */
+  @VisibleForTesting
+  static List<Map<Integer, Map<String, Aggregation>>> assignPartitions(int[] resolutions,
+                                                                      Map<String, Aggregation> aggregations,
+                                                                      int numPartitions) {
+    int size = Math.min(numPartitions, resolutions.length * aggregations.size());
+    List<Map<Integer, Map<String, Aggregation>>> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(new TreeMap<>());
+    }
+    // Sort the aggregations so that the assignment is the same in all processes
+    Map<String, Aggregation> sortedAggregations = new TreeMap<>(aggregations);
+    int idx = 0;
+    for (int resolution : resolutions) {
+      for (Map.Entry<String, Aggregation> entry : sortedAggregations.entrySet()) {
+        result.get(idx++ % size).computeIfAbsent(resolution, k -> new HashMap<>()).put(entry.getKey(),
+                                                                                        entry.getValue());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * A partition of the metrics {@link Cube} that only writes to a subset of its aggregations and resolutions.
+   * Each partition has its own {@link FactTable}s and writes to a disjoint set of rows, hence different partitions
+   * can be written concurrently. Increments to the same row within a batch are combined by the {@link FactTable}.
+   */
+  private final class CubePartition {
+
+    private final List<DefaultCube> cubes;
+    private final String countMetric;
+    private final String timeMetric;
+    private final String delayMetric;
+    private volatile MetricsContext metricsContext;
+
+    CubePartition(int id, Map<Integer, Map<String, Aggregation>> assignment, FactTableSupplier factTableSupplier,
+                  @Nullable MetricsContext metricsContext) {
+      this.cubes = new ArrayList<>();
+      for (Map.Entry<Integer, Map<String, Aggregation>> entry : assignment.entrySet()) {
+        cubes.add(new DefaultCube(new int[] { entry.getKey() }, factTableSupplier,
+                                  entry.getValue(), AGGREGATIONS_ALIAS_DIMENSIONS));
+      }
+      String prefix = "metrics.store.partition." + id;
+      this.countMetric = prefix + ".persist.count";
+      this.timeMetric = prefix + ".persist.time.ms";
+      this.delayMetric = prefix + ".persist.delay.ms";
+      setMetricsContext(metricsContext);
+    }
+
+    /**
+     * Sets the {@link MetricsContext} for emitting metrics of this partition and its cubes.
+     */
+    void setMetricsContext(@Nullable MetricsContext metricsContext) {
+      this.metricsContext = metricsContext;
+      for (DefaultCube cube : cubes) {
+        cube.setMetricsCollector(metricsContext);
+      }
+    }
+
+    /**
+     * Writes the given facts to this partition.
+     *
+     * @param facts the facts to write
+     * @param oldestTimestamp the oldest timestamp in seconds among the facts, for emitting the delay metric
+     */
+    void add(List<CubeFact> facts, long oldestTimestamp) {
+      long startTime = System.currentTimeMillis();
+      for (Cube cube : cubes) {
+        cube.add(facts);
+      }
+      long endTime = System.currentTimeMillis();
+
+      MetricsContext context = metricsContext;
+      if (context != null) {
+        context.increment(countMetric, facts.size());
+        context.gauge(timeMetric, endTime - startTime);
+        context.gauge(delayMetric, endTime - TimeUnit.SECONDS.toMillis(oldestTimestamp));
+      }
+    }
+  }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.common.conf.CConfiguration;
+import co.cask.cdap.common.conf.Constants;
+import co.cask.cdap.data2.dataset2.lib.cube.CubeQueryCache;
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+import javax.annotation.Nullable;
+
+/**
+ * Holds the {@link CubeQueryCache} for metrics queries. It is a singleton, so that all {@link DefaultMetricStore}
+ * created by the same injector share the same cache, and writes and deletes through any of them invalidate it.
+ */
+@Singleton
+final class MetricQueryCacheHolder {
+
+  @Nullable
+  private final CubeQueryCache queryCache;
+
+  @Inject
+  MetricQueryCacheHolder(CConfiguration cConf) {
+    int size = cConf.getInt(Constants.Metrics.QUERY_CACHE_SIZE, 0);
+    this.queryCache = size > 0
+      ? new CubeQueryCache(size, cConf.getLong(Constants.Metrics.QUERY_CACHE_WATERMARK_DELAY_SECONDS, 60L))
+      : null;
+  }
+
+  /**
+   * Returns the {@link CubeQueryCache} or {@code null} if query caching is disabled.
+   */
+  @Nullable
+  CubeQueryCache get() {
+    return queryCache;
+  }
+}
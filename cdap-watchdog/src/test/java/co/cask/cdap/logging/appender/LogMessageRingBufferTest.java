@@ -0,0 +1,185 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.appender;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.logging.context.GenericLoggingContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit test for {@link LogMessageRingBuffer}.
+ */
+public class LogMessageRingBufferTest {
+
+  @Test
+  public void testMultipleProducers() throws Exception {
+    final LogMessageRingBuffer buffer = new LogMessageRingBuffer(16, LogOverflowPolicy.BLOCK);
+    Assert.assertEquals(16, buffer.getCapacity());
+
+    final int producers = 4;
+    final int messagesPerProducer = 1000;
+    ExecutorService executor = Executors.newFixedThreadPool(producers);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < producers; i++) {
+        final String logger = "producer" + i;
+        futures.add(executor.submit(() -> {
+          for (int j = 0; j < messagesPerProducer; j++) {
+            buffer.add(createMessage(logger, Level.DEBUG, Integer.toString(j)));
+          }
+          return null;
+        }));
+      }
+
+      // Messages from the same producer must be consumed in order, and nothing is dropped under BLOCK
+      Map<String, Integer> nextExpected = new HashMap<>();
+      for (int i = 0; i < producers * messagesPerProducer; i++) {
+        LogMessage message = buffer.poll(10, TimeUnit.SECONDS);
+        Assert.assertNotNull(message);
+        int expected = nextExpected.getOrDefault(message.getLoggerName(), 0);
+        Assert.assertEquals(Integer.toString(expected), message.getMessage());
+        nextExpected.put(message.getLoggerName(), expected + 1);
+      }
+      for (Future<?> future : futures) {
+        future.get(10, TimeUnit.SECONDS);
+      }
+      Assert.assertTrue(buffer.isEmpty());
+      Assert.assertNull(buffer.poll());
+      Assert.assertEquals(0L, buffer.getDroppedCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testBlock() throws Exception {
+    final LogMessageRingBuffer buffer = new LogMessageRingBuffer(2, LogOverflowPolicy.BLOCK);
+    Assert.assertTrue(buffer.add(createMessage("test", Level.INFO, "0")));
+    Assert.assertTrue(buffer.add(createMessage("test", Level.INFO, "1")));
+
+    final CountDownLatch added = new CountDownLatch(1);
+    Thread producer = new Thread(() -> {
+      try {
+        buffer.add(createMessage("test", Level.INFO, "2"));
+        added.countDown();
+      } catch (InterruptedException e) {
+        // Ignore and let the test fail on the latch
+      }
+    });
+    producer.start();
+
+    // The producer must wait for space in the buffer
+    Assert.assertFalse(added.await(200, TimeUnit.MILLISECONDS));
+    Assert.assertEquals("0", buffer.poll().getMessage());
+    Assert.assertTrue(added.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals("1", buffer.poll().getMessage());
+    Assert.assertEquals("2", buffer.poll().getMessage());
+    producer.join();
+  }
+
+  @Test
+  public void testDropLowestLevel() throws Exception {
+    LogMessageRingBuffer buffer = new LogMessageRingBuffer(8, LogOverflowPolicy.DROP_LOWEST_LEVEL);
+
+    // DEBUG is accepted until half full
+    int debug = 0;
+    while (buffer.add(createMessage("test", Level.DEBUG, "debug"))) {
+      debug++;
+    }
+    Assert.assertEquals(4, debug);
+
+    // INFO is accepted until three quarters full, WARN until seven eighths
+    Assert.assertTrue(buffer.add(createMessage("test", Level.INFO, "info")));
+    Assert.assertTrue(buffer.add(createMessage("test", Level.INFO, "info")));
+    Assert.assertFalse(buffer.add(createMessage("test", Level.INFO, "info")));
+    Assert.assertTrue(buffer.add(createMessage("test", Level.WARN, "warn")));
+    Assert.assertFalse(buffer.add(createMessage("test", Level.WARN, "warn")));
+
+    // ERROR is accepted until full
+    Assert.assertTrue(buffer.add(createMessage("test", Level.ERROR, "error")));
+    Assert.assertFalse(buffer.add(createMessage("test", Level.ERROR, "error")));
+    Assert.assertEquals(8, buffer.size());
+    Assert.assertEquals(4L, buffer.getDroppedCount());
+
+    // Consuming makes room again
+    Assert.assertEquals(Level.DEBUG, buffer.poll().getLevel());
+    Assert.assertTrue(buffer.add(createMessage("test", Level.ERROR, "error")));
+  }
+
+  @Test
+  public void testCapacityNotPowerOfTwo() throws Exception {
+    LogMessageRingBuffer buffer = new LogMessageRingBuffer(10, LogOverflowPolicy.DROP_LOWEST_LEVEL);
+    Assert.assertEquals(10, buffer.getCapacity());
+
+    // The thresholds are based on the configured capacity, not on the number of slots
+    int debug = 0;
+    while (buffer.add(createMessage("test", Level.DEBUG, "debug"))) {
+      debug++;
+    }
+    Assert.assertEquals(5, debug);
+
+    // The buffer is full at the configured capacity, also after the positions wrapped around the slots
+    for (int round = 0; round < 3; round++) {
+      while (buffer.add(createMessage("test", Level.ERROR, "error"))) {
+        // keep adding until full
+      }
+      Assert.assertEquals(10, buffer.size());
+      for (int i = 0; i < 7; i++) {
+        Assert.assertNotNull(buffer.poll());
+      }
+    }
+  }
+
+  @Test
+  public void testSample() throws Exception {
+    LogMessageRingBuffer buffer = new LogMessageRingBuffer(64, LogOverflowPolicy.SAMPLE);
+
+    // Messages are always accepted until half full, never accepted when full
+    for (int i = 0; i < 32; i++) {
+      Assert.assertTrue(buffer.add(createMessage("test", Level.INFO, "info")));
+    }
+    int attempts = 0;
+    while (buffer.size() < buffer.getCapacity()) {
+      buffer.add(createMessage("test", Level.INFO, "info"));
+      attempts++;
+    }
+    Assert.assertEquals(attempts - 32, buffer.getDroppedCount());
+    Assert.assertFalse(buffer.add(createMessage("test", Level.ERROR, "error")));
+    Assert.assertEquals(attempts - 31, buffer.getDroppedCount());
+  }
+
+  private LogMessage createMessage(String logger, Level level, String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setLoggerName(logger);
+    event.setLevel(level);
+    event.setMessage(message);
+    event.setTimeStamp(System.currentTimeMillis());
+    return new LogMessage(event, new GenericLoggingContext("ns", "app", "entity"));
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.appender.system;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import co.cask.cdap.api.dataset.lib.CloseableIterator;
+import co.cask.cdap.logging.filter.AndFilter;
+import co.cask.cdap.logging.filter.Filter;
+import co.cask.cdap.logging.filter.LogLevelExpression;
+import co.cask.cdap.logging.filter.MdcExpression;
+import co.cask.cdap.logging.read.LogEvent;
+import co.cask.cdap.logging.write.LogFileIndex;
+import co.cask.cdap.logging.write.LogLocation;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.twill.filesystem.LocalLocationFactory;
+import org.apache.twill.filesystem.Location;
+import org.junit.Assert;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tests for the index written by {@link LogFileOutputStream} and its use by {@link LogLocation}.
+ */
+public class LogFileOutputStreamTest {
+  @ClassRule
+  public static final TemporaryFolder TMP_FOLDER = new TemporaryFolder();
+
+  @Test
+  public void testIndexedReads() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    long baseTime = 1000000L;
+    // a small sync interval so that the file has many blocks
+    LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, baseTime, new Closeable() {
+      @Override
+      public void close() throws IOException {
+        // no-op
+      }
+    });
+    outputStream.flush();
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    for (int i = 0; i < 1000; i++) {
+      LoggingEvent event = new LoggingEvent("co.cask.Test", logger, Level.INFO, "test message " + i, null, null);
+      event.setTimeStamp(baseTime + i);
+      outputStream.append(event);
+      if (i % 100 == 0) {
+        outputStream.flush();
+      }
+    }
+    outputStream.close();
+
+    LogFileIndex index = LogFileIndex.read(location);
+    Assert.assertNotNull(index);
+    Assert.assertTrue(index.size() > 10);
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, baseTime, baseTime, location, "test", null);
+    List<Long> next = readNext(logLocation, Filter.EMPTY_FILTER, baseTime + 500, 10);
+    List<Long> prev = readPrev(logLocation, Filter.EMPTY_FILTER, baseTime + 500, 10);
+    List<Long> first = readNext(logLocation, Filter.EMPTY_FILTER, 0, 5);
+    List<Long> last = readPrev(logLocation, Filter.EMPTY_FILTER, Long.MAX_VALUE, 5);
+    assertTimes(baseTime + 500, 10, next);
+    assertTimes(baseTime + 491, 10, prev);
+    assertTimes(baseTime, 5, first);
+    assertTimes(baseTime + 995, 5, last);
+
+    // reads without the index should give the same events
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    Assert.assertNull(LogFileIndex.read(location));
+    Assert.assertEquals(next, readNext(logLocation, Filter.EMPTY_FILTER, baseTime + 500, 10));
+    Assert.assertEquals(prev, readPrev(logLocation, Filter.EMPTY_FILTER, baseTime + 500, 10));
+    Assert.assertEquals(first, readNext(logLocation, Filter.EMPTY_FILTER, 0, 5));
+    Assert.assertEquals(last, readPrev(logLocation, Filter.EMPTY_FILTER, Long.MAX_VALUE, 5));
+  }
+
+  @Test
+  public void testFilteredReads() throws Exception {
+    Location location = new LocalLocationFactory(TMP_FOLDER.newFolder()).create("1000.avro");
+    long baseTime = 1000000L;
+    LogFileOutputStream outputStream = new LogFileOutputStream(location, "", 1024, baseTime, new Closeable() {
+      @Override
+      public void close() throws IOException {
+        // no-op
+      }
+    });
+    outputStream.flush();
+    // four runs of 250 events each, with an error every 100 events
+    Logger logger = (Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+    for (int i = 0; i < 1000; i++) {
+      Level level = i % 100 == 0 ? Level.ERROR : Level.INFO;
+      LoggingEvent event = new LoggingEvent("co.cask.Test", logger, level, "test message " + i, null, null);
+      event.setTimeStamp(baseTime + i);
+      event.setMDCPropertyMap(ImmutableMap.of(".runId", "run" + (i / 250), "user", "user" + i));
+      outputStream.append(event);
+      if (i % 50 == 0) {
+        outputStream.flush();
+      }
+    }
+    outputStream.close();
+
+    LogLocation logLocation = new LogLocation(LogLocation.VERSION_1, baseTime, baseTime, location, "test", null);
+    assertFilteredReads(logLocation, baseTime);
+
+    // reads without the index should give the same events
+    Assert.assertTrue(LogFileIndex.getIndexLocation(location).delete());
+    assertFilteredReads(logLocation, baseTime);
+  }
+
+  private void assertFilteredReads(LogLocation logLocation, long baseTime) throws IOException {
+    Filter errorsOfRun = new AndFilter(ImmutableList.of(new MdcExpression(".runId", "run2"),
+                                                        new LogLevelExpression("ERROR")));
+    List<Long> errors = ImmutableList.of(baseTime + 500, baseTime + 600, baseTime + 700);
+    Assert.assertEquals(errors, readNext(logLocation, errorsOfRun, 0, 10));
+    Assert.assertEquals(errors, readPrev(logLocation, errorsOfRun, Long.MAX_VALUE, 10));
+
+    Filter missingRun = new MdcExpression(".runId", "run9");
+    Assert.assertTrue(readNext(logLocation, missingRun, 0, 10).isEmpty());
+    Assert.assertTrue(readPrev(logLocation, missingRun, Long.MAX_VALUE, 10).isEmpty());
+
+    // MDC keys that are not in the index cannot be used to skip blocks
+    Filter user = new MdcExpression("user", "user123");
+    Assert.assertEquals(ImmutableList.of(baseTime + 123), readNext(logLocation, user, 0, 10));
+    Assert.assertEquals(ImmutableList.of(baseTime + 123), readPrev(logLocation, user, Long.MAX_VALUE, 10));
+  }
+
+  private List<Long> readNext(LogLocation logLocation, Filter filter, long fromTimeMs, int maxEvents) {
+    List<Long> times = new ArrayList<>();
+    try (CloseableIterator<LogEvent> iterator = logLocation.readLog(filter, fromTimeMs, Long.MAX_VALUE, maxEvents)) {
+      while (iterator.hasNext()) {
+        times.add(iterator.next().getLoggingEvent().getTimeStamp());
+      }
+    }
+    return times;
+  }
+
+  private List<Long> readPrev(LogLocation logLocation, Filter filter,
+                              long fromTimeMs, int maxEvents) throws IOException {
+    List<Long> times = new ArrayList<>();
+    Collection<LogEvent> events = logLocation.readLogPrev(filter, fromTimeMs, maxEvents);
+    for (LogEvent event : events) {
+      times.add(event.getLoggingEvent().getTimeStamp());
+    }
+    return times;
+  }
+
+  private void assertTimes(long startTime, int count, List<Long> times) {
+    Assert.assertEquals(count, times.size());
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(startTime + i, (long) times.get(i));
+    }
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.logging.read;
+
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.google.common.collect.ImmutableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for merging the log events of multiple files in {@link FileLogReader}.
+ */
+public class FileLogReaderTest {
+
+  @Test
+  public void testMerge() {
+    List<LogEvent> first = ImmutableList.of(createEvent(1, "a"), createEvent(4, "a"), createEvent(6, "a"));
+    List<LogEvent> second = ImmutableList.of(createEvent(2, "b"), createEvent(4, "b"), createEvent(5, "b"));
+    List<LogEvent> third = ImmutableList.of(createEvent(3, "c"));
+    List<List<LogEvent>> segments = ImmutableList.of(first, ImmutableList.<LogEvent>of(), second, third);
+
+    Assert.assertEquals(ImmutableList.of("1a", "2b", "3c", "4a", "4b", "5b", "6a"),
+                        toStrings(FileLogReader.merge(segments, 10, false)));
+    Assert.assertEquals(ImmutableList.of("1a", "2b", "3c"), toStrings(FileLogReader.merge(segments, 3, false)));
+    Assert.assertEquals(ImmutableList.of("4b", "5b", "6a"), toStrings(FileLogReader.merge(segments, 3, true)));
+    Assert.assertTrue(FileLogReader.merge(ImmutableList.<List<LogEvent>>of(), 3, false).isEmpty());
+  }
+
+  private LogEvent createEvent(long timestamp, String message) {
+    LoggingEvent event = new LoggingEvent();
+    event.setTimeStamp(timestamp);
+    event.setMessage(message);
+    return new LogEvent(event, new LogOffset(LogOffset.INVALID_KAFKA_OFFSET, timestamp));
+  }
+
+  private List<String> toStrings(List<LogEvent> events) {
+    List<String> result = new ArrayList<>();
+    for (LogEvent event : events) {
+      result.add(event.getLoggingEvent().getTimeStamp() + event.getLoggingEvent().getMessage());
+    }
+    return result;
+  }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.logging.serialize;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggerContextVO;
+import ch.qos.logback.classic.spi.ThrowableProxy;
+import co.cask.cdap.common.logging.logback.TestLoggingContext;
+import co.cask.cdap.logging.appender.LogMessage;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryDecoder;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark that compares {@link LoggingEventSerializer} with the generic Avro datum writer and reader for the
+ * same {@link ILoggingEvent}, which is what the log appenders and the log saver used to do for every event.
+ * The decode benchmarks call {@link ILoggingEvent#prepareForDeferredProcessing()} so that the lazily converted
+ * fields of the generic path are included.
+ *
+ * To run it, build the test classes and execute
+ * {@code org.openjdk.jmh.Main LoggingEventSerializerBenchmark} with the test classpath of this module.
+ * Adding {@code -prof gc} shows the allocation rate per event.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class LoggingEventSerializerBenchmark {
+
+  @Param({"false", "true"})
+  private boolean withThrowable;
+
+  private ILoggingEvent event;
+  private byte[] encoded;
+  private LoggingEventSerializer serializer;
+  private GenericDatumWriter<GenericRecord> datumWriter;
+  private GenericDatumReader<GenericRecord> datumReader;
+  private BinaryDecoder decoder;
+
+  @Setup
+  public void setup() {
+    ch.qos.logback.classic.spi.LoggingEvent loggingEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    loggingEvent.setThreadName("executor-thread-1");
+    loggingEvent.setLevel(Level.INFO);
+    loggingEvent.setLoggerName("co.cask.cdap.internal.app.runtime.service.ServiceHttpServer");
+    loggingEvent.setMessage("Processed {} records from {}");
+    loggingEvent.setArgumentArray(new Object[] { 1000, "input" });
+    loggingEvent.setLoggerContextRemoteView(new LoggerContextVO("default", Collections.<String, String>emptyMap(),
+                                                                System.currentTimeMillis()));
+    loggingEvent.setCallerData(new StackTraceElement[] {
+      new StackTraceElement("co.cask.cdap.internal.app.runtime.service.ServiceHttpServer", "startUp",
+                            "ServiceHttpServer.java", 120)
+    });
+    if (withThrowable) {
+      loggingEvent.setThrowableProxy(new ThrowableProxy(new IOException("Failed to read", new Exception("Cause"))));
+    }
+    loggingEvent.setMDCPropertyMap(Collections.singletonMap("user.key", "user.value"));
+    loggingEvent.setTimeStamp(System.currentTimeMillis());
+    loggingEvent.prepareForDeferredProcessing();
+
+    event = new LogMessage(loggingEvent, new TestLoggingContext("namespace", "app", "run", "instance"));
+    serializer = new LoggingEventSerializer();
+    encoded = serializer.toBytes(event);
+    datumWriter = new GenericDatumWriter<>(serializer.getAvroSchema());
+    datumReader = new GenericDatumReader<>(serializer.getAvroSchema());
+  }
+
+  @Benchmark
+  public byte[] encode() {
+    return serializer.toBytes(event);
+  }
+
+  @Benchmark
+  public byte[] encodeGeneric() throws IOException {
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    datumWriter.write(serializer.toGenericRecord(event), encoder);
+    return os.toByteArray();
+  }
+
+  @Benchmark
+  public ILoggingEvent decode() throws IOException {
+    ILoggingEvent decoded = serializer.fromBytes(ByteBuffer.wrap(encoded));
+    decoded.prepareForDeferredProcessing();
+    return decoded;
+  }
+
+  @Benchmark
+  public ILoggingEvent decodeGeneric() throws IOException {
+    decoder = DecoderFactory.get().binaryDecoder(encoded, decoder);
+    ILoggingEvent decoded = new LoggingEvent(datumReader.read(null, decoder), ByteBuffer.wrap(encoded));
+    decoded.prepareForDeferredProcessing();
+    return decoded;
+  }
+}
@@ -29,12 +29,19 @@ import co.cask.cdap.logging.appender.LogMessage;
 import co.cask.cdap.logging.context.LoggingContextHelper;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericDatumWriter;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.io.BinaryEncoder;
+import org.apache.avro.io.DecoderFactory;
+import org.apache.avro.io.EncoderFactory;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.HashMap;
@@ -119,6 +126,57 @@ public class LoggingEventSerializerTest {
   }
 
 
+  @Test
+  public void testGenericCompatibility() throws Exception {
+    Map<String, String> mdcMap = new HashMap<>();
+    mdcMap.put("mdc1", "mdc-val1");
+    mdcMap.put("mdc2", null);
+    mdcMap.put(null, "null-key");
+
+    ch.qos.logback.classic.spi.LoggingEvent iLoggingEvent = new ch.qos.logback.classic.spi.LoggingEvent();
+    iLoggingEvent.setThreadName("threadName1");
+    iLoggingEvent.setLevel(Level.WARN);
+    iLoggingEvent.setMessage("Log message {} {}");
+    iLoggingEvent.setArgumentArray(new Object[]{"arg1", null});
+    iLoggingEvent.setLoggerName("loggerName1");
+    iLoggingEvent.setLoggerContextRemoteView(new LoggerContextVO("logger_context1", new HashMap<>(), 12345L));
+    Exception suppressed = new IllegalStateException("Suppressed");
+    Exception exception = new IllegalArgumentException("Test Exception", new Exception("Cause"));
+    exception.addSuppressed(suppressed);
+    iLoggingEvent.setThrowableProxy(new ThrowableProxy(exception));
+    iLoggingEvent.prepareForDeferredProcessing();
+    iLoggingEvent.setCallerData(new StackTraceElement[] {
+      new StackTraceElement("com.Class1", "methodName1", "fileName1", 10), null
+    });
+    iLoggingEvent.getMDCPropertyMap().putAll(mdcMap);
+    iLoggingEvent.setTimeStamp(1234567890L);
+    ILoggingEvent event = new LogMessage(iLoggingEvent, LoggingContextAccessor.getLoggingContext());
+
+    // The serializer must produce the same content as the generic datum writer. Only the order of map entries
+    // can be different.
+    LoggingEventSerializer serializer = new LoggingEventSerializer();
+    ByteArrayOutputStream os = new ByteArrayOutputStream();
+    BinaryEncoder encoder = EncoderFactory.get().directBinaryEncoder(os, null);
+    new GenericDatumWriter<GenericRecord>(serializer.getAvroSchema()).write(serializer.toGenericRecord(event), encoder);
+    byte[] genericBytes = os.toByteArray();
+    byte[] serializedBytes = serializer.toBytes(event);
+    Assert.assertEquals(genericBytes.length, serializedBytes.length);
+
+    // Bytes written by the generic datum writer must be decoded to the same event
+    assertLoggingEventEquals(iLoggingEvent, serializer.fromBytes(ByteBuffer.wrap(genericBytes)));
+
+    // Bytes written by the serializer must be readable by the generic datum reader
+    GenericRecord record = new GenericDatumReader<GenericRecord>(serializer.getAvroSchema())
+      .read(null, DecoderFactory.get().binaryDecoder(serializedBytes, null));
+    assertLoggingEventEquals(iLoggingEvent, new LoggingEvent(record));
+
+    // Repeated strings are shared between decoded events
+    ILoggingEvent event1 = serializer.fromBytes(ByteBuffer.wrap(serializedBytes));
+    ILoggingEvent event2 = serializer.fromBytes(ByteBuffer.wrap(serializer.toBytes(event)));
+    Assert.assertSame(event1.getLoggerName(), event2.getLoggerName());
+    Assert.assertSame(event1.getThreadName(), event2.getThreadName());
+  }
+
   @Test
   public void testOldSystemLoggingContext() throws Exception {
     // see: CDAP-7482
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package co.cask.cdap.metrics.collect;
+
+import co.cask.cdap.api.metrics.MetricValues;
+import co.cask.cdap.api.metrics.MetricsContext;
+import co.cask.cdap.common.conf.Constants;
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark for the throughput of incrementing metrics through {@link AggregatedMetricsCollectionService},
+ * which is what programs do for every record processed. All threads increment the same metric of the same
+ * {@link MetricsContext}, which is the most contended case.
+ *
+ * To run it, build the test classes and execute
+ * {@code org.openjdk.jmh.Main AggregatedMetricsCollectionServiceBenchmark} with the test classpath of this module.
+ * Adding {@code -prof gc} shows the allocation rate per increment.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+public class AggregatedMetricsCollectionServiceBenchmark {
+
+  private MetricsContext context;
+
+  @Setup
+  public void setup() {
+    // The service is not started since only the increment path is measured
+    AggregatedMetricsCollectionService service = new AggregatedMetricsCollectionService() {
+      @Override
+      protected void publish(Iterator<MetricValues> metrics) {
+        // no-op
+      }
+    };
+    context = service.getContext(ImmutableMap.of(Constants.Metrics.Tag.NAMESPACE, "default",
+                                                 Constants.Metrics.Tag.APP, "app",
+                                                 Constants.Metrics.Tag.FLOW, "flow",
+                                                 Constants.Metrics.Tag.RUN_ID, "run"))
+      .childContext(Constants.Metrics.Tag.FLOWLET, "flowlet");
+  }
+
+  @Benchmark
+  @Threads(1)
+  public void increment1() {
+    context.increment("process.events.processed", 1L);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public void increment4() {
+    context.increment("process.events.processed", 1L);
+  }
+
+  @Benchmark
+  @Threads(16)
+  public void increment16() {
+    context.increment("process.events.processed", 1L);
+  }
+
+  @Benchmark
+  @Threads(64)
+  public void increment64() {
+    context.increment("process.events.processed", 1L);
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2018 Cask Data, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package co.cask.cdap.metrics.store;
+
+import co.cask.cdap.data2.dataset2.lib.cube.Aggregation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link DefaultMetricStore}.
+ */
+public class DefaultMetricStoreTest {
+
+  private static final int[] RESOLUTIONS = { 1, 60, 3600, Integer.MAX_VALUE };
+
+  @Test
+  public void testAssignPartitions() {
+    for (int numPartitions : new int[] { 2, 3, 4, 7 }) {
+      List<Map<Integer, Map<String, Aggregation>>> partitions =
+        DefaultMetricStore.assignPartitions(RESOLUTIONS, DefaultMetricStore.AGGREGATIONS, numPartitions);
+      Assert.assertEquals(numPartitions, partitions.size());
+
+      // Each pair of resolution and aggregation should be assigned to exactly one partition
+      Set<String> assigned = new HashSet<>();
+      for (Map<Integer, Map<String, Aggregation>> partition : partitions) {
+        Assert.assertFalse(partition.isEmpty());
+        for (Map.Entry<Integer, Map<String, Aggregation>> entry : partition.entrySet()) {
+          for (String aggregation : entry.getValue().keySet()) {
+            Assert.assertTrue(assigned.add(entry.getKey() + ":" + aggregation));
+          }
+        }
+      }
+      Assert.assertEquals(RESOLUTIONS.length * DefaultMetricStore.AGGREGATIONS.size(), assigned.size());
+
+      // The assignment must be the same across calls
+      Assert.assertEquals(partitions,
+                          DefaultMetricStore.assignPartitions(RESOLUTIONS, DefaultMetricStore.AGGREGATIONS,
+                                                              numPartitions));
+    }
+  }
+
+  @Test
+  public void testAssignMorePartitionsThanPairs() {
+    int pairs = RESOLUTIONS.length * DefaultMetricStore.AGGREGATIONS.size();
+    List<Map<Integer, Map<String, Aggregation>>> partitions =
+      DefaultMetricStore.assignPartitions(RESOLUTIONS, DefaultMetricStore.AGGREGATIONS, pairs + 10);
+    Assert.assertEquals(pairs, partitions.size());
+  }
+}